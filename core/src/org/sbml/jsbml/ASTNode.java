@@ -44,6 +44,7 @@ import org.sbml.jsbml.util.Maths;
 import org.sbml.jsbml.util.TreeNodeChangeEvent;
 import org.sbml.jsbml.util.compilers.ASTNodeCompiler;
 import org.sbml.jsbml.util.compilers.ASTNodeValue;
+import org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler;
 import org.sbml.jsbml.util.compilers.FormulaCompiler;
 import org.sbml.jsbml.util.compilers.FormulaCompilerLibSBML;
 import org.sbml.jsbml.util.compilers.LaTeXCompiler;
@@ -2260,6 +2261,318 @@ public class ASTNode extends AbstractTreeNode {
     return value;
   }
 
+  /**
+   * Evaluates this {@link ASTNode} to a {@code double} value. In contrast to
+   * {@link #compile(ASTNodeCompiler)}, this method neither wraps intermediate
+   * results into objects nor creates lists of children, so it is suited for
+   * evaluating the same math many times, for instance during a simulation.
+   * Boolean values are represented by 1 for {@code true} and 0 for
+   * {@code false}.
+   * 
+   * @param compiler
+   *            the {@link DoubleASTNodeCompiler} that provides the values of
+   *            the identifiers and implements the operations.
+   * @return the value of this {@link ASTNode}.
+   * @throws SBMLException
+   *             Thrown if an error occurs during the compilation process.
+   * @see #compileBoolean(DoubleASTNodeCompiler)
+   */
+  public double compile(DoubleASTNodeCompiler compiler) throws SBMLException {
+    int childCount = getChildCount();
+    double value;
+    switch (getType()) {
+    /*
+     * Numbers
+     */
+    case INTEGER:
+      return getInteger();
+    case REAL:
+      return mantissa;
+    case REAL_E:
+    case RATIONAL:
+    case CONSTANT_E:
+    case CONSTANT_PI:
+      return getReal();
+    case NAME_AVOGADRO:
+      return compiler.getConstantAvogadro(getName());
+    case NAME_TIME:
+      return compiler.symbolTime(getName());
+      /*
+       * Operators
+       */
+    case PLUS:
+      if (childCount == 0) {
+        return 0d;
+      }
+      value = getChild(0).compile(compiler);
+      for (int i = 1; i < childCount; i++) {
+        value = compiler.plus(value, getChild(i).compile(compiler));
+      }
+      return value;
+    case MINUS:
+      value = getChild(0).compile(compiler);
+      if (childCount < 2) {
+        return compiler.uMinus(value);
+      }
+      for (int i = 1; i < childCount; i++) {
+        value = compiler.minus(value, getChild(i).compile(compiler));
+      }
+      return value;
+    case TIMES:
+      if (childCount == 0) {
+        return 1d;
+      }
+      value = getChild(0).compile(compiler);
+      for (int i = 1; i < childCount; i++) {
+        value = compiler.times(value, getChild(i).compile(compiler));
+      }
+      return value;
+    case DIVIDE:
+      if (childCount != 2) {
+        throw new SBMLException(MessageFormat.format(
+          resourceBundle.getString("ASTNode.compile1"), childCount));
+      }
+      return compiler.frac(getLeftChild().compile(compiler), getRightChild().compile(compiler));
+    case POWER:
+    case FUNCTION_POWER:
+      return compiler.pow(getLeftChild().compile(compiler), getRightChild().compile(compiler));
+      /*
+       * Names of identifiers: parameters, functions, species etc.
+       */
+    case NAME:
+    case FUNCTION:
+      if (variable == null) {
+        variable = getVariable();
+      }
+      if (variable instanceof FunctionDefinition) {
+        return compiler.function((FunctionDefinition) variable, this);
+      } else if (getType() == Type.FUNCTION) {
+        return compiler.function(getName(), this);
+      } else if (variable != null) {
+        return compiler.compile(variable);
+      }
+      return compiler.compile(getName());
+    case FUNCTION_DELAY:
+      return compiler.delay(getName(), getLeftChild(), getRightChild(), getUnits());
+    case FUNCTION_RATE_OF:
+      return compiler.getRateOf(getLeftChild());
+      /*
+       * Basic Functions
+       */
+    case FUNCTION_LOG:
+      if (childCount == 2) {
+        return compiler.log(getLeftChild().compile(compiler), getRightChild().compile(compiler));
+      }
+      return compiler.log(getRightChild().compile(compiler));
+    case FUNCTION_LN:
+      if (childCount > 1) {
+        return compiler.log(getLeftChild().compile(compiler), getRightChild().compile(compiler));
+      }
+      return compiler.ln(getLeftChild().compile(compiler));
+    case FUNCTION_ROOT:
+      if (childCount == 2) {
+        return compiler.root(getLeftChild().compile(compiler), getRightChild().compile(compiler));
+      }
+      return compiler.sqrt(getRightChild().compile(compiler));
+    case FUNCTION_ABS:
+      return compiler.abs(getLeftChild().compile(compiler));
+    case FUNCTION_ARCCOS:
+      return compiler.arccos(getLeftChild().compile(compiler));
+    case FUNCTION_ARCCOSH:
+      return compiler.arccosh(getLeftChild().compile(compiler));
+    case FUNCTION_ARCCOT:
+      return compiler.arccot(getLeftChild().compile(compiler));
+    case FUNCTION_ARCCOTH:
+      return compiler.arccoth(getLeftChild().compile(compiler));
+    case FUNCTION_ARCCSC:
+      return compiler.arccsc(getLeftChild().compile(compiler));
+    case FUNCTION_ARCCSCH:
+      return compiler.arccsch(getLeftChild().compile(compiler));
+    case FUNCTION_ARCSEC:
+      return compiler.arcsec(getLeftChild().compile(compiler));
+    case FUNCTION_ARCSECH:
+      return compiler.arcsech(getLeftChild().compile(compiler));
+    case FUNCTION_ARCSIN:
+      return compiler.arcsin(getLeftChild().compile(compiler));
+    case FUNCTION_ARCSINH:
+      return compiler.arcsinh(getLeftChild().compile(compiler));
+    case FUNCTION_ARCTAN:
+      return compiler.arctan(getLeftChild().compile(compiler));
+    case FUNCTION_ARCTANH:
+      return compiler.arctanh(getLeftChild().compile(compiler));
+    case FUNCTION_CEILING:
+      return compiler.ceiling(getLeftChild().compile(compiler));
+    case FUNCTION_COS:
+      return compiler.cos(getLeftChild().compile(compiler));
+    case FUNCTION_COSH:
+      return compiler.cosh(getLeftChild().compile(compiler));
+    case FUNCTION_COT:
+      return compiler.cot(getLeftChild().compile(compiler));
+    case FUNCTION_COTH:
+      return compiler.coth(getLeftChild().compile(compiler));
+    case FUNCTION_CSC:
+      return compiler.csc(getLeftChild().compile(compiler));
+    case FUNCTION_CSCH:
+      return compiler.csch(getLeftChild().compile(compiler));
+    case FUNCTION_EXP:
+      return compiler.exp(getLeftChild().compile(compiler));
+    case FUNCTION_FACTORIAL:
+      return compiler.factorial(getLeftChild().compile(compiler));
+    case FUNCTION_FLOOR:
+      return compiler.floor(getLeftChild().compile(compiler));
+    case FUNCTION_SEC:
+      return compiler.sec(getLeftChild().compile(compiler));
+    case FUNCTION_SECH:
+      return compiler.sech(getLeftChild().compile(compiler));
+    case FUNCTION_SIN:
+      return compiler.sin(getLeftChild().compile(compiler));
+    case FUNCTION_SINH:
+      return compiler.sinh(getLeftChild().compile(compiler));
+    case FUNCTION_TAN:
+      return compiler.tan(getLeftChild().compile(compiler));
+    case FUNCTION_TANH:
+      return compiler.tanh(getLeftChild().compile(compiler));
+    case FUNCTION_MAX:
+      value = getChild(0).compile(compiler);
+      for (int i = 1; i < childCount; i++) {
+        value = compiler.max(value, getChild(i).compile(compiler));
+      }
+      return value;
+    case FUNCTION_MIN:
+      value = getChild(0).compile(compiler);
+      for (int i = 1; i < childCount; i++) {
+        value = compiler.min(value, getChild(i).compile(compiler));
+      }
+      return value;
+    case FUNCTION_QUOTIENT:
+      return compiler.quotient(getLeftChild().compile(compiler), getRightChild().compile(compiler));
+    case FUNCTION_REM:
+      return compiler.rem(getLeftChild().compile(compiler), getRightChild().compile(compiler));
+    case FUNCTION_PIECEWISE:
+      for (int i = 1; i < childCount; i += 2) {
+        if (getChild(i).compileBoolean(compiler)) {
+          return getChild(i - 1).compile(compiler);
+        }
+      }
+      if (childCount % 2 == 1) {
+        return getChild(childCount - 1).compile(compiler);
+      }
+      return Double.NaN;
+      /*
+       * Logical and relational functions
+       */
+    case CONSTANT_TRUE:
+    case CONSTANT_FALSE:
+    case LOGICAL_AND:
+    case LOGICAL_OR:
+    case LOGICAL_XOR:
+    case LOGICAL_IMPLIES:
+    case LOGICAL_NOT:
+    case RELATIONAL_EQ:
+    case RELATIONAL_GEQ:
+    case RELATIONAL_GT:
+    case RELATIONAL_LEQ:
+    case RELATIONAL_LT:
+    case RELATIONAL_NEQ:
+      return compileBoolean(compiler) ? 1d : 0d;
+    default: // LAMBDA, VECTOR, FUNCTION_SELECTOR, UNKNOWN...
+      return compiler.unknownValue(this);
+    }
+  }
+
+  /**
+   * Evaluates this {@link ASTNode} to a {@code boolean} value, without
+   * creating any object. Logical operators only evaluate as many of their
+   * arguments as needed to determine the result. Numbers are interpreted as
+   * {@code true} if they are not zero.
+   * 
+   * @param compiler
+   *            the {@link DoubleASTNodeCompiler} that provides the values of
+   *            the identifiers and implements the operations.
+   * @return the value of this {@link ASTNode}.
+   * @throws SBMLException
+   *             Thrown if an error occurs during the compilation process.
+   * @see #compile(DoubleASTNodeCompiler)
+   */
+  public boolean compileBoolean(DoubleASTNodeCompiler compiler) throws SBMLException {
+    int childCount = getChildCount();
+    switch (getType()) {
+    case CONSTANT_TRUE:
+      return true;
+    case CONSTANT_FALSE:
+      return false;
+    case LOGICAL_AND:
+      for (int i = 0; i < childCount; i++) {
+        if (!getChild(i).compileBoolean(compiler)) {
+          return false;
+        }
+      }
+      return true;
+    case LOGICAL_OR:
+      for (int i = 0; i < childCount; i++) {
+        if (getChild(i).compileBoolean(compiler)) {
+          return true;
+        }
+      }
+      return false;
+    case LOGICAL_XOR: {
+      boolean value = false;
+      for (int i = 0; i < childCount; i++) {
+        value ^= getChild(i).compileBoolean(compiler);
+      }
+      return value;
+    }
+    case LOGICAL_IMPLIES:
+      return !getLeftChild().compileBoolean(compiler) || getRightChild().compileBoolean(compiler);
+    case LOGICAL_NOT:
+      return !getLeftChild().compileBoolean(compiler);
+    case RELATIONAL_EQ:
+    case RELATIONAL_GEQ:
+    case RELATIONAL_GT:
+    case RELATIONAL_LEQ:
+    case RELATIONAL_LT:
+    case RELATIONAL_NEQ: {
+      // Relations with more than two arguments hold for each pair of neighbors
+      double left = getChild(0).compile(compiler);
+      for (int i = 1; i < childCount; i++) {
+        double right = getChild(i).compile(compiler);
+        if (!compileRelation(compiler, left, right)) {
+          return false;
+        }
+        left = right;
+      }
+      return true;
+    }
+    default:
+      return compile(compiler) != 0d;
+    }
+  }
+
+  /**
+   * Compares two values with the relational operator of this {@link ASTNode}.
+   * 
+   * @param compiler
+   * @param left
+   * @param right
+   * @return the result of the comparison.
+   */
+  private boolean compileRelation(DoubleASTNodeCompiler compiler, double left, double right) {
+    switch (getType()) {
+    case RELATIONAL_EQ:
+      return compiler.eq(left, right);
+    case RELATIONAL_GEQ:
+      return compiler.geq(left, right);
+    case RELATIONAL_GT:
+      return compiler.gt(left, right);
+    case RELATIONAL_LEQ:
+      return compiler.leq(left, right);
+    case RELATIONAL_LT:
+      return compiler.lt(left, right);
+    default:
+      return compiler.neq(left, right);
+    }
+  }
+
   /**
    * Returns {@code true} or {@code false} depending on whether this
    * {@link ASTNode} refers to elements such as parameters or numbers with
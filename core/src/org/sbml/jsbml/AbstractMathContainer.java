@@ -23,9 +23,11 @@ import java.text.MessageFormat;
 import java.util.Map;
 
 import javax.swing.tree.TreeNode;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.log4j.Logger;
 import org.sbml.jsbml.text.parser.ParseException;
+import org.sbml.jsbml.util.DerivedUnitCache;
 import org.sbml.jsbml.util.TreeNodeChangeEvent;
 import org.sbml.jsbml.util.converters.ExpandFunctionDefinitionConverter;
 
@@ -68,7 +70,8 @@ MathContainer {
    */
   public AbstractMathContainer(AbstractMathContainer sb) {
     super(sb);
-    if (sb.isSetMath()) {
+    // math kept by lazy loading is copied as MathML with the user objects
+    if (sb.isSetMath() && !containsUserObjectKey(JSBML.LAZY_MATH)) {
       setMath(sb.getMath().clone());
     } else {
       math = null;
@@ -126,7 +129,7 @@ MathContainer {
    */
   @Override
   public boolean containsUndeclaredUnits() {
-    return isSetMath() ? math.containsUndeclaredUnits() : false;
+    return isSetMath() ? getMath().containsUndeclaredUnits() : false;
   }
 
   /* (non-Javadoc)
@@ -152,9 +155,10 @@ MathContainer {
     } else {
       index -= count;
     }
-    if (isSetMath()) {
+    // math that is not parsed yet is not part of the tree
+    if (math != null) {
       if (index == pos) {
-        return getMath();
+        return math;
       }
       pos++;
     }
@@ -168,7 +172,7 @@ MathContainer {
    */
   @Override
   public int getChildCount() {
-    return super.getChildCount() + (isSetMath() ? 1 : 0);
+    return super.getChildCount() + (math != null ? 1 : 0);
   }
 
   /* (non-Javadoc)
@@ -176,13 +180,19 @@ MathContainer {
    */
   @Override
   public UnitDefinition getDerivedUnitDefinition() {
-    UnitDefinition ud = null;
+    Model m = isSetMath() ? getModel() : null;
+    DerivedUnitCache cache = (m != null) ? m.getDerivedUnitCache() : null;
+    UnitDefinition ud = (cache != null) ? cache.get(this) : null;
+    if (ud != null) {
+      // the derived units are copied, so that the memorized ones cannot be modified
+      return (ud.getParent() != null) ? ud : ud.clone();
+    }
+    ASTNode expandedMath = null;
     if (isSetMath()) {
-      Model m = getModel();
-      ASTNode expandedMath = math;
+      expandedMath = getMath();
       
       if (m != null && m.getFunctionDefinitionCount() > 0) {
-        expandedMath = ExpandFunctionDefinitionConverter.expandFunctionDefinition(m, math);
+        expandedMath = ExpandFunctionDefinitionConverter.expandFunctionDefinition(m, expandedMath);
       }
       
       try {
@@ -208,15 +218,22 @@ MathContainer {
       }
     }
     if (ud != null) {
-      Model m = getModel();
       if (m != null) {
         UnitDefinition u = m.isSetListOfUnitDefinitions() ? m.findIdentical(ud) : null;
-        return (u != null) ? u : ud;
+        if (u != null) {
+          ud = u;
+        }
       }
     } else {
       ud = new UnitDefinition(getLevel(), getVersion());
       ud.createInvalidUnit();
     }
+    if (cache != null) {
+      cache.put(this, ud, expandedMath);
+      if (ud.getParent() == null) {
+        return ud.clone();
+      }
+    }
     return ud;
   }
 
@@ -262,6 +279,9 @@ MathContainer {
    */
   @Override
   public ASTNode getMath() {
+    if (math == null) {
+      readLazyMath();
+    }
     return math;
   }
 
@@ -271,7 +291,7 @@ MathContainer {
   @Override
   public String getMathMLString() {
     if (isSetMath()) {
-      return math.toMathML();
+      return getMath().toMathML();
     }
     return "";
   }
@@ -281,7 +301,26 @@ MathContainer {
    */
   @Override
   public boolean isSetMath() {
-    return math != null;
+    return (math != null) || containsUserObjectKey(JSBML.LAZY_MATH);
+  }
+
+  /**
+   * Parses the MathML that was stored as a {@link String} under the key
+   * {@link JSBML#LAZY_MATH} when reading with lazy loading, if any.
+   */
+  private void readLazyMath() {
+    Object mathML = removeLazyContent(JSBML.LAZY_MATH);
+
+    if (mathML != null) {
+      try {
+        // the reader sets the math on this container
+        org.sbml.jsbml.xml.stax.SBMLReader.getLazyContentReader().readMathML(mathML.toString(), null, this);
+      } catch (XMLStreamException exc) {
+        logger.warn(MessageFormat.format(
+          resourceBundle.getString("AbstractMathContainer.readLazyMath"),
+          getElementName(), exc.getLocalizedMessage()));
+      }
+    }
   }
 
   /* (non-Javadoc)
@@ -320,6 +359,7 @@ MathContainer {
    */
   @Override
   public void setMath(ASTNode math) {
+    removeLazyContent(JSBML.LAZY_MATH);
     ASTNode oldMath = this.math;
     this.math = math;
     if (oldMath != null) {
@@ -95,6 +95,15 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
   private static final long             serialVersionUID   =
       8781459818293592636L;
 
+  /**
+   * The keys under which lazy loading keeps the XML of the elements that are
+   * not parsed yet.
+   * 
+   * @see org.sbml.jsbml.xml.stax.SBMLReader#setLazyLoading(boolean)
+   */
+  private static final String[]         LAZY_CONTENT_KEYS  = {
+    JSBML.LAZY_NOTES, JSBML.LAZY_ANNOTATION, JSBML.LAZY_MATH };
+
   /**
    * 
    */
@@ -171,6 +180,13 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   private final SortedMap<String, SBasePlugin> extensions;
 
+  /**
+   * The children of all the {@link SBasePlugin}s of this element, in the
+   * order of {@link #getChildAt(int)}, or {@code null} if they have to be
+   * collected again.
+   */
+  private transient volatile TreeNode[] extensionChildren;
+
   /**
    * {@link Map} containing the ignored package objects.
    * <p>
@@ -321,10 +337,11 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
     if (sb.isSetMetaId()) {
       metaId = new String(sb.getMetaId());
     }
-    if (sb.isSetNotes()) {
+    // content kept by lazy loading is copied as XML with the user objects
+    if (sb.isSetNotes() && !containsUserObjectKey(JSBML.LAZY_NOTES)) {
       setNotes(sb.getNotes().clone());
     }
-    if (sb.isSetAnnotation()) {
+    if (sb.isSetAnnotation() && !containsUserObjectKey(JSBML.LAZY_ANNOTATION)) {
       setAnnotation(sb.getAnnotation().clone());
     }
     if (sb.isExtendedByOtherPackages()) {
@@ -1145,6 +1162,17 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
           // Notes, Annotation and extension SBasePlugins are tested in
           // AbstractTreeNode.equals()
           // as they are part of the children returned by #getChildAt(int i)
+
+          // content kept by lazy loading is not a child yet and is compared
+          // as XML, without parsing it
+          for (String key : LAZY_CONTENT_KEYS) {
+            Object content = getUserObject(key);
+            if (content == null) {
+              equals &= !sbase.containsUserObjectKey(key);
+            } else {
+              equals &= content.equals(sbase.getUserObject(key));
+            }
+          }
     }
 
     return equals;
@@ -1299,6 +1327,9 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public Annotation getAnnotation() {
+    if (annotation == null) {
+      readLazyAnnotation();
+    }
     if (!isSetAnnotation()) {
       setAnnotation(new Annotation());
     }
@@ -1316,7 +1347,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
   @Override
   public String getAnnotationString() throws XMLStreamException {
     // return isSetAnnotation() ? (new SBMLWriter()).writeAnnotation(this) : "";
-    return isSetAnnotation() ? annotation.getFullAnnotationString() : "";
+    return isSetAnnotation() ? getAnnotation().getFullAnnotationString() : "";
   }
 
 
@@ -1332,30 +1363,25 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
         0));
     }
     int pos = 0;
-    if (isSetNotes()) {
+    // notes and annotation that are not parsed yet are not part of the tree
+    if (notesXMLNode != null) {
       if (childIndex == pos) {
-        return getNotes();
+        return notesXMLNode;
       }
       pos++;
     }
-    if (isSetAnnotation()) {
+    if ((annotation != null) && annotation.isSetAnnotation()) {
       if (childIndex == pos) {
-        return getAnnotation();
+        return annotation;
       }
       pos++;
     }
 
-    if (extensions.size() > 0) {
-      for (SBasePlugin sbasePlugin : extensions.values()) {
-        int sbasePluginNbChildren = sbasePlugin.getChildCount();
-
-        if ((pos + sbasePluginNbChildren) > childIndex) {
-          return sbasePlugin.getChildAt(childIndex - pos);
-        } else {
-          pos += sbasePluginNbChildren;
-        }
-      }
+    TreeNode[] pluginChildren = getExtensionChildren();
+    if (childIndex - pos < pluginChildren.length) {
+      return pluginChildren[childIndex - pos];
     }
+    pos += pluginChildren.length;
 
     throw new IndexOutOfBoundsException(isLeaf()
       ? format(
@@ -1374,21 +1400,62 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
   @Override
   public int getChildCount() {
     int count = 0;
-    if (isSetNotes()) {
+    if (notesXMLNode != null) {
       count++;
     }
-    if (isSetAnnotation()) {
+    if ((annotation != null) && annotation.isSetAnnotation()) {
       count++;
     }
 
-    for (SBasePlugin sbasePlugin : extensions.values()) {
-      count += sbasePlugin.getChildCount();
-    }
+    count += getExtensionChildren().length;
 
     return count;
   }
 
 
+  /**
+   * Returns the children of all the {@link SBasePlugin}s of this element,
+   * which are collected once and then memorized until the structure of the
+   * plugins changes, so that {@link #getChildAt(int)} does not have to go
+   * through all the plugins for each index.
+   * 
+   * @return the children of the {@link SBasePlugin}s of this element.
+   */
+  private TreeNode[] getExtensionChildren() {
+    TreeNode[] children = extensionChildren;
+    if (children == null) {
+      List<TreeNode> list = new ArrayList<TreeNode>();
+      for (SBasePlugin sbasePlugin : extensions.values()) {
+        for (int i = 0; i < sbasePlugin.getChildCount(); i++) {
+          list.add(sbasePlugin.getChildAt(i));
+        }
+      }
+      children = list.toArray(new TreeNode[list.size()]);
+      extensionChildren = children;
+    }
+    return children;
+  }
+
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.AbstractTreeNode#invalidateChildIndex()
+   */
+  @Override
+  protected void invalidateChildIndex() {
+    extensionChildren = null;
+    /*
+     * The children of a plugin are attached to the extended element and the
+     * plugins often only count their lists when these are not empty.
+     */
+    TreeNode parent = getParent();
+    if (parent instanceof SBasePlugin) {
+      invalidateChildIndex(parent);
+    } else if (parent instanceof AbstractSBase) {
+      ((AbstractSBase) parent).extensionChildren = null;
+    }
+  }
+
+
   /*
    * (non-Javadoc)
    * @see org.sbml.jsbml.SBase#getCVTerm(int)
@@ -1396,7 +1463,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
   @Override
   public CVTerm getCVTerm(int index) {
     if (isSetAnnotation()) {
-      return annotation.getCVTerm(index);
+      return getAnnotation().getCVTerm(index);
     }
     throw new IndexOutOfBoundsException(format(
       resourceBundle.getString("AbstractSBase.getCVTerm"), index));
@@ -1409,7 +1476,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public int getCVTermCount() {
-    return isSetAnnotation() ? annotation.getListOfCVTerms().size() : 0;
+    return isSetAnnotation() ? getAnnotation().getListOfCVTerms().size() : 0;
   }
 
 
@@ -1658,6 +1725,9 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public XMLNode getNotes() {
+    if (notesXMLNode == null) {
+      readLazyNotes();
+    }
     return notesXMLNode;
   }
 
@@ -1668,7 +1738,69 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public String getNotesString() throws XMLStreamException {
-    return notesXMLNode != null ? notesXMLNode.toXMLString() : "";
+    return isSetNotes() ? getNotes().toXMLString() : "";
+  }
+
+
+  /**
+   * Removes the XML {@link String} kept under the given lazy loading key.
+   * 
+   * @param key one of {@link JSBML#LAZY_NOTES}, {@link JSBML#LAZY_ANNOTATION}
+   *        or {@link JSBML#LAZY_MATH}.
+   * @return the content that was kept under the given key or {@code null}.
+   */
+  Object removeLazyContent(String key) {
+    return removeUserObject(key);
+  }
+
+
+  /**
+   * Parses the annotation that was stored as a {@link String} under the key
+   * {@link JSBML#LAZY_ANNOTATION} when reading with lazy loading, if any.
+   */
+  private void readLazyAnnotation() {
+    Object annotationXML = removeLazyContent(JSBML.LAZY_ANNOTATION);
+
+    if (annotationXML != null) {
+      try {
+        Annotation lazyAnnotation = new Annotation();
+        lazyAnnotation.setNonRDFAnnotation(org.sbml.jsbml.xml.stax.SBMLReader.getLazyContentReader().readLazyXMLNode(annotationXML.toString()));
+        annotation = lazyAnnotation;
+        annotation.parent = this;
+        if (isSetMetaId()) {
+          annotation.setAbout('#' + getMetaId());
+        }
+        // the same events as when the annotation is set while reading
+        firePropertyChange(TreeNodeChangeEvent.setAnnotation, null, annotation);
+        org.sbml.jsbml.xml.stax.SBMLReader.getLazyContentReader().processAnnotation(this);
+      } catch (XMLStreamException exc) {
+        logger.warn(format(resourceBundle.getString("AbstractSBase.readLazyContent"),
+          "annotation", getElementName(), exc.getLocalizedMessage()));
+      }
+    }
+  }
+
+
+  /**
+   * Parses the notes that were stored as a {@link String} under the key
+   * {@link JSBML#LAZY_NOTES} when reading with lazy loading, if any.
+   */
+  private void readLazyNotes() {
+    Object notesXML = removeLazyContent(JSBML.LAZY_NOTES);
+
+    if (notesXML != null) {
+      try {
+        notesXMLNode = org.sbml.jsbml.xml.stax.SBMLReader.getLazyContentReader().readLazyXMLNode(notesXML.toString());
+        if (notesXMLNode != null) {
+          notesXMLNode.setParent(this);
+          // the same events as when the notes are set while reading
+          firePropertyChange(TreeNodeChangeEvent.notes, null, notesXMLNode);
+        }
+      } catch (XMLStreamException exc) {
+        logger.warn(format(resourceBundle.getString("AbstractSBase.readLazyContent"),
+          "notes", getElementName(), exc.getLocalizedMessage()));
+      }
+    }
   }
 
 
@@ -1833,8 +1965,10 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
     if (isSetSBOTerm()) {
       hashCode += prime * getSBOTerm();
     }
-    if (elementNamespace != null) {
-      hashCode = prime * hashCode + elementNamespace.hashCode();
+    // same as in equals, where the default namespace of the core elements is used
+    String namespace = getNamespace();
+    if (namespace != null) {
+      hashCode = prime * hashCode + namespace.hashCode();
     }
     if (declaredNamespaces != null) {
       hashCode = prime * hashCode + declaredNamespaces.hashCode();
@@ -1844,6 +1978,15 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
     // AbstractTreeNode.hashCode()
     // as they are part of the children returned by #getChildAt(int i)
 
+    // same as in equals, where the content kept by lazy loading is compared
+    // as XML
+    for (String key : LAZY_CONTENT_KEYS) {
+      Object content = getUserObject(key);
+      if (content != null) {
+        hashCode = prime * hashCode + content.hashCode();
+      }
+    }
+
     return hashCode + prime * getLevelAndVersion().hashCode();
   }
 
@@ -1965,7 +2108,10 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public boolean isSetAnnotation() {
-    return (annotation != null) && annotation.isSetAnnotation();
+    if (annotation == null) {
+      return containsUserObjectKey(JSBML.LAZY_ANNOTATION);
+    }
+    return annotation.isSetAnnotation();
   }
 
 
@@ -1976,7 +2122,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
   @Override
   public boolean isSetHistory() {
     if (isSetAnnotation()) {
-      return annotation.isSetHistory();
+      return getAnnotation().isSetHistory();
     }
     return false;
   }
@@ -2018,7 +2164,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public boolean isSetNotes() {
-    return notesXMLNode != null;
+    return (notesXMLNode != null) || containsUserObjectKey(JSBML.LAZY_NOTES);
   }
 
 
@@ -2371,6 +2517,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public void setAnnotation(Annotation annotation) {
+    removeLazyContent(JSBML.LAZY_ANNOTATION);
     Annotation oldAnnotation = this.annotation;
     this.annotation = annotation;
     this.annotation.parent = this;
@@ -2621,6 +2768,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public void setNotes(XMLNode notes) {
+    removeLazyContent(JSBML.LAZY_NOTES);
     XMLNode oldNotes = notesXMLNode;
     notesXMLNode = notes;
     if (notesXMLNode != null) {
@@ -2907,6 +3055,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public void unsetAnnotation() {
+    removeLazyContent(JSBML.LAZY_ANNOTATION);
     if (isSetAnnotation()) {
       Annotation oldAnnotation = annotation;
       annotation = null;
@@ -2923,7 +3072,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
   @Override
   public void unsetCVTerms() {
     if (isSetAnnotation() && getAnnotation().isSetListOfCVTerms()) {
-      annotation.unsetCVTerms();
+      getAnnotation().unsetCVTerms();
     }
   }
 
@@ -2955,7 +3104,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
   @Override
   public void unsetHistory() {
     if (isSetHistory()) {
-      annotation.unsetHistory();
+      getAnnotation().unsetHistory();
     }
   }
 
@@ -2991,6 +3140,7 @@ public abstract class AbstractSBase extends AbstractTreeNode implements SBase {
    */
   @Override
   public void unsetNotes() {
+    removeLazyContent(JSBML.LAZY_NOTES);
     if (isSetNotes()) {
       XMLNode oldNotes = notesXMLNode;
       notesXMLNode = null;
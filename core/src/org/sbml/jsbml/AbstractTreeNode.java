@@ -27,8 +27,10 @@ import java.lang.reflect.Method;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -36,6 +38,7 @@ import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.tree.TreeNode;
 
@@ -97,10 +100,26 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
   }
 
   /**
-   * {@link List} of listeners for this component
+   * The unmodifiable list of listeners of the nodes without listeners, so
+   * that a list is only allocated for the nodes that have listeners.
+   */
+  private static final List<TreeNodeChangeListener> NO_LISTENERS = Collections.emptyList();
+
+  /**
+   * {@link List} of listeners for this component, {@link #NO_LISTENERS} as
+   * long as no listener has been added.
    */
   protected transient List<TreeNodeChangeListener> listOfListeners;
 
+  /**
+   * The listeners notified of the changes of this node and of all its
+   * descendants, without being added to the listeners of each node, or
+   * {@code null}.
+   * 
+   * @see #addSharedTreeNodeChangeListener(TreeNodeChangeListener)
+   */
+  private transient List<TreeNodeChangeListener> listOfSharedListeners;
+
   /**
    * The parent element of this {@link Annotation}.
    */
@@ -122,7 +141,7 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
    */
   public AbstractTreeNode() {
     super();
-    listOfListeners = new ArrayList<TreeNodeChangeListener>();
+    listOfListeners = NO_LISTENERS;
     parent = null;
   }
 
@@ -196,7 +215,7 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
   @Override
   public boolean addAllChangeListeners(
     Collection<TreeNodeChangeListener> listeners, boolean recursive) {
-    boolean success = listOfListeners.addAll(listeners);
+    boolean success = !listeners.isEmpty() && getModifiableListOfListeners().addAll(listeners);
     if (recursive) {
       Enumeration<TreeNode> children = children();
       while (children.hasMoreElements()) {
@@ -210,6 +229,34 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
     return success;
   }
 
+  /**
+   * Adds a listener that is notified of the changes of this node and of all
+   * the nodes of its subtree, including the nodes added later on. Contrary
+   * to {@link #addTreeNodeChangeListener(TreeNodeChangeListener, boolean)},
+   * the listener is only stored in this node: the events of a node are
+   * dispatched to the shared listeners of the node and of all its ancestors.
+   * A listener registered in both ways is notified twice. Shared listeners
+   * are neither returned by {@link #getListOfTreeNodeChangeListeners()} nor
+   * copied to the nodes added later on, see
+   * {@link #getListOfSharedTreeNodeChangeListeners()}.
+   * 
+   * <p>Registering the listeners of a whole document once on the
+   * {@link SBMLDocument} avoids a list of listeners in every element of
+   * large models.</p>
+   * 
+   * @param listener the listener to add
+   * @since 1.5
+   */
+  public void addSharedTreeNodeChangeListener(TreeNodeChangeListener listener) {
+    if (listOfSharedListeners == null) {
+      // rarely modified, but iterated for every event, possibly from several threads
+      listOfSharedListeners = new CopyOnWriteArrayList<TreeNodeChangeListener>();
+    }
+    if (!listOfSharedListeners.contains(listener)) {
+      listOfSharedListeners.add(listener);
+    }
+  }
+
   /* (non-Javadoc)
    * @see org.sbml.jsbml.util.TreeNodeWithChangeSupport#addTreeNodeChangeListener(org.sbml.jsbml.util.TreeNodeChangeListener)
    */
@@ -224,7 +271,7 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
   @Override
   public void addTreeNodeChangeListener(TreeNodeChangeListener listener, boolean recursive) {
     if (!listOfListeners.contains(listener)) {
-      listOfListeners.add(listener);
+      getModifiableListOfListeners().add(listener);
     }
     if (recursive) {
       Enumeration<TreeNode> children = children();
@@ -396,9 +443,18 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
    */
   @Override
   public void fireNodeAddedEvent() {
+    invalidateChildIndex(getParent());
     for (int i = listOfListeners.size() - 1; i >= 0; i--) {
       listOfListeners.get(i).nodeAdded(this);
     }
+    for (TreeNode node = this; node != null; node = node.getParent()) {
+      List<TreeNodeChangeListener> sharedListeners = getSharedListeners(node);
+      if (sharedListeners != null) {
+        for (TreeNodeChangeListener listener : sharedListeners) {
+          listener.nodeAdded(this);
+        }
+      }
+    }
   }
 
   /* (non-Javadoc)
@@ -408,6 +464,7 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
   public void fireNodeRemovedEvent() {
     TreeNode previousParent = getParent();
     parent = null;
+    invalidateChildIndex(previousParent);
 
     if (getTreeNodeChangeListenerCount() > 0) {
       // memorize all listeners before deleting them from this object.
@@ -419,6 +476,14 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
         listener.nodeRemoved(new TreeNodeRemovedEvent(this, previousParent));
       }
     }
+    for (TreeNode node = this; node != null; node = (node == this) ? previousParent : node.getParent()) {
+      List<TreeNodeChangeListener> sharedListeners = getSharedListeners(node);
+      if (sharedListeners != null) {
+        for (TreeNodeChangeListener listener : sharedListeners) {
+          listener.nodeRemoved(new TreeNodeRemovedEvent(this, previousParent));
+        }
+      }
+    }
   }
 
   /* (non-Javadoc)
@@ -428,10 +493,14 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
   public void firePropertyChange(String propertyName, Object oldValue,
     Object newValue) {
 
+    if (!propertyName.equals(TreeNodeChangeEvent.userObject)) {
+      invalidateChildIndex();
+    }
+
     // TODO - if the property is of type TreeNode, we should set the parent of the new value
     // and unset the parent of the oldValue ??
 
-    if (listOfListeners.size() > 0) {
+    if ((listOfListeners.size() > 0) || hasSharedListeners()) {
       short changeType = -1; // no property change at all
       if ((oldValue == null) && (newValue != null)) {
         changeType = 0; // element added
@@ -473,6 +542,14 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
           for (TreeNodeChangeListener listener : listOfListeners) {
             listener.propertyChange(changeEvent);
           }
+          for (TreeNode node = this; node != null; node = node.getParent()) {
+            List<TreeNodeChangeListener> sharedListeners = getSharedListeners(node);
+            if (sharedListeners != null) {
+              for (TreeNodeChangeListener listener : sharedListeners) {
+                listener.propertyChange(changeEvent);
+              }
+            }
+          }
         }
       }
     }
@@ -494,6 +571,65 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
     return listOfListeners;
   }
 
+  /**
+   * Returns the listeners notified of the changes of this node and of all
+   * its descendants.
+   * 
+   * @return the listeners added with
+   *         {@link #addSharedTreeNodeChangeListener(TreeNodeChangeListener)},
+   *         as an unmodifiable list.
+   * @since 1.5
+   */
+  public List<TreeNodeChangeListener> getListOfSharedTreeNodeChangeListeners() {
+    return listOfSharedListeners != null ? Collections.unmodifiableList(listOfSharedListeners) : NO_LISTENERS;
+  }
+
+  /**
+   * Returns the list of listeners of this node, allocating it if necessary.
+   * 
+   * @return the modifiable list of listeners of this node.
+   */
+  private List<TreeNodeChangeListener> getModifiableListOfListeners() {
+    if (listOfListeners == NO_LISTENERS) {
+      listOfListeners = new ArrayList<TreeNodeChangeListener>();
+    }
+    return listOfListeners;
+  }
+
+  /**
+   * Returns the shared listeners stored in the given node, which are
+   * iterated directly as they are kept in a copy-on-write list.
+   * 
+   * @param node
+   * @return the shared listeners of the given node, or {@code null} if it
+   *         has none.
+   */
+  private static List<TreeNodeChangeListener> getSharedListeners(TreeNode node) {
+    if (node instanceof AbstractTreeNode) {
+      List<TreeNodeChangeListener> sharedListeners = ((AbstractTreeNode) node).listOfSharedListeners;
+      if ((sharedListeners != null) && !sharedListeners.isEmpty()) {
+        return sharedListeners;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns {@code true} if this node or one of its ancestors has shared
+   * listeners.
+   * 
+   * @return {@code true} if the events of this node are dispatched to some
+   *         shared listeners.
+   */
+  private boolean hasSharedListeners() {
+    for (TreeNode node = this; node != null; node = node.getParent()) {
+      if (getSharedListeners(node) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Returns the number of child elements of this {@link TreeNode}.
    * 
@@ -543,10 +679,7 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
    */
   @Override
   public Object getUserObject(Object key) {
-    if (userObjects == null) {
-      userObjects = new HashMap<Object, Object>();
-    }
-    return userObjects.get(key);
+    return (userObjects != null) ? userObjects.get(key) : null;
   }
 
   /* (non-Javadoc)
@@ -579,6 +712,76 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
     return hashCode;
   }
 
+  /**
+   * Called when a child of this node has been added or removed, or when a
+   * property of this node changed. Subclasses that memorize the positions of
+   * their children in {@link #getChildAt(int)} have to forget them here.
+   * 
+   * @since 1.5
+   */
+  protected void invalidateChildIndex() {
+  }
+
+  /**
+   * Calls {@link #invalidateChildIndex()} on the given node.
+   * 
+   * @param node
+   * @since 1.5
+   */
+  protected static void invalidateChildIndex(TreeNode node) {
+    if (node instanceof AbstractTreeNode) {
+      ((AbstractTreeNode) node).invalidateChildIndex();
+    }
+  }
+
+  /**
+   * Returns an iterator over the children of this node, in the order of
+   * {@link #getChildAt(int)}. The number of children is determined when the
+   * iterator is created.
+   * 
+   * @return an iterator over the children of this node.
+   * @since 1.5
+   */
+  public Iterator<TreeNode> childIterator() {
+    return new Iterator<TreeNode>() {
+      /**
+       * Total number of children.
+       */
+      private final int childCount = getChildCount();
+      /**
+       * Position of the next child.
+       */
+      private int index;
+
+      /* (non-Javadoc)
+       * @see java.util.Iterator#hasNext()
+       */
+      @Override
+      public boolean hasNext() {
+        return index < childCount;
+      }
+
+      /* (non-Javadoc)
+       * @see java.util.Iterator#next()
+       */
+      @Override
+      public TreeNode next() {
+        if (index >= childCount) {
+          throw new NoSuchElementException();
+        }
+        return getChildAt(index++);
+      }
+
+      /* (non-Javadoc)
+       * @see java.util.Iterator#remove()
+       */
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
   /* (non-Javadoc)
    * @see javax.swing.tree.TreeNode#isLeaf()
    */
@@ -690,7 +893,7 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
    */
   @Override
   public void removeAllTreeNodeChangeListeners() {
-    listOfListeners.clear();
+    listOfListeners = NO_LISTENERS;
   }
 
   /**
@@ -758,6 +961,18 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
     return true;
   }
 
+  /**
+   * Removes a listener added with
+   * {@link #addSharedTreeNodeChangeListener(TreeNodeChangeListener)}.
+   * 
+   * @param listener the listener to remove
+   * @return {@code true} if the listener was a shared listener of this node.
+   * @since 1.5
+   */
+  public boolean removeSharedTreeNodeChangeListener(TreeNodeChangeListener listener) {
+    return (listOfSharedListeners != null) && listOfSharedListeners.remove(listener);
+  }
+
   /* (non-Javadoc)
    * @see org.sbml.jsbml.util.TreeNodeWithChangeSupport#removeTreeNodeChangeListener(org.sbml.jsbml.util.TreeNodeChangeListener)
    */
@@ -788,7 +1003,9 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
    */
   @Override
   public void removeTreeNodeChangeListener(TreeNodeChangeListener listener, boolean recursive) {
-    listOfListeners.remove(listener);
+    if (listOfListeners != NO_LISTENERS) {
+      listOfListeners.remove(listener);
+    }
     if (recursive) {
       Enumeration<TreeNode> children = children();
       while (children.hasMoreElements()) {
@@ -950,7 +1167,7 @@ public abstract class AbstractTreeNode implements TreeNodeWithChangeSupport {
   private void readObject(java.io.ObjectInputStream in)
       throws IOException, ClassNotFoundException {
     in.defaultReadObject();
-    listOfListeners = new ArrayList<TreeNodeChangeListener>();
+    listOfListeners = NO_LISTENERS;
   }
 
 }
@@ -953,7 +953,9 @@ public class CVTerm extends AnnotationElement {
    * @throws IndexOutOfBoundsException if the index is out of range (index &lt; 0 || index &gt;= size())
    */
   public String removeResource(int index) {
-    return resourceURIs.remove(index);
+    String urn = resourceURIs.remove(index);
+    (new TreeNodeAdapter(urn, this)).fireNodeRemovedEvent();
+    return urn;
   }
 
   /**
@@ -145,6 +145,43 @@ public class JSBML {
    */
   public static final transient String READING_IN_PROGRESS = ALLOW_INVALID_SBML;
 
+  /**
+   * Key used to store, as a {@link String}, the XML of a notes element that
+   * has not been parsed yet because the document was read with lazy loading
+   * enabled.
+   * 
+   * @see org.sbml.jsbml.xml.stax.SBMLReader#setLazyLoading(boolean)
+   */
+  public static final transient String LAZY_NOTES = "jsbml.lazy.notes";
+
+  /**
+   * Key used to store, as a {@link String}, the XML of an annotation element
+   * that has not been parsed yet because the document was read with lazy
+   * loading enabled.
+   * 
+   * @see org.sbml.jsbml.xml.stax.SBMLReader#setLazyLoading(boolean)
+   */
+  public static final transient String LAZY_ANNOTATION = "jsbml.lazy.annotation";
+
+  /**
+   * Key used to store, as a {@link String}, the MathML of a math element that
+   * has not been parsed yet because the document was read with lazy loading
+   * enabled.
+   * 
+   * @see org.sbml.jsbml.xml.stax.SBMLReader#setLazyLoading(boolean)
+   */
+  public static final transient String LAZY_MATH = "jsbml.lazy.math";
+
+  /**
+   * Key used to store, in the user objects of the {@link Model} of a document
+   * read in streaming mode, a {@link java.util.Map} from the identifiers of
+   * the streamed elements, including the species references of the streamed
+   * reactions, to their element names.
+   * 
+   * @see org.sbml.jsbml.xml.stax.SBMLReader#streamSBML(java.io.File, org.sbml.jsbml.xml.stax.SBMLStreamHandler)
+   */
+  public static final transient String STREAMED_IDS = "jsbml.streamed.ids";
+
   /**
    * Key used to indicate that we are in the process of cloning an object.
    */
@@ -34,8 +34,11 @@ import javax.swing.tree.TreeNode;
 
 import org.apache.log4j.Logger;
 import org.sbml.jsbml.ext.SBasePlugin;
+import org.sbml.jsbml.util.DerivedUnitCache;
+import org.sbml.jsbml.util.FunctionDefinitionCache;
 import org.sbml.jsbml.util.IdManager;
 import org.sbml.jsbml.util.TreeNodeChangeEvent;
+import org.sbml.jsbml.util.TreeNodeChangeListener;
 import org.sbml.jsbml.util.filters.AssignmentVariableFilter;
 import org.sbml.jsbml.util.filters.BoundaryConditionFilter;
 import org.sbml.jsbml.util.filters.IdenticalUnitDefinitionFilter;
@@ -82,6 +85,17 @@ implements UniqueNamedSBase, IdManager {
    * Represents the 'conversionFactor' XML attribute of a model element.
    */
   private String                        conversionFactorID;
+
+  /**
+   * The memorized units derived from the math of the elements of this model,
+   * created on demand.
+   */
+  private transient DerivedUnitCache    derivedUnitCache;
+  /**
+   * The memorized expansions of the function definitions of this model,
+   * created on demand.
+   */
+  private transient FunctionDefinitionCache functionDefinitionCache;
   /**
    * Represents the 'extentUnits' XML attribute of a model element.
    */
@@ -111,6 +125,13 @@ implements UniqueNamedSBase, IdManager {
    */
   private ListOf<Event>                 listOfEvents;
 
+  /**
+   * The {@link ListOf}s that are set, in the order of
+   * {@link #getChildAt(int)}, or {@code null} if they have to be collected
+   * again.
+   */
+  private transient volatile ListOf<?>[] listOfIndex;
+
   /**
    * Represents the listOfFunctionDefinitions subnode of a model element.
    */
@@ -1974,87 +1995,19 @@ implements UniqueNamedSBase, IdManager {
       throw new IndexOutOfBoundsException(MessageFormat.format(
         resourceBundle.getString("IndexSurpassesBoundsException"), index, 0));
     }
-    int count = super.getChildCount(), pos = 0;
+    int count = super.getChildCount();
     if (index < count) {
       return super.getChildAt(index);
     } else {
       index -= count;
     }
-    if (listOfFunctionDefinitions != null) {
-      if (pos == index) {
-        return getListOfFunctionDefinitions();
-      }
-      pos++;
-    }
-    if (listOfUnitDefinitions != null) {
-      if (pos == index) {
-        return getListOfUnitDefinitions();
-      }
-      pos++;
-    }
-    if (listOfCompartmentTypes != null) {
-      if (pos == index) {
-        return getListOfCompartmentTypes();
-      }
-      pos++;
-    }
-    if (listOfSpeciesTypes != null) {
-      if (pos == index) {
-        return getListOfSpeciesTypes();
-      }
-      pos++;
-    }
-    if (listOfCompartments != null) {
-      if (pos == index) {
-        return getListOfCompartments();
-      }
-      pos++;
-    }
-    if (listOfSpecies != null) {
-      if (pos == index) {
-        return getListOfSpecies();
-      }
-      pos++;
-    }
-    if (listOfParameters != null) {
-      if (pos == index) {
-        return getListOfParameters();
-      }
-      pos++;
-    }
-    if (listOfInitialAssignments != null) {
-      if (pos == index) {
-        return getListOfInitialAssignments();
-      }
-      pos++;
-    }
-    if (listOfRules != null) {
-      if (pos == index) {
-        return getListOfRules();
-      }
-      pos++;
-    }
-    if (listOfConstraints != null) {
-      if (pos == index) {
-        return getListOfConstraints();
-      }
-      pos++;
-    }
-    if (listOfReactions != null) {
-      if (pos == index) {
-        return getListOfReactions();
-      }
-      pos++;
-    }
-    if (listOfEvents != null) {
-      if (pos == index) {
-        return getListOfEvents();
-      }
-      pos++;
+    ListOf<?>[] listOfs = getListOfIndex();
+    if (index < listOfs.length) {
+      return listOfs[index];
     }
     throw new IndexOutOfBoundsException(MessageFormat.format(
       resourceBundle.getString("IndexExceedsBoundsException"), index,
-      Math.min(pos, 0)));
+      Math.min(listOfs.length, 0)));
   }
 
 
@@ -2208,6 +2161,63 @@ implements UniqueNamedSBase, IdManager {
   }
 
 
+  /**
+   * Returns the cache of the units derived from the math of the
+   * {@link MathContainer}s of this {@link Model}, if it has been enabled with
+   * {@link #createDerivedUnitCache()}.
+   * 
+   * @return the cache of the units derived from the math of this model or
+   *         {@code null} if it is not enabled.
+   * @see MathContainer#getDerivedUnitDefinition()
+   */
+  public synchronized DerivedUnitCache getDerivedUnitCache() {
+    return derivedUnitCache;
+  }
+
+  /**
+   * Enables the cache of the units derived from the math of the
+   * {@link MathContainer}s of this {@link Model}, which is then used by
+   * {@link MathContainer#getDerivedUnitDefinition()}.
+   * 
+   * <p>The cache is registered as shared {@link TreeNodeChangeListener} of
+   * this {@link Model}, so that every later change of the elements of this
+   * {@link Model} is also dispatched to the cache, until
+   * {@link #unsetDerivedUnitCache()} is called. The offline validators enable
+   * the cache while they check the unit consistency and unset it
+   * afterwards.</p>
+   * 
+   * @return the cache of the units derived from the math of this model.
+   */
+  public synchronized DerivedUnitCache createDerivedUnitCache() {
+    if (derivedUnitCache == null) {
+      derivedUnitCache = new DerivedUnitCache(this);
+    }
+    return derivedUnitCache;
+  }
+
+  /**
+   * Returns {@code true} if the cache of the derived units is enabled.
+   * 
+   * @return {@code true} if the cache of the derived units is enabled.
+   * @see #createDerivedUnitCache()
+   */
+  public synchronized boolean isSetDerivedUnitCache() {
+    return derivedUnitCache != null;
+  }
+
+  /**
+   * Disables the cache of the derived units and unregisters it from the
+   * elements of this {@link Model}.
+   * 
+   * @see #createDerivedUnitCache()
+   */
+  public synchronized void unsetDerivedUnitCache() {
+    if (derivedUnitCache != null) {
+      derivedUnitCache.detach();
+      derivedUnitCache = null;
+    }
+  }
+
   /**
    * Returns the number of {@link Delay}s of this {@link Model}.
    * 
@@ -2372,6 +2382,67 @@ implements UniqueNamedSBase, IdManager {
   }
 
 
+  /**
+   * Returns the cache used to expand the calls of the
+   * {@link FunctionDefinition}s of this {@link Model}, if it has been enabled
+   * with {@link #createFunctionDefinitionCache()}.
+   * 
+   * @return the cache of the expanded function definitions of this model or
+   *         {@code null} if it is not enabled.
+   * @see org.sbml.jsbml.util.converters.ExpandFunctionDefinitionConverter#expandFunctionDefinition(Model, ASTNode)
+   */
+  public synchronized FunctionDefinitionCache getFunctionDefinitionCache() {
+    return functionDefinitionCache;
+  }
+
+  /**
+   * Enables the cache used to expand the calls of the
+   * {@link FunctionDefinition}s of this {@link Model}, which is then used by
+   * {@link org.sbml.jsbml.util.converters.ExpandFunctionDefinitionConverter},
+   * for example when deriving the units of the math.
+   * 
+   * <p>The cache is registered as shared {@link TreeNodeChangeListener} of
+   * this {@link Model}, so that every later change of the elements of this
+   * {@link Model} is also dispatched to the cache, until
+   * {@link #unsetFunctionDefinitionCache()} is called. The offline
+   * validators enable the cache while they validate the model and unset it
+   * afterwards.</p>
+   * 
+   * @return the cache of the expanded function definitions of this model.
+   */
+  public synchronized FunctionDefinitionCache createFunctionDefinitionCache() {
+    if (functionDefinitionCache == null) {
+      functionDefinitionCache = new FunctionDefinitionCache(this);
+    }
+    return functionDefinitionCache;
+  }
+
+  /**
+   * Returns {@code true} if the cache of the expanded function definitions
+   * is enabled.
+   * 
+   * @return {@code true} if the cache of the expanded function definitions
+   *         is enabled.
+   * @see #createFunctionDefinitionCache()
+   */
+  public synchronized boolean isSetFunctionDefinitionCache() {
+    return functionDefinitionCache != null;
+  }
+
+  /**
+   * Disables the cache of the expanded function definitions and unregisters
+   * it from the elements of this {@link Model}.
+   * 
+   * @see #createFunctionDefinitionCache()
+   */
+  public synchronized void unsetFunctionDefinitionCache() {
+    if (functionDefinitionCache != null) {
+      functionDefinitionCache.detach();
+      functionDefinitionCache = null;
+    }
+  }
+
+
   /**
    * Gets the n<sup>th</sup> {@link InitialAssignment} object in this
    * {@link Model}.
@@ -2576,44 +2647,44 @@ implements UniqueNamedSBase, IdManager {
    * @return the number of {@link ListOf}s of this {@link Model}.
    */
   public int getListOfCount() {
-    int children = 0;
-    if (listOfFunctionDefinitions != null) {
-      children++;
-    }
-    if (listOfUnitDefinitions != null) {
-      children++;
-    }
-    if (listOfCompartmentTypes != null) {
-      children++;
-    }
-    if (listOfSpeciesTypes != null) {
-      children++;
-    }
-    if (listOfCompartments != null) {
-      children++;
-    }
-    if (listOfSpecies != null) {
-      children++;
-    }
-    if (listOfParameters != null) {
-      children++;
-    }
-    if (listOfInitialAssignments != null) {
-      children++;
-    }
-    if (listOfRules != null) {
-      children++;
-    }
-    if (listOfConstraints != null) {
-      children++;
-    }
-    if (listOfReactions != null) {
-      children++;
-    }
-    if (listOfEvents != null) {
-      children++;
+    return getListOfIndex().length;
+  }
+
+
+  /**
+   * Returns the {@link ListOf}s of this {@link Model} that are set, in the
+   * order of {@link #getChildAt(int)}. The array is memorized until a
+   * {@link ListOf} is set or unset.
+   * 
+   * @return the {@link ListOf}s of this {@link Model} that are set.
+   */
+  private ListOf<?>[] getListOfIndex() {
+    ListOf<?>[] listOfs = listOfIndex;
+    if (listOfs == null) {
+      List<ListOf<?>> list = new ArrayList<ListOf<?>>(12);
+      ListOf<?>[] all = new ListOf<?>[] {listOfFunctionDefinitions, listOfUnitDefinitions,
+        listOfCompartmentTypes, listOfSpeciesTypes, listOfCompartments, listOfSpecies,
+        listOfParameters, listOfInitialAssignments, listOfRules, listOfConstraints,
+        listOfReactions, listOfEvents};
+      for (ListOf<?> listOf : all) {
+        if (listOf != null) {
+          list.add(listOf);
+        }
+      }
+      listOfs = list.toArray(new ListOf<?>[list.size()]);
+      listOfIndex = listOfs;
     }
-    return children;
+    return listOfs;
+  }
+
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.AbstractSBase#invalidateChildIndex()
+   */
+  @Override
+  protected void invalidateChildIndex() {
+    super.invalidateChildIndex();
+    listOfIndex = null;
   }
 
 
@@ -3935,6 +4006,7 @@ implements UniqueNamedSBase, IdManager {
    * @param version the SBML version
    */
   public void initDefaults(int level, int version) {
+    listOfIndex = null;
     listOfCompartments = null;
     listOfCompartmentTypes = null;
     listOfConstraints = null;
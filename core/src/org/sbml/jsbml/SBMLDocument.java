@@ -23,10 +23,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,15 +36,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.UUID;
 
 import javax.swing.tree.TreeNode;
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.log4j.Logger;
+import org.sbml.jsbml.util.IdIndex;
+import org.sbml.jsbml.util.MetaIdGenerator;
+import org.sbml.jsbml.util.ReferenceIndex;
+import org.sbml.jsbml.util.SequentialMetaIdGenerator;
 import org.sbml.jsbml.util.StringTools;
 import org.sbml.jsbml.util.TreeNodeChangeEvent;
 import org.sbml.jsbml.util.TreeNodeChangeListener;
+import org.sbml.jsbml.util.UUIDMetaIdGenerator;
 import org.sbml.jsbml.util.converters.ExpandFunctionDefinitionConverter;
 import org.sbml.jsbml.util.converters.ToL3V2Converter;
 import org.sbml.jsbml.validator.SBMLValidator;
@@ -139,6 +145,23 @@ public class SBMLDocument extends AbstractSBase {
    */
   private Map<String, SBase>            mappingFromMetaId2SBase;
 
+  /**
+   * Creates the meta identifiers returned by {@link #nextMetaId()}, or
+   * {@code null} for the default {@link UUIDMetaIdGenerator}.
+   */
+  private MetaIdGenerator               metaIdGenerator;
+
+  /**
+   * The index of all the identifiers of this document, created on demand.
+   */
+  private transient IdIndex             idIndex;
+
+  /**
+   * The index of the references to the identifiers of this document, created
+   * on demand.
+   */
+  private transient ReferenceIndex      referenceIndex;
+
   /**
    * Represents the 'model' XML subnode of a SBML file.
    */
@@ -213,6 +236,12 @@ public class SBMLDocument extends AbstractSBase {
     if (mappingFromMetaId2SBase == null) {
       mappingFromMetaId2SBase = new HashMap<String, SBase>();
     }
+    if (sb.metaIdGenerator instanceof SequentialMetaIdGenerator) {
+      // the counter must not be shared with the original document
+      metaIdGenerator = ((SequentialMetaIdGenerator) sb.metaIdGenerator).clone();
+    } else {
+      metaIdGenerator = sb.metaIdGenerator;
+    }
 
     // the super constructor from AbstractSBase could have added stuff on this
     // map already
@@ -368,7 +397,21 @@ public class SBMLDocument extends AbstractSBase {
       ExpandFunctionDefinitionConverter converter = new ExpandFunctionDefinitionConverter();
       docToValidate = converter.convert(this);
     }
-    ctx.validate(docToValidate);
+
+    // memorizes the derived units during the unit checks only
+    Model model = docToValidate.getModel();
+    boolean cacheUnits = checks.contains(CHECK_CATEGORY.UNITS_CONSISTENCY)
+        && (model != null) && !model.isSetDerivedUnitCache();
+    if (cacheUnits) {
+      model.createDerivedUnitCache();
+    }
+    try {
+      ctx.validate(docToValidate);
+    } finally {
+      if (cacheUnits) {
+        model.unsetDerivedUnitCache();
+      }
+    }
 
     listOfErrors = ctx.getErrorLog();
     return ctx.getErrorLog().getErrorCount();
@@ -1332,24 +1375,118 @@ public class SBMLDocument extends AbstractSBase {
 
 
   /**
-   * Randomly creates a new {@link String} that can be used as a metaid, i.e., a
+   * Creates a new {@link String} that can be used as a metaid, i.e., a
    * String that is a valid metaid and that is not yet used by any other element
-   * within this {@link SBMLDocument}.
+   * within this {@link SBMLDocument}. By default, the metaid is created
+   * randomly, see {@link #setMetaIdGenerator(MetaIdGenerator)} to change it.
    * 
    * @return a valid metaid that is not yet used by any other element
    *         within this {@link SBMLDocument}.
    */
   public String nextMetaId() {
-    String currId;
-    do {
-      currId = UUID.randomUUID().toString();
-      if (Character.isDigit(currId.charAt(0))) {
-        // Add an underscore at the beginning of the new metaid only if
-        // necessary.
-        currId = '_' + currId;
+    return getMetaIdGenerator().nextMetaId(this);
+  }
+
+
+  /**
+   * Returns the index of the identifiers and meta identifiers of all the
+   * elements of this {@link SBMLDocument}, in all the identifier namespaces.
+   * The index is created and registered as {@link TreeNodeChangeListener} of
+   * all the elements of this document the first time this method is called.
+   * 
+   * @return the index of the identifiers of this document.
+   * @since 1.5
+   */
+  public synchronized IdIndex getIdIndex() {
+    if (idIndex == null) {
+      idIndex = new IdIndex(this);
+    }
+    return idIndex;
+  }
+
+
+  /**
+   * Returns the index of the math and elements that refer to the identifiers
+   * of this {@link SBMLDocument}, which helps renaming or removing elements.
+   * The index is created and registered as {@link TreeNodeChangeListener} of
+   * all the elements of this document the first time this method is called.
+   * 
+   * @return the index of the references of this document.
+   * @since 1.5
+   */
+  public synchronized ReferenceIndex getReferenceIndex() {
+    if (referenceIndex == null) {
+      referenceIndex = new ReferenceIndex(this);
+    }
+    return referenceIndex;
+  }
+
+
+  /**
+   * Returns the {@link MetaIdGenerator} used by {@link #nextMetaId()}.
+   * 
+   * @return the {@link MetaIdGenerator} of this document.
+   * @since 1.5
+   */
+  public MetaIdGenerator getMetaIdGenerator() {
+    if (metaIdGenerator == null) {
+      metaIdGenerator = new UUIDMetaIdGenerator();
+    }
+    return metaIdGenerator;
+  }
+
+
+  /**
+   * Sets the {@link MetaIdGenerator} used by {@link #nextMetaId()}, for
+   * instance a {@link SequentialMetaIdGenerator} when metaids have to be
+   * created for many elements. A copy of this document gets a copy of a
+   * {@link SequentialMetaIdGenerator}, other generators are shared.
+   * 
+   * @param metaIdGenerator the generator, or {@code null} to use the default
+   *        {@link UUIDMetaIdGenerator}.
+   * @since 1.5
+   */
+  public void setMetaIdGenerator(MetaIdGenerator metaIdGenerator) {
+    this.metaIdGenerator = metaIdGenerator;
+  }
+
+
+  /**
+   * Sets a new metaid, created by {@link #nextMetaId()}, on every
+   * {@link SBase} of the given subtree that has no metaid yet. Nothing is done
+   * in SBML Level 1, which has no metaids.
+   * 
+   * @param subtree the root of the subtree, which has to be part of this
+   *        document
+   * @return the number of metaids that have been set.
+   * @since 1.5
+   */
+  public int assignMissingMetaIds(SBase subtree) {
+    if (subtree.getSBMLDocument() != this) {
+      throw new IllegalArgumentException(MessageFormat.format(
+        "{0} is not part of this SBMLDocument.", subtree.getElementName()));
+    }
+    if (subtree.getLevel() < 2) {
+      return 0;
+    }
+    int count = 0;
+    Deque<TreeNode> stack = new ArrayDeque<TreeNode>();
+    stack.push(subtree);
+    while (!stack.isEmpty()) {
+      TreeNode node = stack.pop();
+      if ((node instanceof SBase) && !((SBase) node).isSetMetaId()) {
+        ((SBase) node).setMetaId(nextMetaId());
+        count++;
       }
-    } while (containsMetaId(currId));
-    return currId;
+      for (int i = node.getChildCount() - 1; i >= 0; i--) {
+        TreeNode child = node.getChildAt(i);
+        // the math is not made of SBases
+        if (!(child instanceof ASTNode)) {
+          stack.push(child);
+        }
+      }
+    }
+    return count;
   }
 
 
@@ -20,6 +20,7 @@
 package org.sbml.jsbml;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.HashSet;
@@ -30,6 +31,7 @@ import java.util.Set;
 import org.apache.log4j.Logger;
 import org.biojava.nbio.ontology.Ontology;
 import org.biojava.nbio.ontology.io.OboParser;
+import org.sbml.jsbml.ontology.SBOSnapshot;
 import org.sbml.jsbml.ontology.Term;
 import org.sbml.jsbml.ontology.Triple;
 import org.sbml.jsbml.resources.Resource;
@@ -208,9 +210,33 @@ public class SBO {
   private static final String prefix = "SBO:";
 
   /**
-   * 
+   * The location of the resources describing the SBO.
    */
-  private static Ontology sbo;
+  private static final String path = "org/sbml/jsbml/resources/cfg/";
+
+  /**
+   * Loads the full {@link Ontology} the first time it is needed.
+   */
+  private static class OntologyHolder {
+
+    /**
+     * 
+     */
+    private static final Ontology sbo = loadOntology();
+
+  }
+
+  /**
+   * Loads the {@link SBOSnapshot} the first time it is needed.
+   */
+  private static class SnapshotHolder {
+
+    /**
+     * 
+     */
+    private static final SBOSnapshot snapshot = loadSnapshot();
+
+  }
 
   /**
    * 
@@ -223,14 +249,7 @@ public class SBO {
   private static Set<Term> terms;
 
   static {
-    OboParser parser = new OboParser();
     try {
-      String path = "org/sbml/jsbml/resources/cfg/";
-      InputStream is = Resource.getInstance()
-          .getStreamFromResourceLocation(path + "SBO_OBO.obo");
-      sbo = parser.parseOBO(
-        new BufferedReader(new InputStreamReader(is)), "SBO",
-          "Systems Biology Ontology");
       alias2sbo = Resource.readProperties(path + "Alias2SBO.cfg");
       sbo2alias = new Properties();
       for (Object key : alias2sbo.keySet()) {
@@ -243,6 +262,52 @@ public class SBO {
     }
   }
 
+  /**
+   * Parses the OBO file of the SBO.
+   * 
+   * @return the SBO or {@code null} if it cannot be read.
+   */
+  private static Ontology loadOntology() {
+    OboParser parser = new OboParser();
+    try {
+      InputStream is = Resource.getInstance()
+          .getStreamFromResourceLocation(path + "SBO_OBO.obo");
+      return parser.parseOBO(
+        new BufferedReader(new InputStreamReader(is)), "SBO",
+          "Systems Biology Ontology");
+    } catch (Throwable e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Reads the {@link SBOSnapshot} of the SBO, or creates it from the OBO file
+   * if the snapshot is missing or older than the OBO file.
+   * 
+   * @return the snapshot of the SBO.
+   */
+  private static SBOSnapshot loadSnapshot() {
+    SBOSnapshot snapshot = null;
+    String date = null;
+    try {
+      date = SBOSnapshot.readDate(Resource.getInstance()
+        .getStreamFromResourceLocation(path + "SBO_OBO.obo"));
+      InputStream is = Resource.getInstance()
+          .getStreamFromResourceLocation(path + "SBO_OBO.bin");
+      if (is != null) {
+        snapshot = SBOSnapshot.read(is);
+      }
+    } catch (IOException exc) {
+      Logger.getLogger(SBO.class).debug(exc.getLocalizedMessage(), exc);
+    }
+    if ((snapshot == null) || !snapshot.getDate().equals(date)) {
+      Logger.getLogger(SBO.class).warn("The snapshot of the SBO is missing or outdated, it is created from the OBO file.");
+      snapshot = SBOSnapshot.create(getOntology(), date != null ? date : "");
+    }
+    return snapshot;
+  }
+
   /**
    * Checks the format of the given SBO integer portion.
    * 
@@ -922,11 +987,24 @@ public class SBO {
   }
 
   /**
-   * Grants access to the underlying {@link Ontology} form BioJava.
-   * @return
+   * Grants access to the underlying {@link Ontology} form BioJava, which is
+   * read the first time this method is called.
+   * 
+   * @return the SBO {@link Ontology}.
    */
   public static Ontology getOntology() {
-    return sbo;
+    return OntologyHolder.sbo;
+  }
+
+  /**
+   * Returns the compact copy of the SBO that answers the queries that do not
+   * need the full {@link Ontology}, such as {@link #isChildOf(int, int)}.
+   * 
+   * @return the {@link SBOSnapshot} of the SBO.
+   * @since 1.5
+   */
+  public static SBOSnapshot getSnapshot() {
+    return SnapshotHolder.snapshot;
   }
 
   /**
@@ -1262,7 +1340,7 @@ public class SBO {
    * @throws NoSuchElementException if the id is not found or {@code null}.
    */
   public static Term getTerm(String sboTerm) {
-    return new Term(sbo.getTerm(sboTerm));
+    return new Term(getOntology().getTerm(sboTerm));
   }
 
   /**
@@ -1276,8 +1354,8 @@ public class SBO {
    * @return the set of terms of the SBO Ontology.
    */
   public static Set<Term> getTerms() {
-    if (terms.size() < sbo.getTerms().size()) {
-      for (org.biojava.nbio.ontology.Term term : sbo.getTerms()) {
+    if (terms.size() < getOntology().getTerms().size()) {
+      for (org.biojava.nbio.ontology.Term term : getOntology().getTerms()) {
 
         if (term instanceof org.biojava.nbio.ontology.Triple) {
           // does nothing
@@ -1424,7 +1502,7 @@ public class SBO {
    */
   public static Set<Triple> getTriples(Term subject, Term predicate, Term object) {
     Set<Triple> triples = new HashSet<Triple>();
-    for (org.biojava.nbio.ontology.Triple triple : sbo.getTriples(
+    for (org.biojava.nbio.ontology.Triple triple : getOntology().getTriples(
       subject != null ? subject.getTerm() : null,
         object != null ? object.getTerm() : null,
           predicate != null ? predicate.getTerm() : null)) {
@@ -1497,11 +1575,22 @@ public class SBO {
    * @see #hasTerm(int)
    */
   public boolean hasTerm(String sboTerm) {
-    try {
-      return sbo.getTerm(sboTerm) != null;
-    } catch (NoSuchElementException exc) {
-      return false;
-    }
+    return containsTerm(sboTerm);
+  }
+
+  /**
+   * Returns {@code true} if the SBO contains a term with the given
+   * identifier, i.e., if {@link #getTerm(String)} can be called safely.
+   * 
+   * @param sboTerm
+   *        the SBO identifier, of the form 'SBO:XXXXXXX'.
+   * @return {@code true} if the SBO contains a term with the given
+   *         identifier.
+   * @since 1.5
+   */
+  public static boolean containsTerm(String sboTerm) {
+    return (sboTerm != null) && (sboTerm.length() == 11) && sboTerm.startsWith(prefix)
+        && getSnapshot().contains(stringToInt(sboTerm));
   }
 
   /**
@@ -1584,36 +1673,7 @@ public class SBO {
     if (!checkTerm(sboTerm)) {
       return false;
     }
-    return (sboTerm == parent) || isChildOf(
-      new Term(sbo.getTerm(intToString(sboTerm))),
-      new Term(sbo.getTerm(intToString(parent))));
-  }
-
-  /**
-   * Traverses the systems biology ontology starting at {@link Term} subject until
-   * either the root (SBO:0000000) or the {@link Term} object is reached.
-   * 
-   * @param subject
-   *            Child
-   * @param object
-   *            Parent
-   * @return {@code true} if subject is a child of object.
-   */
-  private static boolean isChildOf(Term subject, Term object) {
-    if (subject.equals(object)) {
-      return true;
-    }
-    Set<org.biojava.nbio.ontology.Triple> relations = sbo.getTriples(
-      subject != null ? subject.getTerm() : null, null, null);
-    for (org.biojava.nbio.ontology.Triple triple : relations) {
-      if (triple.getObject().equals(object.getTerm())) {
-        return true;
-      }
-      if (isChildOf(new Term(triple.getObject()), object)) {
-        return true;
-      }
-    }
-    return false;
+    return (sboTerm == parent) || getSnapshot().isChildOf(sboTerm, parent);
   }
 
   /**
@@ -1956,7 +2016,7 @@ public class SBO {
    * @return {@code true} if the term is-an obsolete term, {@code false} otherwise
    */
   public static boolean isObsolete(int sboTerm) {
-    return getTerm(intToString(sboTerm)).isObsolete();
+    return getSnapshot().isObsolete(sboTerm);
   }
 
   /**
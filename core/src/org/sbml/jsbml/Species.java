@@ -643,7 +643,10 @@ public class Species extends Symbol implements CompartmentalizedSBase {
   public int hashCode() {
     final int prime = 997;
     int hashCode = super.hashCode();
-    hashCode += prime * Boolean.valueOf(amount).hashCode();
+    // the flag only matters for a set value, as in equals
+    if (isSetInitialAmount() || isSetInitialConcentration()) {
+      hashCode += prime * Boolean.valueOf(amount).hashCode();
+    }
     if (isSetBoundaryCondition()) {
       hashCode += prime * boundaryCondition.hashCode();
     }
@@ -166,6 +166,15 @@ public abstract class AbstractSBasePlugin extends AbstractTreeNode implements SB
     return extendedSBase;
   }
 
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.AbstractTreeNode#invalidateChildIndex()
+   */
+  @Override
+  protected void invalidateChildIndex() {
+    // the children of this plugin are children of the extended element
+    invalidateChildIndex(extendedSBase);
+  }
+
   /* (non-Javadoc)
    * @see org.sbml.jsbml.ext.SBasePlugin#getLevel()
    */
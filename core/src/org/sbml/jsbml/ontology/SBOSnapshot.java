@@ -0,0 +1,421 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ontology;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.biojava.nbio.ontology.Ontology;
+import org.biojava.nbio.ontology.io.OboParser;
+import org.sbml.jsbml.SBO;
+
+/**
+ * A compact, read-only copy of the terms of the Systems Biology Ontology and
+ * of their is_a relationships, which is used by {@link SBO} to answer the
+ * frequent queries, such as {@link SBO#isChildOf(int, int)}, without loading
+ * the full ontology through BioJava.
+ * 
+ * <p>The terms are sorted by number and stored in primitive arrays; the
+ * parents of each term are stored in one array, indexed by the position of
+ * the first parent of each term. The snapshot is stored in the binary
+ * resource {@code SBO_OBO.bin}, next to the file {@code SBO_OBO.obo} from
+ * which it is created by the {@link #main(String[])} method of this class.
+ * The date of the OBO file is recorded, so that an outdated snapshot can be
+ * detected.</p>
+ * 
+ * @since 1.5
+ */
+public final class SBOSnapshot {
+
+  /**
+   * Identifies the format of the snapshot files.
+   */
+  private static final int MAGIC = 0x53424F31;
+
+  /**
+   * The maximal number of terms of a snapshot file, whose parents are
+   * written as unsigned 16-bit positions.
+   */
+  private static final int MAX_TERMS = 0xFFFF + 1;
+
+  /**
+   * The maximal number of parents of a term in a snapshot file, where it is
+   * written as an unsigned byte.
+   */
+  private static final int MAX_PARENTS = 0xFF;
+
+  /**
+   * The date of the OBO file the snapshot has been created from.
+   */
+  private final String date;
+
+  /**
+   * The numbers of the terms, in increasing order.
+   */
+  private final int[] ids;
+
+  /**
+   * The names of the terms.
+   */
+  private final String[] names;
+
+  /**
+   * The obsolete terms.
+   */
+  private final BitSet obsolete;
+
+  /**
+   * The position in {@link #parents} of the first parent of each term, and
+   * the number of parents as last element.
+   */
+  private final int[] parentStart;
+
+  /**
+   * The positions of the parents of all the terms.
+   */
+  private final int[] parents;
+
+  /**
+   * @param date
+   * @param ids
+   * @param names
+   * @param obsolete
+   * @param parentStart
+   * @param parents
+   */
+  private SBOSnapshot(String date, int[] ids, String[] names, BitSet obsolete,
+    int[] parentStart, int[] parents) {
+    this.date = date;
+    this.ids = ids;
+    this.names = names;
+    this.obsolete = obsolete;
+    this.parentStart = parentStart;
+    this.parents = parents;
+  }
+
+  /**
+   * Creates a snapshot of the given ontology.
+   * 
+   * @param ontology the SBO, as read by BioJava
+   * @param date the date of the OBO file the ontology has been read from,
+   *        see {@link #readDate(InputStream)}
+   * @return a snapshot of the given ontology.
+   */
+  public static SBOSnapshot create(Ontology ontology, String date) {
+    List<org.biojava.nbio.ontology.Term> terms = new ArrayList<org.biojava.nbio.ontology.Term>();
+    for (org.biojava.nbio.ontology.Term term : ontology.getTerms()) {
+      if (!(term instanceof org.biojava.nbio.ontology.Triple)
+          && term.getName().matches("SBO:\\d{7}")) {
+        terms.add(term);
+      }
+    }
+    int n = terms.size();
+    int[] ids = new int[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = SBO.stringToInt(terms.get(i).getName());
+    }
+    Arrays.sort(ids);
+    Map<String, Integer> positions = new HashMap<String, Integer>();
+    for (int i = 0; i < n; i++) {
+      positions.put(SBO.intToString(ids[i]), Integer.valueOf(i));
+    }
+
+    String[] names = new String[n];
+    BitSet obsolete = new BitSet(n);
+    int[] parentStart = new int[n + 1];
+    List<Integer> parents = new ArrayList<Integer>();
+    for (int i = 0; i < n; i++) {
+      Term term = new Term(ontology.getTerm(SBO.intToString(ids[i])));
+      names[i] = term.getName();
+      obsolete.set(i, term.isObsolete());
+      parentStart[i] = parents.size();
+      for (org.biojava.nbio.ontology.Triple triple : ontology.getTriples(term.getTerm(), null, null)) {
+        Integer parent = positions.get(triple.getObject().getName());
+        if (parent != null) {
+          parents.add(parent);
+        }
+      }
+    }
+    parentStart[n] = parents.size();
+    int[] parentArray = new int[parents.size()];
+    for (int i = 0; i < parentArray.length; i++) {
+      parentArray[i] = parents.get(i).intValue();
+    }
+    return new SBOSnapshot(date, ids, names, obsolete, parentStart, parentArray);
+  }
+
+  /**
+   * Reads a snapshot written by {@link #write(OutputStream)}.
+   * 
+   * @param is
+   * @return the snapshot read.
+   * @throws IOException if the stream does not contain a valid snapshot.
+   */
+  public static SBOSnapshot read(InputStream is) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a snapshot of the SBO.");
+      }
+      String date = in.readUTF();
+      int n = in.readInt();
+      int[] ids = new int[n];
+      String[] names = new String[n];
+      BitSet obsolete = new BitSet(n);
+      int[] parentStart = new int[n + 1];
+      int[] parents = new int[in.readInt()];
+      for (int i = 0, p = 0; i < n; i++) {
+        ids[i] = in.readInt();
+        names[i] = in.readUTF();
+        obsolete.set(i, in.readBoolean());
+        parentStart[i] = p;
+        for (int j = in.readUnsignedByte(); j > 0; j--) {
+          parents[p++] = in.readUnsignedShort();
+        }
+      }
+      parentStart[n] = parents.length;
+      return new SBOSnapshot(date, ids, names, obsolete, parentStart, parents);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads the date of an OBO file, which is given in its header.
+   * 
+   * @param obo the content of the OBO file
+   * @return the date or an empty {@link String} if no date is found.
+   * @throws IOException
+   */
+  public static String readDate(InputStream obo) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(obo));
+    try {
+      String line;
+      while (((line = reader.readLine()) != null) && !line.startsWith("[")) {
+        if (line.startsWith("date:")) {
+          return line.substring(5).trim();
+        }
+      }
+      return "";
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Writes this snapshot. The parents are written as unsigned 16-bit
+   * positions, preceded by their number as an unsigned byte.
+   * 
+   * @param os
+   * @throws IOException if the snapshot has more than 65536 terms or a term
+   *         more than 255 parents, which the format cannot represent.
+   */
+  public void write(OutputStream os) throws IOException {
+    if (ids.length > MAX_TERMS) {
+      throw new IOException(MessageFormat.format(
+        "A snapshot cannot contain more than {0,number,#} terms: {1,number,#}.",
+        MAX_TERMS, ids.length));
+    }
+    for (int i = 0; i < ids.length; i++) {
+      if (parentStart[i + 1] - parentStart[i] > MAX_PARENTS) {
+        throw new IOException(MessageFormat.format(
+          "A term of a snapshot cannot have more than {0,number,#} parents: SBO:{1,number,0000000} has {2,number,#}.",
+          MAX_PARENTS, ids[i], parentStart[i + 1] - parentStart[i]));
+      }
+    }
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+    out.writeInt(MAGIC);
+    out.writeUTF(date);
+    out.writeInt(ids.length);
+    out.writeInt(parents.length);
+    for (int i = 0; i < ids.length; i++) {
+      out.writeInt(ids[i]);
+      out.writeUTF(names[i]);
+      out.writeBoolean(obsolete.get(i));
+      out.writeByte(parentStart[i + 1] - parentStart[i]);
+      for (int p = parentStart[i]; p < parentStart[i + 1]; p++) {
+        out.writeShort(parents[p]);
+      }
+    }
+    out.close();
+  }
+
+  /**
+   * Returns the date of the OBO file this snapshot has been created from.
+   * 
+   * @return the date of the OBO file this snapshot has been created from.
+   */
+  public String getDate() {
+    return date;
+  }
+
+  /**
+   * Returns the number of terms.
+   * 
+   * @return the number of terms.
+   */
+  public int getTermCount() {
+    return ids.length;
+  }
+
+  /**
+   * Returns {@code true} if the ontology contains the given term.
+   * 
+   * @param sboTerm
+   * @return {@code true} if the ontology contains the given term.
+   */
+  public boolean contains(int sboTerm) {
+    return Arrays.binarySearch(ids, sboTerm) >= 0;
+  }
+
+  /**
+   * Returns the name of the given term.
+   * 
+   * @param sboTerm
+   * @return the name of the given term.
+   * @throws NoSuchElementException if the ontology does not contain the term.
+   */
+  public String getName(int sboTerm) {
+    return names[indexOf(sboTerm)];
+  }
+
+  /**
+   * Returns {@code true} if the given term is obsolete.
+   * 
+   * @param sboTerm
+   * @return {@code true} if the given term is obsolete.
+   * @throws NoSuchElementException if the ontology does not contain the term.
+   */
+  public boolean isObsolete(int sboTerm) {
+    return obsolete.get(indexOf(sboTerm));
+  }
+
+  /**
+   * Returns the direct parents of the given term, in increasing order.
+   * 
+   * @param sboTerm
+   * @return the numbers of the direct parents of the given term.
+   * @throws NoSuchElementException if the ontology does not contain the term.
+   */
+  public int[] getParents(int sboTerm) {
+    int index = indexOf(sboTerm);
+    int[] result = new int[parentStart[index + 1] - parentStart[index]];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = ids[parents[parentStart[index] + i]];
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Checks whether the given term is the given parent or one of its
+   * descendants.
+   * 
+   * @param sboTerm
+   * @param parent
+   * @return {@code true} if the subgraph rooted at the parent contains the
+   *         given term.
+   * @throws NoSuchElementException if the ontology does not contain one of
+   *         the terms.
+   */
+  public boolean isChildOf(int sboTerm, int parent) {
+    int child = indexOf(sboTerm);
+    int target = indexOf(parent);
+    if (child == target) {
+      return true;
+    }
+    // the graph is small, so that an explicit stack and a visited set are
+    // cheap compared to the recursion
+    BitSet visited = new BitSet(ids.length);
+    int[] stack = new int[ids.length];
+    int size = 0;
+    stack[size++] = child;
+    visited.set(child);
+    while (size > 0) {
+      int current = stack[--size];
+      for (int p = parentStart[current]; p < parentStart[current + 1]; p++) {
+        int next = parents[p];
+        if (next == target) {
+          return true;
+        }
+        if (!visited.get(next)) {
+          visited.set(next);
+          stack[size++] = next;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param sboTerm
+   * @return the position of the given term.
+   * @throws NoSuchElementException if the ontology does not contain the term.
+   */
+  private int indexOf(int sboTerm) {
+    int index = Arrays.binarySearch(ids, sboTerm);
+    if (index < 0) {
+      throw new NoSuchElementException("No term named '" + SBO.intToString(sboTerm) + "'");
+    }
+    return index;
+  }
+
+  /**
+   * Creates the snapshot of an OBO file.
+   * 
+   * @param args the OBO file and the snapshot file to write
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: java " + SBOSnapshot.class.getName() + " SBO_OBO.obo SBO_OBO.bin");
+      return;
+    }
+    String date = readDate(new FileInputStream(args[0]));
+    Ontology ontology;
+    try {
+      ontology = new OboParser().parseOBO(new BufferedReader(new FileReader(args[0])), "SBO",
+        "Systems Biology Ontology");
+    } catch (ParseException exc) {
+      throw new IOException(exc);
+    }
+    create(ontology, date).write(new FileOutputStream(args[1]));
+  }
+
+}
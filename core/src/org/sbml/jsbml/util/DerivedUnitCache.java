@@ -0,0 +1,364 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ * 
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util;
+
+import java.beans.PropertyChangeEvent;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.tree.TreeNode;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.MathContainer;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.NamedSBase;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.Unit;
+import org.sbml.jsbml.UnitDefinition;
+
+/**
+ * Memorizes the {@link UnitDefinition}s derived from the math of the
+ * {@link MathContainer}s of a {@link Model}, see
+ * {@link MathContainer#getDerivedUnitDefinition()}.
+ * 
+ * <p>The cache listens to the changes of the {@link Model}. An entry is
+ * removed when the math of its {@link MathContainer} changes or when one of
+ * the elements referred to by the math, such as a {@link Species} and its
+ * compartment, changes. All the entries are removed when a
+ * {@link UnitDefinition}, a {@link FunctionDefinition} or the units of the
+ * {@link Model} change.</p>
+ * 
+ * <p>The cache of a {@link Model} is only used once it has been enabled with
+ * {@link Model#createDerivedUnitCache()}. As it is notified of every change
+ * of the {@link Model}, it should be disabled with
+ * {@link Model#unsetDerivedUnitCache()} when the units are no longer
+ * checked.</p>
+ * 
+ * <p>The methods of this class are synchronized, so that the derived units
+ * can be requested from several threads, as long as the {@link Model} is not
+ * modified at the same time.</p>
+ * 
+ * @since 1.5
+ * @see Model#createDerivedUnitCache()
+ */
+public class DerivedUnitCache implements TreeNodeChangeListener {
+
+  /**
+   * The names of the properties that cannot change any derived unit, except
+   * for the name of an {@link ASTNode}.
+   */
+  private static final Set<String> IGNORED_PROPERTIES = new HashSet<String>();
+
+  static {
+    Collections.addAll(IGNORED_PROPERTIES, TreeNodeChangeEvent.userObject,
+      TreeNodeChangeEvent.parentSBMLObject, TreeNodeChangeEvent.metaId,
+      TreeNodeChangeEvent.name, TreeNodeChangeEvent.notes,
+      TreeNodeChangeEvent.annotation, TreeNodeChangeEvent.setAnnotation,
+      TreeNodeChangeEvent.sboTerm, TreeNodeChangeEvent.message);
+  }
+
+  /**
+   * The {@link Model} whose derived units are memorized.
+   */
+  private final Model model;
+
+  /**
+   * The derived unit of each {@link MathContainer}.
+   */
+  private final Map<MathContainer, UnitDefinition> units = new IdentityHashMap<MathContainer, UnitDefinition>();
+
+  /**
+   * The identifiers each cached {@link MathContainer} depends on.
+   */
+  private final Map<MathContainer, Set<String>> dependencies = new IdentityHashMap<MathContainer, Set<String>>();
+
+  /**
+   * The cached {@link MathContainer}s that depend on each identifier.
+   */
+  private final Map<String, Set<MathContainer>> dependents = new HashMap<String, Set<MathContainer>>();
+
+  /**
+   * Creates a cache for the given {@link Model} and registers it as
+   * shared {@link TreeNodeChangeListener} of the {@link Model}, which is
+   * notified of the changes of all its elements.
+   * 
+   * @param model
+   */
+  public DerivedUnitCache(Model model) {
+    this.model = model;
+    model.addSharedTreeNodeChangeListener(this);
+  }
+
+  /**
+   * Removes all the entries of this cache.
+   */
+  public synchronized void clear() {
+    units.clear();
+    dependencies.clear();
+    dependents.clear();
+  }
+
+  /**
+   * Unregisters this cache from the elements of its {@link Model} and removes
+   * all its entries, see {@link Model#unsetDerivedUnitCache()}.
+   */
+  public void detach() {
+    model.removeSharedTreeNodeChangeListener(this);
+    clear();
+  }
+
+  /**
+   * Returns the memorized unit of the given {@link MathContainer}.
+   * 
+   * @param container
+   * @return the memorized unit or {@code null} if the unit of the given
+   *         {@link MathContainer} has not been memorized.
+   */
+  public synchronized UnitDefinition get(MathContainer container) {
+    return units.get(container);
+  }
+
+  /**
+   * Memorizes the unit of the given {@link MathContainer}.
+   * 
+   * @param container
+   * @param unit the unit derived from the math of the container
+   * @param math the math the unit has been derived from, after the expansion
+   *        of the function definitions.
+   */
+  public synchronized void put(MathContainer container, UnitDefinition unit, ASTNode math) {
+    invalidate(container);
+    Set<String> ids = new HashSet<String>();
+    if (math != null) {
+      collectIds(math, ids);
+    }
+    units.put(container, unit);
+    dependencies.put(container, ids);
+    for (String id : ids) {
+      Set<MathContainer> set = dependents.get(id);
+      if (set == null) {
+        set = Collections.newSetFromMap(new IdentityHashMap<MathContainer, Boolean>());
+        dependents.put(id, set);
+      }
+      set.add(container);
+    }
+  }
+
+  /**
+   * Returns the number of memorized units.
+   * 
+   * @return the number of memorized units.
+   */
+  public synchronized int size() {
+    return units.size();
+  }
+
+  /**
+   * Collects the identifiers the unit of the given math depends on.
+   * 
+   * @param math
+   * @param ids
+   */
+  private void collectIds(ASTNode math, Set<String> ids) {
+    if (math.isName() && (math.getName() != null)) {
+      ids.add(math.getName());
+      Species species = model.getSpecies(math.getName());
+      if ((species != null) && species.isSetCompartment()) {
+        ids.add(species.getCompartment());
+      }
+    }
+    for (int i = 0; i < math.getChildCount(); i++) {
+      collectIds(math.getChild(i), ids);
+    }
+  }
+
+  /**
+   * Removes the entry of the given {@link MathContainer}.
+   * 
+   * @param container
+   */
+  private void invalidate(MathContainer container) {
+    units.remove(container);
+    Set<String> ids = dependencies.remove(container);
+    if (ids != null) {
+      for (String id : ids) {
+        Set<MathContainer> set = dependents.get(id);
+        if (set != null) {
+          set.remove(container);
+          if (set.isEmpty()) {
+            dependents.remove(id);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes the entries of the {@link MathContainer}s depending on the given
+   * identifier.
+   * 
+   * @param id
+   */
+  private void invalidate(String id) {
+    Set<MathContainer> set = dependents.get(id);
+    if (set != null) {
+      for (MathContainer container : set.toArray(new MathContainer[set.size()])) {
+        invalidate(container);
+      }
+    }
+  }
+
+  /**
+   * Removes the entry of the {@link MathContainer} of the given math.
+   * 
+   * @param math
+   */
+  private void invalidateMath(ASTNode math) {
+    MathContainer container = math.getParentSBMLObject();
+    if (container instanceof FunctionDefinition) {
+      clear();
+    } else if (container != null) {
+      invalidate(container);
+    }
+  }
+
+  /**
+   * Removes the entries depending on the elements of the given subtree,
+   * which has been added or removed.
+   * 
+   * @param node
+   * @return {@code false} if all the entries have been removed.
+   */
+  private boolean invalidateSubtree(TreeNode node) {
+    if ((node instanceof Model) || (node instanceof UnitDefinition)
+        || (node instanceof Unit) || (node instanceof FunctionDefinition)) {
+      clear();
+      return false;
+    }
+    if (node instanceof MathContainer) {
+      invalidate((MathContainer) node);
+    }
+    if ((node instanceof NamedSBase) && ((NamedSBase) node).isSetId()) {
+      invalidate(((NamedSBase) node).getId());
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      TreeNode child = node.getChildAt(i);
+      if (!(child instanceof ASTNode) && !invalidateSubtree(child)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* (non-Javadoc)
+   * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+   */
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    // checked before locking, as the validators change the user objects of
+    // all the elements
+    String property = evt.getPropertyName();
+    if (!IGNORED_PROPERTIES.contains(property)
+        || ((evt.getSource() instanceof ASTNode) && TreeNodeChangeEvent.name.equals(property))) {
+      update(evt);
+    }
+  }
+
+  /**
+   * Removes the entries that depend on the given change.
+   * 
+   * @param evt
+   */
+  private synchronized void update(PropertyChangeEvent evt) {
+    if (units.isEmpty()) {
+      return;
+    }
+    Object source = evt.getSource();
+    if (source instanceof ASTNode) {
+      invalidateMath((ASTNode) source);
+    } else if ((source instanceof Model) || (source instanceof UnitDefinition)
+        || (source instanceof Unit) || (source instanceof FunctionDefinition)) {
+      clear();
+    } else if (source instanceof MathContainer) {
+      if (TreeNodeChangeEvent.math.equals(evt.getPropertyName())) {
+        invalidate((MathContainer) source);
+      }
+    } else if (source instanceof NamedSBase) {
+      if (TreeNodeChangeEvent.id.equals(evt.getPropertyName())) {
+        if (evt.getOldValue() != null) {
+          invalidate(evt.getOldValue().toString());
+        }
+        if (evt.getNewValue() != null) {
+          invalidate(evt.getNewValue().toString());
+        }
+      } else if (((NamedSBase) source).isSetId()) {
+        invalidate(((NamedSBase) source).getId());
+      }
+    } else if (source instanceof SBase) {
+      // an element whose influence on the units is unknown
+      clear();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeAdded(javax.swing.tree.TreeNode)
+   */
+  @Override
+  public synchronized void nodeAdded(TreeNode node) {
+    if (units.isEmpty()) {
+      return;
+    }
+    if (node instanceof ASTNode) {
+      invalidateMath((ASTNode) node);
+    } else {
+      invalidateSubtree(node);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeRemoved(org.sbml.jsbml.util.TreeNodeRemovedEvent)
+   */
+  @Override
+  public synchronized void nodeRemoved(TreeNodeRemovedEvent event) {
+    if (units.isEmpty()) {
+      return;
+    }
+    TreeNode node = event.getSource();
+    TreeNode previousParent = event.getPreviousParent();
+    if (node instanceof ASTNode) {
+      if (previousParent instanceof ASTNode) {
+        invalidateMath((ASTNode) previousParent);
+      } else if (previousParent instanceof FunctionDefinition) {
+        clear();
+      } else if (previousParent instanceof MathContainer) {
+        invalidate((MathContainer) previousParent);
+      }
+    } else {
+      invalidateSubtree(node);
+    }
+  }
+
+}
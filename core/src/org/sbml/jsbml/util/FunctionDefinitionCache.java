@@ -0,0 +1,500 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ * 
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.tree.TreeNode;
+
+import org.apache.log4j.Logger;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.ListOf;
+import org.sbml.jsbml.MathContainer;
+import org.sbml.jsbml.Model;
+
+/**
+ * Expands the calls of the {@link FunctionDefinition}s of a {@link Model},
+ * i.e., replaces each call by the body of the function in which the
+ * arguments have been substituted.
+ * 
+ * <p>For each {@link FunctionDefinition}, the cache memorizes a template: a
+ * copy of the body in which the calls of other {@link FunctionDefinition}s
+ * are already expanded, together with the positions of the arguments in
+ * this copy. Expanding a call then only requires one copy of the template,
+ * whose arguments are replaced in place. The math given to
+ * {@link #expand(ASTNode)} is never modified.</p>
+ * 
+ * <p>The cache listens to the changes of the {@link Model} and forgets all
+ * the templates as soon as a {@link FunctionDefinition} is added, removed or
+ * modified.</p>
+ * 
+ * @since 1.5
+ * @see Model#createFunctionDefinitionCache()
+ */
+public class FunctionDefinitionCache implements TreeNodeChangeListener {
+
+  /**
+   * The body of a {@link FunctionDefinition} ready to be instantiated.
+   * 
+   * @since 1.5
+   */
+  private static class Template {
+
+    /**
+     * The body, in which the nested calls are expanded.
+     */
+    private final ASTNode body;
+
+    /**
+     * For each argument, the paths from the body to the nodes that refer
+     * to it.
+     */
+    private final List<List<int[]>> paths;
+
+    /**
+     * @param body
+     * @param fd
+     */
+    private Template(ASTNode body, FunctionDefinition fd) {
+      this.body = body;
+      Map<String, Integer> arguments = new HashMap<String, Integer>();
+      paths = new ArrayList<List<int[]>>(fd.getArgumentCount());
+      for (int i = 0; i < fd.getArgumentCount(); i++) {
+        paths.add(new ArrayList<int[]>());
+        arguments.put(fd.getArgument(i).getName(), Integer.valueOf(i));
+      }
+      collectPaths(body, arguments, new int[0]);
+    }
+
+    /**
+     * Memorizes the paths to the nodes of the given subtree that refer to
+     * an argument.
+     * 
+     * @param node
+     * @param arguments the index of each argument
+     * @param path the path to the given node
+     */
+    private void collectPaths(ASTNode node, Map<String, Integer> arguments, int[] path) {
+      if ((node.getType() == ASTNode.Type.NAME) && (node.getName() != null)) {
+        Integer index = arguments.get(node.getName());
+        if (index != null) {
+          paths.get(index.intValue()).add(path);
+        }
+      }
+      for (int i = 0; i < node.getChildCount(); i++) {
+        int[] childPath = new int[path.length + 1];
+        System.arraycopy(path, 0, childPath, 0, path.length);
+        childPath[path.length] = i;
+        collectPaths(node.getChild(i), arguments, childPath);
+      }
+    }
+
+    /**
+     * @return the number of arguments of the function.
+     */
+    private int getArgumentCount() {
+      return paths.size();
+    }
+
+    /**
+     * Returns a copy of the body in which the arguments are replaced by the
+     * children of the given call. The children are moved to the copy and
+     * only copied if an argument is used more than once.
+     * 
+     * @param call
+     * @return the expanded call.
+     */
+    private ASTNode instantiate(ASTNode call) {
+      ASTNode result = body.clone();
+      for (int i = 0; i < paths.size(); i++) {
+        ASTNode argument = call.getChild(i);
+        boolean used = false;
+        for (int[] path : paths.get(i)) {
+          ASTNode value = used ? argument.clone() : argument;
+          used = true;
+          if (path.length == 0) {
+            // the body is the argument itself
+            return value;
+          }
+          ASTNode parent = result;
+          for (int j = 0; j < path.length - 1; j++) {
+            parent = parent.getChild(path[j]);
+          }
+          parent.replaceChild(path[path.length - 1], value);
+        }
+      }
+      return result;
+    }
+
+  }
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final Logger logger = Logger.getLogger(FunctionDefinitionCache.class);
+
+  /**
+   * The {@link Model} whose {@link FunctionDefinition}s are expanded.
+   */
+  private final Model model;
+
+  /**
+   * The template of each {@link FunctionDefinition}, or {@code null} for the
+   * identifiers that cannot be expanded.
+   */
+  private final Map<String, Template> templates = new HashMap<String, Template>();
+
+  /**
+   * The identifiers of the {@link FunctionDefinition}s whose template is
+   * being created, to detect recursive definitions.
+   */
+  private final Set<String> building = new HashSet<String>();
+
+  /**
+   * Creates a cache for the given {@link Model} and registers it as shared
+   * {@link TreeNodeChangeListener} of the {@link Model}, which is notified of
+   * the changes of all its elements.
+   * 
+   * @param model
+   */
+  public FunctionDefinitionCache(Model model) {
+    this(model, true);
+  }
+
+  /**
+   * Creates a cache for the given {@link Model}, which is only registered as
+   * shared {@link TreeNodeChangeListener} of the {@link Model} if
+   * {@code register} is {@code true}. A cache that is not registered must
+   * not be kept once the {@link Model} may change.
+   * 
+   * @param model
+   * @param register
+   */
+  private FunctionDefinitionCache(Model model, boolean register) {
+    this.model = model;
+    if (register) {
+      model.addSharedTreeNodeChangeListener(this);
+    }
+  }
+
+  /**
+   * Returns the given math in which all the calls of the
+   * {@link FunctionDefinition}s of the given {@link Model} are expanded, as
+   * {@link #expand(ASTNode)}. The cache of the {@link Model} is used if it
+   * has been enabled with {@link Model#createFunctionDefinitionCache()},
+   * otherwise the templates are only kept during this expansion.
+   * 
+   * @param model
+   * @param math
+   * @return the given math or an expanded copy.
+   */
+  public static ASTNode expand(Model model, ASTNode math) {
+    return getCache(model, null).expand(math);
+  }
+
+  /**
+   * Returns the cache of the given {@link Model} if it is enabled, otherwise
+   * a cache that is not registered in the {@link Model}, which is kept in
+   * the given map, if any, so that it can be reused during the same pass.
+   * 
+   * @param model
+   * @param caches the caches created for the models without cache, or
+   *        {@code null}.
+   * @return the cache to use for the given {@link Model}.
+   */
+  private static FunctionDefinitionCache getCache(Model model, Map<Model, FunctionDefinitionCache> caches) {
+    FunctionDefinitionCache cache = model.getFunctionDefinitionCache();
+    if (cache == null) {
+      cache = (caches != null) ? caches.get(model) : null;
+      if (cache == null) {
+        cache = new FunctionDefinitionCache(model, false);
+        if (caches != null) {
+          caches.put(model, cache);
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Expands the {@link FunctionDefinition}s in the math of all the
+   * {@link MathContainer}s of the given subtree, except for the
+   * {@link FunctionDefinition}s themselves, in one pass. Each
+   * {@link MathContainer} uses the cache of its own {@link Model}, or
+   * templates that are only kept during this pass if the {@link Model} has
+   * no cache.
+   * 
+   * @param root
+   * @return the number of {@link MathContainer}s whose math has been
+   *         replaced.
+   */
+  public static int expandAll(TreeNode root) {
+    List<MathContainer> containers = new ArrayList<MathContainer>();
+    Deque<TreeNode> stack = new ArrayDeque<TreeNode>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      TreeNode node = stack.pop();
+      if ((node instanceof MathContainer) && !(node instanceof FunctionDefinition)) {
+        containers.add((MathContainer) node);
+      }
+      for (int i = node.getChildCount() - 1; i >= 0; i--) {
+        TreeNode child = node.getChildAt(i);
+        if (!(child instanceof ASTNode)) {
+          stack.push(child);
+        }
+      }
+    }
+    int count = 0;
+    Map<Model, FunctionDefinitionCache> caches = new IdentityHashMap<Model, FunctionDefinitionCache>();
+    for (MathContainer container : containers) {
+      Model m = container.getModel();
+      if (container.isSetMath() && (m != null) && (m.getFunctionDefinitionCount() > 0)) {
+        ASTNode math = container.getMath();
+        ASTNode expanded = getCache(m, caches).expand(math);
+        if (expanded != math) {
+          container.setMath(expanded);
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Expands the {@link FunctionDefinition}s in the math of all the
+   * {@link MathContainer}s of the {@link Model}.
+   * 
+   * @return the number of {@link MathContainer}s whose math has been
+   *         replaced.
+   * @see #expandAll(TreeNode)
+   */
+  public int expandAll() {
+    return expandAll(model);
+  }
+
+  /**
+   * Removes all the templates of this cache.
+   */
+  public synchronized void clear() {
+    templates.clear();
+  }
+
+  /**
+   * Unregisters this cache from the elements of its {@link Model} and removes
+   * all its templates.
+   */
+  public void detach() {
+    model.removeSharedTreeNodeChangeListener(this);
+    clear();
+  }
+
+  /**
+   * Returns the given math in which all the calls of the
+   * {@link FunctionDefinition}s of the {@link Model} are expanded. The
+   * calls whose number of arguments does not match the definition are left
+   * as they are.
+   * 
+   * @param math
+   * @return the given math, if it does not call any {@link FunctionDefinition},
+   *         or an expanded copy, which refers to the same
+   *         {@link MathContainer} as the given math.
+   */
+  public ASTNode expand(ASTNode math) {
+    if ((math == null) || !containsCall(math)) {
+      return math;
+    }
+    ASTNode result = expandSubtree(math.clone());
+    setParentSBMLObject(result, math.getParentSBMLObject());
+    return result;
+  }
+
+  /**
+   * Returns the number of memorized templates.
+   * 
+   * @return the number of memorized templates.
+   */
+  public synchronized int size() {
+    int size = 0;
+    for (Template template : templates.values()) {
+      if (template != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @param node
+   * @return {@code true} if the given subtree contains a call that can be
+   *         expanded.
+   */
+  private boolean containsCall(ASTNode node) {
+    if (getTemplate(node) != null) {
+      return true;
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      if (containsCall(node.getChild(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Expands the calls of the given subtree, which is modified.
+   * 
+   * @param node
+   * @return the given node or, if it is a call, its expansion.
+   */
+  private ASTNode expandSubtree(ASTNode node) {
+    for (int i = 0; i < node.getChildCount(); i++) {
+      ASTNode child = node.getChild(i);
+      ASTNode expanded = expandSubtree(child);
+      if (expanded != child) {
+        node.replaceChild(i, expanded);
+      }
+    }
+    Template template = getTemplate(node);
+    return template != null ? template.instantiate(node) : node;
+  }
+
+  /**
+   * Returns the template to use to expand the given node.
+   * 
+   * @param node
+   * @return the template or {@code null} if the given node is not a call
+   *         that can be expanded.
+   */
+  private Template getTemplate(ASTNode node) {
+    if ((node.getType() != ASTNode.Type.FUNCTION) || (node.getName() == null)) {
+      return null;
+    }
+    Template template = getTemplate(node.getName());
+    if ((template != null) && (template.getArgumentCount() != node.getChildCount())) {
+      logger.debug("The number of arguments of the call of " + node.getName()
+        + " differs from its definition, the call is not expanded.");
+      return null;
+    }
+    return template;
+  }
+
+  /**
+   * Returns the template of the {@link FunctionDefinition} with the given
+   * identifier, which is created if necessary.
+   * 
+   * @param id
+   * @return the template or {@code null} if the identifier is not the one
+   *         of a {@link FunctionDefinition} that can be expanded.
+   */
+  private synchronized Template getTemplate(String id) {
+    Template template = templates.get(id);
+    if ((template != null) || templates.containsKey(id) || building.contains(id)) {
+      // a recursive definition cannot be expanded
+      return template;
+    }
+    FunctionDefinition fd = model.getFunctionDefinition(id);
+    ASTNode body = (fd != null) ? fd.getBody() : null;
+    if (body != null) {
+      building.add(id);
+      try {
+        template = new Template(expandSubtree(body.clone()), fd);
+      } finally {
+        building.remove(id);
+      }
+    }
+    templates.put(id, template);
+    return template;
+  }
+
+  /**
+   * Sets the {@link MathContainer} of all the nodes of the given subtree.
+   * 
+   * @param node
+   * @param container
+   */
+  private static void setParentSBMLObject(ASTNode node, MathContainer container) {
+    node.setParentSBMLObject(container);
+    for (int i = 0; i < node.getChildCount(); i++) {
+      setParentSBMLObject(node.getChild(i), container);
+    }
+  }
+
+  /**
+   * @param node
+   * @return {@code true} if the given node is or belongs to a
+   *         {@link FunctionDefinition}.
+   */
+  private static boolean isFunctionDefinition(TreeNode node) {
+    if (node instanceof ASTNode) {
+      return ((ASTNode) node).getParentSBMLObject() instanceof FunctionDefinition;
+    } else if (node instanceof ListOf<?>) {
+      ListOf<?> listOf = (ListOf<?>) node;
+      return (listOf.size() > 0) && (listOf.get(0) instanceof FunctionDefinition);
+    }
+    return node instanceof FunctionDefinition;
+  }
+
+  /* (non-Javadoc)
+   * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+   */
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    // checked before locking, as the validators change the user objects of
+    // all the elements
+    if (!TreeNodeChangeEvent.userObject.equals(evt.getPropertyName())
+        && (evt.getSource() instanceof TreeNode)
+        && isFunctionDefinition((TreeNode) evt.getSource())) {
+      clear();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeAdded(javax.swing.tree.TreeNode)
+   */
+  @Override
+  public void nodeAdded(TreeNode node) {
+    if (isFunctionDefinition(node)) {
+      clear();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeRemoved(org.sbml.jsbml.util.TreeNodeRemovedEvent)
+   */
+  @Override
+  public void nodeRemoved(TreeNodeRemovedEvent event) {
+    TreeNode previousParent = event.getPreviousParent();
+    if (isFunctionDefinition(event.getSource())
+        || ((previousParent != null) && isFunctionDefinition(previousParent))) {
+      clear();
+    }
+  }
+
+}
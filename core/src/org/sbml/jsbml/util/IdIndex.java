@@ -0,0 +1,524 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ * 
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.swing.tree.TreeNode;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.LocalParameter;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.UniqueSId;
+import org.sbml.jsbml.UnitDefinition;
+
+/**
+ * Indexes the identifiers and meta identifiers of all the elements of an
+ * {@link SBMLDocument}, including the elements of the package extensions and
+ * of the model definitions.
+ * 
+ * <p>Unlike the maps of {@link Model} and {@link SBMLDocument}, which are
+ * restricted to one identifier namespace, the index knows every element that
+ * has an identifier, together with its namespace (see
+ * {@link #getNamespace(SBase)}) and the element defining the scope of this
+ * namespace (see {@link #getScope(SBase)}). The identifiers are sorted, so
+ * that all the identifiers starting with a given prefix can be found without
+ * visiting the whole document.</p>
+ * 
+ * <p>The index is built the first time it is queried and is then kept up to
+ * date by listening to the changes of the {@link SBMLDocument}. The methods
+ * of this class are synchronized, so that the index can be queried from
+ * several threads, as long as the {@link SBMLDocument} is not modified at the
+ * same time.</p>
+ * 
+ * @since 1.5
+ * @see SBMLDocument#getIdIndex()
+ */
+public class IdIndex implements TreeNodeChangeListener {
+
+  /**
+   * The namespace of the identifiers that have to be unique within a
+   * {@link Model}, see {@link UniqueSId}. The identifiers of the elements of
+   * the SBML core are in this namespace, except for {@link UnitDefinition}s and
+   * {@link LocalParameter}s.
+   */
+  public static final String SID = "SId";
+
+  /**
+   * The namespace of the identifiers of the {@link UnitDefinition}s of a
+   * {@link Model}.
+   */
+  public static final String UNIT_SID = "UnitSId";
+
+  /**
+   * The namespace of the identifiers of the {@link LocalParameter}s of a
+   * {@link KineticLaw}.
+   */
+  public static final String LOCAL_SID = "LocalSId";
+
+  /**
+   * The {@link SBMLDocument} whose identifiers are indexed.
+   */
+  private final SBMLDocument doc;
+
+  /**
+   * The elements that have each identifier, in all the namespaces. In most
+   * cases, the lists contain only one element.
+   */
+  private final TreeMap<String, List<SBase>> ids = new TreeMap<String, List<SBase>>();
+
+  /**
+   * The element that has each meta identifier.
+   */
+  private final TreeMap<String, SBase> metaIds = new TreeMap<String, SBase>();
+
+  /**
+   * Whether the whole document has been indexed.
+   */
+  private boolean built;
+
+  /**
+   * Creates an index for the given {@link SBMLDocument} and registers it as
+   * shared {@link TreeNodeChangeListener} of the {@link SBMLDocument}, which
+   * is notified of the changes of all its elements.
+   * 
+   * @param doc
+   */
+  public IdIndex(SBMLDocument doc) {
+    this.doc = doc;
+    doc.addSharedTreeNodeChangeListener(this);
+  }
+
+  /**
+   * Returns the namespace of the identifier of the given element:
+   * {@link #SID}, {@link #UNIT_SID}, {@link #LOCAL_SID} or, for the elements of
+   * a package extension whose identifiers are not in the {@link #SID}
+   * namespace, the name of the package, for instance {@code comp} for the
+   * ports.
+   * 
+   * @param sbase
+   * @return the namespace of the identifier of the given element.
+   */
+  public static String getNamespace(SBase sbase) {
+    if (sbase instanceof LocalParameter) {
+      return LOCAL_SID;
+    } else if (sbase instanceof UnitDefinition) {
+      return UNIT_SID;
+    } else if ((sbase instanceof UniqueSId) || "core".equals(sbase.getPackageName())) {
+      return SID;
+    }
+    return sbase.getPackageName();
+  }
+
+  /**
+   * Returns the element in which the identifier of the given element has to
+   * be unique, within its namespace: the {@link KineticLaw} of a
+   * {@link LocalParameter}, the {@link SBMLDocument} of a {@link Model} (or
+   * model definition) and the {@link Model} of the other elements.
+   * 
+   * @param sbase
+   * @return the scope of the identifier of the given element.
+   */
+  public static SBase getScope(SBase sbase) {
+    if (sbase instanceof LocalParameter) {
+      SBase kineticLaw = sbase.getParentSBMLObject();
+      while ((kineticLaw != null) && !(kineticLaw instanceof KineticLaw)) {
+        kineticLaw = kineticLaw.getParentSBMLObject();
+      }
+      return kineticLaw;
+    }
+    Model model = sbase instanceof Model ? null : sbase.getModel();
+    return model != null ? model : sbase.getSBMLDocument();
+  }
+
+  /**
+   * Returns {@code true} if an element of the {@link SBMLDocument} has the
+   * given identifier, in any namespace.
+   * 
+   * @param id
+   * @return {@code true} if an element has the given identifier.
+   */
+  public synchronized boolean contains(String id) {
+    build();
+    return ids.containsKey(id);
+  }
+
+  /**
+   * Returns {@code true} if each of the given identifiers is the identifier
+   * of an element of the {@link SBMLDocument}, in any namespace.
+   * 
+   * @param ids
+   * @return {@code true} if all the identifiers are used in the document.
+   */
+  public synchronized boolean containsAll(Collection<String> ids) {
+    build();
+    return this.ids.keySet().containsAll(ids);
+  }
+
+  /**
+   * Returns {@code true} if an element of the {@link SBMLDocument} has the
+   * given meta identifier.
+   * 
+   * @param metaId
+   * @return {@code true} if an element has the given meta identifier.
+   */
+  public synchronized boolean containsMetaId(String metaId) {
+    build();
+    return metaIds.containsKey(metaId);
+  }
+
+  /**
+   * Returns the element that has the given identifier in the {@link #SID}
+   * namespace of the {@link Model} of the {@link SBMLDocument}.
+   * 
+   * @param id
+   * @return the element with the given identifier or {@code null}.
+   */
+  public SBase get(String id) {
+    return get(doc.getModel(), SID, id);
+  }
+
+  /**
+   * Returns an element that has the given identifier in the given namespace,
+   * in any scope.
+   * 
+   * @param namespace
+   *        the namespace, see {@link #getNamespace(SBase)}
+   * @param id
+   * @return an element with the given identifier or {@code null}.
+   */
+  public SBase get(String namespace, String id) {
+    return get(null, namespace, id);
+  }
+
+  /**
+   * Returns the element that has the given identifier in the given namespace
+   * and scope.
+   * 
+   * @param scope
+   *        the scope, see {@link #getScope(SBase)}, or {@code null} for any
+   *        scope
+   * @param namespace
+   *        the namespace, see {@link #getNamespace(SBase)}
+   * @param id
+   * @return the element with the given identifier or {@code null}.
+   */
+  public synchronized SBase get(SBase scope, String namespace, String id) {
+    build();
+    List<SBase> list = ids.get(id);
+    if (list != null) {
+      for (SBase sbase : list) {
+        if (namespace.equals(getNamespace(sbase))
+            && ((scope == null) || (scope == getScope(sbase)))) {
+          return sbase;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns all the elements that have the given identifier, in all the
+   * namespaces and scopes.
+   * 
+   * @param id
+   * @return the elements with the given identifier, possibly empty.
+   */
+  public synchronized List<SBase> getAll(String id) {
+    build();
+    List<SBase> list = ids.get(id);
+    if (list == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<SBase>(list);
+  }
+
+  /**
+   * Returns the element that has the given meta identifier.
+   * 
+   * @param metaId
+   * @return the element with the given meta identifier or {@code null}.
+   */
+  public synchronized SBase getByMetaId(String metaId) {
+    build();
+    return metaIds.get(metaId);
+  }
+
+  /**
+   * Returns the identifiers that start with the given prefix, in all the
+   * namespaces, in alphabetical order.
+   * 
+   * @param prefix
+   * @return the identifiers that start with the given prefix.
+   */
+  public synchronized SortedSet<String> getIdsWithPrefix(String prefix) {
+    build();
+    return new TreeSet<String>(withPrefix(ids, prefix).keySet());
+  }
+
+  /**
+   * Returns the meta identifiers that start with the given prefix, in
+   * alphabetical order.
+   * 
+   * @param prefix
+   * @return the meta identifiers that start with the given prefix.
+   */
+  public synchronized SortedSet<String> getMetaIdsWithPrefix(String prefix) {
+    build();
+    return new TreeSet<String>(withPrefix(metaIds, prefix).keySet());
+  }
+
+  /**
+   * Returns the elements of the given type whose identifier starts with the
+   * given prefix, ordered by identifier.
+   * 
+   * @param prefix
+   * @param type
+   *        the type of the elements to return, for instance
+   *        {@code Reaction.class}
+   * @return the elements of the given type whose identifier starts with the
+   *         given prefix.
+   */
+  public synchronized <T extends SBase> List<T> getElementsWithPrefix(String prefix, Class<T> type) {
+    build();
+    List<T> elements = new ArrayList<T>();
+    for (List<SBase> list : withPrefix(ids, prefix).values()) {
+      for (SBase sbase : list) {
+        if (type.isInstance(sbase)) {
+          elements.add(type.cast(sbase));
+        }
+      }
+    }
+    return elements;
+  }
+
+  /**
+   * Returns the number of indexed identifiers.
+   * 
+   * @return the number of distinct identifiers used in the document.
+   */
+  public synchronized int size() {
+    build();
+    return ids.size();
+  }
+
+  /**
+   * Unregisters this index from the {@link SBMLDocument} and removes all its
+   * entries.
+   */
+  public synchronized void detach() {
+    doc.removeSharedTreeNodeChangeListener(this);
+    ids.clear();
+    metaIds.clear();
+    built = false;
+  }
+
+  /**
+   * Returns the entries of the given map whose key starts with the given
+   * prefix.
+   * 
+   * @param map
+   * @param prefix
+   * @return a view of the entries whose key starts with the given prefix.
+   */
+  private static <V> SortedMap<String, V> withPrefix(TreeMap<String, V> map, String prefix) {
+    if (prefix.length() == 0) {
+      return map;
+    }
+    // the smallest string greater than all the strings with this prefix
+    char last = prefix.charAt(prefix.length() - 1);
+    if (last == Character.MAX_VALUE) {
+      return map.tailMap(prefix);
+    }
+    return map.subMap(prefix, prefix.substring(0, prefix.length() - 1) + (char) (last + 1));
+  }
+
+  /**
+   * Indexes the whole {@link SBMLDocument} if this has not been done yet.
+   */
+  private void build() {
+    if (!built) {
+      built = true;
+      update(doc, true);
+    }
+  }
+
+  /**
+   * Adds the given identifier of the given element.
+   * 
+   * @param id
+   * @param sbase
+   */
+  private void add(String id, SBase sbase) {
+    List<SBase> list = ids.get(id);
+    if (list == null) {
+      list = new ArrayList<SBase>(1);
+      ids.put(id, list);
+    } else {
+      for (SBase other : list) {
+        if (other == sbase) {
+          return;
+        }
+      }
+    }
+    list.add(sbase);
+  }
+
+  /**
+   * Removes the given identifier of the given element.
+   * 
+   * @param id
+   * @param sbase
+   */
+  private void remove(String id, SBase sbase) {
+    List<SBase> list = ids.get(id);
+    if (list != null) {
+      for (int i = list.size() - 1; i >= 0; i--) {
+        if (list.get(i) == sbase) {
+          list.remove(i);
+        }
+      }
+      if (list.isEmpty()) {
+        ids.remove(id);
+      }
+    }
+  }
+
+  /**
+   * Adds or removes the identifiers of all the elements of the given subtree.
+   * 
+   * @param node
+   * @param add
+   */
+  private void update(TreeNode node, boolean add) {
+    if (node instanceof SBase) {
+      SBase sbase = (SBase) node;
+      if (sbase.isSetId()) {
+        if (add) {
+          add(sbase.getId(), sbase);
+        } else {
+          remove(sbase.getId(), sbase);
+        }
+      }
+      if (sbase.isSetMetaId()) {
+        if (add) {
+          metaIds.put(sbase.getMetaId(), sbase);
+        } else if (metaIds.get(sbase.getMetaId()) == sbase) {
+          metaIds.remove(sbase.getMetaId());
+        }
+      }
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      TreeNode child = node.getChildAt(i);
+      if (!(child instanceof ASTNode)) {
+        update(child, add);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+   */
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    // checked before locking, as the validators change the user objects of
+    // all the elements
+    if (!(evt.getSource() instanceof SBase)) {
+      return;
+    }
+    SBase sbase = (SBase) evt.getSource();
+    String property = evt.getPropertyName();
+    if (TreeNodeChangeEvent.id.equals(property)
+        || (TreeNodeChangeEvent.name.equals(property) && (sbase.getLevel() == 1))) {
+      updateId(sbase, evt.getOldValue(), evt.getNewValue());
+    } else if (TreeNodeChangeEvent.metaId.equals(property)) {
+      updateMetaId(sbase, evt.getOldValue(), evt.getNewValue());
+    }
+  }
+
+  /**
+   * Replaces the previous identifier of the given element with the new one.
+   * 
+   * @param sbase
+   * @param oldId
+   * @param newId
+   */
+  private synchronized void updateId(SBase sbase, Object oldId, Object newId) {
+    if (built) {
+      if (oldId != null) {
+        remove(oldId.toString(), sbase);
+      }
+      if (newId != null) {
+        add(newId.toString(), sbase);
+      }
+    }
+  }
+
+  /**
+   * Replaces the previous meta identifier of the given element with the new
+   * one.
+   * 
+   * @param sbase
+   * @param oldMetaId
+   * @param newMetaId
+   */
+  private synchronized void updateMetaId(SBase sbase, Object oldMetaId, Object newMetaId) {
+    if (built) {
+      if ((oldMetaId != null) && (metaIds.get(oldMetaId.toString()) == sbase)) {
+        metaIds.remove(oldMetaId.toString());
+      }
+      if (newMetaId != null) {
+        metaIds.put(newMetaId.toString(), sbase);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeAdded(javax.swing.tree.TreeNode)
+   */
+  @Override
+  public synchronized void nodeAdded(TreeNode node) {
+    if (built && !(node instanceof ASTNode)) {
+      update(node, true);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeRemoved(org.sbml.jsbml.util.TreeNodeRemovedEvent)
+   */
+  @Override
+  public synchronized void nodeRemoved(TreeNodeRemovedEvent event) {
+    if (built && !(event.getSource() instanceof ASTNode)) {
+      update(event.getSource(), false);
+    }
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util;
+
+import java.io.Serializable;
+
+import org.sbml.jsbml.SBMLDocument;
+
+/**
+ * Creates the meta identifiers that {@link SBMLDocument#nextMetaId()}
+ * returns.
+ * 
+ * @since 1.5
+ * @see SBMLDocument#setMetaIdGenerator(MetaIdGenerator)
+ */
+public interface MetaIdGenerator extends Serializable {
+
+  /**
+   * Returns a valid meta identifier that is not yet used by any element of
+   * the given {@link SBMLDocument}.
+   * 
+   * @param doc the document in which the meta identifier will be used
+   * @return a meta identifier that is not yet used in the document.
+   */
+  public String nextMetaId(SBMLDocument doc);
+
+}
@@ -0,0 +1,781 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ * 
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.tree.TreeNode;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.Assignment;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.CompartmentalizedSBase;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.LocalParameter;
+import org.sbml.jsbml.MathContainer;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.SBaseWithUnit;
+import org.sbml.jsbml.SimpleSpeciesReference;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.UnitDefinition;
+
+/**
+ * Indexes the references to the identifiers of the SId and UnitSId
+ * namespaces within an {@link SBMLDocument}, so that all the places where an
+ * element is used can be found without visiting all the math of the
+ * document.
+ * 
+ * <p>Two kinds of references to SIds are indexed: the {@link ASTNode}s that
+ * refer to a variable or call a {@link FunctionDefinition}, and the
+ * attributes of the elements that refer to another element, i.e., the
+ * species of the {@link SimpleSpeciesReference}s, the compartment of the
+ * {@link CompartmentalizedSBase}s, the variable of the {@link Assignment}s,
+ * the outside of the {@link Compartment}s and the conversion factor of the
+ * {@link Species} and of the {@link Model}. The references to the
+ * {@link UnitDefinition}s are kept apart, as UnitSIds have their own
+ * namespace: the units of the numbers in the math and the unit attributes of
+ * the elements, such as the units of the {@link SBaseWithUnit}s, the
+ * substance and spatial size units of the {@link Species} or the default
+ * units of the {@link Model}. The references defined by the package
+ * extensions are not indexed, except for the compartments.</p>
+ * 
+ * <p>The index is built the first time it is queried and is then kept up to
+ * date by listening to the changes of the {@link SBMLDocument}, as the
+ * {@link IdIndex}. The methods of this class are synchronized, so that the
+ * index can be queried from several threads, as long as the
+ * {@link SBMLDocument} is not modified at the same time.</p>
+ * 
+ * @since 1.5
+ * @see SBMLDocument#getReferenceIndex()
+ */
+public class ReferenceIndex implements TreeNodeChangeListener {
+
+  /**
+   * The names of the properties of an {@link SBase} that refer to another
+   * element.
+   */
+  private static final Set<String> REFERENCE_PROPERTIES = new HashSet<String>();
+
+  /**
+   * The names of the properties of an {@link ASTNode} that can change the
+   * identifier it refers to.
+   */
+  private static final Set<String> MATH_PROPERTIES = new HashSet<String>();
+
+  static {
+    Collections.addAll(REFERENCE_PROPERTIES, TreeNodeChangeEvent.species,
+      TreeNodeChangeEvent.compartment, TreeNodeChangeEvent.variable,
+      TreeNodeChangeEvent.outside, TreeNodeChangeEvent.conversionFactor,
+      TreeNodeChangeEvent.units, TreeNodeChangeEvent.substanceUnits,
+      TreeNodeChangeEvent.timeUnits, TreeNodeChangeEvent.volumeUnits,
+      TreeNodeChangeEvent.areaUnits, TreeNodeChangeEvent.lengthUnits,
+      TreeNodeChangeEvent.extentUnits, TreeNodeChangeEvent.spatialSizeUnits);
+    Collections.addAll(MATH_PROPERTIES, TreeNodeChangeEvent.name,
+      TreeNodeChangeEvent.type, TreeNodeChangeEvent.variable,
+      TreeNodeChangeEvent.units);
+  }
+
+  /**
+   * The {@link SBMLDocument} whose references are indexed.
+   */
+  private final SBMLDocument doc;
+
+  /**
+   * The {@link ASTNode}s and {@link SBase}s that refer to each identifier.
+   */
+  private final Map<String, Set<TreeNode>> referrers = new HashMap<String, Set<TreeNode>>();
+
+  /**
+   * The identifiers each indexed {@link ASTNode} or {@link SBase} refers to.
+   */
+  private final Map<TreeNode, List<String>> references = new IdentityHashMap<TreeNode, List<String>>();
+
+  /**
+   * The {@link ASTNode}s and {@link SBase}s that refer to each unit
+   * identifier.
+   */
+  private final Map<String, Set<TreeNode>> unitReferrers = new HashMap<String, Set<TreeNode>>();
+
+  /**
+   * The unit identifiers each indexed {@link ASTNode} or {@link SBase} refers
+   * to.
+   */
+  private final Map<TreeNode, List<String>> unitReferences = new IdentityHashMap<TreeNode, List<String>>();
+
+  /**
+   * Whether the whole document has been indexed.
+   */
+  private boolean built;
+
+  /**
+   * Creates an index for the given {@link SBMLDocument} and registers it as
+   * shared {@link TreeNodeChangeListener} of the {@link SBMLDocument}, which
+   * is notified of the changes of all its elements.
+   * 
+   * @param doc
+   */
+  public ReferenceIndex(SBMLDocument doc) {
+    this.doc = doc;
+    doc.addSharedTreeNodeChangeListener(this);
+  }
+
+  /**
+   * Returns all the {@link ASTNode}s and {@link SBase}s that refer to the
+   * given identifier, in all the models of the document and without taking
+   * the {@link LocalParameter}s into account.
+   * 
+   * @param id
+   * @return the {@link ASTNode}s and {@link SBase}s that refer to the given
+   *         identifier, possibly empty.
+   */
+  public synchronized List<TreeNode> getReferences(String id) {
+    build();
+    Set<TreeNode> set = referrers.get(id);
+    if (set == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<TreeNode>(set);
+  }
+
+  /**
+   * Returns all the {@link ASTNode}s and {@link SBase}s that refer to the
+   * given unit identifier, in all the models of the document.
+   * 
+   * @param unitId
+   * @return the {@link ASTNode}s and {@link SBase}s that refer to the given
+   *         unit identifier, possibly empty.
+   */
+  public synchronized List<TreeNode> getUnitReferences(String unitId) {
+    build();
+    Set<TreeNode> set = unitReferrers.get(unitId);
+    if (set == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<TreeNode>(set);
+  }
+
+  /**
+   * Returns the {@link ASTNode}s and {@link SBase}s that refer to the given
+   * element. Only the references within the scope of the element are
+   * returned, see {@link IdIndex#getScope(SBase)}: the references found in
+   * other models or hidden by a {@link LocalParameter} with the same
+   * identifier are left out. For a {@link UnitDefinition}, the references to
+   * its unit identifier within its {@link Model} are returned.
+   * 
+   * @param target
+   * @return the {@link ASTNode}s and {@link SBase}s that refer to the given
+   *         element, possibly empty.
+   */
+  public synchronized List<TreeNode> getReferences(SBase target) {
+    build();
+    List<TreeNode> list = new ArrayList<TreeNode>();
+    if (target instanceof UnitDefinition) {
+      Set<TreeNode> set = target.isSetId() ? unitReferrers.get(target.getId()) : null;
+      if (set != null) {
+        Model model = target.getModel();
+        for (TreeNode node : set) {
+          SBase sbase = (node instanceof ASTNode) ? ((ASTNode) node).getParentSBMLObject() : (SBase) node;
+          if ((sbase != null) && (sbase.getModel() == model)) {
+            list.add(node);
+          }
+        }
+      }
+      return list;
+    }
+    Set<TreeNode> set = target.isSetId() ? referrers.get(target.getId()) : null;
+    if (set == null) {
+      return list;
+    }
+    SBase scope = IdIndex.getScope(target);
+    boolean local = target instanceof LocalParameter;
+    for (TreeNode node : set) {
+      if (node instanceof ASTNode) {
+        MathContainer container = ((ASTNode) node).getParentSBMLObject();
+        if ((container == null)
+            || ((container instanceof FunctionDefinition) && (((ASTNode) node).getType() != ASTNode.Type.FUNCTION))) {
+          // the names in a function definition are its arguments
+          continue;
+        }
+        if (local) {
+          if (container == scope) {
+            list.add(node);
+          }
+        } else if ((container.getModel() == scope) && !((container instanceof KineticLaw)
+            && (((KineticLaw) container).getLocalParameter(target.getId()) != null))) {
+          list.add(node);
+        }
+      } else if (!local && (((SBase) node).getModel() == scope)) {
+        list.add(node);
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Returns {@code true} if the given element is referred to by some math or
+   * some element of its scope, i.e., if removing it would leave dangling
+   * references.
+   * 
+   * @param target
+   * @return {@code true} if some {@link ASTNode} or {@link SBase} refers to
+   *         the given element.
+   */
+  public boolean isReferenced(SBase target) {
+    return !getReferences(target).isEmpty();
+  }
+
+  /**
+   * Makes all the references to the given element, see
+   * {@link #getReferences(SBase)}, refer to the given new identifier. The
+   * identifier of the element itself is not changed, so that this method is
+   * typically called before setting the new identifier of the element.
+   * 
+   * @param target
+   * @param newId
+   * @return the number of {@link ASTNode}s and {@link SBase}s that have been
+   *         changed.
+   */
+  public synchronized int replaceReferences(SBase target, String newId) {
+    String oldId = target.getId();
+    List<TreeNode> list = getReferences(target);
+    boolean unit = target instanceof UnitDefinition;
+    for (TreeNode node : list) {
+      if (unit) {
+        if (node instanceof ASTNode) {
+          setUnits((ASTNode) node, newId);
+        } else {
+          replaceUnitReferences((SBase) node, oldId, newId);
+        }
+      } else if (node instanceof ASTNode) {
+        ((ASTNode) node).setName(newId);
+      } else {
+        replaceReferences((SBase) node, oldId, newId);
+      }
+    }
+    return list.size();
+  }
+
+  /**
+   * Replaces, in a single traversal of the given subtree, every reference
+   * to an identifier that is a key of the given map by the associated value.
+   * This does not need an index, and is meant for elements that are not part
+   * of an {@link SBMLDocument} yet, such as a copy of a model whose
+   * identifiers have all been prefixed. As in {@link #getReferences(SBase)},
+   * the arguments of the {@link FunctionDefinition}s and the
+   * {@link LocalParameter}s hide the identifiers of the same name.
+   * 
+   * @param root
+   * @param newIds
+   *        the new identifier of each renamed element
+   * @return the number of {@link ASTNode}s and {@link SBase}s that have been
+   *         changed.
+   * @see #replaceReferences(TreeNode, Map, Map)
+   */
+  public static int replaceReferences(TreeNode root, Map<String, String> newIds) {
+    return replaceReferences(root, newIds, Collections.<String, String>emptyMap());
+  }
+
+  /**
+   * Replaces, in a single traversal of the given subtree, every reference
+   * to an identifier or to a unit identifier that is a key of the
+   * corresponding map by the associated value, as
+   * {@link #replaceReferences(TreeNode, Map)}.
+   * 
+   * @param root
+   * @param newIds
+   *        the new identifier of each renamed element
+   * @param newUnitIds
+   *        the new identifier of each renamed {@link UnitDefinition}
+   * @return the number of references that have been changed.
+   */
+  public static int replaceReferences(TreeNode root, Map<String, String> newIds, Map<String, String> newUnitIds) {
+    if (newIds.isEmpty() && newUnitIds.isEmpty()) {
+      return 0;
+    }
+    int count = 0;
+    List<String> ids = new ArrayList<String>(1);
+    List<TreeNode> stack = new ArrayList<TreeNode>();
+    stack.add(root);
+    while (!stack.isEmpty()) {
+      TreeNode node = stack.remove(stack.size() - 1);
+      readLazyMath(node);
+      if (node instanceof ASTNode) {
+        ASTNode math = (ASTNode) node;
+        String newId = ((math.getType() == ASTNode.Type.NAME) || (math.getType() == ASTNode.Type.FUNCTION))
+            && (math.getName() != null) ? newIds.get(math.getName()) : null;
+        if ((newId != null) && !isHidden(math)) {
+          math.setName(newId);
+          count++;
+        }
+        String newUnitId = math.isSetUnits() ? newUnitIds.get(math.getUnits()) : null;
+        if (newUnitId != null) {
+          setUnits(math, newUnitId);
+          count++;
+        }
+      } else if (node instanceof SBase) {
+        ids.clear();
+        collectReferences((SBase) node, ids);
+        for (String id : ids) {
+          String newId = newIds.get(id);
+          if (newId != null) {
+            replaceReferences((SBase) node, id, newId);
+            count++;
+          }
+        }
+        ids.clear();
+        collectUnitReferences((SBase) node, ids);
+        for (String id : ids) {
+          String newId = newUnitIds.get(id);
+          if (newId != null) {
+            replaceUnitReferences((SBase) node, id, newId);
+            count++;
+          }
+        }
+      }
+      for (int i = node.getChildCount() - 1; i >= 0; i--) {
+        stack.add(node.getChildAt(i));
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Parses the math of the given node if it is still kept as a
+   * {@link String} by lazy loading, as it is only part of the children of
+   * the node once it has been parsed.
+   * 
+   * @param node
+   * @see org.sbml.jsbml.xml.stax.SBMLReader#setLazyLoading(boolean)
+   */
+  private static void readLazyMath(TreeNode node) {
+    if ((node instanceof MathContainer) && ((MathContainer) node).isSetMath()) {
+      ((MathContainer) node).getMath();
+    }
+  }
+
+  /**
+   * Returns {@code true} if the name of the given {@link ASTNode} is an
+   * argument of its {@link FunctionDefinition} or a {@link LocalParameter}
+   * of its {@link KineticLaw}.
+   * 
+   * @param math
+   * @return {@code true} if the name of the given {@link ASTNode} does not
+   *         refer to a global identifier.
+   */
+  private static boolean isHidden(ASTNode math) {
+    MathContainer container = math.getParentSBMLObject();
+    if (container instanceof FunctionDefinition) {
+      return math.getType() != ASTNode.Type.FUNCTION;
+    }
+    return (container instanceof KineticLaw)
+        && (((KineticLaw) container).getLocalParameter(math.getName()) != null);
+  }
+
+  /**
+   * Unregisters this index from the {@link SBMLDocument} and removes all its
+   * entries.
+   */
+  public synchronized void detach() {
+    doc.removeSharedTreeNodeChangeListener(this);
+    referrers.clear();
+    references.clear();
+    unitReferrers.clear();
+    unitReferences.clear();
+    built = false;
+  }
+
+  /**
+   * Collects the identifiers the attributes of the given element refer to.
+   * 
+   * @param sbase
+   * @param ids
+   */
+  private static void collectReferences(SBase sbase, List<String> ids) {
+    if ((sbase instanceof SimpleSpeciesReference) && ((SimpleSpeciesReference) sbase).isSetSpecies()) {
+      ids.add(((SimpleSpeciesReference) sbase).getSpecies());
+    }
+    if ((sbase instanceof CompartmentalizedSBase) && ((CompartmentalizedSBase) sbase).isSetCompartment()) {
+      ids.add(((CompartmentalizedSBase) sbase).getCompartment());
+    }
+    if ((sbase instanceof Assignment) && ((Assignment) sbase).isSetVariable()) {
+      ids.add(((Assignment) sbase).getVariable());
+    }
+    if ((sbase instanceof Compartment) && ((Compartment) sbase).isSetOutside()) {
+      ids.add(((Compartment) sbase).getOutside());
+    }
+    if ((sbase instanceof Species) && ((Species) sbase).isSetConversionFactor()) {
+      ids.add(((Species) sbase).getConversionFactor());
+    } else if ((sbase instanceof Model) && ((Model) sbase).isSetConversionFactor()) {
+      ids.add(((Model) sbase).getConversionFactor());
+    }
+  }
+
+  /**
+   * Replaces the given identifier in the attributes of the given element
+   * that refer to it.
+   * 
+   * @param sbase
+   * @param oldId
+   * @param newId
+   */
+  @SuppressWarnings("deprecation")
+  private static void replaceReferences(SBase sbase, String oldId, String newId) {
+    if ((sbase instanceof SimpleSpeciesReference) && oldId.equals(((SimpleSpeciesReference) sbase).getSpecies())) {
+      ((SimpleSpeciesReference) sbase).setSpecies(newId);
+    }
+    if ((sbase instanceof CompartmentalizedSBase) && oldId.equals(((CompartmentalizedSBase) sbase).getCompartment())) {
+      ((CompartmentalizedSBase) sbase).setCompartment(newId);
+    }
+    if ((sbase instanceof Assignment) && oldId.equals(((Assignment) sbase).getVariable())) {
+      ((Assignment) sbase).setVariable(newId);
+    }
+    if ((sbase instanceof Compartment) && oldId.equals(((Compartment) sbase).getOutside())) {
+      ((Compartment) sbase).setOutside(newId);
+    }
+    if ((sbase instanceof Species) && oldId.equals(((Species) sbase).getConversionFactor())) {
+      ((Species) sbase).setConversionFactor(newId);
+    } else if ((sbase instanceof Model) && oldId.equals(((Model) sbase).getConversionFactor())) {
+      ((Model) sbase).setConversionFactor(newId);
+    }
+  }
+
+  /**
+   * Collects the unit identifiers the attributes of the given element refer
+   * to.
+   * 
+   * @param sbase
+   * @param ids
+   */
+  @SuppressWarnings("deprecation")
+  private static void collectUnitReferences(SBase sbase, List<String> ids) {
+    if ((sbase instanceof SBaseWithUnit) && ((SBaseWithUnit) sbase).isSetUnits()) {
+      ids.add(((SBaseWithUnit) sbase).getUnits());
+    }
+    if (sbase instanceof Species) {
+      if (((Species) sbase).isSetSpatialSizeUnits()) {
+        ids.add(((Species) sbase).getSpatialSizeUnits());
+      }
+    } else if (sbase instanceof KineticLaw) {
+      KineticLaw kineticLaw = (KineticLaw) sbase;
+      if (kineticLaw.isSetSubstanceUnits()) {
+        ids.add(kineticLaw.getSubstanceUnits());
+      }
+      if (kineticLaw.isSetTimeUnits()) {
+        ids.add(kineticLaw.getTimeUnits());
+      }
+    } else if (sbase instanceof Model) {
+      Model model = (Model) sbase;
+      if (model.isSetSubstanceUnits()) {
+        ids.add(model.getSubstanceUnits());
+      }
+      if (model.isSetTimeUnits()) {
+        ids.add(model.getTimeUnits());
+      }
+      if (model.isSetVolumeUnits()) {
+        ids.add(model.getVolumeUnits());
+      }
+      if (model.isSetAreaUnits()) {
+        ids.add(model.getAreaUnits());
+      }
+      if (model.isSetLengthUnits()) {
+        ids.add(model.getLengthUnits());
+      }
+      if (model.isSetExtentUnits()) {
+        ids.add(model.getExtentUnits());
+      }
+    }
+  }
+
+  /**
+   * Replaces the given unit identifier in the attributes of the given element
+   * that refer to it, allowing identifiers that are not defined yet.
+   * 
+   * @param sbase
+   * @param oldId
+   * @param newId
+   */
+  private static void replaceUnitReferences(SBase sbase, String oldId, String newId) {
+    boolean allowed = allowInvalidSBML(sbase);
+    try {
+      setUnitReferences(sbase, oldId, newId);
+    } finally {
+      if (allowed) {
+        sbase.removeUserObject(JSBML.ALLOW_INVALID_SBML);
+      }
+    }
+  }
+
+  /**
+   * Sets the attributes of the given element that refer to the given unit
+   * identifier.
+   * 
+   * @param sbase
+   * @param oldId
+   * @param newId
+   */
+  @SuppressWarnings("deprecation")
+  private static void setUnitReferences(SBase sbase, String oldId, String newId) {
+    if ((sbase instanceof SBaseWithUnit) && ((SBaseWithUnit) sbase).isSetUnits()
+        && oldId.equals(((SBaseWithUnit) sbase).getUnits())) {
+      ((SBaseWithUnit) sbase).setUnits(newId);
+    }
+    if (sbase instanceof Species) {
+      if (oldId.equals(((Species) sbase).getSpatialSizeUnits())) {
+        ((Species) sbase).setSpatialSizeUnits(newId);
+      }
+    } else if (sbase instanceof KineticLaw) {
+      KineticLaw kineticLaw = (KineticLaw) sbase;
+      if (kineticLaw.isSetSubstanceUnits() && oldId.equals(kineticLaw.getSubstanceUnits())) {
+        kineticLaw.setSubstanceUnits(newId);
+      }
+      if (kineticLaw.isSetTimeUnits() && oldId.equals(kineticLaw.getTimeUnits())) {
+        kineticLaw.setTimeUnits(newId);
+      }
+    } else if (sbase instanceof Model) {
+      Model model = (Model) sbase;
+      if (oldId.equals(model.getSubstanceUnits())) {
+        model.setSubstanceUnits(newId);
+      }
+      if (oldId.equals(model.getTimeUnits())) {
+        model.setTimeUnits(newId);
+      }
+      if (oldId.equals(model.getVolumeUnits())) {
+        model.setVolumeUnits(newId);
+      }
+      if (oldId.equals(model.getAreaUnits())) {
+        model.setAreaUnits(newId);
+      }
+      if (oldId.equals(model.getLengthUnits())) {
+        model.setLengthUnits(newId);
+      }
+      if (oldId.equals(model.getExtentUnits())) {
+        model.setExtentUnits(newId);
+      }
+    }
+  }
+
+  /**
+   * Sets the units of the given number.
+   * 
+   * @param math
+   * @param unitId
+   * @see #allowInvalidSBML(TreeNodeWithChangeSupport)
+   */
+  private static void setUnits(ASTNode math, String unitId) {
+    boolean allowed = allowInvalidSBML(math);
+    try {
+      math.setUnits(unitId);
+    } finally {
+      if (allowed) {
+        math.removeUserObject(JSBML.ALLOW_INVALID_SBML);
+      }
+    }
+  }
+
+  /**
+   * Allows the given node to refer to a unit identifier that no
+   * {@link UnitDefinition} has yet, as the references are typically replaced
+   * before renaming the {@link UnitDefinition}.
+   * 
+   * @param node
+   * @return {@code true} if {@link JSBML#ALLOW_INVALID_SBML} has been added
+   *         to the user objects of the node and has to be removed afterwards.
+   */
+  private static boolean allowInvalidSBML(TreeNodeWithChangeSupport node) {
+    if (node.isSetUserObjects() && node.userObjectKeySet().contains(JSBML.ALLOW_INVALID_SBML)) {
+      return false;
+    }
+    node.putUserObject(JSBML.ALLOW_INVALID_SBML, Boolean.TRUE);
+    return true;
+  }
+
+  /**
+   * Indexes the whole {@link SBMLDocument} if this has not been done yet.
+   */
+  private void build() {
+    if (!built) {
+      built = true;
+      update(doc, true);
+    }
+  }
+
+  /**
+   * Adds or removes the references of the given node, but not those of its
+   * children.
+   * 
+   * @param node
+   * @param add
+   */
+  private void updateNode(TreeNode node, boolean add) {
+    unindex(node, references, referrers);
+    unindex(node, unitReferences, unitReferrers);
+    if (!add) {
+      return;
+    }
+    List<String> ids = new ArrayList<String>(1);
+    List<String> unitIds = new ArrayList<String>(1);
+    if (node instanceof ASTNode) {
+      ASTNode math = (ASTNode) node;
+      if (((math.getType() == ASTNode.Type.NAME) || (math.getType() == ASTNode.Type.FUNCTION))
+          && (math.getName() != null)) {
+        ids.add(math.getName());
+      }
+      if (math.isSetUnits()) {
+        unitIds.add(math.getUnits());
+      }
+    } else if (node instanceof SBase) {
+      collectReferences((SBase) node, ids);
+      collectUnitReferences((SBase) node, unitIds);
+    }
+    index(node, ids, references, referrers);
+    index(node, unitIds, unitReferences, unitReferrers);
+  }
+
+  /**
+   * Adds the given references of the given node to the given maps.
+   * 
+   * @param node
+   * @param ids the identifiers the node refers to
+   * @param references
+   * @param referrers
+   */
+  private static void index(TreeNode node, List<String> ids,
+    Map<TreeNode, List<String>> references, Map<String, Set<TreeNode>> referrers) {
+    if (!ids.isEmpty()) {
+      references.put(node, ids);
+      for (String id : ids) {
+        Set<TreeNode> set = referrers.get(id);
+        if (set == null) {
+          set = Collections.newSetFromMap(new IdentityHashMap<TreeNode, Boolean>());
+          referrers.put(id, set);
+        }
+        set.add(node);
+      }
+    }
+  }
+
+  /**
+   * Removes the references of the given node from the given maps.
+   * 
+   * @param node
+   * @param references
+   * @param referrers
+   */
+  private static void unindex(TreeNode node,
+    Map<TreeNode, List<String>> references, Map<String, Set<TreeNode>> referrers) {
+    List<String> ids = references.remove(node);
+    if (ids != null) {
+      for (String id : ids) {
+        Set<TreeNode> set = referrers.get(id);
+        if (set != null) {
+          set.remove(node);
+          if (set.isEmpty()) {
+            referrers.remove(id);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds or removes the references of all the nodes of the given subtree.
+   * 
+   * @param node
+   * @param add
+   */
+  private void update(TreeNode node, boolean add) {
+    if (add) {
+      readLazyMath(node);
+    }
+    updateNode(node, add);
+    for (int i = 0; i < node.getChildCount(); i++) {
+      update(node.getChildAt(i), add);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+   */
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    // checked before locking, as the validators change the user objects of
+    // all the elements
+    Object source = evt.getSource();
+    String property = evt.getPropertyName();
+    if ((source instanceof ASTNode) ? MATH_PROPERTIES.contains(property)
+        : REFERENCE_PROPERTIES.contains(property) || TreeNodeChangeEvent.math.equals(property)) {
+      update(evt);
+    }
+  }
+
+  /**
+   * Updates the references changed by the given event.
+   * 
+   * @param evt
+   */
+  private synchronized void update(PropertyChangeEvent evt) {
+    if (!built) {
+      return;
+    }
+    if (TreeNodeChangeEvent.math.equals(evt.getPropertyName())) {
+      if (evt.getOldValue() instanceof ASTNode) {
+        update((ASTNode) evt.getOldValue(), false);
+      }
+      if (evt.getNewValue() instanceof ASTNode) {
+        update((ASTNode) evt.getNewValue(), true);
+      }
+    } else if (evt.getSource() instanceof TreeNode) {
+      updateNode((TreeNode) evt.getSource(), true);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeAdded(javax.swing.tree.TreeNode)
+   */
+  @Override
+  public synchronized void nodeAdded(TreeNode node) {
+    if (built) {
+      update(node, true);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeRemoved(org.sbml.jsbml.util.TreeNodeRemovedEvent)
+   */
+  @Override
+  public synchronized void nodeRemoved(TreeNodeRemovedEvent event) {
+    if (built) {
+      update(event.getSource(), false);
+    }
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util;
+
+import java.text.MessageFormat;
+
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.validator.SyntaxChecker;
+
+/**
+ * Creates the meta identifiers by appending a counter to a prefix, for
+ * instance {@code metaid_1}, {@code metaid_2}, and so on. Compared to the
+ * {@link UUIDMetaIdGenerator}, no random numbers are needed, which makes a
+ * difference when meta identifiers are created for many elements.
+ * 
+ * <p>The values already used in the document are skipped, so documents read
+ * from files that contain meta identifiers with the same prefix are
+ * supported. The counter belongs to the generator, which should therefore
+ * not be shared between documents if the meta identifiers have to be
+ * consecutive. A copy of an {@link SBMLDocument} gets a copy of its
+ * generator.</p>
+ * 
+ * @since 1.5
+ */
+public class SequentialMetaIdGenerator implements MetaIdGenerator {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 8311562839424722715L;
+
+  /**
+   * The prefix used by default.
+   */
+  public static final String DEFAULT_PREFIX = "metaid_";
+
+  /**
+   * 
+   */
+  private final String prefix;
+
+  /**
+   * The number of the last meta identifier created.
+   */
+  private long counter;
+
+  /**
+   * Creates a generator that uses the {@link #DEFAULT_PREFIX}.
+   */
+  public SequentialMetaIdGenerator() {
+    this(DEFAULT_PREFIX);
+  }
+
+  /**
+   * @param prefix the prefix of the meta identifiers
+   * @throws IllegalArgumentException if the prefix followed by a number is
+   *         not a valid meta identifier.
+   */
+  public SequentialMetaIdGenerator(String prefix) {
+    if ((prefix == null) || !SyntaxChecker.isValidMetaId(prefix + '1')) {
+      throw new IllegalArgumentException(MessageFormat.format(
+        "The prefix ''{0}'' cannot be used for meta identifiers.", prefix));
+    }
+    this.prefix = prefix;
+  }
+
+  /**
+   * Creates a copy of the given generator, which continues from the same
+   * counter.
+   * 
+   * @param generator the generator to copy
+   */
+  public SequentialMetaIdGenerator(SequentialMetaIdGenerator generator) {
+    prefix = generator.getPrefix();
+    counter = generator.getCounter();
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#clone()
+   */
+  @Override
+  public SequentialMetaIdGenerator clone() {
+    return new SequentialMetaIdGenerator(this);
+  }
+
+  /**
+   * @return the number of the last meta identifier created.
+   */
+  public synchronized long getCounter() {
+    return counter;
+  }
+
+  /**
+   * @return the prefix of the meta identifiers.
+   */
+  public String getPrefix() {
+    return prefix;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.MetaIdGenerator#nextMetaId(org.sbml.jsbml.SBMLDocument)
+   */
+  @Override
+  public synchronized String nextMetaId(SBMLDocument doc) {
+    String currId;
+    do {
+      currId = prefix + (++counter);
+    } while (doc.containsMetaId(currId));
+    return currId;
+  }
+
+}
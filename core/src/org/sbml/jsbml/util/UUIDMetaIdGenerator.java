@@ -0,0 +1,56 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util;
+
+import java.util.UUID;
+
+import org.sbml.jsbml.SBMLDocument;
+
+/**
+ * Creates random meta identifiers from {@link UUID}s. This is the default
+ * {@link MetaIdGenerator} of an {@link SBMLDocument}.
+ * 
+ * @since 1.5
+ */
+public class UUIDMetaIdGenerator implements MetaIdGenerator {
+
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -2180467322781524937L;
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.MetaIdGenerator#nextMetaId(org.sbml.jsbml.SBMLDocument)
+   */
+  @Override
+  public String nextMetaId(SBMLDocument doc) {
+    String currId;
+    do {
+      currId = UUID.randomUUID().toString();
+      if (Character.isDigit(currId.charAt(0))) {
+        // Add an underscore at the beginning of the new metaid only if
+        // necessary.
+        currId = '_' + currId;
+      }
+    } while (doc.containsMetaId(currId));
+    return currId;
+  }
+
+}
@@ -0,0 +1,580 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.compilers;
+
+import java.text.MessageFormat;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.util.Maths;
+
+/**
+ * A {@link DoubleASTNodeCompiler} that implements all the mathematical
+ * operations. Subclasses only have to provide the values of the model
+ * elements, the simulation time and, if needed, the delay and rateOf
+ * functions.
+ * 
+ * <p>Calls to {@link FunctionDefinition}s are evaluated by binding the values
+ * of the arguments to the names of the arguments of the function. The values
+ * are kept on an array used as a stack, which only grows on the first
+ * evaluations, so that the evaluation of a function call does not create any
+ * object either. Instances of this class are therefore not thread-safe.</p>
+ * 
+ * @since 1.5
+ */
+public abstract class AbstractDoubleASTNodeCompiler implements DoubleASTNodeCompiler {
+
+  /**
+   * The names of the arguments of the functions being evaluated.
+   */
+  private String[] argumentNames = new String[16];
+
+  /**
+   * The values of the arguments of the functions being evaluated.
+   */
+  private double[] argumentValues = new double[16];
+
+  /**
+   * The number of arguments on the stack.
+   */
+  private int stackSize;
+
+  /**
+   * The index of the first argument of the function being evaluated.
+   */
+  private int frameStart;
+
+  /**
+   * The index after the last argument of the function being evaluated.
+   */
+  private int frameEnd;
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#abs(double)
+   */
+  @Override
+  public double abs(double value) {
+    return Math.abs(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arccos(double)
+   */
+  @Override
+  public double arccos(double value) {
+    return Math.acos(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arccosh(double)
+   */
+  @Override
+  public double arccosh(double value) {
+    return Maths.arccosh(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arccot(double)
+   */
+  @Override
+  public double arccot(double value) {
+    return Maths.arccot(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arccoth(double)
+   */
+  @Override
+  public double arccoth(double value) {
+    return Maths.arccoth(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arccsc(double)
+   */
+  @Override
+  public double arccsc(double value) {
+    return Maths.arccsc(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arccsch(double)
+   */
+  @Override
+  public double arccsch(double value) {
+    return Maths.arccsch(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arcsec(double)
+   */
+  @Override
+  public double arcsec(double value) {
+    return Maths.arcsec(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arcsech(double)
+   */
+  @Override
+  public double arcsech(double value) {
+    return Maths.arcsech(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arcsin(double)
+   */
+  @Override
+  public double arcsin(double value) {
+    return Math.asin(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arcsinh(double)
+   */
+  @Override
+  public double arcsinh(double value) {
+    return Maths.arcsinh(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arctan(double)
+   */
+  @Override
+  public double arctan(double value) {
+    return Math.atan(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#arctanh(double)
+   */
+  @Override
+  public double arctanh(double value) {
+    return Maths.arctanh(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#ceiling(double)
+   */
+  @Override
+  public double ceiling(double value) {
+    return Math.ceil(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#compile(java.lang.String)
+   */
+  @Override
+  public double compile(String name) throws SBMLException {
+    for (int i = frameStart; i < frameEnd; i++) {
+      if (argumentNames[i].equals(name)) {
+        return argumentValues[i];
+      }
+    }
+    throw new SBMLException(MessageFormat.format(
+      "Cannot evaluate the unknown identifier ''{0}''.", name));
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#cos(double)
+   */
+  @Override
+  public double cos(double value) {
+    return Math.cos(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#cosh(double)
+   */
+  @Override
+  public double cosh(double value) {
+    return Math.cosh(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#cot(double)
+   */
+  @Override
+  public double cot(double value) {
+    return Maths.cot(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#coth(double)
+   */
+  @Override
+  public double coth(double value) {
+    return Maths.coth(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#csc(double)
+   */
+  @Override
+  public double csc(double value) {
+    return Maths.csc(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#csch(double)
+   */
+  @Override
+  public double csch(double value) {
+    return Maths.csch(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#delay(java.lang.String, org.sbml.jsbml.ASTNode, org.sbml.jsbml.ASTNode, java.lang.String)
+   */
+  @Override
+  public double delay(String delayName, ASTNode x, ASTNode delay,
+    String timeUnits) throws SBMLException {
+    throw new SBMLException(MessageFormat.format(
+      "{0} does not support the delay function.", getClass().getSimpleName()));
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#eq(double, double)
+   */
+  @Override
+  public boolean eq(double left, double right) {
+    return left == right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#exp(double)
+   */
+  @Override
+  public double exp(double value) {
+    return Math.exp(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#factorial(double)
+   */
+  @Override
+  public double factorial(double value) {
+    return Maths.factorial((int) Math.round(value));
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#floor(double)
+   */
+  @Override
+  public double floor(double value) {
+    return Math.floor(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#frac(double, double)
+   */
+  @Override
+  public double frac(double numerator, double denominator) {
+    return numerator / denominator;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#function(org.sbml.jsbml.FunctionDefinition, org.sbml.jsbml.ASTNode)
+   */
+  @Override
+  public double function(FunctionDefinition functionDefinition, ASTNode call)
+      throws SBMLException {
+    int argumentCount = functionDefinition.getArgumentCount();
+    if (call.getChildCount() != argumentCount) {
+      throw new SBMLException(MessageFormat.format(
+        "The function ''{0}'' expects {1,number,integer} arguments but {2,number,integer} are given.",
+        functionDefinition.getId(), argumentCount, call.getChildCount()));
+    }
+
+    // The arguments are evaluated in the scope of the caller and reserved one
+    // by one, so that the function calls they contain use the stack above them.
+    int callerStart = frameStart;
+    int callerEnd = frameEnd;
+    int start = stackSize;
+    for (int i = 0; i < argumentCount; i++) {
+      double value = call.getChild(i).compile(this);
+      if (stackSize == argumentValues.length) {
+        growStack();
+      }
+      argumentNames[stackSize] = functionDefinition.getArgument(i).getName();
+      argumentValues[stackSize++] = value;
+    }
+
+    frameStart = start;
+    frameEnd = stackSize;
+    try {
+      return functionDefinition.getBody().compile(this);
+    } finally {
+      frameStart = callerStart;
+      frameEnd = callerEnd;
+      stackSize = start;
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#function(java.lang.String, org.sbml.jsbml.ASTNode)
+   */
+  @Override
+  public double function(String functionDefinitionName, ASTNode call)
+      throws SBMLException {
+    throw new SBMLException(MessageFormat.format(
+      "Cannot evaluate the call to the undefined function ''{0}''.", functionDefinitionName));
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#geq(double, double)
+   */
+  @Override
+  public boolean geq(double left, double right) {
+    return left >= right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#getConstantAvogadro(java.lang.String)
+   */
+  @Override
+  public double getConstantAvogadro(String name) {
+    return Maths.AVOGADRO_L3V1;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#getRateOf(org.sbml.jsbml.ASTNode)
+   */
+  @Override
+  public double getRateOf(ASTNode astNode) throws SBMLException {
+    throw new SBMLException(MessageFormat.format(
+      "{0} does not support the rateOf function.", getClass().getSimpleName()));
+  }
+
+  /**
+   * Doubles the capacity of the argument stack.
+   */
+  private void growStack() {
+    String[] names = new String[argumentNames.length * 2];
+    double[] values = new double[names.length];
+    System.arraycopy(argumentNames, 0, names, 0, stackSize);
+    System.arraycopy(argumentValues, 0, values, 0, stackSize);
+    argumentNames = names;
+    argumentValues = values;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#gt(double, double)
+   */
+  @Override
+  public boolean gt(double left, double right) {
+    return left > right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#leq(double, double)
+   */
+  @Override
+  public boolean leq(double left, double right) {
+    return left <= right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#ln(double)
+   */
+  @Override
+  public double ln(double value) {
+    return Math.log(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#log(double)
+   */
+  @Override
+  public double log(double value) {
+    return Math.log10(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#log(double, double)
+   */
+  @Override
+  public double log(double base, double value) {
+    return Maths.log(value, base);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#lt(double, double)
+   */
+  @Override
+  public boolean lt(double left, double right) {
+    return left < right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#max(double, double)
+   */
+  @Override
+  public double max(double left, double right) {
+    return Math.max(left, right);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#min(double, double)
+   */
+  @Override
+  public double min(double left, double right) {
+    return Math.min(left, right);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#minus(double, double)
+   */
+  @Override
+  public double minus(double left, double right) {
+    return left - right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#neq(double, double)
+   */
+  @Override
+  public boolean neq(double left, double right) {
+    return left != right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#plus(double, double)
+   */
+  @Override
+  public double plus(double left, double right) {
+    return left + right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#pow(double, double)
+   */
+  @Override
+  public double pow(double base, double exponent) {
+    return Math.pow(base, exponent);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#quotient(double, double)
+   */
+  @Override
+  public double quotient(double left, double right) {
+    return Math.floor(left / right);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#rem(double, double)
+   */
+  @Override
+  public double rem(double left, double right) {
+    return left % right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#root(double, double)
+   */
+  @Override
+  public double root(double rootExponent, double radiant) {
+    return Maths.root(radiant, rootExponent);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#sec(double)
+   */
+  @Override
+  public double sec(double value) {
+    return Maths.sec(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#sech(double)
+   */
+  @Override
+  public double sech(double value) {
+    return Maths.sech(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#sin(double)
+   */
+  @Override
+  public double sin(double value) {
+    return Math.sin(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#sinh(double)
+   */
+  @Override
+  public double sinh(double value) {
+    return Math.sinh(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#sqrt(double)
+   */
+  @Override
+  public double sqrt(double value) {
+    return Math.sqrt(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#tan(double)
+   */
+  @Override
+  public double tan(double value) {
+    return Math.tan(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#tanh(double)
+   */
+  @Override
+  public double tanh(double value) {
+    return Math.tanh(value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#times(double, double)
+   */
+  @Override
+  public double times(double left, double right) {
+    return left * right;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#uMinus(double)
+   */
+  @Override
+  public double uMinus(double value) {
+    return -value;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#unknownValue(org.sbml.jsbml.ASTNode)
+   */
+  @Override
+  public double unknownValue(ASTNode astNode) throws SBMLException {
+    throw new SBMLException(MessageFormat.format(
+      "Cannot evaluate math of type {0} to a number.", astNode.getType()));
+  }
+
+}
@@ -0,0 +1,423 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.compilers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The right-hand side of the system of ordinary differential equations
+ * defined by a {@link org.sbml.jsbml.Model}, compiled by an
+ * {@link ODESystemCompiler} into a flat, index-based form.
+ * 
+ * <p>The state vector contains the values of the species, compartments,
+ * parameters and species references whose value changes with time, in the
+ * order given by {@link #getStateIds()}. Species are represented by their
+ * amount if they only have substance units and by their concentration
+ * otherwise, that is, by the value they have in the math of the model. The
+ * rate of change of a species in concentration whose compartment size is
+ * changed by a rate rule includes the dilution by the compartment.</p>
+ * 
+ * <p>{@link #computeDerivatives(double, double[], double[])} works on arrays
+ * of {@code double} only and creates no object, so it can be called by an
+ * integrator on every step without touching the {@link org.sbml.jsbml.Model}.
+ * It keeps intermediate values in an internal array, so an instance must not
+ * be used by several threads at the same time; use
+ * {@link #CompiledODESystem(CompiledODESystem)} to create one instance per
+ * thread, which share the compiled expressions.</p>
+ * 
+ * @since 1.5
+ */
+public class CompiledODESystem {
+
+  /**
+   * The identifiers of all the values, the states first.
+   */
+  private final String[] ids;
+
+  /**
+   * The index of each identifier in {@link #values}.
+   */
+  private final Map<String, Integer> indices;
+
+  /**
+   * The number of state variables.
+   */
+  private final int stateCount;
+
+  /**
+   * The index of the flux of the first reaction.
+   */
+  private final int reactionStart;
+
+  /**
+   * The index of the first value that is neither a state nor computed by an
+   * assignment rule or a kinetic law.
+   */
+  private final int fixedStart;
+
+  /**
+   * The index of the time in {@link #values}.
+   */
+  private final int timeIndex;
+
+  /**
+   * The expressions computing the assignment rules and the reaction fluxes,
+   * sorted so that each one is evaluated after the values it depends on.
+   */
+  private final NumericExpression[] assignments;
+
+  /**
+   * The index in {@link #values} of the result of each element of
+   * {@link #assignments}.
+   */
+  private final int[] assignmentTargets;
+
+  /**
+   * The rate rule of each state, {@code null} for the states changed by
+   * reactions.
+   */
+  private final NumericExpression[] rates;
+
+  /**
+   * For each state, the index of the first entry of its row in the sparse
+   * stoichiometric matrix; the last element is the number of entries.
+   */
+  private final int[] rowStart;
+
+  /**
+   * The index in {@link #values} of the flux of the reaction of each entry
+   * of the stoichiometric matrix.
+   */
+  private final int[] fluxIndices;
+
+  /**
+   * The index in {@link #values} of the stoichiometry of each entry of the
+   * stoichiometric matrix, or -1 if the stoichiometry is given by
+   * {@link #stoichiometries}.
+   */
+  private final int[] stoichiometryIndices;
+
+  /**
+   * The stoichiometries of the species references without identifier, or 1 if
+   * the stoichiometry is given by {@link #stoichiometryIndices}, multiplied
+   * by -1 for reactants.
+   */
+  private final double[] stoichiometries;
+
+  /**
+   * The index in {@link #values} of the conversion factor of each entry of
+   * the stoichiometric matrix, or -1 if the species has none.
+   */
+  private final int[] conversionFactorIndices;
+
+  /**
+   * The coefficients of the stoichiometric matrix.
+   */
+  private final double[] coefficients;
+
+  /**
+   * For each state, the index in {@link #values} of the compartment size by
+   * which the rates of change of its reactions are divided, or -1. If the
+   * compartment is itself a state, the species is also diluted by the rate
+   * of change of the compartment.
+   */
+  private final int[] compartmentIndices;
+
+  /**
+   * The current values, in the order of {@link #ids} followed by the time.
+   */
+  private final double[] values;
+
+  /**
+   * The initial state.
+   */
+  private final double[] initialState;
+
+  /**
+   * Creates a new {@link CompiledODESystem}, see {@link ODESystemCompiler}.
+   * 
+   * @param ids
+   * @param stateCount
+   * @param reactionStart
+   * @param fixedStart
+   * @param values
+   * @param assignments
+   * @param assignmentTargets
+   * @param rates
+   * @param rowStart
+   * @param fluxIndices
+   * @param stoichiometryIndices
+   * @param stoichiometries
+   * @param conversionFactorIndices
+   * @param compartmentIndices
+   */
+  CompiledODESystem(String[] ids, int stateCount, int reactionStart, int fixedStart, double[] values,
+    NumericExpression[] assignments, int[] assignmentTargets, NumericExpression[] rates,
+    int[] rowStart, int[] fluxIndices, int[] stoichiometryIndices, double[] stoichiometries,
+    int[] conversionFactorIndices, int[] compartmentIndices)
+  {
+    this.ids = ids;
+    this.stateCount = stateCount;
+    this.reactionStart = reactionStart;
+    this.fixedStart = fixedStart;
+    this.values = values;
+    this.assignments = assignments;
+    this.assignmentTargets = assignmentTargets;
+    this.rates = rates;
+    this.rowStart = rowStart;
+    this.fluxIndices = fluxIndices;
+    this.stoichiometryIndices = stoichiometryIndices;
+    this.stoichiometries = stoichiometries;
+    this.conversionFactorIndices = conversionFactorIndices;
+    this.compartmentIndices = compartmentIndices;
+    timeIndex = ids.length;
+    coefficients = new double[fluxIndices.length];
+
+    Map<String, Integer> indices = new HashMap<String, Integer>();
+    for (int i = 0; i < ids.length; i++) {
+      indices.put(ids[i], i);
+    }
+    this.indices = Collections.unmodifiableMap(indices);
+
+    initialState = Arrays.copyOf(values, stateCount);
+    updateCoefficients();
+  }
+
+  /**
+   * Creates a copy of the given {@link CompiledODESystem} that shares its
+   * compiled expressions but has its own working memory, so that both can be
+   * used by different threads.
+   * 
+   * @param system
+   */
+  public CompiledODESystem(CompiledODESystem system) {
+    ids = system.ids;
+    indices = system.indices;
+    stateCount = system.stateCount;
+    reactionStart = system.reactionStart;
+    fixedStart = system.fixedStart;
+    timeIndex = system.timeIndex;
+    assignments = system.assignments;
+    assignmentTargets = system.assignmentTargets;
+    rates = system.rates;
+    rowStart = system.rowStart;
+    fluxIndices = system.fluxIndices;
+    stoichiometryIndices = system.stoichiometryIndices;
+    stoichiometries = system.stoichiometries;
+    conversionFactorIndices = system.conversionFactorIndices;
+    compartmentIndices = system.compartmentIndices;
+    coefficients = system.coefficients.clone();
+    values = system.values.clone();
+    initialState = system.initialState.clone();
+  }
+
+  /**
+   * Computes the rates of change of the state variables. This method writes
+   * to the working memory of this instance, so it is not thread-safe, see
+   * {@link #CompiledODESystem(CompiledODESystem)}.
+   * 
+   * @param t
+   *            the time
+   * @param y
+   *            the state, of length {@link #getDimension()}
+   * @param dydt
+   *            receives the rates of change of the state, of length
+   *            {@link #getDimension()}
+   */
+  public void computeDerivatives(double t, double[] y, double[] dydt) {
+    update(t, y);
+
+    // the rate rules first, as the rates of change of the compartments are
+    // needed to dilute the species in concentration
+    for (int i = 0; i < stateCount; i++) {
+      NumericExpression rate = rates[i];
+      if (rate != null) {
+        dydt[i] = rate.evaluate(values);
+      }
+    }
+    for (int i = 0; i < stateCount; i++) {
+      if (rates[i] != null) {
+        continue;
+      }
+      double sum = 0d;
+      for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+        sum += coefficients[k] * values[fluxIndices[k]];
+      }
+      int compartmentIndex = compartmentIndices[i];
+      if (compartmentIndex < 0) {
+        dydt[i] = sum;
+      } else {
+        double size = values[compartmentIndex];
+        dydt[i] = sum / size;
+        if (compartmentIndex < stateCount) {
+          // d[S]/dt = (dn/dt - [S] dV/dt) / V
+          dydt[i] -= values[i] * dydt[compartmentIndex] / size;
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the fluxes of the reactions. As
+   * {@link #computeDerivatives(double, double[], double[])}, this method is
+   * not thread-safe.
+   * 
+   * @param t
+   *            the time
+   * @param y
+   *            the state, of length {@link #getDimension()}
+   * @param fluxes
+   *            receives the fluxes, in the order of the reactions in the
+   *            model, of length {@link #getReactionCount()}
+   */
+  public void computeFluxes(double t, double[] y, double[] fluxes) {
+    update(t, y);
+    System.arraycopy(values, reactionStart, fluxes, 0, fixedStart - reactionStart);
+  }
+
+  /**
+   * Returns the number of state variables.
+   * 
+   * @return the number of state variables.
+   */
+  public int getDimension() {
+    return stateCount;
+  }
+
+  /**
+   * Returns the number of reactions.
+   * 
+   * @return the number of reactions.
+   */
+  public int getReactionCount() {
+    return fixedStart - reactionStart;
+  }
+
+  /**
+   * Returns the index of the given identifier in the state vector.
+   * 
+   * @param id
+   * @return the index of the given identifier in the state vector, or -1 if
+   *         it is not a state variable.
+   */
+  public int getStateIndex(String id) {
+    Integer index = indices.get(id);
+    return ((index != null) && (index.intValue() < stateCount)) ? index.intValue() : -1;
+  }
+
+  /**
+   * Returns the identifiers of the state variables.
+   * 
+   * @return the identifiers of the state variables.
+   */
+  public String[] getStateIds() {
+    return Arrays.copyOf(ids, stateCount);
+  }
+
+  /**
+   * Returns the initial state, computed from the initial values and the
+   * initial assignments of the model.
+   * 
+   * @return a new array with the initial state.
+   */
+  public double[] getInitialValues() {
+    return initialState.clone();
+  }
+
+  /**
+   * Returns the value of the given identifier, as computed by the last call
+   * to {@link #computeDerivatives(double, double[], double[])}, or its
+   * initial value.
+   * 
+   * @param id
+   * @return the value of the given identifier.
+   * @throws IllegalArgumentException
+   *             if the identifier is not known.
+   */
+  public double getValue(String id) {
+    return values[getIndex(id)];
+  }
+
+  /**
+   * Changes the value of a constant of the model, for instance of a
+   * parameter, without compiling the model again.
+   * 
+   * @param id
+   * @param value
+   * @throws IllegalArgumentException
+   *             if the identifier is not known or if its value is computed
+   *             by the system.
+   */
+  public void setValue(String id, double value) {
+    int index = getIndex(id);
+    if (index < fixedStart) {
+      throw new IllegalArgumentException(id + " is not a constant of the model.");
+    }
+    values[index] = value;
+    updateCoefficients();
+  }
+
+  /**
+   * @param id
+   * @return the index of the given identifier in {@link #values}.
+   */
+  private int getIndex(String id) {
+    Integer index = indices.get(id);
+    if (index == null) {
+      throw new IllegalArgumentException("Unknown identifier: " + id);
+    }
+    return index.intValue();
+  }
+
+  /**
+   * Evaluates the assignment rules and the kinetic laws for the given state.
+   * 
+   * @param t
+   * @param y
+   */
+  private void update(double t, double[] y) {
+    System.arraycopy(y, 0, values, 0, stateCount);
+    values[timeIndex] = t;
+
+    for (int k = 0; k < assignments.length; k++) {
+      values[assignmentTargets[k]] = assignments[k].evaluate(values);
+    }
+  }
+
+  /**
+   * Computes the coefficients of the stoichiometric matrix.
+   */
+  private void updateCoefficients() {
+    for (int k = 0; k < coefficients.length; k++) {
+      double stoichiometry = stoichiometries[k];
+      if (stoichiometryIndices[k] >= 0) {
+        stoichiometry *= values[stoichiometryIndices[k]];
+      }
+      if (conversionFactorIndices[k] >= 0) {
+        stoichiometry *= values[conversionFactorIndices[k]];
+      }
+      coefficients[k] = stoichiometry;
+    }
+  }
+
+}
@@ -0,0 +1,562 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.compilers;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.CallableSBase;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.SBMLException;
+
+/**
+ * A compiler for abstract syntax trees that evaluates them to primitive
+ * {@code double} values. In contrast to {@link ASTNodeCompiler}, the
+ * operations receive the values of their arguments, not the {@link ASTNode}s,
+ * and {@link ASTNode#compile(DoubleASTNodeCompiler)} neither wraps
+ * intermediate results into objects nor creates lists of children, so that
+ * an expression can be evaluated many times without creating garbage.
+ * 
+ * <p>Operators with more than two arguments, such as plus or times, are
+ * evaluated by calling the binary operation for each additional argument.
+ * Boolean values are represented by 1 for {@code true} and 0 for
+ * {@code false}; the relational operators return a {@code boolean} so that
+ * {@link ASTNode#compile(DoubleASTNodeCompiler)} can evaluate logical
+ * operators and piecewise functions without converting their conditions.</p>
+ * 
+ * @since 1.5
+ * @see AbstractDoubleASTNodeCompiler
+ */
+public interface DoubleASTNodeCompiler {
+
+  /**
+   * The absolute value of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double abs(double value);
+
+  /**
+   * The arccos of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arccos(double value);
+
+  /**
+   * The arccosh of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arccosh(double value);
+
+  /**
+   * The arccot of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arccot(double value);
+
+  /**
+   * The arccoth of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arccoth(double value);
+
+  /**
+   * The arccsc of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arccsc(double value);
+
+  /**
+   * The arccsch of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arccsch(double value);
+
+  /**
+   * The arcsec of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arcsec(double value);
+
+  /**
+   * The arcsech of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arcsech(double value);
+
+  /**
+   * The arcsin of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arcsin(double value);
+
+  /**
+   * The arcsinh of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arcsinh(double value);
+
+  /**
+   * The arctan of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arctan(double value);
+
+  /**
+   * The arctanh of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double arctanh(double value);
+
+  /**
+   * The smallest integer that is not less than the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double ceiling(double value);
+
+  /**
+   * The value of the given element, such as a {@link org.sbml.jsbml.Species}
+   * or a {@link org.sbml.jsbml.Parameter}, at the current time.
+   * 
+   * @param variable
+   * @return
+   * @throws SBMLException
+   */
+  public double compile(CallableSBase variable) throws SBMLException;
+
+  /**
+   * The value of an identifier that could not be resolved to an element of
+   * the model, for instance an argument of a {@link FunctionDefinition}.
+   * 
+   * @param name
+   * @return
+   * @throws SBMLException
+   */
+  public double compile(String name) throws SBMLException;
+
+  /**
+   * The cos of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double cos(double value);
+
+  /**
+   * The cosh of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double cosh(double value);
+
+  /**
+   * The cot of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double cot(double value);
+
+  /**
+   * The coth of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double coth(double value);
+
+  /**
+   * The csc of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double csc(double value);
+
+  /**
+   * The csch of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double csch(double value);
+
+  /**
+   * Evaluates delay functions.
+   * 
+   * @param delayName
+   *            the name of this delay function.
+   * @param x
+   * @param delay
+   *            an expression of a positive duration time (the amount of
+   *            delay)
+   * @param timeUnits
+   *            the units for the delay.
+   * @return
+   * @throws SBMLException
+   */
+  public double delay(String delayName, ASTNode x, ASTNode delay,
+    String timeUnits) throws SBMLException;
+
+  /**
+   * Checks if the left value is equal the right value.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public boolean eq(double left, double right);
+
+  /**
+   * Euler's number raised to the power of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double exp(double value);
+
+  /**
+   * The factorial of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double factorial(double value);
+
+  /**
+   * The largest integer that is not greater than the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double floor(double value);
+
+  /**
+   * The quotient of the two values.
+   * 
+   * @param numerator
+   * @param denominator
+   * @return
+   */
+  public double frac(double numerator, double denominator);
+
+  /**
+   * Evaluates a call to a {@link FunctionDefinition}. The arguments are the
+   * children of the given call, which can be evaluated with
+   * {@link ASTNode#compile(DoubleASTNodeCompiler)}.
+   * 
+   * @param functionDefinition
+   * @param call
+   *            the {@link ASTNode} calling the function.
+   * @return
+   * @throws SBMLException
+   */
+  public double function(FunctionDefinition functionDefinition, ASTNode call)
+      throws SBMLException;
+
+  /**
+   * Evaluates a call to a function that is not defined in the model.
+   * 
+   * @param functionDefinitionName
+   * @param call
+   *            the {@link ASTNode} calling the function.
+   * @return
+   * @throws SBMLException
+   */
+  public double function(String functionDefinitionName, ASTNode call)
+      throws SBMLException;
+
+  /**
+   * Checks if the left value is greater than or equal to the right value.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public boolean geq(double left, double right);
+
+  /**
+   * 
+   * @param name
+   * @return the value of Avogadro's number.
+   */
+  public double getConstantAvogadro(String name);
+
+  /**
+   * Returns the instantaneous rate of change, with respect to time, of the
+   * entity referred to by the given {@link ASTNode}.
+   * 
+   * @param astNode an ASTNode representing an identifier
+   * @return
+   * @throws SBMLException
+   */
+  public double getRateOf(ASTNode astNode) throws SBMLException;
+
+  /**
+   * Checks if the left value is greater than the right value.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public boolean gt(double left, double right);
+
+  /**
+   * Checks if the left value is less than or equal to the right value.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public boolean leq(double left, double right);
+
+  /**
+   * The natural logarithm of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double ln(double value);
+
+  /**
+   * The logarithm of the given value to the base 10.
+   * 
+   * @param value
+   * @return
+   */
+  public double log(double value);
+
+  /**
+   * The logarithm of the value to the given base.
+   * 
+   * @param base
+   * @param value
+   * @return
+   */
+  public double log(double base, double value);
+
+  /**
+   * Checks if the left value is less than the right value.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public boolean lt(double left, double right);
+
+  /**
+   * The maximum of the two values.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public double max(double left, double right);
+
+  /**
+   * The minimum of the two values.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public double min(double left, double right);
+
+  /**
+   * The difference of the two values.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public double minus(double left, double right);
+
+  /**
+   * Checks if the left value is not equal to the right value.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public boolean neq(double left, double right);
+
+  /**
+   * The sum of the two values.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public double plus(double left, double right);
+
+  /**
+   * The base raised to the power of the exponent.
+   * 
+   * @param base
+   * @param exponent
+   * @return
+   */
+  public double pow(double base, double exponent);
+
+  /**
+   * The integer part of the division of the two values.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public double quotient(double left, double right);
+
+  /**
+   * The remainder of the division of the two values.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public double rem(double left, double right);
+
+  /**
+   * The root of the given degree of the radiant.
+   * 
+   * @param rootExponent
+   * @param radiant
+   * @return
+   */
+  public double root(double rootExponent, double radiant);
+
+  /**
+   * The sec of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double sec(double value);
+
+  /**
+   * The sech of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double sech(double value);
+
+  /**
+   * The sin of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double sin(double value);
+
+  /**
+   * The sinh of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double sinh(double value);
+
+  /**
+   * The square root of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double sqrt(double value);
+
+  /**
+   * 
+   * @param timeSymbol
+   * @return the current simulation time.
+   * @throws SBMLException
+   */
+  public double symbolTime(String timeSymbol) throws SBMLException;
+
+  /**
+   * The tan of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double tan(double value);
+
+  /**
+   * The tanh of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double tanh(double value);
+
+  /**
+   * The product of the two values.
+   * 
+   * @param left
+   * @param right
+   * @return
+   */
+  public double times(double left, double right);
+
+  /**
+   * The negation of the given value.
+   * 
+   * @param value
+   * @return
+   */
+  public double uMinus(double value);
+
+  /**
+   * Evaluates the {@link ASTNode}s that cannot be represented by a number,
+   * such as vectors or lambda expressions.
+   * 
+   * @param astNode
+   * @return
+   * @throws SBMLException
+   */
+  public double unknownValue(ASTNode astNode) throws SBMLException;
+
+}
@@ -0,0 +1,734 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.compilers;
+
+import org.sbml.jsbml.ASTNode.Type;
+import org.sbml.jsbml.util.Maths;
+
+/**
+ * A mathematical expression compiled by a {@link NumericExpressionCompiler}
+ * into a tree of small evaluator objects.
+ * 
+ * <p>Contrary to {@link ASTNodeCompiler}s, evaluating a
+ * {@link NumericExpression} does not allocate any object: the values of the
+ * variables are read from a {@code double} array, at the indices chosen when
+ * compiling, and all the intermediate results are primitive {@code double}s.
+ * Boolean values are represented by {@code 1} ({@code true}) and {@code 0}
+ * ({@code false}), any value different from {@code 0} being considered as
+ * {@code true}.</p>
+ * 
+ * <p>{@link NumericExpression}s are immutable and can be evaluated by several
+ * threads at the same time.</p>
+ * 
+ * @since 1.5
+ */
+public abstract class NumericExpression {
+
+  /**
+   * Evaluates this expression.
+   * 
+   * @param values the values of the variables, at the indices given to the
+   * {@link NumericExpressionCompiler}.
+   * @return the value of this expression.
+   */
+  public abstract double evaluate(double[] values);
+
+  /**
+   * Returns {@code true} if the value of this expression does not depend on
+   * the values of the variables.
+   * 
+   * @return {@code true} if this expression is a constant.
+   */
+  public boolean isConstant() {
+    return false;
+  }
+
+  /**
+   * Converts a boolean into its numeric representation.
+   * 
+   * @param value
+   * @return {@code 1} if value is {@code true}, {@code 0} otherwise.
+   */
+  static double toDouble(boolean value) {
+    return value ? 1d : 0d;
+  }
+
+  /**
+   * A constant.
+   */
+  static final class Constant extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final double value;
+
+    /**
+     * @param value
+     */
+    Constant(double value) {
+      this.value = value;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      return value;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#isConstant()
+     */
+    @Override
+    public boolean isConstant() {
+      return true;
+    }
+  }
+
+  /**
+   * The value of a variable.
+   */
+  static final class Variable extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final int index;
+
+    /**
+     * @param index
+     */
+    Variable(int index) {
+      this.index = index;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      return values[index];
+    }
+  }
+
+  /**
+   * The sum of two expressions.
+   */
+  static final class Sum2 extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression left, right;
+
+    /**
+     * @param left
+     * @param right
+     */
+    Sum2(NumericExpression left, NumericExpression right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      return left.evaluate(values) + right.evaluate(values);
+    }
+  }
+
+  /**
+   * The sum of any number of expressions.
+   */
+  static final class Sum extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression[] terms;
+
+    /**
+     * @param terms
+     */
+    Sum(NumericExpression[] terms) {
+      this.terms = terms;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      double sum = 0d;
+      for (NumericExpression term : terms) {
+        sum += term.evaluate(values);
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * The difference of two expressions.
+   */
+  static final class Difference extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression left, right;
+
+    /**
+     * @param left
+     * @param right
+     */
+    Difference(NumericExpression left, NumericExpression right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      return left.evaluate(values) - right.evaluate(values);
+    }
+  }
+
+  /**
+   * The opposite of an expression.
+   */
+  static final class Negation extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression argument;
+
+    /**
+     * @param argument
+     */
+    Negation(NumericExpression argument) {
+      this.argument = argument;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      return -argument.evaluate(values);
+    }
+  }
+
+  /**
+   * The product of two expressions.
+   */
+  static final class Product2 extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression left, right;
+
+    /**
+     * @param left
+     * @param right
+     */
+    Product2(NumericExpression left, NumericExpression right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      return left.evaluate(values) * right.evaluate(values);
+    }
+  }
+
+  /**
+   * The product of any number of expressions.
+   */
+  static final class Product extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression[] factors;
+
+    /**
+     * @param factors
+     */
+    Product(NumericExpression[] factors) {
+      this.factors = factors;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      double product = 1d;
+      for (NumericExpression factor : factors) {
+        product *= factor.evaluate(values);
+      }
+      return product;
+    }
+  }
+
+  /**
+   * The quotient of two expressions.
+   */
+  static final class Quotient extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression numerator, denominator;
+
+    /**
+     * @param numerator
+     * @param denominator
+     */
+    Quotient(NumericExpression numerator, NumericExpression denominator) {
+      this.numerator = numerator;
+      this.denominator = denominator;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      return numerator.evaluate(values) / denominator.evaluate(values);
+    }
+  }
+
+  /**
+   * An expression raised to a constant integer power, computed by
+   * multiplications.
+   */
+  static final class IntegerPower extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression base;
+
+    /**
+     * 
+     */
+    private final int exponent;
+
+    /**
+     * @param base
+     * @param exponent
+     */
+    IntegerPower(NumericExpression base, int exponent) {
+      this.base = base;
+      this.exponent = exponent;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      double x = base.evaluate(values);
+      double result = 1d;
+      for (int i = Math.abs(exponent); i > 0; i--) {
+        result *= x;
+      }
+      return exponent < 0 ? 1d / result : result;
+    }
+  }
+
+  /**
+   * A function with one argument.
+   */
+  static final class UnaryFunction extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final Type type;
+
+    /**
+     * 
+     */
+    private final NumericExpression argument;
+
+    /**
+     * @param type
+     * @param argument
+     */
+    UnaryFunction(Type type, NumericExpression argument) {
+      this.type = type;
+      this.argument = argument;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      double x = argument.evaluate(values);
+
+      switch (type) {
+      case FUNCTION_ABS:
+        return Math.abs(x);
+      case FUNCTION_ARCCOS:
+        return Math.acos(x);
+      case FUNCTION_ARCCOSH:
+        return Maths.arccosh(x);
+      case FUNCTION_ARCCOT:
+        return Maths.arccot(x);
+      case FUNCTION_ARCCOTH:
+        return Maths.arccoth(x);
+      case FUNCTION_ARCCSC:
+        return Maths.arccsc(x);
+      case FUNCTION_ARCCSCH:
+        return Maths.arccsch(x);
+      case FUNCTION_ARCSEC:
+        return Maths.arcsec(x);
+      case FUNCTION_ARCSECH:
+        return Maths.arcsech(x);
+      case FUNCTION_ARCSIN:
+        return Math.asin(x);
+      case FUNCTION_ARCSINH:
+        return Maths.arcsinh(x);
+      case FUNCTION_ARCTAN:
+        return Math.atan(x);
+      case FUNCTION_ARCTANH:
+        return Maths.arctanh(x);
+      case FUNCTION_CEILING:
+        return Math.ceil(x);
+      case FUNCTION_COS:
+        return Math.cos(x);
+      case FUNCTION_COSH:
+        return Math.cosh(x);
+      case FUNCTION_COT:
+        return Maths.cot(x);
+      case FUNCTION_COTH:
+        return Maths.coth(x);
+      case FUNCTION_CSC:
+        return Maths.csc(x);
+      case FUNCTION_CSCH:
+        return Maths.csch(x);
+      case FUNCTION_EXP:
+        return Math.exp(x);
+      case FUNCTION_FACTORIAL:
+        return Maths.factorial((int) Math.round(x));
+      case FUNCTION_FLOOR:
+        return Math.floor(x);
+      case FUNCTION_LN:
+        return Math.log(x);
+      case FUNCTION_LOG:
+        return Math.log10(x);
+      case FUNCTION_SEC:
+        return Maths.sec(x);
+      case FUNCTION_SECH:
+        return Maths.sech(x);
+      case FUNCTION_SIN:
+        return Math.sin(x);
+      case FUNCTION_SINH:
+        return Math.sinh(x);
+      case FUNCTION_TAN:
+        return Math.tan(x);
+      case FUNCTION_TANH:
+        return Math.tanh(x);
+      case FUNCTION_ROOT:
+        return Math.sqrt(x);
+      case LOGICAL_NOT:
+        return toDouble(x == 0d);
+      default:
+        throw new IllegalStateException(type.toString());
+      }
+    }
+  }
+
+  /**
+   * A function or operator with two arguments.
+   */
+  static final class BinaryFunction extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final Type type;
+
+    /**
+     * 
+     */
+    private final NumericExpression left, right;
+
+    /**
+     * @param type
+     * @param left
+     * @param right
+     */
+    BinaryFunction(Type type, NumericExpression left, NumericExpression right) {
+      this.type = type;
+      this.left = left;
+      this.right = right;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      double x = left.evaluate(values);
+      double y = right.evaluate(values);
+
+      switch (type) {
+      case POWER:
+        return Math.pow(x, y);
+      case FUNCTION_ROOT:
+        // left is the degree
+        return Maths.root(y, x);
+      case FUNCTION_LOG:
+        // left is the base
+        return Maths.log(y, x);
+      case FUNCTION_QUOTIENT:
+        return Math.floor(x / y);
+      case FUNCTION_REM:
+        return x % y;
+      default:
+        throw new IllegalStateException(type.toString());
+      }
+    }
+  }
+
+  /**
+   * The minimum or maximum of any number of expressions.
+   */
+  static final class Extremum extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final boolean maximum;
+
+    /**
+     * 
+     */
+    private final NumericExpression[] arguments;
+
+    /**
+     * @param maximum
+     * @param arguments
+     */
+    Extremum(boolean maximum, NumericExpression[] arguments) {
+      this.maximum = maximum;
+      this.arguments = arguments;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      double result = maximum ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+      for (NumericExpression argument : arguments) {
+        double value = argument.evaluate(values);
+        result = maximum ? Math.max(result, value) : Math.min(result, value);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * A chain of comparisons, e.g., {@code a < b < c}.
+   */
+  static final class Relation extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final Type type;
+
+    /**
+     * 
+     */
+    private final NumericExpression[] arguments;
+
+    /**
+     * @param type
+     * @param arguments
+     */
+    Relation(Type type, NumericExpression[] arguments) {
+      this.type = type;
+      this.arguments = arguments;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      double previous = arguments[0].evaluate(values);
+
+      for (int i = 1; i < arguments.length; i++) {
+        double current = arguments[i].evaluate(values);
+        boolean holds;
+
+        switch (type) {
+        case RELATIONAL_EQ:
+          holds = previous == current;
+          break;
+        case RELATIONAL_NEQ:
+          holds = previous != current;
+          break;
+        case RELATIONAL_GEQ:
+          holds = previous >= current;
+          break;
+        case RELATIONAL_GT:
+          holds = previous > current;
+          break;
+        case RELATIONAL_LEQ:
+          holds = previous <= current;
+          break;
+        case RELATIONAL_LT:
+          holds = previous < current;
+          break;
+        default:
+          throw new IllegalStateException(type.toString());
+        }
+        if (!holds) {
+          return 0d;
+        }
+        previous = current;
+      }
+      return 1d;
+    }
+  }
+
+  /**
+   * A logical {@code and}, {@code or}, {@code xor} or {@code implies}.
+   */
+  static final class Logical extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final Type type;
+
+    /**
+     * 
+     */
+    private final NumericExpression[] arguments;
+
+    /**
+     * @param type
+     * @param arguments
+     */
+    Logical(Type type, NumericExpression[] arguments) {
+      this.type = type;
+      this.arguments = arguments;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      switch (type) {
+      case LOGICAL_AND:
+        for (NumericExpression argument : arguments) {
+          if (argument.evaluate(values) == 0d) {
+            return 0d;
+          }
+        }
+        return 1d;
+      case LOGICAL_OR:
+        for (NumericExpression argument : arguments) {
+          if (argument.evaluate(values) != 0d) {
+            return 1d;
+          }
+        }
+        return 0d;
+      case LOGICAL_XOR:
+        boolean result = false;
+        for (NumericExpression argument : arguments) {
+          result ^= argument.evaluate(values) != 0d;
+        }
+        return toDouble(result);
+      case LOGICAL_IMPLIES:
+        return toDouble((arguments[0].evaluate(values) == 0d) || (arguments[1].evaluate(values) != 0d));
+      default:
+        throw new IllegalStateException(type.toString());
+      }
+    }
+  }
+
+  /**
+   * A piecewise function.
+   */
+  static final class Piecewise extends NumericExpression {
+
+    /**
+     * 
+     */
+    private final NumericExpression[] pieces;
+
+    /**
+     * 
+     */
+    private final NumericExpression[] conditions;
+
+    /**
+     * 
+     */
+    private final NumericExpression otherwise;
+
+    /**
+     * @param pieces
+     * @param conditions
+     * @param otherwise the value if no condition is true, can be {@code null}.
+     */
+    Piecewise(NumericExpression[] pieces, NumericExpression[] conditions, NumericExpression otherwise) {
+      this.pieces = pieces;
+      this.conditions = conditions;
+      this.otherwise = otherwise;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.NumericExpression#evaluate(double[])
+     */
+    @Override
+    public double evaluate(double[] values) {
+      for (int i = 0; i < conditions.length; i++) {
+        if (conditions[i].evaluate(values) != 0d) {
+          return pieces[i].evaluate(values);
+        }
+      }
+      return otherwise != null ? otherwise.evaluate(values) : Double.NaN;
+    }
+  }
+
+}
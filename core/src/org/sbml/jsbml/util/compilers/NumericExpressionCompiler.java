@@ -0,0 +1,499 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.compilers;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.ASTNode.Type;
+import org.sbml.jsbml.CallableSBase;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.LocalParameter;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.util.compilers.NumericExpression.BinaryFunction;
+import org.sbml.jsbml.util.compilers.NumericExpression.Constant;
+import org.sbml.jsbml.util.compilers.NumericExpression.Difference;
+import org.sbml.jsbml.util.compilers.NumericExpression.Extremum;
+import org.sbml.jsbml.util.compilers.NumericExpression.IntegerPower;
+import org.sbml.jsbml.util.compilers.NumericExpression.Logical;
+import org.sbml.jsbml.util.compilers.NumericExpression.Negation;
+import org.sbml.jsbml.util.compilers.NumericExpression.Piecewise;
+import org.sbml.jsbml.util.compilers.NumericExpression.Product;
+import org.sbml.jsbml.util.compilers.NumericExpression.Product2;
+import org.sbml.jsbml.util.compilers.NumericExpression.Quotient;
+import org.sbml.jsbml.util.compilers.NumericExpression.Relation;
+import org.sbml.jsbml.util.compilers.NumericExpression.Sum;
+import org.sbml.jsbml.util.compilers.NumericExpression.Sum2;
+import org.sbml.jsbml.util.compilers.NumericExpression.UnaryFunction;
+import org.sbml.jsbml.util.compilers.NumericExpression.Variable;
+
+/**
+ * Compiles {@link ASTNode}s into {@link NumericExpression}s, which can then be
+ * evaluated many times without walking the {@link ASTNode} tree or
+ * allocating any object.
+ * 
+ * <p>The identifiers used in the math are resolved, in this order, as:
+ * <ol>
+ * <li>the arguments of the {@link FunctionDefinition} being inlined,</li>
+ * <li>a {@link LocalParameter}, which is replaced by its value,</li>
+ * <li>a variable of the index map given to the constructor, which is read
+ * from the array passed to {@link NumericExpression#evaluate(double[])},</li>
+ * <li>a constant {@link Parameter} with a value, which is replaced by its
+ * value.</li>
+ * </ol>
+ * Calls to {@link FunctionDefinition}s are inlined, and the sub-expressions
+ * that do not depend on any variable are computed once, when compiling.</p>
+ * 
+ * <p>The {@code delay}, {@code rateOf} and {@code selector} functions are not
+ * supported, as they need more than the current values of the variables.</p>
+ * 
+ * @since 1.5
+ */
+public class NumericExpressionCompiler {
+
+  /**
+   * The indices of the variables.
+   */
+  private final Map<String, Integer> indices;
+
+  /**
+   * The {@link Model} used to look up the identifiers of the {@link ASTNode}s
+   * that are not part of a {@link Model}, can be {@code null}.
+   */
+  private final Model model;
+
+  /**
+   * The index of the simulation time, or -1 if the time is not available.
+   */
+  private int timeIndex = -1;
+
+  /**
+   * Creates a {@link NumericExpressionCompiler}.
+   * 
+   * @param indices the index, in the array of values, of each variable
+   * identifier.
+   */
+  public NumericExpressionCompiler(Map<String, Integer> indices) {
+    this(indices, null);
+  }
+
+  /**
+   * Creates a {@link NumericExpressionCompiler}.
+   * 
+   * @param indices the index, in the array of values, of each variable
+   * identifier.
+   * @param model the {@link Model} in which to look up the identifiers of
+   * the {@link ASTNode}s that are not linked to a {@link Model}, can be
+   * {@code null}.
+   */
+  public NumericExpressionCompiler(Map<String, Integer> indices, Model model) {
+    this.indices = new HashMap<String, Integer>(indices);
+    this.model = model;
+  }
+
+  /**
+   * Returns the index of the simulation time in the array of values.
+   * 
+   * @return the index of the simulation time in the array of values, -1 if
+   * the time is not available.
+   */
+  public int getTimeIndex() {
+    return timeIndex;
+  }
+
+  /**
+   * Sets the index of the simulation time in the array of values, needed to
+   * compile math using the {@code time} csymbol.
+   * 
+   * @param timeIndex
+   */
+  public void setTimeIndex(int timeIndex) {
+    this.timeIndex = timeIndex;
+  }
+
+  /**
+   * Compiles the given {@link ASTNode}.
+   * 
+   * @param math
+   * @return the compiled expression.
+   * @throws SBMLException if the math uses an unknown identifier or a
+   * function that is not supported.
+   */
+  public NumericExpression compile(ASTNode math) throws SBMLException {
+    return compile(math, Collections.<String, NumericExpression>emptyMap(), new HashSet<String>());
+  }
+
+  /**
+   * @param node
+   * @param arguments the arguments of the function definitions being inlined
+   * @param calledFunctions the identifiers of the function definitions being
+   * inlined, to detect recursive calls.
+   * @return the compiled expression.
+   * @throws SBMLException
+   */
+  private NumericExpression compile(ASTNode node, Map<String, NumericExpression> arguments,
+    Set<String> calledFunctions) throws SBMLException
+  {
+    Type type = node.getType();
+    int childCount = node.getChildCount();
+
+    switch (type) {
+    case INTEGER:
+    case REAL:
+    case REAL_E:
+    case RATIONAL:
+    case CONSTANT_E:
+    case CONSTANT_PI:
+    case NAME_AVOGADRO:
+      return new Constant(node.getReal());
+    case CONSTANT_TRUE:
+      return new Constant(1d);
+    case CONSTANT_FALSE:
+      return new Constant(0d);
+    case NAME_TIME:
+      if (timeIndex < 0) {
+        throw new SBMLException("The time is used but no index was given for it.");
+      }
+      return new Variable(timeIndex);
+    case NAME:
+      return compileName(node, arguments, calledFunctions);
+    case FUNCTION:
+      return compileFunctionCall(node, arguments, calledFunctions);
+    case PLUS: {
+      NumericExpression[] terms = compileChildren(node, arguments, calledFunctions);
+      if (terms.length == 0) {
+        return new Constant(0d);
+      } else if (terms.length == 1) {
+        return terms[0];
+      }
+      return fold(terms.length == 2 ? new Sum2(terms[0], terms[1]) : new Sum(terms), terms);
+    }
+    case TIMES: {
+      NumericExpression[] factors = compileChildren(node, arguments, calledFunctions);
+      if (factors.length == 0) {
+        return new Constant(1d);
+      } else if (factors.length == 1) {
+        return factors[0];
+      }
+      return fold(factors.length == 2 ? new Product2(factors[0], factors[1]) : new Product(factors), factors);
+    }
+    case MINUS: {
+      NumericExpression[] terms = compileChildren(node, arguments, calledFunctions);
+      if (terms.length == 1) {
+        return fold(new Negation(terms[0]), terms);
+      }
+      checkChildCount(node, 2, Integer.MAX_VALUE);
+      NumericExpression result = terms[0];
+      for (int i = 1; i < terms.length; i++) {
+        result = fold(new Difference(result, terms[i]), result, terms[i]);
+      }
+      return result;
+    }
+    case DIVIDE: {
+      checkChildCount(node, 2, 2);
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      return fold(new Quotient(operands[0], operands[1]), operands);
+    }
+    case POWER:
+    case FUNCTION_POWER: {
+      checkChildCount(node, 2, 2);
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      if (operands[1].isConstant()) {
+        double exponent = operands[1].evaluate(null);
+        if ((exponent == Math.rint(exponent)) && (Math.abs(exponent) <= 4)) {
+          return fold(new IntegerPower(operands[0], (int) exponent), operands);
+        }
+      }
+      return fold(new BinaryFunction(Type.POWER, operands[0], operands[1]), operands);
+    }
+    case FUNCTION_ROOT:
+    case FUNCTION_LOG:
+    case FUNCTION_LN: {
+      checkChildCount(node, 1, 2);
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      if (operands.length == 1) {
+        return fold(new UnaryFunction(type, operands[0]), operands);
+      }
+      // ln with two children is read as log with a base
+      return fold(new BinaryFunction(type == Type.FUNCTION_LN ? Type.FUNCTION_LOG : type, operands[0], operands[1]), operands);
+    }
+    case FUNCTION_QUOTIENT:
+    case FUNCTION_REM: {
+      checkChildCount(node, 2, 2);
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      return fold(new BinaryFunction(type, operands[0], operands[1]), operands);
+    }
+    case FUNCTION_ABS:
+    case FUNCTION_ARCCOS:
+    case FUNCTION_ARCCOSH:
+    case FUNCTION_ARCCOT:
+    case FUNCTION_ARCCOTH:
+    case FUNCTION_ARCCSC:
+    case FUNCTION_ARCCSCH:
+    case FUNCTION_ARCSEC:
+    case FUNCTION_ARCSECH:
+    case FUNCTION_ARCSIN:
+    case FUNCTION_ARCSINH:
+    case FUNCTION_ARCTAN:
+    case FUNCTION_ARCTANH:
+    case FUNCTION_CEILING:
+    case FUNCTION_COS:
+    case FUNCTION_COSH:
+    case FUNCTION_COT:
+    case FUNCTION_COTH:
+    case FUNCTION_CSC:
+    case FUNCTION_CSCH:
+    case FUNCTION_EXP:
+    case FUNCTION_FACTORIAL:
+    case FUNCTION_FLOOR:
+    case FUNCTION_SEC:
+    case FUNCTION_SECH:
+    case FUNCTION_SIN:
+    case FUNCTION_SINH:
+    case FUNCTION_TAN:
+    case FUNCTION_TANH:
+    case LOGICAL_NOT: {
+      checkChildCount(node, 1, 1);
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      return fold(new UnaryFunction(type, operands[0]), operands);
+    }
+    case FUNCTION_MAX:
+    case FUNCTION_MIN: {
+      checkChildCount(node, 1, Integer.MAX_VALUE);
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      return fold(new Extremum(type == Type.FUNCTION_MAX, operands), operands);
+    }
+    case RELATIONAL_EQ:
+    case RELATIONAL_GEQ:
+    case RELATIONAL_GT:
+    case RELATIONAL_LEQ:
+    case RELATIONAL_LT:
+    case RELATIONAL_NEQ: {
+      checkChildCount(node, 2, type == Type.RELATIONAL_NEQ ? 2 : Integer.MAX_VALUE);
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      return fold(new Relation(type, operands), operands);
+    }
+    case LOGICAL_IMPLIES: {
+      checkChildCount(node, 2, 2);
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      return fold(new Logical(type, operands), operands);
+    }
+    case LOGICAL_AND:
+    case LOGICAL_OR:
+    case LOGICAL_XOR: {
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      return fold(new Logical(type, operands), operands);
+    }
+    case FUNCTION_PIECEWISE: {
+      NumericExpression[] operands = compileChildren(node, arguments, calledFunctions);
+      int pieceCount = childCount / 2;
+      NumericExpression[] pieces = new NumericExpression[pieceCount];
+      NumericExpression[] conditions = new NumericExpression[pieceCount];
+      for (int i = 0; i < pieceCount; i++) {
+        pieces[i] = operands[2 * i];
+        conditions[i] = operands[2 * i + 1];
+      }
+      NumericExpression otherwise = (childCount % 2 == 1) ? operands[childCount - 1] : null;
+      return fold(new Piecewise(pieces, conditions, otherwise), operands);
+    }
+    case LAMBDA:
+      // compile the body of the function
+      checkChildCount(node, 1, Integer.MAX_VALUE);
+      return compile(node.getChild(childCount - 1), arguments, calledFunctions);
+    default:
+      throw new SBMLException(MessageFormat.format(
+        "Cannot compile math of type {0} into a numeric expression.", type));
+    }
+  }
+
+  /**
+   * Compiles an identifier.
+   * 
+   * @param node
+   * @param arguments
+   * @param calledFunctions
+   * @return the compiled expression.
+   * @throws SBMLException
+   */
+  private NumericExpression compileName(ASTNode node, Map<String, NumericExpression> arguments,
+    Set<String> calledFunctions) throws SBMLException
+  {
+    String name = node.getName();
+    NumericExpression argument = arguments.get(name);
+
+    if (argument != null) {
+      return argument;
+    }
+
+    CallableSBase variable = getVariable(node);
+
+    if (variable instanceof FunctionDefinition) {
+      return compileFunctionCall(node, arguments, calledFunctions);
+    } else if (variable instanceof LocalParameter) {
+      return new Constant(((LocalParameter) variable).getValue());
+    }
+
+    Integer index = indices.get(name);
+
+    if (index != null) {
+      return new Variable(index.intValue());
+    } else if ((variable instanceof Parameter) && ((Parameter) variable).isConstant()
+        && ((Parameter) variable).isSetValue())
+    {
+      return new Constant(((Parameter) variable).getValue());
+    }
+
+    throw new SBMLException(MessageFormat.format(
+      "Cannot compile the identifier ''{0}'', it has no index and is not a constant.", name));
+  }
+
+  /**
+   * Inlines a call to a {@link FunctionDefinition}.
+   * 
+   * @param node
+   * @param arguments
+   * @param calledFunctions
+   * @return the compiled expression.
+   * @throws SBMLException
+   */
+  private NumericExpression compileFunctionCall(ASTNode node, Map<String, NumericExpression> arguments,
+    Set<String> calledFunctions) throws SBMLException
+  {
+    String name = node.getName();
+    CallableSBase variable = getVariable(node);
+    FunctionDefinition functionDefinition = null;
+
+    if (variable instanceof FunctionDefinition) {
+      functionDefinition = (FunctionDefinition) variable;
+    }
+    if ((functionDefinition == null) || !functionDefinition.isSetMath()) {
+      throw new SBMLException(MessageFormat.format(
+        "Cannot compile the call to the undefined function ''{0}''.", name));
+    }
+    int argumentCount = functionDefinition.getArgumentCount();
+
+    if (node.getChildCount() != argumentCount) {
+      throw new SBMLException(MessageFormat.format(
+        "The function ''{0}'' expects {1,number,integer} arguments but {2,number,integer} are given.",
+        name, argumentCount, node.getChildCount()));
+    }
+
+    NumericExpression[] values = compileChildren(node, arguments, calledFunctions);
+
+    if (!calledFunctions.add(name)) {
+      throw new SBMLException(MessageFormat.format(
+        "Cannot compile the recursive call to the function ''{0}''.", name));
+    }
+
+    Map<String, NumericExpression> functionArguments = new HashMap<String, NumericExpression>();
+
+    for (int i = 0; i < argumentCount; i++) {
+      functionArguments.put(functionDefinition.getArgument(i).getName(), values[i]);
+    }
+
+    NumericExpression result = compile(functionDefinition.getBody(), functionArguments, calledFunctions);
+    calledFunctions.remove(name);
+
+    return result;
+  }
+
+  /**
+   * Returns the element referred to by the given node, looking it up in the
+   * {@link Model} given to the constructor if the node is not linked to a
+   * {@link Model}.
+   * 
+   * @param node
+   * @return the element referred to by the given node or {@code null}.
+   */
+  private CallableSBase getVariable(ASTNode node) {
+    CallableSBase variable = node.getVariable();
+
+    if ((variable == null) && (model != null)) {
+      variable = model.findCallableSBase(node.getName());
+    }
+
+    return variable;
+  }
+
+  /**
+   * Compiles all the children of the given node.
+   * 
+   * @param node
+   * @param arguments
+   * @param calledFunctions
+   * @return the compiled children.
+   * @throws SBMLException
+   */
+  private NumericExpression[] compileChildren(ASTNode node, Map<String, NumericExpression> arguments,
+    Set<String> calledFunctions) throws SBMLException
+  {
+    List<ASTNode> children = node.getChildren();
+    NumericExpression[] compiled = new NumericExpression[children.size()];
+
+    for (int i = 0; i < compiled.length; i++) {
+      compiled[i] = compile(children.get(i), arguments, calledFunctions);
+    }
+
+    return compiled;
+  }
+
+  /**
+   * Checks the number of children of the given node.
+   * 
+   * @param node
+   * @param min
+   * @param max
+   * @throws SBMLException
+   */
+  private void checkChildCount(ASTNode node, int min, int max) throws SBMLException {
+    int childCount = node.getChildCount();
+
+    if ((childCount < min) || (childCount > max)) {
+      throw new SBMLException(MessageFormat.format(
+        "Invalid number of arguments for {0}: {1,number,integer}.", node.getType(), childCount));
+    }
+  }
+
+  /**
+   * Replaces the given expression by its value if all its operands are
+   * constant.
+   * 
+   * @param expression
+   * @param operands
+   * @return a {@link Constant} or the given expression.
+   */
+  private static NumericExpression fold(NumericExpression expression, NumericExpression... operands) {
+    for (NumericExpression operand : operands) {
+      if ((operand == null) || !operand.isConstant()) {
+        return expression;
+      }
+    }
+    return new Constant(expression.evaluate(null));
+  }
+
+}
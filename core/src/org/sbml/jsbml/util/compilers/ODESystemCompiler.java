@@ -0,0 +1,551 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.compilers;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.AlgebraicRule;
+import org.sbml.jsbml.AssignmentRule;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.InitialAssignment;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.LocalParameter;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.RateRule;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.Rule;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.SpeciesReference;
+import org.sbml.jsbml.util.Pair;
+
+/**
+ * Compiles the rate rules, assignment rules and reactions of a {@link Model}
+ * into a {@link CompiledODESystem}.
+ * 
+ * <p>The compiler
+ * <ul>
+ * <li>assigns an index to each species, compartment, parameter, species
+ * reference and reaction of the model,</li>
+ * <li>compiles the math of the rules, initial assignments and kinetic laws
+ * with a {@link NumericExpressionCompiler}, which replaces the local
+ * parameters by their values and inlines the function definitions,</li>
+ * <li>sorts the assignment rules and the kinetic laws so that each one is
+ * evaluated after the values it depends on,</li>
+ * <li>stores the stoichiometric matrix in a sparse, row-wise form, including
+ * the conversion factors of the species; the rates of change of the species
+ * in concentration are divided by the size of their compartment and, if it
+ * is changed by a rate rule, include the dilution by the compartment,</li>
+ * <li>computes the initial state from the initial values and the initial
+ * assignments; the initial amounts of the species in concentration and the
+ * initial concentrations of the species in amount are converted with the
+ * initial size of their compartment, as computed by the initial assignments
+ * and assignment rules.</li>
+ * </ul></p>
+ * 
+ * <p>Events, algebraic rules, delays, stoichiometries changed by rules and
+ * species in concentration changed by reactions in a compartment whose size
+ * is computed by an assignment rule are not supported, as they cannot be
+ * represented by an explicit system of ordinary differential equations, or
+ * would require the derivative of the assignment rule for the dilution.
+ * Models with algebraic rules, variable stoichiometries or such species are
+ * rejected, events are ignored and are left to the integrator.</p>
+ * 
+ * @since 1.5
+ */
+public class ODESystemCompiler {
+
+  /**
+   * A value computed by an assignment rule, an initial assignment or a
+   * kinetic law.
+   */
+  private static class Assignment {
+
+    /**
+     * The identifier of the computed value.
+     */
+    private final String target;
+
+    /**
+     * The math computing the value.
+     */
+    private final ASTNode math;
+
+    /**
+     * The identifiers the math refers to.
+     */
+    private final Set<String> dependencies = new HashSet<String>();
+
+    /**
+     * @param target
+     * @param math
+     */
+    public Assignment(String target, ASTNode math) {
+      this.target = target;
+      this.math = math;
+      if (math != null) {
+        collectIdentifiers(math, dependencies);
+      }
+    }
+
+  }
+
+  /**
+   * Compiles the given {@link Model}.
+   * 
+   * @param model
+   * @return the compiled system.
+   * @throws SBMLException
+   *             if the model uses a construct that is not supported or
+   *             math that cannot be compiled.
+   */
+  public CompiledODESystem compile(Model model) throws SBMLException {
+    Map<String, RateRule> rateRules = new LinkedHashMap<String, RateRule>();
+    Map<String, Assignment> assignmentRules = new LinkedHashMap<String, Assignment>();
+    for (Rule rule : model.getListOfRules()) {
+      if (rule instanceof AlgebraicRule) {
+        throw new SBMLException("Algebraic rules cannot be compiled into a system of ordinary differential equations.");
+      } else if (rule instanceof RateRule) {
+        rateRules.put(((RateRule) rule).getVariable(), (RateRule) rule);
+      } else if (rule instanceof AssignmentRule) {
+        String variable = ((AssignmentRule) rule).getVariable();
+        assignmentRules.put(variable, new Assignment(variable, rule.getMath()));
+      }
+    }
+
+    Set<String> reactiveSpecies = new HashSet<String>();
+    for (Reaction reaction : model.getListOfReactions()) {
+      checkSpeciesReferences(reaction.getListOfReactants(), rateRules, assignmentRules);
+      checkSpeciesReferences(reaction.getListOfProducts(), rateRules, assignmentRules);
+      for (SpeciesReference reference : reaction.getListOfReactants()) {
+        reactiveSpecies.add(reference.getSpecies());
+      }
+      for (SpeciesReference reference : reaction.getListOfProducts()) {
+        reactiveSpecies.add(reference.getSpecies());
+      }
+    }
+
+    // the states: species changed by reactions or rate rules, then the other
+    // targets of rate rules
+    List<String> ids = new ArrayList<String>();
+    for (Species species : model.getListOfSpecies()) {
+      String id = species.getId();
+      if (rateRules.containsKey(id)
+          || (!assignmentRules.containsKey(id) && !species.isConstant()
+              && !species.isBoundaryCondition() && reactiveSpecies.contains(id)))
+      {
+        ids.add(id);
+      }
+    }
+    for (String id : rateRules.keySet()) {
+      if (model.getSpecies(id) == null) {
+        ids.add(id);
+      }
+    }
+    int stateCount = ids.size();
+
+    // the values computed by assignment rules, then by kinetic laws
+    ids.addAll(assignmentRules.keySet());
+    int reactionStart = ids.size();
+    Map<String, Assignment> kineticLaws = new LinkedHashMap<String, Assignment>();
+    for (Reaction reaction : model.getListOfReactions()) {
+      KineticLaw kineticLaw = reaction.getKineticLaw();
+      ids.add(reaction.getId());
+      kineticLaws.put(reaction.getId(), new Assignment(reaction.getId(),
+        ((kineticLaw != null) && kineticLaw.isSetMath()) ? kineticLaw.getMath() : null));
+    }
+    int fixedStart = ids.size();
+
+    // all the other values
+    Set<String> known = new HashSet<String>(ids);
+    for (Compartment compartment : model.getListOfCompartments()) {
+      addFixed(compartment.getId(), ids, known);
+    }
+    for (Species species : model.getListOfSpecies()) {
+      addFixed(species.getId(), ids, known);
+    }
+    for (Parameter parameter : model.getListOfParameters()) {
+      addFixed(parameter.getId(), ids, known);
+    }
+    for (Reaction reaction : model.getListOfReactions()) {
+      for (SpeciesReference reference : reaction.getListOfReactants()) {
+        addFixed(reference.getId(), ids, known);
+      }
+      for (SpeciesReference reference : reaction.getListOfProducts()) {
+        addFixed(reference.getId(), ids, known);
+      }
+    }
+
+    Map<String, Integer> indices = new HashMap<String, Integer>();
+    for (int i = 0; i < ids.size(); i++) {
+      indices.put(ids.get(i), i);
+    }
+    NumericExpressionCompiler compiler = new NumericExpressionCompiler(indices, model);
+    compiler.setTimeIndex(ids.size());
+
+    double[] values = initialValues(model, ids, indices);
+
+    // the assignments evaluated at each step
+    Map<String, Assignment> computed = new LinkedHashMap<String, Assignment>(assignmentRules);
+    computed.putAll(kineticLaws);
+    List<Assignment> sorted = sort(computed);
+    NumericExpression[] assignments = new NumericExpression[sorted.size()];
+    int[] assignmentTargets = new int[sorted.size()];
+    for (int k = 0; k < assignments.length; k++) {
+      Assignment assignment = sorted.get(k);
+      assignments[k] = compile(compiler, assignment.math);
+      assignmentTargets[k] = indices.get(assignment.target);
+    }
+
+    // the initial assignments, evaluated once together with the assignments
+    Map<String, Assignment> initial = new LinkedHashMap<String, Assignment>();
+    for (InitialAssignment initialAssignment : model.getListOfInitialAssignments()) {
+      String variable = initialAssignment.getVariable();
+      if (indices.containsKey(variable)) {
+        initial.put(variable, new Assignment(variable, initialAssignment.getMath()));
+      }
+    }
+    for (Species species : model.getListOfSpecies()) {
+      ASTNode conversion = initialConversion(species, indices);
+      if ((conversion != null) && !initial.containsKey(species.getId())) {
+        initial.put(species.getId(), new Assignment(species.getId(), conversion));
+      }
+    }
+    initial.putAll(computed);
+    for (Assignment assignment : sort(initial)) {
+      values[indices.get(assignment.target)] = compile(compiler, assignment.math).evaluate(values);
+    }
+
+    NumericExpression[] rates = new NumericExpression[stateCount];
+    for (int i = 0; i < stateCount; i++) {
+      RateRule rateRule = rateRules.get(ids.get(i));
+      if (rateRule != null) {
+        rates[i] = compile(compiler, rateRule.getMath());
+      }
+    }
+
+    // the stoichiometric matrix, row by row
+    List<List<Pair<SpeciesReference, Double>>> rows = new ArrayList<List<Pair<SpeciesReference, Double>>>();
+    for (int i = 0; i < stateCount; i++) {
+      rows.add(new ArrayList<Pair<SpeciesReference, Double>>());
+    }
+    int entryCount = 0;
+    for (Reaction reaction : model.getListOfReactions()) {
+      entryCount += addEntries(reaction, reaction.getListOfReactants(), -1d, stateCount, indices, rows);
+      entryCount += addEntries(reaction, reaction.getListOfProducts(), 1d, stateCount, indices, rows);
+    }
+
+    int[] rowStart = new int[stateCount + 1];
+    int[] fluxIndices = new int[entryCount];
+    int[] stoichiometryIndices = new int[entryCount];
+    double[] stoichiometries = new double[entryCount];
+    int[] conversionFactorIndices = new int[entryCount];
+    int[] compartmentIndices = new int[stateCount];
+    int k = 0;
+    for (int i = 0; i < stateCount; i++) {
+      rowStart[i] = k;
+      compartmentIndices[i] = -1;
+      Species species = model.getSpecies(ids.get(i));
+      if (species == null) {
+        continue;
+      }
+      if (!species.getHasOnlySubstanceUnits() && indices.containsKey(species.getCompartment())) {
+        compartmentIndices[i] = indices.get(species.getCompartment());
+        if ((rates[i] == null) && assignmentRules.containsKey(species.getCompartment())) {
+          throw new SBMLException(MessageFormat.format(
+            "The species ''{0}'' cannot be diluted by its compartment ''{1}'', whose size is computed by an assignment rule.",
+            species.getId(), species.getCompartment()));
+        }
+      }
+      int conversionFactorIndex = getConversionFactorIndex(model, species, indices);
+      for (Pair<SpeciesReference, Double> entry : rows.get(i)) {
+        SpeciesReference reference = entry.getKey();
+        fluxIndices[k] = indices.get(((Reaction) reference.getParent().getParent()).getId());
+        if (reference.isSetId()) {
+          stoichiometryIndices[k] = indices.get(reference.getId());
+          stoichiometries[k] = entry.getValue();
+        } else {
+          stoichiometryIndices[k] = -1;
+          stoichiometries[k] = entry.getValue() * reference.getStoichiometry();
+        }
+        conversionFactorIndices[k] = conversionFactorIndex;
+        k++;
+      }
+    }
+    rowStart[stateCount] = k;
+
+    return new CompiledODESystem(ids.toArray(new String[ids.size()]), stateCount, reactionStart,
+      fixedStart, values, assignments, assignmentTargets, rates, rowStart, fluxIndices,
+      stoichiometryIndices, stoichiometries, conversionFactorIndices, compartmentIndices);
+  }
+
+  /**
+   * Adds the entries of the stoichiometric matrix for the given species
+   * references.
+   * 
+   * @param reaction
+   * @param references
+   * @param sign -1 for reactants, 1 for products
+   * @param stateCount
+   * @param indices
+   * @param rows
+   * @return the number of entries added.
+   */
+  private int addEntries(Reaction reaction, List<SpeciesReference> references, double sign,
+    int stateCount, Map<String, Integer> indices, List<List<Pair<SpeciesReference, Double>>> rows)
+  {
+    int count = 0;
+    for (SpeciesReference reference : references) {
+      Integer index = indices.get(reference.getSpecies());
+      if ((index != null) && (index.intValue() < stateCount)) {
+        Species species = reference.getSpeciesInstance();
+        if ((species != null) && !species.isBoundaryCondition()) {
+          rows.get(index.intValue()).add(Pair.of(reference, sign));
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Adds the given identifier to the fixed values if it is set and not yet
+   * known.
+   * 
+   * @param id
+   * @param ids
+   * @param known
+   */
+  private void addFixed(String id, List<String> ids, Set<String> known) {
+    if ((id != null) && (id.length() > 0) && known.add(id)) {
+      ids.add(id);
+    }
+  }
+
+  /**
+   * Checks that the stoichiometries of the given species references are
+   * constant.
+   * 
+   * @param references
+   * @param rateRules
+   * @param assignmentRules
+   * @throws SBMLException
+   */
+  @SuppressWarnings("deprecation")
+  private void checkSpeciesReferences(List<SpeciesReference> references,
+    Map<String, RateRule> rateRules, Map<String, Assignment> assignmentRules) throws SBMLException
+  {
+    for (SpeciesReference reference : references) {
+      if (reference.isSetStoichiometryMath()
+          || (reference.isSetId() && (rateRules.containsKey(reference.getId())
+              || assignmentRules.containsKey(reference.getId()))))
+      {
+        throw new SBMLException(MessageFormat.format(
+          "Variable stoichiometries are not supported, found one for species ''{0}''.",
+          reference.getSpecies()));
+      }
+    }
+  }
+
+  /**
+   * Compiles the given math, a missing math evaluates to zero.
+   * 
+   * @param compiler
+   * @param math
+   * @return the compiled math.
+   * @throws SBMLException
+   */
+  private NumericExpression compile(NumericExpressionCompiler compiler, ASTNode math)
+      throws SBMLException {
+    return math != null ? compiler.compile(math) : compiler.compile(new ASTNode(0));
+  }
+
+  /**
+   * Collects the identifiers used in the given math, except the local
+   * parameters.
+   * 
+   * @param math
+   * @param identifiers
+   */
+  private static void collectIdentifiers(ASTNode math, Set<String> identifiers) {
+    if ((math.getType() == ASTNode.Type.NAME) && !(math.getVariable() instanceof LocalParameter)) {
+      identifiers.add(math.getName());
+    }
+    for (int i = 0; i < math.getChildCount(); i++) {
+      collectIdentifiers(math.getChild(i), identifiers);
+    }
+  }
+
+  /**
+   * Returns the index of the factor by which the rates of change of the
+   * reactions are multiplied for the given species. The value is taken from
+   * the values of the system, so that it includes the initial assignments.
+   * 
+   * @param model
+   * @param species
+   * @param indices
+   * @return the index of the conversion factor of the species, or -1 if it
+   *         has none.
+   */
+  private int getConversionFactorIndex(Model model, Species species, Map<String, Integer> indices) {
+    String conversionFactor = null;
+    if (species.isSetConversionFactor()) {
+      conversionFactor = species.getConversionFactor();
+    } else if (model.isSetConversionFactor()) {
+      conversionFactor = model.getConversionFactor();
+    }
+    Integer index = (conversionFactor != null) ? indices.get(conversionFactor) : null;
+    return (index != null) ? index.intValue() : -1;
+  }
+
+  /**
+   * Returns the math converting the initial value of the given species into
+   * the value it has in the math of the model, i.e., dividing its initial
+   * amount by the size of its compartment if it does not only have
+   * substance units, and multiplying its initial concentration by the size
+   * of its compartment otherwise.
+   * 
+   * @param species
+   * @param indices
+   * @return the math computing the initial value of the species, or
+   *         {@code null} if its initial value does not need to be converted.
+   */
+  private ASTNode initialConversion(Species species, Map<String, Integer> indices) {
+    if (!species.isSetCompartment() || !indices.containsKey(species.getCompartment())) {
+      return null;
+    }
+    if (species.isSetInitialAmount() && !species.getHasOnlySubstanceUnits()) {
+      return ASTNode.frac(new ASTNode(species.getInitialAmount()), new ASTNode(species.getCompartment()));
+    } else if (!species.isSetInitialAmount() && species.isSetInitialConcentration()
+        && species.getHasOnlySubstanceUnits()) {
+      return ASTNode.times(new ASTNode(species.getInitialConcentration()), new ASTNode(species.getCompartment()));
+    }
+    return null;
+  }
+
+  /**
+   * Computes the values given by the attributes of the model elements,
+   * before the initial assignments.
+   * 
+   * @param model
+   * @param ids
+   * @param indices
+   * @return the initial values, followed by the initial time.
+   */
+  private double[] initialValues(Model model, List<String> ids, Map<String, Integer> indices) {
+    double[] values = new double[ids.size() + 1];
+    for (int i = 0; i < ids.size(); i++) {
+      values[i] = Double.NaN;
+    }
+    for (Compartment compartment : model.getListOfCompartments()) {
+      values[indices.get(compartment.getId())] = compartment.getSize();
+    }
+    for (Parameter parameter : model.getListOfParameters()) {
+      values[indices.get(parameter.getId())] = parameter.getValue();
+    }
+    // the values that need to be converted are computed with the initial
+    // assignments, see initialConversion
+    for (Species species : model.getListOfSpecies()) {
+      double value = Double.NaN;
+      if (species.isSetInitialAmount()) {
+        value = species.getInitialAmount();
+      } else if (species.isSetInitialConcentration()) {
+        value = species.getInitialConcentration();
+      }
+      values[indices.get(species.getId())] = value;
+    }
+    for (Reaction reaction : model.getListOfReactions()) {
+      for (SpeciesReference reference : reaction.getListOfReactants()) {
+        if (reference.isSetId()) {
+          values[indices.get(reference.getId())] = reference.getStoichiometry();
+        }
+      }
+      for (SpeciesReference reference : reaction.getListOfProducts()) {
+        if (reference.isSetId()) {
+          values[indices.get(reference.getId())] = reference.getStoichiometry();
+        }
+      }
+    }
+    values[ids.size()] = 0d;
+    return values;
+  }
+
+  /**
+   * Sorts the given assignments so that each one comes after the assignments
+   * of the values it depends on.
+   * 
+   * @param assignments
+   * @return the sorted assignments.
+   * @throws SBMLException
+   *             if the assignments depend on each other in a cycle.
+   */
+  private List<Assignment> sort(Map<String, Assignment> assignments) throws SBMLException {
+    List<Assignment> sorted = new ArrayList<Assignment>(assignments.size());
+    Set<String> done = new HashSet<String>();
+    Set<String> visiting = new HashSet<String>();
+    for (Assignment assignment : assignments.values()) {
+      visit(assignment, assignments, sorted, done, visiting);
+    }
+    return sorted;
+  }
+
+  /**
+   * Adds the given assignment to the sorted list after the assignments it
+   * depends on.
+   * 
+   * @param assignment
+   * @param assignments
+   * @param sorted
+   * @param done
+   * @param visiting
+   * @throws SBMLException
+   */
+  private void visit(Assignment assignment, Map<String, Assignment> assignments,
+    List<Assignment> sorted, Set<String> done, Set<String> visiting) throws SBMLException
+  {
+    if (done.contains(assignment.target)) {
+      return;
+    }
+    if (!visiting.add(assignment.target)) {
+      throw new SBMLException(MessageFormat.format(
+        "The assignment rules and kinetic laws depend on each other in a cycle through ''{0}''.",
+        assignment.target));
+    }
+    for (String dependency : assignment.dependencies) {
+      Assignment required = assignments.get(dependency);
+      if (required != null) {
+        visit(required, assignments, sorted, done, visiting);
+      }
+    }
+    visiting.remove(assignment.target);
+    done.add(assignment.target);
+    sorted.add(assignment);
+  }
+
+}
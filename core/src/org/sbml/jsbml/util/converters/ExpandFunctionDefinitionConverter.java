@@ -20,10 +20,7 @@
 package org.sbml.jsbml.util.converters;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
-import javax.swing.tree.TreeNode;
 import javax.xml.stream.XMLStreamException;
 
 import org.sbml.jsbml.ASTNode;
@@ -34,7 +31,7 @@ import org.sbml.jsbml.SBMLDocument;
 import org.sbml.jsbml.SBMLException;
 import org.sbml.jsbml.SBMLReader;
 import org.sbml.jsbml.SBMLWriter;
-import org.sbml.jsbml.util.filters.Filter;
+import org.sbml.jsbml.util.FunctionDefinitionCache;
 
 /**
  * Expands user-defined {@link FunctionDefinition} in an SBML document.
@@ -72,20 +69,7 @@ public class ExpandFunctionDefinitionConverter implements SBMLConverter {
     
     try {
       resultdoc = doc.clone();
-
-      resultdoc.filter(new Filter() {
-
-        @Override
-        public boolean accepts(Object o) {
-          if (o instanceof MathContainer) {
-
-            // call an utility that will replace the FDs
-            expandFunctionDefinition((MathContainer) o);
-          }
-
-          return false;
-        }
-      });
+      FunctionDefinitionCache.expandAll(resultdoc);
     } catch (Exception e) {
       // something went wrong during cloning. It can happen with malformed FunctionDefinition math
       // just returning the original unmodified document
@@ -97,8 +81,8 @@ public class ExpandFunctionDefinitionConverter implements SBMLConverter {
   /**
    * Expands the {@link FunctionDefinition} used in the given {@link MathContainer}.
    * 
-   * <p>The given {@link MathContainer} can be modified so make sure that you
-   * clone it beforehand if you don't want that to happen.</p>
+   * <p>The math of the given {@link MathContainer} is replaced so make sure
+   * that you clone it beforehand if you don't want that to happen.</p>
    * 
    * @param mathcontainer the math container to expands
    */
@@ -118,18 +102,24 @@ public class ExpandFunctionDefinitionConverter implements SBMLConverter {
     // Starting the actual conversion
     ASTNode math = expandFunctionDefinition(m, mathcontainer.getMath());
 
-    mathcontainer.setMath(math);
+    if (math != mathcontainer.getMath()) {
+      mathcontainer.setMath(math);
+    }
   }
   
   /**
    * Expands the {@link FunctionDefinition} used in the given {@link ASTNode}.
    * 
-   * <p>The given {@link ASTNode} can be modified so make sure that you
-   * clone it beforehand if you don't want that to happen. Make sure to use the returned
-   * ASTNode as it can be different from the given one if the top level ASTNode is of type
-   * {@link org.sbml.jsbml.ASTNode.Type#FUNCTION}.</p>
+   * <p>The given {@link ASTNode} is not modified. Make sure to use the
+   * returned ASTNode, which is an expanded copy if the given one calls some
+   * {@link FunctionDefinition}s. The templates of the
+   * {@link FunctionDefinition}s are memorized by the cache of the
+   * {@link Model} if it has been enabled with
+   * {@link Model#createFunctionDefinitionCache()}.</p>
    * 
+   * @param m the model that contains the {@link FunctionDefinition}s.
    * @param math the ASTNode to expands.
+   * @return the expanded math.
    */
   public static ASTNode expandFunctionDefinition(final Model m, final ASTNode math) {
     
@@ -138,117 +128,7 @@ public class ExpandFunctionDefinitionConverter implements SBMLConverter {
       return math;
     }
     
-    // Starting the actual conversion
-    boolean foundFunctionDefinition = false;
-    // container for the math to be able to modify it inside the Filter if the top level AST is a functionDefinition
-    final List<ASTNode> container = new ArrayList<ASTNode>();
-    container.add(math);
-    
-    do {
-      
-      List<? extends TreeNode> foundFunctionDefinitions = container.get(0).filter((new Filter() {
-        
-        @Override
-        public boolean accepts(Object o) {
-          if (o instanceof ASTNode) {
-            ASTNode current = (ASTNode) o;
-            
-            if (current.getType() == ASTNode.Type.FUNCTION) {
-              String sid = current.getName();
-              FunctionDefinition fd = m.getFunctionDefinition(sid);
-              
-              if (fd != null) {
-                // We found a FunctionDefinition referenced in a 'ci' mathML element
-                // we need to expand it
-                
-                // TODO - test for infinite loop
-            	  // System.out.println("expandFunctionDefinition - fdNode nb child = " + current.getChildCount());
-                
-                if (current.getChildCount() != fd.getArgumentCount()) {
-                  System.out.println("expandFunctionDefinition - number of arguments differ, aborting for " + sid);
-                  // return the ASTNode as it is so that the validation work for this FunctionDefinition.
-                  return false;
-                }
-                
-                ASTNode newMath = fd.getBody().clone(); 
-                
-                for (int i = 0; i < current.getChildCount(); i++) {
-                  ASTNode bvar = fd.getArgument(i);
-                  ASTNode expandedBVar = current.getChild(i);
-                  
-                  // test if newMath is directly equals to one of the arguments
-                  if (newMath.equals(bvar)) {
-                    // in this case we return directly expandedBVar
-                    newMath = expandedBVar;
-                    break;
-                  } else {                  
-                    replaceAll(newMath, bvar, expandedBVar);
-                  }
-                }
-                
-                TreeNode parent = current.getParent();
-                
-                if (parent == null || parent instanceof MathContainer) {
-                  container.add(0, newMath);
-                } else {
-                  int index = parent.getIndex(current);
-
-                  if (index != -1) {
-                    ((ASTNode) parent).replaceChild(index, newMath);
-                  }
-                }
-                
-                return true;
-              }
-            }
-          }
-          
-          return false;
-        }
-
-      }), false, true);
-      
-      if (foundFunctionDefinitions != null && foundFunctionDefinitions.size() > 0) {
-        // System.out.println("found size = " + foundFunctionDefinitions.size());
-        foundFunctionDefinition = true;
-      } else {
-        foundFunctionDefinition = false;
-      }
-      
-    } while (foundFunctionDefinition);
-    
-    return container.get(0);
-  }
-
-  /**
-   * Replaces all instances of {@code bvar} by {@code expandedBvar} inside the given {@link ASTNode}.
-   * 
-   * @param newMath the ASTNode to modify
-   * @param bvar the node to be replaced
-   * @param expandedBVar the node to insert in place of {@code bvar} 
-   */
-  private static void replaceAll(ASTNode newMath, final ASTNode bvar, final ASTNode expandedBVar) {
-
-    newMath.filter(new Filter() {
-      
-      @Override
-      public boolean accepts(Object o) {
-        if (o instanceof ASTNode) {
-          ASTNode current = (ASTNode) o;
-          
-          if (current.equals(bvar)) {
-            ASTNode parent = (ASTNode) current.getParent();
-            int index = parent.getIndex(current);
-            
-            if (index != -1) {
-              parent.replaceChild(index, expandedBVar);
-            }
-          }
-        }
-        return false;
-      }
-    });
-    
+    return FunctionDefinitionCache.expand(m, math);
   }
 
   /**
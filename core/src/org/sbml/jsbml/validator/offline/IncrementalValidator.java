@@ -0,0 +1,461 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.validator.offline;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.tree.TreeNode;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.NamedSBase;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLError;
+import org.sbml.jsbml.SBMLErrorLog;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.util.TreeNodeChangeEvent;
+import org.sbml.jsbml.util.TreeNodeChangeListener;
+import org.sbml.jsbml.util.TreeNodeRemovedEvent;
+import org.sbml.jsbml.validator.SBMLValidator.CHECK_CATEGORY;
+import org.sbml.jsbml.validator.offline.constraints.AnyConstraint;
+import org.sbml.jsbml.validator.offline.constraints.helper.ValidationTools;
+
+/**
+ * Validates an {@link SBMLDocument} offline and keeps the result up to date
+ * while the document is edited.
+ * 
+ * <p>The validator registers itself as shared {@link TreeNodeChangeListener} on
+ * the document. The first call to {@link #validate()} checks every element of the
+ * document, the following calls only check again the elements that changed
+ * since the previous call, together with the elements that depend on them:
+ * <ul>
+ * <li>the ancestors of a changed element, whose constraints often look at
+ * their children,</li>
+ * <li>all the elements of a newly added subtree,</li>
+ * <li>when an identifier or a meta identifier changes, or when an element
+ * with an identifier is added or removed, all the elements that have an
+ * attribute or a math symbol with the old or new value.</li>
+ * </ul>
+ * The elements having each attribute value or math symbol are indexed when
+ * they are validated, so that finding the dependents of a change does not
+ * visit the whole document.
+ * The errors are stored per element, so the errors of the elements that did
+ * not change are kept and the errors of removed elements are dropped.</p>
+ * 
+ * <p>Each element is checked with the constraints of the
+ * {@link org.sbml.jsbml.validator.offline.factory.ConstraintFactory} for its
+ * class, which are created once per class and then reused. In contrast to
+ * {@link SBMLDocument#checkConsistencyOffline()}, the function definitions are
+ * not expanded before the validation, as the document itself is validated.</p>
+ * 
+ * <p>This class is not thread-safe, the document must not be modified while
+ * {@link #validate()} is running.</p>
+ * 
+ * @since 1.5
+ */
+public class IncrementalValidator implements TreeNodeChangeListener {
+
+  /**
+   * The validated document.
+   */
+  private final SBMLDocument document;
+
+  /**
+   * The context used to validate each element.
+   */
+  private final NodeValidationContext context;
+
+  /**
+   * The errors found for each element.
+   */
+  private final Map<TreeNode, List<SBMLError>> errors = new IdentityHashMap<TreeNode, List<SBMLError>>();
+
+  /**
+   * The elements to validate again.
+   */
+  private final Set<TreeNode> dirty = Collections.newSetFromMap(new IdentityHashMap<TreeNode, Boolean>());
+
+  /**
+   * The elements whose attributes, and the math nodes whose names, had each
+   * value when they were last validated.
+   */
+  private final Map<String, Set<TreeNode>> referrers = new HashMap<String, Set<TreeNode>>();
+
+  /**
+   * The values under which each element is registered in
+   * {@link #referrers}.
+   */
+  private final Map<TreeNode, Set<String>> indexedValues = new IdentityHashMap<TreeNode, Set<String>>();
+
+  /**
+   * Whether the whole document has been validated once.
+   */
+  private boolean validated;
+
+  /**
+   * Whether a validation is running, to ignore the changes done by the
+   * constraints, such as user objects.
+   */
+  private boolean validating;
+
+  /**
+   * Creates an {@link IncrementalValidator} for the given document, using the
+   * same check categories as {@link SBMLDocument#checkConsistencyOffline()}
+   * by default, i.e., all but the unit consistency.
+   * 
+   * @param document the document to validate
+   */
+  public IncrementalValidator(SBMLDocument document) {
+    this(document, NodeValidationContext.defaultCategories());
+  }
+
+  /**
+   * Creates an {@link IncrementalValidator} for the given document.
+   * 
+   * @param document the document to validate
+   * @param categories the categories of constraints to check
+   */
+  public IncrementalValidator(SBMLDocument document, CHECK_CATEGORY[] categories) {
+    this.document = document;
+    context = new NodeValidationContext(document.getLevel(), document.getVersion(), categories,
+      new HashMap<Class<?>, AnyConstraint<Object>>());
+    document.addSharedTreeNodeChangeListener(this);
+  }
+
+  /**
+   * Stops tracking the changes of the document.
+   */
+  public void detach() {
+    document.removeSharedTreeNodeChangeListener(this);
+  }
+
+  /**
+   * Returns the errors found by the last call to {@link #validate()}, in
+   * document order, filtered by category as in
+   * {@link LoggingValidationContext#getErrorLog()}.
+   * 
+   * @return the errors found by the last validation.
+   */
+  public SBMLErrorLog getErrorLog() {
+    List<SBMLError> all = new ArrayList<SBMLError>();
+    collectErrors(document, all);
+
+    Set<String> ignoredCategories = LoggingValidationContext.analyseSBMLerrorLog(all);
+    SBMLErrorLog log = new SBMLErrorLog();
+    for (SBMLError error : all) {
+      if ((error.getCategory() == null) || !ignoredCategories.contains(error.getCategory())) {
+        log.add(error);
+      }
+    }
+    return log;
+  }
+
+  /**
+   * Returns {@code true} if the document changed since the last call to
+   * {@link #validate()}.
+   * 
+   * @return {@code true} if the document changed since the last validation.
+   */
+  public boolean isDirty() {
+    return !validated || !dirty.isEmpty();
+  }
+
+  /**
+   * Validates the elements of the document that changed since the last call,
+   * or the whole document on the first call.
+   * 
+   * @return the errors of the whole document, see {@link #getErrorLog()}.
+   */
+  public SBMLErrorLog validate() {
+    validating = true;
+    try {
+      List<TreeNode> nodes = new ArrayList<TreeNode>();
+      if (!validated) {
+        errors.clear();
+        referrers.clear();
+        indexedValues.clear();
+        collectNodes(document, null, nodes, null);
+      } else {
+        // constraint 10307 looks for duplicated meta identifiers in this set
+        Set<String> metaIds = new HashSet<String>();
+        collectNodes(document, dirty, nodes, metaIds);
+        context.getHashMap().put(ValidationTools.KEY_META_ID_SET, metaIds);
+      }
+
+      for (TreeNode node : nodes) {
+        validateNode(node);
+        index(node);
+      }
+
+      context.getHashMap().clear();
+      context.clearErrorLog();
+      dirty.clear();
+      validated = true;
+    } finally {
+      validating = false;
+    }
+    return getErrorLog();
+  }
+
+  /**
+   * Validates a single element and its package extensions.
+   * 
+   * @param node
+   */
+  private void validateNode(TreeNode node) {
+    List<SBMLError> nodeErrors = new ArrayList<SBMLError>(0);
+    context.validateNode(node, nodeErrors);
+
+    if (nodeErrors.isEmpty()) {
+      errors.remove(node);
+    } else {
+      errors.put(node, nodeErrors);
+    }
+  }
+
+  /**
+   * Collects the elements of the given subtree in document order.
+   * 
+   * @param node
+   * @param filter if not {@code null}, only the elements of this set are
+   * collected
+   * @param nodes receives the collected elements
+   * @param metaIds if not {@code null}, receives the meta identifiers of the
+   * elements that are not collected
+   */
+  private void collectNodes(TreeNode node, Set<TreeNode> filter, List<TreeNode> nodes, Set<String> metaIds) {
+    if ((filter == null) || filter.contains(node)) {
+      nodes.add(node);
+    } else if ((metaIds != null) && (node instanceof SBase) && ((SBase) node).isSetMetaId()) {
+      metaIds.add(((SBase) node).getMetaId());
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      collectNodes(node.getChildAt(i), filter, nodes, metaIds);
+    }
+  }
+
+  /**
+   * Collects the errors of the given subtree in document order.
+   * 
+   * @param node
+   * @param all
+   */
+  private void collectErrors(TreeNode node, List<SBMLError> all) {
+    List<SBMLError> nodeErrors = errors.get(node);
+    if (nodeErrors != null) {
+      all.addAll(nodeErrors);
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      collectErrors(node.getChildAt(i), all);
+    }
+  }
+
+  /**
+   * Marks the given element and its ancestors as changed.
+   * 
+   * @param node
+   */
+  private void markDirty(TreeNode node) {
+    for (TreeNode n = node; (n != null) && dirty.add(n); n = n.getParent()) {
+      // the ancestors of a node already marked are marked as well
+    }
+  }
+
+  /**
+   * Marks all the elements of the given subtree as changed.
+   * 
+   * @param node
+   */
+  private void markSubtreeDirty(TreeNode node) {
+    dirty.add(node);
+    for (int i = 0; i < node.getChildCount(); i++) {
+      markSubtreeDirty(node.getChildAt(i));
+    }
+  }
+
+  /**
+   * Marks as changed all the elements that refer to the given identifier,
+   * or that have the same identifier, as indexed by {@link #index(TreeNode)}.
+   * The elements that changed since their last validation are already
+   * marked.
+   * 
+   * @param value
+   */
+  private void markReferences(Object value) {
+    if ((value instanceof String) && (((String) value).length() > 0)) {
+      Set<TreeNode> set = referrers.get(value);
+      if (set != null) {
+        for (TreeNode node : set.toArray(new TreeNode[set.size()])) {
+          markDirty(node);
+        }
+      }
+    }
+  }
+
+  /**
+   * Registers the given element in {@link #referrers} under the values of
+   * its attributes, or the given math node under its name.
+   * 
+   * @param node
+   */
+  private void index(TreeNode node) {
+    unindex(node);
+    Set<String> values = null;
+    if (node instanceof SBase) {
+      for (String value : ((SBase) node).writeXMLAttributes().values()) {
+        if (isIdentifier(value)) {
+          if (values == null) {
+            values = new HashSet<String>();
+          }
+          values.add(value);
+        }
+      }
+    } else if (node instanceof ASTNode) {
+      ASTNode astNode = (ASTNode) node;
+      if ((astNode.isName() || (astNode.getType() == ASTNode.Type.FUNCTION)) && isIdentifier(astNode.getName())) {
+        values = Collections.singleton(astNode.getName());
+      }
+    }
+    if (values == null) {
+      return;
+    }
+    indexedValues.put(node, values);
+    for (String value : values) {
+      Set<TreeNode> set = referrers.get(value);
+      if (set == null) {
+        set = Collections.newSetFromMap(new IdentityHashMap<TreeNode, Boolean>());
+        referrers.put(value, set);
+      }
+      set.add(node);
+    }
+  }
+
+  /**
+   * Removes the given element from {@link #referrers}.
+   * 
+   * @param node
+   */
+  private void unindex(TreeNode node) {
+    Set<String> values = indexedValues.remove(node);
+    if (values == null) {
+      return;
+    }
+    for (String value : values) {
+      Set<TreeNode> set = referrers.get(value);
+      if (set != null) {
+        set.remove(node);
+        if (set.isEmpty()) {
+          referrers.remove(value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether the given attribute value can be an identifier or a meta
+   * identifier, to leave out numbers and empty values.
+   * 
+   * @param value
+   * @return whether the value can be an identifier.
+   */
+  private static boolean isIdentifier(String value) {
+    if ((value == null) || (value.length() == 0)) {
+      return false;
+    }
+    char first = value.charAt(0);
+    return Character.isLetter(first) || (first == '_');
+  }
+
+  /**
+   * Removes the errors of the given subtree.
+   * 
+   * @param node
+   */
+  private void forget(TreeNode node) {
+    errors.remove(node);
+    dirty.remove(node);
+    unindex(node);
+    Enumeration<?> children = node.children();
+    while ((children != null) && children.hasMoreElements()) {
+      forget((TreeNode) children.nextElement());
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+   */
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    String property = evt.getPropertyName();
+    if (validating || property.equals(TreeNodeChangeEvent.userObject)
+        || property.equals(TreeNodeChangeEvent.parentSBMLObject)) {
+      return;
+    }
+    markDirty((TreeNode) evt.getSource());
+    if (property.equals(TreeNodeChangeEvent.math) && (evt.getNewValue() instanceof ASTNode)) {
+      // a new math is not added as node
+      markSubtreeDirty((ASTNode) evt.getNewValue());
+    }
+    if (property.equals(TreeNodeChangeEvent.id) || property.equals(TreeNodeChangeEvent.metaId)) {
+      markReferences(evt.getOldValue());
+      markReferences(evt.getNewValue());
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeAdded(javax.swing.tree.TreeNode)
+   */
+  @Override
+  public void nodeAdded(TreeNode node) {
+    if (validating) {
+      return;
+    }
+    markSubtreeDirty(node);
+    markDirty(node.getParent());
+    if ((node instanceof NamedSBase) && ((NamedSBase) node).isSetId()) {
+      markReferences(((NamedSBase) node).getId());
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeRemoved(org.sbml.jsbml.util.TreeNodeRemovedEvent)
+   */
+  @Override
+  public void nodeRemoved(TreeNodeRemovedEvent event) {
+    if (validating) {
+      return;
+    }
+    TreeNode node = event.getSource();
+    forget(node);
+    markDirty(event.getPreviousParent());
+    if ((node instanceof NamedSBase) && ((NamedSBase) node).isSetId()) {
+      markReferences(((NamedSBase) node).getId());
+    }
+  }
+
+}
@@ -171,7 +171,7 @@ public class LoggingValidationContext extends ValidationContext implements Valid
     
     if (e != null) {
       
-      log.add(e);
+      logFailure(e);
       
       // TODO - if it is an Error or above, set the current category as the maximum (or create a set of ignored categories) to validate for the next elements.
       
@@ -179,7 +179,7 @@ public class LoggingValidationContext extends ValidationContext implements Valid
       logger.warn("Couldn't load SBMLError for error code " + id);
       SBMLError defaultError = new SBMLError();
       defaultError.setCode(id);
-      log.add(defaultError);
+      logFailure(defaultError);
     }
   }
 
@@ -259,7 +259,10 @@ public class LoggingValidationContext extends ValidationContext implements Valid
     if (o instanceof SBase) {
       SBase s = (SBase) o;
       
-      s.putUserObject(JSBML.ALLOW_INVALID_SBML, Boolean.TRUE);
+      // the element is not changed if it is already marked, see ParallelValidator
+      if (!s.containsUserObjectKey(JSBML.ALLOW_INVALID_SBML)) {
+        s.putUserObject(JSBML.ALLOW_INVALID_SBML, Boolean.TRUE);
+      }
     }
   }
 
@@ -0,0 +1,162 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.validator.offline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.tree.TreeNode;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.SBMLError;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.ext.ASTNodePlugin;
+import org.sbml.jsbml.ext.SBasePlugin;
+import org.sbml.jsbml.validator.SBMLValidator.CHECK_CATEGORY;
+import org.sbml.jsbml.validator.offline.constraints.AnyConstraint;
+
+/**
+ * A {@link LoggingValidationContext} that validates one element at a time,
+ * without its children, and records the errors of this element separately.
+ * The constraints of each class are created once and kept in a map that can
+ * be shared by several contexts.
+ * 
+ * @since 1.5
+ * @see IncrementalValidator
+ * @see ParallelValidator
+ */
+class NodeValidationContext extends LoggingValidationContext {
+
+  /**
+   * The constraints of each class, {@code null} for classes without
+   * constraints.
+   */
+  private final Map<Class<?>, AnyConstraint<Object>> constraints;
+
+  /**
+   * The errors of the element being validated.
+   */
+  private List<SBMLError> current;
+
+  /**
+   * @param level the SBML level
+   * @param version the SBML version
+   * @param categories the categories of constraints to check
+   * @param constraints the constraints of each class, filled by
+   *        {@link #prepare(TreeNode)}
+   */
+  public NodeValidationContext(int level, int version, CHECK_CATEGORY[] categories,
+    Map<Class<?>, AnyConstraint<Object>> constraints) {
+    super(level, version);
+    this.constraints = constraints;
+    enableCheckCategories(categories, true);
+    setValidateRecursively(false);
+  }
+
+  /**
+   * Returns the categories checked by default by
+   * {@link org.sbml.jsbml.SBMLDocument#checkConsistencyOffline()}, i.e., all
+   * but the unit consistency.
+   * 
+   * @return the default categories.
+   */
+  static CHECK_CATEGORY[] defaultCategories() {
+    List<CHECK_CATEGORY> categories = new ArrayList<CHECK_CATEGORY>(Arrays.asList(CHECK_CATEGORY.values()));
+    categories.remove(CHECK_CATEGORY.UNITS_CONSISTENCY);
+    return categories.toArray(new CHECK_CATEGORY[categories.size()]);
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.validator.offline.LoggingValidationContext#logFailure(org.sbml.jsbml.SBMLError)
+   */
+  @Override
+  public void logFailure(SBMLError error) {
+    super.logFailure(error);
+    if ((error != null) && (current != null)) {
+      current.add(error);
+    }
+  }
+
+  /**
+   * Creates the constraints for the class of the given element and of its
+   * package extensions, if they are not yet known.
+   * 
+   * @param node
+   */
+  public void prepare(TreeNode node) {
+    prepare(node.getClass());
+    if (node instanceof SBase) {
+      for (SBasePlugin plugin : ((SBase) node).getExtensionPackages().values()) {
+        prepare(plugin.getClass());
+      }
+    } else if (node instanceof ASTNode) {
+      for (ASTNodePlugin plugin : ((ASTNode) node).getExtensionPackages().values()) {
+        prepare(plugin.getClass());
+      }
+    }
+  }
+
+  /**
+   * @param type
+   */
+  private void prepare(Class<?> type) {
+    if (!constraints.containsKey(type)) {
+      loadConstraints(type);
+      constraints.put(type, getRootConstraint());
+    }
+  }
+
+  /**
+   * Validates the given element and its package extensions, without their
+   * children.
+   * 
+   * @param node the element to validate
+   * @param errors receives the errors found
+   */
+  public void validateNode(TreeNode node, List<SBMLError> errors) {
+    prepare(node);
+    current = errors;
+
+    check(node);
+    if (node instanceof SBase) {
+      for (SBasePlugin plugin : ((SBase) node).getExtensionPackages().values()) {
+        check(plugin);
+      }
+    } else if (node instanceof ASTNode) {
+      for (ASTNodePlugin plugin : ((ASTNode) node).getExtensionPackages().values()) {
+        check(plugin);
+      }
+    }
+
+    current = null;
+  }
+
+  /**
+   * @param o
+   */
+  private void check(Object o) {
+    Class<?> type = o.getClass();
+    setRootConstraint(constraints.get(type), type);
+    validate(o, false);
+  }
+
+}
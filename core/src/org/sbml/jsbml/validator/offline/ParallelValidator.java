@@ -0,0 +1,487 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.validator.offline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.swing.tree.TreeNode;
+
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.MathContainer;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLError;
+import org.sbml.jsbml.SBMLErrorLog;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.validator.SBMLValidator.CHECK_CATEGORY;
+import org.sbml.jsbml.validator.offline.constraints.AnyConstraint;
+import org.sbml.jsbml.validator.offline.constraints.helper.AssignmentCycleValidation;
+import org.sbml.jsbml.validator.offline.constraints.helper.ValidationTools;
+import org.sbml.jsbml.validator.offline.factory.SBMLErrorCodes;
+
+/**
+ * Validates an {@link SBMLDocument} offline using several threads.
+ * 
+ * <p>The elements of the document are listed in document order and the list
+ * is split into ranges, for instance parts of the list of reactions or of
+ * species, which are validated by the tasks of a {@link ForkJoinPool}. Each
+ * task has its own {@link ValidationContext}, and the errors of the tasks are
+ * merged in document order, so the result does not depend on the number of
+ * threads.</p>
+ * 
+ * <p>The constraints are created once per class before the validation
+ * starts and are then shared by all the tasks. The state that some
+ * constraints keep in {@link ValidationContext#getHashMap()} is handled as
+ * follows:
+ * <ul>
+ * <li>the meta identifiers already seen are computed for each range, so that
+ * duplicated meta identifiers are reported for the same elements as by a
+ * sequential validation,</li>
+ * <li>the sets used to report each assignment cycle or compartment cycle only
+ * once depend on the order of the validation. The tasks validate each element
+ * with empty sets, then the elements that reported such a cycle, as well as
+ * the compartments having an outside compartment, are validated again in
+ * document order with the same sets.</li>
+ * </ul>
+ * With the default categories, the errors are thus the same as the ones of a
+ * sequential validation. The unit checks of quantities involved in an
+ * assignment cycle may differ.</p>
+ * 
+ * <p>The tasks only read the document. The constraints test whether a
+ * {@link org.sbml.jsbml.ListOf} is set before they get it, so they do not
+ * create any, and they keep their caches in the {@link ValidationContext}.
+ * Before the tasks start, everything that would otherwise be stored lazily
+ * in the shared document is set up: the content kept by lazy loading is
+ * parsed, the elements are marked with {@link JSBML#ALLOW_INVALID_SBML}, and
+ * the memorized child indices and hash codes are computed. The marks added
+ * this way are removed again once the validation is done. The document must
+ * not be modified during the validation.</p>
+ * 
+ * @since 1.5
+ */
+public class ParallelValidator {
+
+  /**
+   * The key of the set of visited compartments in
+   * {@link ValidationContext#getHashMap()}, see {@code CompartmentConstraints}.
+   */
+  private static final String OUTSIDE_SET = "OUTSIDE_SET";
+
+  /**
+   * The default maximal number of elements validated by one task.
+   */
+  public static final int DEFAULT_THRESHOLD = 256;
+
+  /**
+   * The pool running the tasks.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Whether the pool has been created by this validator.
+   */
+  private final boolean ownPool;
+
+  /**
+   * The categories of constraints to check.
+   */
+  private final CHECK_CATEGORY[] categories;
+
+  /**
+   * The maximal number of elements validated by one task.
+   */
+  private int threshold = DEFAULT_THRESHOLD;
+
+  /**
+   * Creates a {@link ParallelValidator} using as many threads as processors
+   * and the same check categories as
+   * {@link SBMLDocument#checkConsistencyOffline()} by default, i.e., all but
+   * the unit consistency.
+   */
+  public ParallelValidator() {
+    this(new ForkJoinPool(), true, NodeValidationContext.defaultCategories());
+  }
+
+  /**
+   * Creates a {@link ParallelValidator} that runs its tasks in the given
+   * pool. The pool is not shut down by {@link #shutdown()}.
+   * 
+   * @param pool the pool running the tasks
+   * @param categories the categories of constraints to check
+   */
+  public ParallelValidator(ForkJoinPool pool, CHECK_CATEGORY[] categories) {
+    this(pool, false, categories);
+  }
+
+  /**
+   * @param pool
+   * @param ownPool
+   * @param categories
+   */
+  private ParallelValidator(ForkJoinPool pool, boolean ownPool, CHECK_CATEGORY[] categories) {
+    this.pool = pool;
+    this.ownPool = ownPool;
+    this.categories = categories.clone();
+  }
+
+  /**
+   * Returns the maximal number of elements validated by one task.
+   * 
+   * @return the maximal number of elements validated by one task.
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the maximal number of elements validated by one task.
+   * 
+   * @param threshold a positive number
+   */
+  public void setThreshold(int threshold) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("The threshold must be positive: " + threshold);
+    }
+    this.threshold = threshold;
+  }
+
+  /**
+   * Shuts down the pool of this validator, if it has been created by the
+   * validator.
+   */
+  public void shutdown() {
+    if (ownPool) {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Validates the given document.
+   * 
+   * @param document the document to validate
+   * @return the errors found, filtered by category as in
+   *         {@link LoggingValidationContext#getErrorLog()}.
+   */
+  public SBMLErrorLog validate(SBMLDocument document) {
+    List<SBase> markedElements = new ArrayList<SBase>();
+    prepare(document, markedElements);
+
+    // computes the child indices while collecting the elements, then the
+    // hash codes of all the elements, which are memorized in the elements
+    List<TreeNode> nodes = new ArrayList<TreeNode>();
+    collectNodes(document, nodes);
+    document.hashCode();
+
+    // registers the cache of the derived units before the tasks change the
+    // user objects of the elements, and only during the validation
+    boolean cacheUnits = document.isSetModel() && !document.getModel().isSetDerivedUnitCache()
+        && Arrays.asList(categories).contains(CHECK_CATEGORY.UNITS_CONSISTENCY);
+    if (cacheUnits) {
+      document.getModel().createDerivedUnitCache();
+    }
+    // the same for the expanded function definitions, so that the tasks do
+    // not create the cache concurrently
+    boolean cacheFunctions = document.isSetModel() && !document.getModel().isSetFunctionDefinitionCache()
+        && (document.getModel().getFunctionDefinitionCount() > 0);
+    if (cacheFunctions) {
+      document.getModel().createFunctionDefinitionCache();
+    }
+    try {
+      return validate(document, nodes);
+    } finally {
+      if (cacheUnits) {
+        document.getModel().unsetDerivedUnitCache();
+      }
+      if (cacheFunctions) {
+        document.getModel().unsetFunctionDefinitionCache();
+      }
+      restore(markedElements);
+    }
+  }
+
+  /**
+   * Sets up, in the given subtree, what the constraints would otherwise
+   * store lazily: parses the content kept by lazy loading and marks the
+   * elements with {@link JSBML#ALLOW_INVALID_SBML}, which
+   * {@link LoggingValidationContext#willValidate(ValidationContext, AnyConstraint, Object)}
+   * would add otherwise.
+   * 
+   * @param node the root of the subtree
+   * @param markedElements receives the elements marked
+   * @see #restore(List)
+   */
+  private static void prepare(TreeNode node, List<SBase> markedElements) {
+    if (node instanceof SBase) {
+      SBase sbase = (SBase) node;
+      if (sbase.isSetNotes()) {
+        sbase.getNotes();
+      }
+      if (sbase.isSetAnnotation()) {
+        sbase.getAnnotation();
+      }
+      if ((sbase instanceof MathContainer) && ((MathContainer) sbase).isSetMath()) {
+        ((MathContainer) sbase).getMath();
+      }
+      if (!sbase.containsUserObjectKey(JSBML.ALLOW_INVALID_SBML)) {
+        sbase.putUserObject(JSBML.ALLOW_INVALID_SBML, Boolean.TRUE);
+        markedElements.add(sbase);
+      }
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      prepare(node.getChildAt(i), markedElements);
+    }
+  }
+
+  /**
+   * Removes the marks added by {@link #prepare(TreeNode, List)}.
+   * 
+   * @param markedElements
+   */
+  private static void restore(List<SBase> markedElements) {
+    for (SBase sbase : markedElements) {
+      sbase.removeUserObject(JSBML.ALLOW_INVALID_SBML);
+    }
+  }
+
+  /**
+   * Validates the given elements of the given document.
+   * 
+   * @param document the document to validate
+   * @param nodes the elements of the document in document order
+   * @return the errors found.
+   */
+  private SBMLErrorLog validate(SBMLDocument document, List<TreeNode> nodes) {
+
+    Map<Class<?>, AnyConstraint<Object>> constraints = new HashMap<Class<?>, AnyConstraint<Object>>();
+    NodeValidationContext context = new NodeValidationContext(document.getLevel(),
+      document.getVersion(), categories, constraints);
+    String[] metaIds = new String[nodes.size()];
+    Map<String, Integer> firstIndex = new HashMap<String, Integer>();
+    for (int i = 0; i < metaIds.length; i++) {
+      TreeNode node = nodes.get(i);
+      context.prepare(node);
+      if ((node instanceof SBase) && ((SBase) node).isSetMetaId()) {
+        metaIds[i] = ((SBase) node).getMetaId();
+        if (!firstIndex.containsKey(metaIds[i])) {
+          firstIndex.put(metaIds[i], i);
+        }
+      }
+    }
+
+    List<List<SBMLError>> results = new ArrayList<List<SBMLError>>(Collections.<List<SBMLError>>nCopies(nodes.size(), null));
+    pool.invoke(new ValidationTask(document, nodes, constraints, metaIds, firstIndex, results, 0, nodes.size()));
+
+    // validates again in document order the elements whose errors depend on
+    // the elements validated before them
+    Set<String> foundCycleIds = new HashSet<String>();
+    Set<Object> visitedCompartments = new HashSet<Object>();
+    for (int i = 0; i < metaIds.length; i++) {
+      TreeNode node = nodes.get(i);
+      if (isOrderDependent(node, results.get(i))) {
+        Set<String> seenMetaIds = new HashSet<String>();
+        if ((metaIds[i] != null) && (firstIndex.get(metaIds[i]) < i)) {
+          seenMetaIds.add(metaIds[i]);
+        }
+        context.getHashMap().put(ValidationTools.KEY_META_ID_SET, seenMetaIds);
+        context.getHashMap().put(AssignmentCycleValidation.ASSIGNMENT_CYCLE_VALIDATION_FOUND_CYCLE_IDS, foundCycleIds);
+        context.getHashMap().put(OUTSIDE_SET, visitedCompartments);
+        List<SBMLError> nodeErrors = new ArrayList<SBMLError>();
+        context.validateNode(node, nodeErrors);
+        results.set(i, nodeErrors);
+      }
+    }
+
+    List<SBMLError> errors = new ArrayList<SBMLError>();
+    for (List<SBMLError> nodeErrors : results) {
+      errors.addAll(nodeErrors);
+    }
+
+    Set<String> ignoredCategories = LoggingValidationContext.analyseSBMLerrorLog(errors);
+    SBMLErrorLog log = new SBMLErrorLog();
+    for (SBMLError error : errors) {
+      if ((error.getCategory() == null) || !ignoredCategories.contains(error.getCategory())) {
+        log.add(error);
+      }
+    }
+    return log;
+  }
+
+  /**
+   * Collects the elements of the given subtree in document order.
+   * 
+   * @param node
+   * @param nodes
+   */
+  private static void collectNodes(TreeNode node, List<TreeNode> nodes) {
+    nodes.add(node);
+    for (int i = 0; i < node.getChildCount(); i++) {
+      collectNodes(node.getChildAt(i), nodes);
+    }
+  }
+
+  /**
+   * Returns whether the errors of the given element depend on the elements
+   * validated before it, i.e., whether it reported an assignment cycle or is
+   * a compartment having an outside compartment.
+   * 
+   * @param node
+   * @param errors the errors found when validating the element on its own
+   * @return whether the element has to be validated again in document order.
+   */
+  private static boolean isOrderDependent(TreeNode node, List<SBMLError> errors) {
+    if ((node instanceof Compartment) && ((Compartment) node).isSetOutside()) {
+      return true;
+    }
+    for (SBMLError error : errors) {
+      if (error.getCode() == SBMLErrorCodes.CORE_20906) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Validates a range of the elements.
+   */
+  private class ValidationTask extends RecursiveAction {
+
+    /**
+     * Generated serial version identifier.
+     */
+    private static final long serialVersionUID = -2594307806390322174L;
+
+    /**
+     * 
+     */
+    private final SBMLDocument document;
+
+    /**
+     * 
+     */
+    private final List<TreeNode> nodes;
+
+    /**
+     * 
+     */
+    private final Map<Class<?>, AnyConstraint<Object>> constraints;
+
+    /**
+     * The meta identifier of each element, or {@code null}.
+     */
+    private final String[] metaIds;
+
+    /**
+     * The index of the first element having each meta identifier.
+     */
+    private final Map<String, Integer> firstIndex;
+
+    /**
+     * The errors of each element.
+     */
+    private final List<List<SBMLError>> results;
+
+    /**
+     * 
+     */
+    private final int start;
+
+    /**
+     * 
+     */
+    private final int end;
+
+    /**
+     * @param document
+     * @param nodes
+     * @param constraints
+     * @param metaIds
+     * @param firstIndex
+     * @param results
+     * @param start
+     * @param end
+     */
+    public ValidationTask(SBMLDocument document, List<TreeNode> nodes,
+      Map<Class<?>, AnyConstraint<Object>> constraints, String[] metaIds,
+      Map<String, Integer> firstIndex, List<List<SBMLError>> results, int start, int end) {
+      this.document = document;
+      this.nodes = nodes;
+      this.constraints = constraints;
+      this.metaIds = metaIds;
+      this.firstIndex = firstIndex;
+      this.results = results;
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * @param parent
+     * @param start
+     * @param end
+     */
+    private ValidationTask(ValidationTask parent, int start, int end) {
+      this(parent.document, parent.nodes, parent.constraints, parent.metaIds, parent.firstIndex,
+        parent.results, start, end);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    @Override
+    protected void compute() {
+      if (end - start > threshold) {
+        int middle = (start + end) >>> 1;
+        invokeAll(new ValidationTask(this, start, middle), new ValidationTask(this, middle, end));
+        return;
+      }
+
+      NodeValidationContext context = new NodeValidationContext(document.getLevel(),
+        document.getVersion(), categories, constraints);
+
+      // the meta identifiers that a sequential validation would have seen
+      // before the first element of this range
+      Set<String> seenMetaIds = new HashSet<String>();
+      for (int i = start; i < end; i++) {
+        if ((metaIds[i] != null) && (firstIndex.get(metaIds[i]) < start)) {
+          seenMetaIds.add(metaIds[i]);
+        }
+      }
+      context.getHashMap().put(ValidationTools.KEY_META_ID_SET, seenMetaIds);
+
+      for (int i = start; i < end; i++) {
+        context.getHashMap().put(AssignmentCycleValidation.ASSIGNMENT_CYCLE_VALIDATION_FOUND_CYCLE_IDS, new HashSet<String>());
+        context.getHashMap().put(OUTSIDE_SET, new HashSet<Object>());
+        List<SBMLError> errors = new ArrayList<SBMLError>();
+        context.validateNode(nodes.get(i), errors);
+        results.set(i, errors);
+      }
+    }
+
+  }
+
+}
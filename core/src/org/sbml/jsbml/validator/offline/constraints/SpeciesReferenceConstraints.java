@@ -104,11 +104,11 @@ public class SpeciesReferenceConstraints extends AbstractConstraintDeclaration {
             
             // get extend units
             Model m = speciesRef.getModel();
-            UnitDefinition extendUnits = ValidationTools.getDerivedExtendUnitDefinition(m);
+            UnitDefinition extendUnits = ValidationTools.getDerivedExtendUnitDefinition(ctx, m);
             
             // get species conversionFactor or more conversionFactor - if defined multiply it by the species units
             Species s = speciesRef.getSpeciesInstance();
-            UnitDefinition speciesUnits = s != null ? ValidationTools.getDerivedSubstanceUnitDefinition(s) : null;
+            UnitDefinition speciesUnits = s != null ? ValidationTools.getDerivedSubstanceUnitDefinition(ctx, s) : null;
             
             if (extendUnits != null && !extendUnits.isInvalid()) {
               UnitDefinition cfUnits = null;
@@ -21,7 +21,9 @@
 package org.sbml.jsbml.validator.offline.constraints.helper;
 
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -75,25 +77,25 @@ public final class ValidationTools {
   public static final String                             KEY_META_ID_SET    =
       "metaIds";
   /**
-   * Constant used to cache the derived {@link UnitDefinition} in the user object of an {@link SBase}.
+   * Constant used to cache the derived {@link UnitDefinition}s in the hash map of a {@link ValidationContext}.
    * 
    */
   private static final String VALIDATION_CACHE_DERIVED_UNIT_DEFINITION = "jsbml.offline.validator.cache.dud";
 
   /**
-   * Constant used to cache the derived {@link UnitDefinition} in the user objects of an {@link SBase}.
+   * Constant used to cache the derived substance {@link UnitDefinition}s of the {@link Species} and {@link Model}s in the hash map of a {@link ValidationContext}.
    * 
    */
   private static final String VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION = "jsbml.offline.validator.cache.dsud";
   
   /**
-   * Constant used to cache the derived extends {@link UnitDefinition} in the user objects of a {@link Model}.
+   * Constant used to cache the derived extends {@link UnitDefinition} of a {@link Model} in the hash map of a {@link ValidationContext}.
    * 
    */
   private static final String VALIDATION_CACHE_DERIVED_EXTEND_UNIT_DEFINITION = "jsbml.offline.validator.cache.model.extends";
 
   /**
-   * Constant used to cache the derived time {@link UnitDefinition} in the user objects of a {@link Model}.
+   * Constant used to cache the derived time {@link UnitDefinition} of a {@link Model} in the hash map of a {@link ValidationContext}.
    * 
    */
   private static final String VALIDATION_CACHE_DERIVED_TIME_UNIT_DEFINITION = "jsbml.offline.validator.cache.model.substance";
@@ -394,17 +396,7 @@ public final class ValidationTools {
    */
   public static boolean isSboTerm(String s) {
 
-    if (s.isEmpty() || !SBO.checkTerm(s)) {
-      return false;
-    }
-
-    try {
-      SBO.getTerm(s);
-    } catch (Exception e) {
-      return false;
-    }
-
-    return true;
+    return !s.isEmpty() && SBO.checkTerm(s) && SBO.containsTerm(s);
   }
 
 
@@ -714,10 +706,35 @@ public final class ValidationTools {
   }
 
 
+  /**
+   * Returns the cache stored under the given key in the hash map of the given
+   * context, creating it if needed.
+   * 
+   * <p>The derived units are cached in the context and not in the user objects
+   * of the elements, so that validating a document does not change it and
+   * several contexts can validate the same document at the same time.
+   * </p>
+   * 
+   * @param ctx the validation context
+   * @param key the key of the cache
+   * @return the cache stored under the given key.
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<Object, UnitDefinition> getUnitDefinitionCache(ValidationContext ctx, String key) {
+    Map<Object, UnitDefinition> cache = (Map<Object, UnitDefinition>) ctx.getHashMap().get(key);
+    
+    if (cache == null) {
+      cache = new IdentityHashMap<Object, UnitDefinition>();
+      ctx.getHashMap().put(key, cache);
+    }
+    
+    return cache;
+  }
+
   /**
    * Returns the derived {@link UnitDefinition} for the given {@link SBaseWithDerivedUnit}.
    * 
-   * <p> Try to get the derived unit from the user objects first and store it there
+   * <p> Try to get the derived unit from the hash map of the context first and store it there
    * for future usage if it is not there.
    * </p>
    * 
@@ -727,11 +744,12 @@ public final class ValidationTools {
    */
   public static UnitDefinition getDerivedUnitDefinition(ValidationContext ctx, SBaseWithDerivedUnit sbase) {
     
-    if (sbase.isSetUserObjects() && sbase.getUserObject(VALIDATION_CACHE_DERIVED_UNIT_DEFINITION) != null) {
-      return (UnitDefinition) sbase.getUserObject(VALIDATION_CACHE_DERIVED_UNIT_DEFINITION);
-    }
+    Map<Object, UnitDefinition> cache = getUnitDefinitionCache(ctx, VALIDATION_CACHE_DERIVED_UNIT_DEFINITION);
+    UnitDefinition derivedUD = cache.get(sbase);
     
-    UnitDefinition derivedUD = null;
+    if (derivedUD != null) {
+      return derivedUD;
+    }
     
     if (! (sbase instanceof AbstractMathContainer)) {
       derivedUD = sbase.getDerivedUnitDefinition();
@@ -739,7 +757,7 @@ public final class ValidationTools {
       derivedUD = getMathDerivedUnitDefinition(ctx, (MathContainer) sbase);
     }
 
-    sbase.putUserObject(VALIDATION_CACHE_DERIVED_UNIT_DEFINITION, derivedUD);
+    cache.put(sbase, derivedUD);
     
     return derivedUD;
   }
@@ -747,95 +765,159 @@ public final class ValidationTools {
   /**
    * Returns the substance only derived {@link UnitDefinition} for the given {@link Species}.
    * 
-   * <p> Try to get the derived unit from the user objects first and store it there
+   * <p> Try to get the derived unit from the hash map of the context first and store it there
    * for future usage if it is not there.
    * </p>
    * 
+   * @param ctx the validation context
    * @param sbase the sbase
    * @return the substance only derived {@link UnitDefinition} for the given {@link Species}.
    */
-  public static UnitDefinition getDerivedSubstanceUnitDefinition(Species sbase) {
-    
-    if (sbase.isSetUserObjects() && sbase.getUserObject(VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION) != null) {
-      return (UnitDefinition) sbase.getUserObject(VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION);
-    }
+  public static UnitDefinition getDerivedSubstanceUnitDefinition(ValidationContext ctx, Species sbase) {
     
-    UnitDefinition derivedUD = sbase.getDerivedSubstanceUnitDefinition();
+    Map<Object, UnitDefinition> cache = getUnitDefinitionCache(ctx, VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION);
+    UnitDefinition derivedUD = cache.get(sbase);
     
-    sbase.putUserObject(VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION, derivedUD);
+    if (derivedUD == null) {
+      derivedUD = sbase.getDerivedSubstanceUnitDefinition();
+      cache.put(sbase, derivedUD);
+    }
     
     return derivedUD;
   }
 
+  /**
+   * Returns the substance only derived {@link UnitDefinition} for the given {@link Species}.
+   * 
+   * <p> The result is not cached, the cache is now kept in the {@link ValidationContext}.
+   * </p>
+   * 
+   * @param sbase the sbase
+   * @return the substance only derived {@link UnitDefinition} for the given {@link Species}.
+   * @deprecated use {@link #getDerivedSubstanceUnitDefinition(ValidationContext, Species)} instead.
+   */
+  @Deprecated
+  public static UnitDefinition getDerivedSubstanceUnitDefinition(Species sbase) {
+    return sbase.getDerivedSubstanceUnitDefinition();
+  }
+
   /**
    * Returns the extend {@link UnitDefinition} for the given {@link Model}.
    * 
-   * <p> Try to get the derived unit from the user objects first and store it there
+   * <p> Try to get the derived unit from the hash map of the context first and store it there
    * for future usage if it is not there.
    * </p>
    * 
+   * @param ctx the validation context
    * @param m the model
    * @return the extend {@link UnitDefinition} for the given {@link Model}.
    */
-  public static UnitDefinition getDerivedExtendUnitDefinition(Model m) {
-    
-    if (m.isSetUserObjects() && m.getUserObject(VALIDATION_CACHE_DERIVED_EXTEND_UNIT_DEFINITION) != null) {
-      return (UnitDefinition) m.getUserObject(VALIDATION_CACHE_DERIVED_EXTEND_UNIT_DEFINITION);
-    }
+  public static UnitDefinition getDerivedExtendUnitDefinition(ValidationContext ctx, Model m) {
     
-    UnitDefinition derivedUD = m.getExtentUnitsInstance();
+    Map<Object, UnitDefinition> cache = getUnitDefinitionCache(ctx, VALIDATION_CACHE_DERIVED_EXTEND_UNIT_DEFINITION);
+    UnitDefinition derivedUD = cache.get(m);
     
-    m.putUserObject(VALIDATION_CACHE_DERIVED_EXTEND_UNIT_DEFINITION, derivedUD);
+    if (derivedUD == null) {
+      derivedUD = m.getExtentUnitsInstance();
+      cache.put(m, derivedUD);
+    }
     
     return derivedUD;
   }  
 
+  /**
+   * Returns the extend {@link UnitDefinition} for the given {@link Model}.
+   * 
+   * <p> The result is not cached, the cache is now kept in the {@link ValidationContext}.
+   * </p>
+   * 
+   * @param m the model
+   * @return the extend {@link UnitDefinition} for the given {@link Model}.
+   * @deprecated use {@link #getDerivedExtendUnitDefinition(ValidationContext, Model)} instead.
+   */
+  @Deprecated
+  public static UnitDefinition getDerivedExtendUnitDefinition(Model m) {
+    return m.getExtentUnitsInstance();
+  }
+
   /**
    * Returns the substance {@link UnitDefinition} for the given {@link Model}.
    * 
-   * <p> Try to get the derived unit from the user objects first and store it there
+   * <p> Try to get the derived unit from the hash map of the context first and store it there
    * for future usage if it is not there.
    * </p>
    * 
+   * @param ctx the validation context
    * @param m the model
    * @return the substance {@link UnitDefinition} for the given {@link Model}.
    */
-  public static UnitDefinition getDerivedSubstanceUnitDefinition(Model m) {
-    
-    if (m.isSetUserObjects() && m.getUserObject(VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION) != null) {
-      return (UnitDefinition) m.getUserObject(VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION);
-    }
+  public static UnitDefinition getDerivedSubstanceUnitDefinition(ValidationContext ctx, Model m) {
     
-    UnitDefinition derivedUD = m.getSubstanceUnitsInstance();
+    Map<Object, UnitDefinition> cache = getUnitDefinitionCache(ctx, VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION);
+    UnitDefinition derivedUD = cache.get(m);
     
-    m.putUserObject(VALIDATION_CACHE_DERIVED_SUBSTANCE_UNIT_DEFINITION, derivedUD);
+    if (derivedUD == null) {
+      derivedUD = m.getSubstanceUnitsInstance();
+      cache.put(m, derivedUD);
+    }
     
     return derivedUD;
   }  
 
+  /**
+   * Returns the substance {@link UnitDefinition} for the given {@link Model}.
+   * 
+   * <p> The result is not cached, the cache is now kept in the {@link ValidationContext}.
+   * </p>
+   * 
+   * @param m the model
+   * @return the substance {@link UnitDefinition} for the given {@link Model}.
+   * @deprecated use {@link #getDerivedSubstanceUnitDefinition(ValidationContext, Model)} instead.
+   */
+  @Deprecated
+  public static UnitDefinition getDerivedSubstanceUnitDefinition(Model m) {
+    return m.getSubstanceUnitsInstance();
+  }
+
   /**
    * Returns the time {@link UnitDefinition} for the given {@link Model}.
    * 
-   * <p> Try to get the derived unit from the user objects first and store it there
+   * <p> Try to get the derived unit from the hash map of the context first and store it there
    * for future usage if it is not there.
    * </p>
    * 
+   * @param ctx the validation context
    * @param m the model
    * @return the time {@link UnitDefinition} for the given {@link Model}.
    */
-  public static UnitDefinition getDerivedTimeUnitDefinition(Model m) {
-    
-    if (m.isSetUserObjects() && m.getUserObject(VALIDATION_CACHE_DERIVED_TIME_UNIT_DEFINITION) != null) {
-      return (UnitDefinition) m.getUserObject(VALIDATION_CACHE_DERIVED_TIME_UNIT_DEFINITION);
-    }
+  public static UnitDefinition getDerivedTimeUnitDefinition(ValidationContext ctx, Model m) {
     
-    UnitDefinition derivedUD = m.getTimeUnitsInstance();
+    Map<Object, UnitDefinition> cache = getUnitDefinitionCache(ctx, VALIDATION_CACHE_DERIVED_TIME_UNIT_DEFINITION);
+    UnitDefinition derivedUD = cache.get(m);
     
-    m.putUserObject(VALIDATION_CACHE_DERIVED_TIME_UNIT_DEFINITION, derivedUD);
+    if (derivedUD == null) {
+      derivedUD = m.getTimeUnitsInstance();
+      cache.put(m, derivedUD);
+    }
     
     return derivedUD;
   }  
 
+  /**
+   * Returns the time {@link UnitDefinition} for the given {@link Model}.
+   * 
+   * <p> The result is not cached, the cache is now kept in the {@link ValidationContext}.
+   * </p>
+   * 
+   * @param m the model
+   * @return the time {@link UnitDefinition} for the given {@link Model}.
+   * @deprecated use {@link #getDerivedTimeUnitDefinition(ValidationContext, Model)} instead.
+   */
+  @Deprecated
+  public static UnitDefinition getDerivedTimeUnitDefinition(Model m) {
+    return m.getTimeUnitsInstance();
+  }
+
   /**
    * Returns the derived {@link UnitDefinition} for the given {@link MathContainer}.
    * 
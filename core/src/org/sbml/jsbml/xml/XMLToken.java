@@ -1175,7 +1175,7 @@ public abstract class XMLToken extends AbstractTreeNode {
     result = prime * result
         + ((attributes == null) ? 0 : attributes.hashCode());
     result = prime * result
-        + ((characters == null) ? 0 : characters.hashCode());
+        + ((characters == null) ? 0 : getCharacters().hashCode());
     result = prime * result + (int) (column ^ (column >>> 32));
     result = prime * result + (isEOF ? 1231 : 1237);
     result = prime * result + (isEndElement ? 1231 : 1237);
@@ -19,7 +19,10 @@
  */
 package org.sbml.jsbml.xml.parsers;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -31,6 +34,16 @@ import org.apache.log4j.Logger;
 
 
 /**
+ * Registry of the {@link ReadingParser}s, {@link WritingParser}s and
+ * {@link PackageParser}s available in the classpath.
+ * 
+ * <p>The registry is filled once, when the {@link ParserManager} is first
+ * requested, and cannot be modified afterwards, so the {@link ParserManager}
+ * can be used from several threads at the same time. As the parsers keep
+ * some state while reading or writing, {@link #getReadingParsers()} and
+ * {@link #getWritingParsers()} return new instances of these parsers at each
+ * call, which must not be shared between threads. Only the parsers without
+ * any instance field are shared.</p>
  * 
  * @author Nicolas Rodriguez
  * @since 1.0
@@ -38,27 +51,42 @@ import org.apache.log4j.Logger;
 public class ParserManager {
 
   /**
-   * 
+   * Holds the {@link ParserManager} so that it is created, in a thread-safe
+   * way, the first time it is requested.
    */
-  private static ParserManager manager;
+  private static class ManagerHolder {
+
+    /**
+     * 
+     */
+    private static final ParserManager manager = new ParserManager();
+  }
 
   /**
-   * 
+   * Unmodifiable map from namespace to the {@link ReadingParser} registered
+   * for it.
    */
-  public Map<String, ReadingParser> readingParsers = new HashMap<String, ReadingParser>();
+  private final Map<String, ReadingParser> readingParsers;
   /**
    * 
    */
-  private Map<String, WritingParser> writingParsers = new HashMap<String, WritingParser>();
+  private final Map<String, WritingParser> writingParsers;
   /**
    * 
    */
-  private Map<String, PackageParser> packageParsers = new HashMap<String, PackageParser>();
+  private final Map<String, PackageParser> packageParsers;
 
   /**
    * Map between the {@link PackageParser} namespace and package short name.
    */
-  private Map<String, String> namespaceToNameMap = new HashMap<String, String>();
+  private final Map<String, String> namespaceToNameMap;
+
+  /**
+   * The registered parsers that do not have any instance field, mapped to
+   * their class. They are returned by {@link #getReadingParsers()} and
+   * {@link #getWritingParsers()} instead of new instances.
+   */
+  private final Map<Class<?>, Object> sharedParsers;
 
   /**
    * A {@link Logger} for this class.
@@ -78,25 +106,42 @@ public class ParserManager {
    * Private constructor to make sure that we have only one {@link ParserManager} per JVM.
    */
   private ParserManager() {
-    init();
+    Map<String, ReadingParser> readingParsers = new HashMap<String, ReadingParser>();
+    Map<String, WritingParser> writingParsers = new HashMap<String, WritingParser>();
+    Map<String, PackageParser> packageParsers = new HashMap<String, PackageParser>();
+    Map<String, String> namespaceToNameMap = new HashMap<String, String>();
+    init(readingParsers, writingParsers, packageParsers, namespaceToNameMap);
+
+    // the registries are not modified after this point
+    sharedParsers = Collections.unmodifiableMap(findStatelessParsers(readingParsers, writingParsers));
+    this.readingParsers = Collections.unmodifiableMap(readingParsers);
+    this.writingParsers = Collections.unmodifiableMap(writingParsers);
+    this.packageParsers = Collections.unmodifiableMap(packageParsers);
+    this.namespaceToNameMap = Collections.unmodifiableMap(namespaceToNameMap);
   }
 
   /**
-   * Returns the {@link ParserManager}.
+   * Returns the {@link ParserManager}. This method is thread-safe.
    * 
    * @return the {@link ParserManager}.
    */
   public static ParserManager getManager() {
-    if (manager == null) {
-      manager = new ParserManager();
-    }
-    return manager;
+    return ManagerHolder.manager;
   }
 
   /**
+   * Fills the given registries with the parsers found by the
+   * {@link ServiceLoader} and with the default parsers.
    * 
+   * @param readingParsers
+   * @param writingParsers
+   * @param packageParsers
+   * @param namespaceToNameMap
    */
-  private void init() {
+  private void init(Map<String, ReadingParser> readingParsers,
+    Map<String, WritingParser> writingParsers,
+    Map<String, PackageParser> packageParsers,
+    Map<String, String> namespaceToNameMap) {
     // loading the ReadingParsers
     Iterator<ReadingParser> readingParserList = ServiceLoader.load(ReadingParser.class).iterator();
     List<String> classNames = new ArrayList<String>();
@@ -169,7 +214,7 @@ public class ParserManager {
       if (! classNames.contains(parserClassName)) {
         
         try {
-          Object newInstance = Class.forName(parserClassName).newInstance();
+          Object newInstance = Class.forName(parserClassName).getDeclaredConstructor().newInstance();
           
           if (newInstance instanceof ReadingParser) {
             ReadingParser readingParser = (ReadingParser) newInstance;
@@ -214,14 +259,7 @@ public class ParserManager {
             logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
           }
         }
-        catch (InstantiationException e) 
-        {
-          if (logger.isDebugEnabled()) {
-            logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
-            e.printStackTrace();
-          }
-        }
-        catch (IllegalAccessException e) 
+        catch (ReflectiveOperationException e) 
         {
           if (logger.isDebugEnabled()) {
             logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
@@ -302,160 +340,118 @@ public class ParserManager {
   /**
    * Gets a copy of the registered {@link ReadingParser}s map.
    * 
+   * <p>Each call returns new instances of the {@link ReadingParser}s that
+   * keep some state while reading a document. The parsers without any
+   * instance field are created once and shared.</p>
+   * 
    * @return a copy of the registered {@link ReadingParser}s map.
    */
   public Map<String, ReadingParser> getReadingParsers() {
+    return instantiate(readingParsers, ReadingParser.class);
+  }
 
-    Map<String, ReadingParser> clonedMap = new HashMap<String, ReadingParser>();
-    List<String> classNames = new ArrayList<String>();
-
-    Iterator<ReadingParser> readingParserList = ServiceLoader.load(ReadingParser.class).iterator();
-
-    while (readingParserList.hasNext()) {
-      try {
-        ReadingParser readingParser = readingParserList.next();
-
-        if (readingParser != null) {
-
-          classNames.add(readingParser.getClass().getName());
-          
-          for (String namespaceURI : readingParser.getNamespaces()) {
-            clonedMap.put(namespaceURI, readingParser);
-          }
-        }
-      }
-      catch (ServiceConfigurationError e){
-        // No need to print the message again, it is printed once in the init() method
-      }
-    }
-    
-    for (String parserClassName  : parserDefaults) {
-      if (! classNames.contains(parserClassName)) {
-        
-        try {
-          Object newInstance = Class.forName(parserClassName).newInstance();
-          
-          if (newInstance instanceof ReadingParser) {
-            ReadingParser readingParser = (ReadingParser) newInstance;
-            
-            for (String namespaceURI : readingParser.getNamespaces()) {
-              clonedMap.put(namespaceURI, readingParser);
-            }
-          }
-        } catch (ClassNotFoundException e) 
-        {
-          if (logger.isDebugEnabled()) {
-            logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
-          }
-        }
-        catch (InstantiationException e) 
-        {
-          if (logger.isDebugEnabled()) {
-            logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
-            e.printStackTrace();
-          }
-        }
-        catch (IllegalAccessException e) 
-        {
-          if (logger.isDebugEnabled()) {
-            logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
-            e.printStackTrace();
-          }
-        }
-      }
-    }
-
-
-    return clonedMap;
+  /**
+   * Returns the registered {@link ReadingParser}s, which must not be used to
+   * read documents, see {@link #getReadingParsers()}.
+   * 
+   * @return an unmodifiable map from namespace to the registered
+   *         {@link ReadingParser}.
+   */
+  public Map<String, ReadingParser> getRegisteredReadingParsers() {
+    return readingParsers;
   }
 
   /**
    * Gets a copy of the registered {@link WritingParser}s map.
    * 
+   * <p>Each call returns new instances of the {@link WritingParser}s that
+   * keep some state while writing a document. The parsers without any
+   * instance field are created once and shared.</p>
+   * 
    * @return a copy of the registered {@link WritingParser}s map.
    */
   public Map<String, WritingParser> getWritingParsers() {
+    return instantiate(writingParsers, WritingParser.class);
+  }
 
-    Map<String, WritingParser> clonedMap = new HashMap<String, WritingParser>();
-    List<String> classNames = new ArrayList<String>();
-
-    Iterator<ReadingParser> readingParserList = ServiceLoader.load(ReadingParser.class).iterator();
-
-    while (readingParserList.hasNext()) {
-      try {
-        ReadingParser readingParser = readingParserList.next();
+  /**
+   * Returns a map from namespace to parser, in which each stateful parser
+   * of the given registry is replaced by a new instance of its class, a
+   * parser declaring several namespaces being shared between them.
+   * 
+   * @param registry map from namespace to registered parser
+   * @param type the type of parser
+   * @return a new map from namespace to parser instance.
+   */
+  private <T> Map<String, T> instantiate(Map<String, ? extends T> registry, Class<T> type) {
+    Map<String, T> clonedMap = new HashMap<String, T>();
+    Map<Class<?>, T> instances = new HashMap<Class<?>, T>();
 
-        if (readingParser != null && readingParser instanceof WritingParser) {
+    for (Map.Entry<String, ? extends T> entry : registry.entrySet()) {
+      Class<?> parserClass = entry.getValue().getClass();
+      T parser = instances.get(parserClass);
 
-          classNames.add(readingParser.getClass().getName());
+      if (parser == null) {
+        Object sharedParser = sharedParsers.get(parserClass);
 
-          for (String namespaceURI : readingParser.getNamespaces()) {
-            clonedMap.put(namespaceURI, (WritingParser) readingParser);
-          }
+        try {
+          parser = type.cast(sharedParser != null ? sharedParser : parserClass.getDeclaredConstructor().newInstance());
+          instances.put(parserClass, parser);
+        } catch (ReflectiveOperationException e) {
+          logger.warn("problem instantiating class '" + parserClass.getName() + "': " + e.getMessage());
+          continue;
         }
       }
-      catch (ServiceConfigurationError e){
-        // No need to print the message again, it is printed once in the init() method
-      }
+      clonedMap.put(entry.getKey(), parser);
     }
 
-    Iterator<WritingParser> service_list2 = ServiceLoader.load(WritingParser.class).iterator();
-
-    while (service_list2.hasNext()) {
-      try {
-        WritingParser writingParser = service_list2.next();
-
-        if (writingParser != null) {
-
-          classNames.add(writingParser.getClass().getName());
+    return clonedMap;
+  }
 
-          for (String namespaceURI : writingParser.getNamespaces()) {
-            clonedMap.put(namespaceURI, writingParser);
-          }
-        }
-      }
-      catch (ServiceConfigurationError e){
-        e.printStackTrace();
+  /**
+   * Collects the registered parsers whose class, including its super
+   * classes, does not declare any instance field, so that they can be used
+   * by several readers or writers at the same time.
+   * 
+   * @param readingParsers
+   * @param writingParsers
+   * @return a map from class to registered parser instance.
+   */
+  private Map<Class<?>, Object> findStatelessParsers(
+    Map<String, ReadingParser> readingParsers,
+    Map<String, WritingParser> writingParsers) {
+    Map<Class<?>, Object> statelessParsers = new HashMap<Class<?>, Object>();
+    List<Object> parsers = new ArrayList<Object>(readingParsers.values());
+    parsers.addAll(writingParsers.values());
+
+    for (Object parser : parsers) {
+      Class<?> parserClass = parser.getClass();
+
+      if (!statelessParsers.containsKey(parserClass) && isStateless(parserClass)) {
+        statelessParsers.put(parserClass, parser);
       }
     }
 
-    for (String parserClassName  : parserDefaults) {
-      if (! classNames.contains(parserClassName)) {
-        
-        try {
-          Object newInstance = Class.forName(parserClassName).newInstance();
-          
-          if (newInstance instanceof WritingParser) {
-            WritingParser readingParser = (WritingParser) newInstance;
-            
-            for (String namespaceURI : readingParser.getNamespaces()) {
-              clonedMap.put(namespaceURI, readingParser);
-            }
-          }
-        } catch (ClassNotFoundException e) 
-        {
-          if (logger.isDebugEnabled()) {
-            logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
-          }
-        }
-        catch (InstantiationException e) 
-        {
-          if (logger.isDebugEnabled()) {
-            logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
-            e.printStackTrace();
-          }
-        }
-        catch (IllegalAccessException e) 
-        {
-          if (logger.isDebugEnabled()) {
-            logger.debug("problem loading class '" + parserClassName + "': " + e.getMessage());
-            e.printStackTrace();
-          }
+    return statelessParsers;
+  }
+
+  /**
+   * Returns {@code true} if neither the given class nor its super classes
+   * declare an instance field.
+   * 
+   * @param parserClass
+   * @return {@code true} if instances of the given class do not have any
+   *         state.
+   */
+  private static boolean isStateless(Class<?> parserClass) {
+    for (Class<?> c = parserClass; c != null; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          return false;
         }
       }
     }
-
-    return clonedMap;
+    return true;
   }
 
   /**
@@ -491,7 +487,7 @@ public class ParserManager {
   public static void main(String[] args) {
     System.out.println(ParserManager.getManager().getReadingParsers());
     System.out.println(ParserManager.getManager().getReadingParsers());
-    System.out.println(ParserManager.getManager().readingParsers);
+    System.out.println(ParserManager.getManager().getRegisteredReadingParsers());
 
     System.out.println(ParserManager.getManager().getWritingParsers());
     System.out.println(ParserManager.getManager().getWritingParsers());
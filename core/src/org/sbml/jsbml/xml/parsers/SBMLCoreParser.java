@@ -90,9 +90,16 @@ public class SBMLCoreParser implements ReadingParser, WritingParser {
 
   /**
    * This map contains all the relationships XML element name <=> matching
-   * java class.
+   * java class. It is loaded once and only read afterwards, so that the
+   * {@link SBMLCoreParser} does not have any state and can be shared.
    */
-  private Map<String, Class<? extends Object>> sbmlCoreElements;
+  private static final Map<String, Class<? extends Object>> sbmlCoreElements = new HashMap<String, Class<? extends Object>>();
+
+  static {
+    // Initializes the sbmlCoreElements of this parser.
+    JSBML.loadClasses("org/sbml/jsbml/resources/cfg/SBMLCoreElements.xml",
+      sbmlCoreElements);
+  }
 
   /**
    * Log4j logger
@@ -105,15 +112,10 @@ public class SBMLCoreParser implements ReadingParser, WritingParser {
   private static final transient ResourceBundle bundle = ResourceManager.getBundle("org.sbml.jsbml.resources.cfg.Messages");
 
   /**
-   * Creates a SBMLCoreParser instance. Initializes the sbmlCoreElements of
-   * this PackageParser.
+   * Creates a SBMLCoreParser instance.
    * 
    */
   public SBMLCoreParser() {
-    sbmlCoreElements = new HashMap<String, Class<? extends Object>>();
-    // Initializes the sbmlCoreElements of this parser.
-    JSBML.loadClasses("org/sbml/jsbml/resources/cfg/SBMLCoreElements.xml",
-      sbmlCoreElements);
   }
 
   /* (non-Javadoc)
@@ -235,6 +237,22 @@ public class SBMLCoreParser implements ReadingParser, WritingParser {
     }
   }
 
+  /**
+   * Returns {@code true} if the given identifier belongs to an element that
+   * was handed to a {@link org.sbml.jsbml.xml.stax.SBMLStreamHandler} and
+   * discarded while the given model was read in streaming mode.
+   * 
+   * @param model
+   * @param id
+   * @return {@code true} if the given identifier belongs to a streamed
+   *         element.
+   * @see JSBML#STREAMED_IDS
+   */
+  private static boolean isStreamed(Model model, String id) {
+    Object streamedIds = model.getUserObject(JSBML.STREAMED_IDS);
+    return (streamedIds instanceof Map<?, ?>) && ((Map<?, ?>) streamedIds).containsKey(id);
+  }
+
   /* (non-Javadoc)
    * @see org.sbml.jsbml.xml.ReadingParser#processEndDocument(SBMLDocument sbmlDocument)
    */
@@ -253,7 +271,8 @@ public class SBMLCoreParser implements ReadingParser, WritingParser {
           model.getElementName(), SBMLtools.getIdOrName(model)));
       }
       if (model.isSetConversionFactor()
-          && !model.isSetConversionFactorInstance()) {
+          && !model.isSetConversionFactorInstance()
+          && !isStreamed(model, model.getConversionFactor())) {
         logger.warn(MessageFormat.format(
           bundle.getString("SBMLCoreParser.unknownReferenceError1"),
           "Parameter", "conversionFactorID", model.getConversionFactor(),
@@ -336,7 +355,8 @@ public class SBMLCoreParser implements ReadingParser, WritingParser {
           if (rule instanceof AssignmentRule) {
             AssignmentRule assignmentRule = (AssignmentRule) rule;
             if (assignmentRule.isSetVariable()
-                && !assignmentRule.isSetVariableInstance()) {
+                && !assignmentRule.isSetVariableInstance()
+                && !isStreamed(model, assignmentRule.getVariable())) {
               logger.warn(MessageFormat.format(
                 bundle.getString("SBMLCoreParser.unknownReferenceError2"),
                 "Symbol", "variableID", assignmentRule.getVariable(),
@@ -353,7 +373,8 @@ public class SBMLCoreParser implements ReadingParser, WritingParser {
           } else if (rule instanceof RateRule) {
             RateRule rateRule = (RateRule) rule;
             if (rateRule.isSetVariable()
-                && !rateRule.isSetVariableInstance()) {
+                && !rateRule.isSetVariableInstance()
+                && !isStreamed(model, rateRule.getVariable())) {
               logger.warn(MessageFormat.format(
                 bundle.getString("SBMLCoreParser.unknownReferenceError3"),
                 "Symbol", "variableID", rateRule.getVariable(),
@@ -405,7 +426,8 @@ public class SBMLCoreParser implements ReadingParser, WritingParser {
                   .getEventAssignment(j);
 
               if (eventAssignment.isSetVariable()
-                  && !eventAssignment.isSetVariableInstance()) {
+                  && !eventAssignment.isSetVariableInstance()
+                  && !isStreamed(model, eventAssignment.getVariable())) {
                 logger.warn(MessageFormat.format(
                   bundle.getString("SBMLCoreParser.unknownReferenceError4"),
                   "Symbol", "variableID", eventAssignment.getVariable(),
@@ -422,7 +444,8 @@ public class SBMLCoreParser implements ReadingParser, WritingParser {
               .getInitialAssignment(i);
 
           if (initialAssignment.isSetVariable()
-              && !initialAssignment.isSetVariableInstance()) {
+              && !initialAssignment.isSetVariableInstance()
+              && !isStreamed(model, initialAssignment.getVariable())) {
             logger.warn(MessageFormat.format(
               bundle.getString("SBMLCoreParser.unknownReferenceError5"),
               "Symbol", "symbolID",
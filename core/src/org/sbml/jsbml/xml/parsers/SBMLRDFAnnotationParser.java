@@ -1205,7 +1205,7 @@ public class SBMLRDFAnnotationParser implements AnnotationReader, AnnotationWrit
      * 
      * @param contextObject
      */
-    private void checkAbout(SBase contextObject)
+    static void checkAbout(SBase contextObject)
     {
       String about = contextObject.getAnnotation().getAbout();
       String metaid = null;
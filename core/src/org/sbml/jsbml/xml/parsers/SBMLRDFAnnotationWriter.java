@@ -0,0 +1,457 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.parsers;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.sbml.jsbml.Annotation;
+import org.sbml.jsbml.CVTerm;
+import org.sbml.jsbml.CVTerm.Qualifier;
+import org.sbml.jsbml.Creator;
+import org.sbml.jsbml.History;
+import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.util.StringTools;
+import org.sbml.jsbml.xml.XMLAttributes;
+import org.sbml.jsbml.xml.XMLNode;
+import org.sbml.jsbml.xml.XMLTriple;
+import org.w3c.util.DateParser;
+
+/**
+ * Writes the {@link Annotation} of an {@link SBase} directly to an
+ * {@link XMLStreamWriter}. The {@link History} and the {@link CVTerm}s are
+ * written as RDF, in the same form as {@link SBMLRDFAnnotationParser}, but
+ * without cloning the non-RDF annotation and building an {@link XMLNode} tree
+ * for them first.
+ * 
+ * <p>The RDF elements that could not be read into the {@link History} or the
+ * {@link CVTerm}s are kept in the non-RDF annotation and have to be merged
+ * with the generated RDF. Such annotations are not supported by this class,
+ * see {@link #canWrite(SBase)}, and have to be written with
+ * {@link Annotation#getFullAnnotation()}. Only the empty rdf:RDF element
+ * left over by reading a standard RDF annotation is filled in place.</p>
+ * 
+ * @since 1.5
+ */
+public class SBMLRDFAnnotationWriter {
+
+  /**
+   * The white space written before each child element of the RDF elements.
+   */
+  private static final String SEPARATOR = "\n\t";
+
+  /**
+   * 
+   */
+  private final XMLNodeWriter xmlNodeWriter;
+
+  /**
+   * 
+   */
+  private final XMLStreamWriter writer;
+
+  /**
+   * 
+   */
+  private final int depth;
+
+  /**
+   * 
+   */
+  private final int indentCount;
+
+  /**
+   * 
+   */
+  private final char indentChar;
+
+  /**
+   * @param writer the writer to write to
+   * @param depth the number of indent characters of the annotation element
+   * @param indentCount the number of indent characters per level
+   * @param indentChar the indent character
+   */
+  public SBMLRDFAnnotationWriter(XMLStreamWriter writer, int depth, int indentCount, char indentChar) {
+    xmlNodeWriter = new XMLNodeWriter(writer, depth, indentCount, indentChar);
+    this.writer = writer;
+    this.depth = depth;
+    this.indentCount = indentCount;
+    this.indentChar = indentChar;
+  }
+
+  /**
+   * Returns {@code true} if the annotation of the given {@link SBase} can be
+   * written by this class, that is if its non-RDF annotation does not contain
+   * any RDF content and if none of its {@link Creator}s and {@link CVTerm}s
+   * refers to custom RDF.
+   * 
+   * @param sbase
+   * @return {@code true} if the annotation of the given {@link SBase} can be
+   *         written by {@link #write(SBase)}.
+   */
+  public static boolean canWrite(SBase sbase) {
+    if (!sbase.isSetAnnotation()) {
+      return false;
+    }
+    Annotation annotation = sbase.getAnnotation();
+    if (annotation.isSetNonRDFannotation()) {
+      XMLNode rdfNode = annotation.getNonRDFannotation().getChildElement("RDF", Annotation.URI_RDF_SYNTAX_NS);
+      if ((rdfNode != null) && !isEmptyRDF(rdfNode)) {
+        return false;
+      }
+    }
+    if (!sbase.isSetHistory() && (sbase.getCVTermCount() == 0)) {
+      return true;
+    }
+    if ((sbase.getLevel() == 1) && !sbase.isSetMetaId()) {
+      // no rdf:about can be determined
+      return false;
+    }
+    if (sbase.isSetHistory()) {
+      for (Creator creator : sbase.getHistory().getListOfCreators()) {
+        if (creator.getUserObject(SBMLRDFAnnotationParser.CUSTOM_RDF) != null) {
+          return false;
+        }
+      }
+    }
+    return !hasCustomRDF(annotation.getListOfCVTerms());
+  }
+
+  /**
+   * @param rdfNode
+   * @return {@code true} if the given rdf:RDF element only declares
+   *         namespaces and contains white space.
+   */
+  private static boolean isEmptyRDF(XMLNode rdfNode) {
+    if ((rdfNode.getPrefix() == null) || (rdfNode.getPrefix().trim().length() == 0)
+        || (rdfNode.getAttributesLength() > 0)) {
+      return false;
+    }
+    for (int i = 0; i < rdfNode.getChildCount(); i++) {
+      XMLNode child = rdfNode.getChildAt(i);
+      if (!child.isText() || (child.getCharacters().trim().length() > 0)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param cvTerms
+   * @return {@code true} if one of the given {@link CVTerm}s or of their
+   *         nested {@link CVTerm}s refers to custom RDF.
+   */
+  private static boolean hasCustomRDF(List<CVTerm> cvTerms) {
+    for (CVTerm cvTerm : cvTerms) {
+      if ((cvTerm.getUserObject(SBMLRDFAnnotationParser.CUSTOM_RDF) != null)
+          || ((cvTerm.getNestedCVTermCount() > 0) && hasCustomRDF(cvTerm.getListOfNestedCVTerms()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the annotation element of the given {@link SBase}, which must
+   * fulfill {@link #canWrite(SBase)}. As with {@link SBMLRDFAnnotationParser},
+   * a meta identifier is created if the {@link SBase} needs one for the RDF
+   * annotation.
+   * 
+   * @param sbase
+   * @throws XMLStreamException
+   */
+  public void write(SBase sbase) throws XMLStreamException {
+    Annotation annotation = sbase.getAnnotation();
+    XMLNode annotationNode = annotation.getNonRDFannotation();
+    boolean writeRDF = sbase.isSetHistory() || (sbase.getCVTermCount() > 0);
+
+    if (!writeRDF) {
+      xmlNodeWriter.write(annotationNode);
+      return;
+    }
+    if (annotationNode == null) {
+      annotationNode = new XMLNode(new XMLTriple("annotation"), new XMLAttributes());
+    }
+    XMLNode rdfNode = annotationNode.getChildElement("RDF", Annotation.URI_RDF_SYNTAX_NS);
+    int childCount = annotationNode.getChildCount();
+
+    // the white space is the one of the XMLNode tree built by SBMLRDFAnnotationParser
+    xmlNodeWriter.writeStartElement(annotationNode, (childCount > 0) && !annotationNode.getChildAt(0).isText());
+    for (int i = 0; i < childCount; i++) {
+      XMLNode child = annotationNode.getChildAt(i);
+      if (child == rdfNode) {
+        writeRDF(sbase, rdfNode);
+      } else {
+        xmlNodeWriter.writeChild(child);
+      }
+    }
+    if (rdfNode == null) {
+      if (childCount == 0) {
+        writer.writeCharacters(SEPARATOR);
+      }
+      writeRDF(sbase, null);
+      writer.writeCharacters(SEPARATOR);
+    }
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes the rdf:RDF element of the given {@link SBase}.
+   * 
+   * @param sbase
+   * @param rdfNode the empty rdf:RDF element of the non-RDF annotation, or
+   *        {@code null}
+   * @throws XMLStreamException
+   */
+  private void writeRDF(SBase sbase, XMLNode rdfNode) throws XMLStreamException {
+    History history = sbase.isSetHistory() ? sbase.getHistory() : null;
+    List<CVTerm> cvTerms = sbase.getAnnotation().getListOfCVTerms();
+
+    // the namespaces declared on an existing element come first, as prefixes can be overridden
+    Map<String, String> namespaces = new LinkedHashMap<String, String>();
+    if (rdfNode != null) {
+      for (int i = 0; i < rdfNode.getNamespacesLength(); i++) {
+        namespaces.put(rdfNode.getNamespacePrefix(i), rdfNode.getNamespaceURI(i));
+      }
+    }
+    namespaces.put("rdf", Annotation.URI_RDF_SYNTAX_NS);
+    if ((history != null) && (history.getCreatorCount() > 0)) {
+      namespaces.put("dc", JSBML.URI_PURL_ELEMENTS);
+      namespaces.put("vCard", Creator.URI_RDF_VCARD_NS);
+    }
+    if ((history != null) && (history.isSetCreatedDate() || history.isSetModifiedDate())) {
+      namespaces.put("dcterms", JSBML.URI_PURL_TERMS);
+    }
+    boolean needBqModel = false, needBqBiol = false;
+    for (CVTerm cvTerm : cvTerms) {
+      needBqBiol |= cvTerm.isBiologicalQualifier();
+      needBqModel |= cvTerm.isModelQualifier();
+    }
+    if (needBqModel) {
+      namespaces.put("bqmodel", CVTerm.URI_BIOMODELS_NET_MODEL_QUALIFIERS);
+    }
+    if (needBqBiol) {
+      namespaces.put("bqbiol", CVTerm.URI_BIOMODELS_NET_BIOLOGY_QUALIFIERS);
+    }
+
+    writer.writeStartElement(rdfNode != null ? rdfNode.getPrefix() : "rdf", "RDF", Annotation.URI_RDF_SYNTAX_NS);
+    for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+      writer.writeNamespace(namespace.getKey(), namespace.getValue());
+    }
+
+    SBMLRDFAnnotationParser.checkAbout(sbase);
+    if ((rdfNode != null) && (rdfNode.getChildCount() > 0)) {
+      // the description is inserted before the white space of the element
+      writer.writeCharacters("\n");
+      writer.writeCharacters(StringTools.fill(depth + 2 * indentCount, indentChar));
+      writeDescription(sbase, history, cvTerms);
+      writer.writeCharacters(SEPARATOR);
+      for (int i = 0; i < rdfNode.getChildCount(); i++) {
+        writer.writeCharacters(rdfNode.getChildAt(i).getCharacters());
+      }
+    } else {
+      writer.writeCharacters(SEPARATOR);
+      writeDescription(sbase, history, cvTerms);
+      writer.writeCharacters(SEPARATOR);
+    }
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes the rdf:Description element of the given {@link SBase}.
+   * 
+   * @param sbase
+   * @param history the {@link History} of the {@link SBase}, or {@code null}
+   * @param cvTerms the {@link CVTerm}s of the {@link SBase}
+   * @throws XMLStreamException
+   */
+  private void writeDescription(SBase sbase, History history, List<CVTerm> cvTerms) throws XMLStreamException {
+    writer.writeStartElement("rdf", "Description", Annotation.URI_RDF_SYNTAX_NS);
+    writer.writeAttribute("rdf", Annotation.URI_RDF_SYNTAX_NS, "about", sbase.getAnnotation().getAbout());
+
+    if (history != null) {
+      writeHistory(history);
+    }
+    for (CVTerm cvTerm : cvTerms) {
+      writeCVTerm(cvTerm);
+    }
+    writer.writeCharacters(SEPARATOR);
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes the creators and dates of the given {@link History}.
+   * 
+   * @param history
+   * @throws XMLStreamException
+   */
+  private void writeHistory(History history) throws XMLStreamException {
+    if (history.getCreatorCount() > 0) {
+      writeStartElement("dc", "creator", JSBML.URI_PURL_ELEMENTS);
+      writeStartElement("rdf", "Bag", Annotation.URI_RDF_SYNTAX_NS);
+      for (Creator creator : history.getListOfCreators()) {
+        writeStartElement("rdf", "li", Annotation.URI_RDF_SYNTAX_NS);
+        writeParseType();
+        if (creator.isSetFamilyName() || creator.isSetGivenName()) {
+          writeStartElement("vCard", "N", Creator.URI_RDF_VCARD_NS);
+          writeParseType();
+          if (creator.isSetFamilyName()) {
+            writeTextElement("vCard", "Family", Creator.URI_RDF_VCARD_NS, creator.getFamilyName());
+          }
+          if (creator.isSetGivenName()) {
+            writeTextElement("vCard", "Given", Creator.URI_RDF_VCARD_NS, creator.getGivenName());
+          }
+          writeEndElement();
+        }
+        if (creator.isSetEmail()) {
+          writeTextElement("vCard", "EMAIL", Creator.URI_RDF_VCARD_NS, creator.getEmail());
+        }
+        if (creator.isSetOrganisation()) {
+          writeStartElement("vCard", "ORG", Creator.URI_RDF_VCARD_NS);
+          writeParseType();
+          writeTextElement("vCard", "Orgname", Creator.URI_RDF_VCARD_NS, creator.getOrganisation());
+          writeEndElement();
+        }
+        writeEndElement(creator.isSetFamilyName() || creator.isSetGivenName()
+          || creator.isSetEmail() || creator.isSetOrganisation());
+      }
+      writeEndElement();
+      writeEndElement();
+    }
+    if (history.isSetCreatedDate()) {
+      writeDate("created", history.getCreatedDate());
+    }
+    for (Date modifiedDate : history.getListOfModifiedDates()) {
+      writeDate("modified", modifiedDate);
+    }
+  }
+
+  /**
+   * @param elementName
+   * @param date
+   * @throws XMLStreamException
+   */
+  private void writeDate(String elementName, Date date) throws XMLStreamException {
+    writeStartElement("dcterms", elementName, JSBML.URI_PURL_TERMS);
+    writeParseType();
+    writeTextElement("dcterms", "W3CDTF", JSBML.URI_PURL_TERMS, DateParser.getIsoDateNoMillis(date));
+    writeEndElement();
+  }
+
+  /**
+   * Writes the given {@link CVTerm}, with its resources followed by its
+   * nested {@link CVTerm}s.
+   * 
+   * @param cvTerm
+   * @throws XMLStreamException
+   */
+  private void writeCVTerm(CVTerm cvTerm) throws XMLStreamException {
+    String qualifierName = cvTerm.getQualifier().getElementNameEquivalent();
+    if (cvTerm.getQualifier().equals(Qualifier.BQB_UNKNOWN)
+        || cvTerm.getQualifier().equals(Qualifier.BQM_UNKNOWN)) {
+      qualifierName = cvTerm.getUnknownQualifierName();
+    }
+    if (cvTerm.isModelQualifier()) {
+      writeStartElement("bqmodel", qualifierName, CVTerm.URI_BIOMODELS_NET_MODEL_QUALIFIERS);
+    } else {
+      writeStartElement("bqbiol", qualifierName, CVTerm.URI_BIOMODELS_NET_BIOLOGY_QUALIFIERS);
+    }
+    writeStartElement("rdf", "Bag", Annotation.URI_RDF_SYNTAX_NS);
+    for (String resource : cvTerm.getResources()) {
+      writeStartElement("rdf", "li", Annotation.URI_RDF_SYNTAX_NS);
+      writer.writeAttribute("rdf", Annotation.URI_RDF_SYNTAX_NS, "resource", resource);
+      writer.writeEndElement();
+    }
+    if (cvTerm.getNestedCVTermCount() > 0) {
+      for (CVTerm nestedCVTerm : cvTerm.getListOfNestedCVTerms()) {
+        writeCVTerm(nestedCVTerm);
+      }
+    }
+    writeEndElement((cvTerm.getResourceCount() > 0) || (cvTerm.getNestedCVTermCount() > 0));
+    writeEndElement();
+  }
+
+  /**
+   * Starts a child element of an RDF element.
+   * 
+   * @param prefix
+   * @param localName
+   * @param namespaceURI
+   * @throws XMLStreamException
+   */
+  private void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+    writer.writeCharacters(SEPARATOR);
+    writer.writeStartElement(prefix, localName, namespaceURI);
+  }
+
+  /**
+   * Ends an RDF element that contains child elements.
+   * 
+   * @throws XMLStreamException
+   */
+  private void writeEndElement() throws XMLStreamException {
+    writeEndElement(true);
+  }
+
+  /**
+   * Ends an RDF element.
+   * 
+   * @param elementContent whether child elements have been written
+   * @throws XMLStreamException
+   */
+  private void writeEndElement(boolean elementContent) throws XMLStreamException {
+    if (elementContent) {
+      writer.writeCharacters(SEPARATOR);
+    }
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes a child element of an RDF element that only contains the given
+   * text.
+   * 
+   * @param prefix
+   * @param localName
+   * @param namespaceURI
+   * @param text
+   * @throws XMLStreamException
+   */
+  private void writeTextElement(String prefix, String localName, String namespaceURI, String text) throws XMLStreamException {
+    writeStartElement(prefix, localName, namespaceURI);
+    writer.writeCharacters(text);
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes the rdf:parseType="Resource" attribute.
+   * 
+   * @throws XMLStreamException
+   */
+  private void writeParseType() throws XMLStreamException {
+    writer.writeAttribute("rdf", Annotation.URI_RDF_SYNTAX_NS, "parseType", "Resource");
+  }
+
+}
@@ -115,6 +115,40 @@ public class XMLNodeWriter {
     write(xmlNode, nodeDepth);
   }
 
+  /**
+   * Writes the start tag of the given element, as {@link #write(XMLNode)}
+   * does for the root element, without its children and end tag. This allows
+   * to mix the children written with {@link #writeChild(XMLNode)} with
+   * content that is not available as {@link XMLNode}, before calling
+   * {@link XMLStreamWriter#writeEndElement()}.
+   * 
+   * @param xmlNode the element to write
+   * @param elementContent whether the first child to be written is an
+   *        element, in which case a new line is written after the start tag
+   * @throws XMLStreamException
+   * @since 1.5
+   */
+  public void writeStartElement(XMLNode xmlNode, boolean elementContent) throws XMLStreamException {
+    writer.writeCharacters(StringTools.fill(nodeDepth, indentChar));
+    writeStartTag(xmlNode);
+    if (elementContent) {
+      writer.writeCharacters("\n");
+      writer.writeCharacters(StringTools.fill(nodeDepth + indentCount, indentChar));
+    }
+  }
+
+  /**
+   * Writes a child of an element started with
+   * {@link #writeStartElement(XMLNode, boolean)}.
+   * 
+   * @param child the child to write
+   * @throws XMLStreamException
+   * @since 1.5
+   */
+  public void writeChild(XMLNode child) throws XMLStreamException {
+    write(child, nodeDepth + indentCount);
+  }
+
   /**
    * @param xmlNode
    * @param depth
@@ -142,51 +176,7 @@ public class XMLNodeWriter {
         logger.debug("writing the indentation 0 -> 'indentCount - depth' !??");
         writer.writeCharacters(StringTools.fill(indentCount - depth, indentChar));
       }
-      if (xmlNode.getPrefix() != null && xmlNode.getPrefix().trim().length() > 0) {
-        if (logger.isDebugEnabled()) {
-          logger.debug("calling writeStartElement with prefix, name and uri = " + xmlNode.getPrefix() + ", " + xmlNode.getName() + ", " + xmlNode.getURI());
-        }
-        writer.writeStartElement(xmlNode.getPrefix(), xmlNode.getName(), xmlNode.getURI());
-      } else {
-        logger.debug("calling writeStartElement with name only");
-        writer.writeStartElement(xmlNode.getName());
-      }
-
-      int nbNamespaces = xmlNode.getNamespacesLength();
-
-      for (int i = 0; i < nbNamespaces; i++) {
-        String uri = xmlNode.getNamespaceURI(i);
-        String prefix = xmlNode.getNamespacePrefix(i);
-        // TODO - test to write the namespace as an attribute if an exception is raised
-        writer.writeNamespace(prefix, uri);
-      }
-
-      // write the xmlNode attributes
-      int nbAttributes = xmlNode.getAttributesLength();
-
-      for (int i = 0; i < nbAttributes; i++) {
-        String attrName = xmlNode.getAttrName(i);
-        String attrURI = xmlNode.getAttrURI(i);
-        String attrPrefix = xmlNode.getAttrPrefix(i);
-        String attrValue = xmlNode.getAttrValue(i);
-
-        if (attrPrefix != null && attrPrefix.trim().length() != 0) {
-          if (logger.isDebugEnabled()) {
-            logger.debug("writeAttribute(attrPrefix, attrURI, attrName, attrValue) = " + attrPrefix + ", " + attrURI + ", " + attrName + ", " + attrValue);
-          }
-          writer.writeAttribute(attrPrefix, attrURI, attrName, attrValue);
-        } else if (attrURI != null && attrURI.length() != 0) {
-          if (logger.isDebugEnabled()) {
-            logger.debug("writeAttribute(attrURI, attrName, attrValue) = " + attrURI + ", " + attrName + ", " + attrValue);
-          }
-          writer.writeAttribute(attrURI, attrName, attrValue);
-        } else {
-          if (logger.isDebugEnabled()) {
-            logger.debug("writeAttribute(attrName, attrValue) = " + attrName + ", " + attrValue);
-          }
-          writer.writeAttribute(attrName, attrValue);
-        }
-      }
+      writeStartTag(xmlNode);
       if (xmlNode.getChildCount() > 0 && (! xmlNode.getChildAt(0).isText())) {
         logger.debug("writing a new line and the indentation 1 -> 'depth + indentCount'");
         writer.writeCharacters("\n");
@@ -229,4 +219,59 @@ public class XMLNodeWriter {
     }
     logger.debug("write(XMLNode, int) - end");
   }
+
+  /**
+   * Writes the start tag of the given element, with its namespaces and
+   * attributes.
+   * 
+   * @param xmlNode
+   * @throws XMLStreamException
+   */
+  private void writeStartTag(XMLNode xmlNode) throws XMLStreamException {
+    if (xmlNode.getPrefix() != null && xmlNode.getPrefix().trim().length() > 0) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("calling writeStartElement with prefix, name and uri = " + xmlNode.getPrefix() + ", " + xmlNode.getName() + ", " + xmlNode.getURI());
+      }
+      writer.writeStartElement(xmlNode.getPrefix(), xmlNode.getName(), xmlNode.getURI());
+    } else {
+      logger.debug("calling writeStartElement with name only");
+      writer.writeStartElement(xmlNode.getName());
+    }
+
+    int nbNamespaces = xmlNode.getNamespacesLength();
+
+    for (int i = 0; i < nbNamespaces; i++) {
+      String uri = xmlNode.getNamespaceURI(i);
+      String prefix = xmlNode.getNamespacePrefix(i);
+      // TODO - test to write the namespace as an attribute if an exception is raised
+      writer.writeNamespace(prefix, uri);
+    }
+
+    // write the xmlNode attributes
+    int nbAttributes = xmlNode.getAttributesLength();
+
+    for (int i = 0; i < nbAttributes; i++) {
+      String attrName = xmlNode.getAttrName(i);
+      String attrURI = xmlNode.getAttrURI(i);
+      String attrPrefix = xmlNode.getAttrPrefix(i);
+      String attrValue = xmlNode.getAttrValue(i);
+
+      if (attrPrefix != null && attrPrefix.trim().length() != 0) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("writeAttribute(attrPrefix, attrURI, attrName, attrValue) = " + attrPrefix + ", " + attrURI + ", " + attrName + ", " + attrValue);
+        }
+        writer.writeAttribute(attrPrefix, attrURI, attrName, attrValue);
+      } else if (attrURI != null && attrURI.length() != 0) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("writeAttribute(attrURI, attrName, attrValue) = " + attrURI + ", " + attrName + ", " + attrValue);
+        }
+        writer.writeAttribute(attrURI, attrName, attrValue);
+      } else {
+        if (logger.isDebugEnabled()) {
+          logger.debug("writeAttribute(attrName, attrValue) = " + attrName + ", " + attrValue);
+        }
+        writer.writeAttribute(attrName, attrValue);
+      }
+    }
+  }
 }
@@ -0,0 +1,756 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.stax;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.log4j.Logger;
+import org.sbml.jsbml.SBMLDocument;
+
+/**
+ * Reads many SBML files in parallel, for example a directory of curated
+ * models or a zip or tar archive containing them.
+ *
+ * <p>The files are parsed on an {@link ExecutorService}, the
+ * {@link SBMLReader}s (and therefore the initialized package and annotation
+ * parsers) being reused for all the files of a batch, so that there are no
+ * more readers than files parsed at the same time. The results are
+ * handed to a {@link Listener} on the thread that called one of the
+ * {@code read} methods, as soon as they are available, so the listener does
+ * not need to be thread-safe and the documents can be released before the
+ * whole batch is read. At most twice as many files as there are threads are
+ * parsed or kept in memory at the same time.</p>
+ *
+ * <p>Each {@code read} method returns a {@link Statistics} object giving the
+ * throughput of the batch.</p>
+ *
+ * @since 1.5
+ */
+public class SBMLBatchReader {
+
+  /**
+   * Receives the documents read by an {@link SBMLBatchReader}. The methods
+   * are always called from the thread that started the batch.
+   *
+   * @since 1.5
+   */
+  public static interface Listener {
+
+    /**
+     * Called when a document has been read successfully.
+     *
+     * @param source the file name or archive entry name of the document
+     * @param document the document read
+     */
+    public void documentRead(String source, SBMLDocument document);
+
+    /**
+     * Called when a document could not be read.
+     *
+     * @param source the file name or archive entry name of the document
+     * @param error the problem encountered
+     */
+    public void readFailed(String source, Throwable error);
+
+  }
+
+  /**
+   * Throughput of a batch read by an {@link SBMLBatchReader}.
+   *
+   * @since 1.5
+   */
+  public static class Statistics {
+
+    /**
+     *
+     */
+    private int documentCount;
+
+    /**
+     *
+     */
+    private int failureCount;
+
+    /**
+     *
+     */
+    private long byteCount;
+
+    /**
+     *
+     */
+    private long elapsedNanos;
+
+    /**
+     * Returns the number of documents read successfully.
+     *
+     * @return the number of documents read successfully.
+     */
+    public int getDocumentCount() {
+      return documentCount;
+    }
+
+    /**
+     * Returns the number of documents that could not be read.
+     *
+     * @return the number of documents that could not be read.
+     */
+    public int getFailureCount() {
+      return failureCount;
+    }
+
+    /**
+     * Returns the number of bytes that were parsed.
+     *
+     * @return the number of bytes that were parsed.
+     */
+    public long getByteCount() {
+      return byteCount;
+    }
+
+    /**
+     * Returns the wall-clock time of the batch in milliseconds.
+     *
+     * @return the wall-clock time of the batch in milliseconds.
+     */
+    public long getElapsedTimeMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Returns the number of documents, successful or not, processed per
+     * second.
+     *
+     * @return the number of documents processed per second.
+     */
+    public double getDocumentsPerSecond() {
+      return elapsedNanos > 0 ? (documentCount + failureCount) * 1e9d / elapsedNanos : 0d;
+    }
+
+    /**
+     * Returns the number of megabytes parsed per second.
+     *
+     * @return the number of megabytes parsed per second.
+     */
+    public double getMegabytesPerSecond() {
+      return elapsedNanos > 0 ? byteCount * 1e9d / (elapsedNanos * 1024d * 1024d) : 0d;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+      return MessageFormat.format(
+        "{0} documents read, {1} failures, {2,number,#} bytes in {3,number,#} ms ({4,number,#.##} documents/s, {5,number,#.##} MB/s)",
+        documentCount, failureCount, byteCount, getElapsedTimeMillis(),
+        getDocumentsPerSecond(), getMegabytesPerSecond());
+    }
+
+  }
+
+  /**
+   * The outcome of reading one document.
+   */
+  private static class Result {
+
+    /**
+     *
+     */
+    private String source;
+
+    /**
+     *
+     */
+    private SBMLDocument document;
+
+    /**
+     *
+     */
+    private Throwable error;
+
+    /**
+     *
+     */
+    private long size;
+
+  }
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(SBMLBatchReader.class);
+
+  /**
+   * The {@link ExecutorService} used to parse the files.
+   */
+  private ExecutorService executor;
+
+  /**
+   * {@code true} if the executor was created by this class and needs to be
+   * shut down in {@link #close()}.
+   */
+  private boolean ownsExecutor;
+
+  /**
+   * The maximum number of files parsed or buffered at the same time.
+   */
+  private int maxPending;
+
+  /**
+   * Whether the documents should be read with lazy loading.
+   */
+  private boolean lazyLoading = false;
+
+  /**
+   * Creates an {@link SBMLBatchReader} using one thread per available
+   * processor.
+   */
+  public SBMLBatchReader() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates an {@link SBMLBatchReader} using the given number of threads.
+   * The threads are released by {@link #close()}.
+   *
+   * @param threadCount the number of threads used to parse the files.
+   */
+  public SBMLBatchReader(int threadCount) {
+    this(Executors.newFixedThreadPool(threadCount), threadCount);
+    ownsExecutor = true;
+  }
+
+  /**
+   * Creates an {@link SBMLBatchReader} that parses the files on the given
+   * {@link ExecutorService}. The executor is not shut down by
+   * {@link #close()}.
+   *
+   * @param executor the {@link ExecutorService} used to parse the files.
+   * @param parallelism the number of threads of the executor that can be
+   * used, to limit the number of files parsed or buffered at the same time.
+   */
+  public SBMLBatchReader(ExecutorService executor, int parallelism) {
+    if (executor == null) {
+      throw new IllegalArgumentException("The executor cannot be null.");
+    }
+    this.executor = executor;
+    maxPending = 2 * Math.max(1, parallelism);
+    ownsExecutor = false;
+  }
+
+  /**
+   * Shuts down the threads created by this reader, if any.
+   */
+  public void close() {
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Returns {@code true} if the documents are read with lazy loading.
+   *
+   * @return {@code true} if the documents are read with lazy loading.
+   * @see SBMLReader#setLazyLoading(boolean)
+   */
+  public boolean isLazyLoading() {
+    return lazyLoading;
+  }
+
+  /**
+   * Sets whether the documents should be read with lazy loading.
+   *
+   * @param lazyLoading {@code true} to enable lazy loading.
+   * @see SBMLReader#setLazyLoading(boolean)
+   */
+  public void setLazyLoading(boolean lazyLoading) {
+    this.lazyLoading = lazyLoading;
+  }
+
+  /**
+   * Reads all the given files.
+   *
+   * @param files the SBML files to read.
+   * @param listener receives the documents read.
+   * @return the {@link Statistics} of this batch.
+   * @throws InterruptedException if the current thread was interrupted while
+   * waiting for the documents, in which case the pending documents are
+   * cancelled.
+   */
+  public Statistics read(Collection<File> files, Listener listener) throws InterruptedException {
+    Batch batch = new Batch(listener);
+    boolean submitted = false;
+
+    try {
+      for (final File file : files) {
+        submitFile(file, batch);
+      }
+      submitted = true;
+    } finally {
+      if (!submitted) {
+        batch.cancel();
+      }
+    }
+
+    return batch.finish();
+  }
+
+  /**
+   * Submits the parsing of the given file.
+   *
+   * @param file the file to read
+   * @param batch the current batch
+   * @throws InterruptedException
+   */
+  private void submitFile(final File file, final Batch batch) throws InterruptedException {
+    batch.submit(new Callable<Result>() {
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Callable#call()
+         */
+      @Override
+      public Result call() {
+        Result result = new Result();
+        result.source = file.getPath();
+        result.size = file.length();
+        InputStream stream = null;
+        SBMLReader reader = batch.acquireReader();
+        try {
+          stream = new BufferedInputStream(new FileInputStream(file));
+          result.document = reader.readSBMLFromStream(stream, null);
+        } catch (Throwable exc) {
+          result.error = exc;
+        } finally {
+          closeQuietly(stream);
+          batch.releaseReader(reader);
+        }
+        return result;
+      }
+    });
+  }
+
+  /**
+   * Reads all the files of the given directory whose name matches the given
+   * glob pattern, for example {@code "*.xml"} or {@code "BIOMD*.xml"}.
+   *
+   * @param directory the directory to read.
+   * @param glob a glob pattern as defined by
+   * {@link java.nio.file.FileSystem#getPathMatcher(String)}, without the
+   * {@code glob:} prefix, that is matched against the file names. If
+   * {@code null}, all files are read.
+   * @param recursive whether the sub-directories should be read as well.
+   * @param listener receives the documents read.
+   * @return the {@link Statistics} of this batch.
+   * @throws IOException if the directory cannot be listed.
+   * @throws InterruptedException if the current thread was interrupted while
+   * waiting for the documents.
+   */
+  public Statistics readDirectory(File directory, String glob, boolean recursive,
+    Listener listener) throws IOException, InterruptedException
+  {
+    if (!directory.isDirectory()) {
+      throw new IOException(MessageFormat.format("{0} is not a directory.", directory.getPath()));
+    }
+    PathMatcher matcher = glob != null ? FileSystems.getDefault().getPathMatcher("glob:" + glob) : null;
+    List<File> files = new ArrayList<File>();
+    collectFiles(directory, matcher, recursive, files);
+
+    return read(files, listener);
+  }
+
+  /**
+   * Reads all the files contained in the given zip or tar archive. Tar
+   * archives can be compressed with gzip ({@code .tar.gz} or {@code .tgz}).
+   * Directory entries and entries whose name does not end with {@code .xml}
+   * or {@code .sbml} are ignored.
+   *
+   * @param archive a zip, tar, tar.gz or tgz file.
+   * @param listener receives the documents read.
+   * @return the {@link Statistics} of this batch.
+   * @throws IOException if the archive cannot be read, in which case the
+   * pending documents are cancelled.
+   * @throws InterruptedException if the current thread was interrupted while
+   * waiting for the documents, in which case the pending documents are
+   * cancelled.
+   */
+  public Statistics readArchive(File archive, Listener listener) throws IOException, InterruptedException {
+    String name = archive.getName().toLowerCase();
+    InputStream stream = new BufferedInputStream(new FileInputStream(archive));
+    Batch batch = new Batch(listener);
+    boolean submitted = false;
+
+    try {
+      if (name.endsWith(".tar")) {
+        readTarEntries(stream, batch);
+      } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+        readTarEntries(new GZIPInputStream(stream), batch);
+      } else {
+        readZipEntries(stream, batch);
+      }
+      submitted = true;
+    } finally {
+      closeQuietly(stream);
+      if (!submitted) {
+        batch.cancel();
+      }
+    }
+
+    return batch.finish();
+  }
+
+  /**
+   * Submits the parsing of the given archive entry.
+   *
+   * @param source the name of the entry
+   * @param content the content of the entry
+   * @param batch the current batch
+   * @throws InterruptedException
+   */
+  private void submitEntry(final String source, final byte[] content, final Batch batch) throws InterruptedException {
+    batch.submit(new Callable<Result>() {
+
+      /* (non-Javadoc)
+       * @see java.util.concurrent.Callable#call()
+       */
+      @Override
+      public Result call() {
+        Result result = new Result();
+        result.source = source;
+        result.size = content.length;
+        SBMLReader reader = batch.acquireReader();
+        try {
+          result.document = reader.readSBMLFromStream(new ByteArrayInputStream(content), null);
+        } catch (Throwable exc) {
+          result.error = exc;
+        } finally {
+          batch.releaseReader(reader);
+        }
+        return result;
+      }
+    });
+  }
+
+  /**
+   * Reads the entries of a zip archive.
+   *
+   * @param stream
+   * @param batch
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private void readZipEntries(InputStream stream, Batch batch) throws IOException, InterruptedException {
+    ZipInputStream zipStream = new ZipInputStream(stream);
+    ZipEntry entry;
+
+    while ((entry = zipStream.getNextEntry()) != null) {
+      if (!entry.isDirectory() && isSBMLFileName(entry.getName())) {
+        submitEntry(entry.getName(), readFully(zipStream), batch);
+      }
+    }
+  }
+
+  /**
+   * Reads the entries of a tar archive, see {@link TarArchiveReader} for the
+   * supported formats.
+   *
+   * @param stream
+   * @param batch
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private void readTarEntries(InputStream stream, Batch batch) throws IOException, InterruptedException {
+    TarArchiveReader tar = new TarArchiveReader(stream);
+    String name;
+    while ((name = tar.nextFile()) != null) {
+      if (isSBMLFileName(name)) {
+        submitEntry(name, tar.readContent(), batch);
+      }
+    }
+  }
+
+  /**
+   * The documents submitted and not yet handed to the listener.
+   */
+  private class Batch {
+
+    /**
+     *
+     */
+    private CompletionService<Result> completionService = new ExecutorCompletionService<Result>(executor);
+
+    /**
+     * The documents submitted and not yet handed to the listener.
+     */
+    private Set<Future<Result>> pending = new HashSet<Future<Result>>();
+
+    /**
+     * The {@link SBMLReader}s not used at the moment, which are reused by
+     * the next tasks of this batch and released with it.
+     */
+    private Queue<SBMLReader> readers = new ConcurrentLinkedQueue<SBMLReader>();
+
+    /**
+     * Whether the documents are read with lazy loading, fixed when the batch
+     * starts.
+     */
+    private boolean lazy = lazyLoading;
+
+    /**
+     *
+     */
+    private Listener listener;
+
+    /**
+     *
+     */
+    private Statistics statistics = new Statistics();
+
+    /**
+     *
+     */
+    private long start = System.nanoTime();
+
+    /**
+     * @param listener
+     */
+    public Batch(Listener listener) {
+      this.listener = listener;
+    }
+
+    /**
+     * Submits a document to parse, waiting for a previous one if too many
+     * are already pending.
+     *
+     * @param task
+     * @throws InterruptedException
+     */
+    public void submit(Callable<Result> task) throws InterruptedException {
+      while (pending.size() >= maxPending) {
+        handOut();
+      }
+      pending.add(completionService.submit(task));
+    }
+
+    /**
+     * Waits for all the pending documents, cancelling them if the current
+     * thread is interrupted.
+     *
+     * @return the {@link Statistics} of the batch.
+     * @throws InterruptedException
+     */
+    public Statistics finish() throws InterruptedException {
+      try {
+        while (!pending.isEmpty()) {
+          handOut();
+        }
+      } catch (InterruptedException exc) {
+        cancel();
+        throw exc;
+      }
+      statistics.elapsedNanos = System.nanoTime() - start;
+
+      if (logger.isDebugEnabled()) {
+        logger.debug(statistics);
+      }
+      return statistics;
+    }
+
+    /**
+     * Cancels the pending documents and drops the documents already read
+     * but not yet handed to the listener.
+     */
+    public void cancel() {
+      for (Future<Result> future : pending) {
+        future.cancel(true);
+      }
+      pending.clear();
+      while (completionService.poll() != null) {
+        // drain the completed tasks
+      }
+      readers.clear();
+    }
+
+    /**
+     * Returns an {@link SBMLReader} that is not used by another task of this
+     * batch, so that the package and annotation parsers are not initialized
+     * for each document.
+     *
+     * @return an {@link SBMLReader} to give back with
+     * {@link #releaseReader(SBMLReader)}.
+     */
+    public SBMLReader acquireReader() {
+      SBMLReader reader = readers.poll();
+      if (reader == null) {
+        reader = new SBMLReader();
+        reader.setLazyLoading(lazy);
+      }
+      return reader;
+    }
+
+    /**
+     * Gives back an {@link SBMLReader} obtained by {@link #acquireReader()}.
+     *
+     * @param reader
+     */
+    public void releaseReader(SBMLReader reader) {
+      readers.offer(reader);
+    }
+
+    /**
+     * Waits for the next document and hands it to the listener.
+     *
+     * @throws InterruptedException
+     */
+    private void handOut() throws InterruptedException {
+      Result result;
+      Future<Result> future = completionService.take();
+      pending.remove(future);
+      try {
+        result = future.get();
+      } catch (ExecutionException exc) {
+        // the tasks catch all the problems, so this should not happen
+        throw new IllegalStateException(exc.getCause());
+      }
+      statistics.byteCount += result.size;
+
+      if ((result.error == null) && (result.document == null)) {
+        result.error = new XMLStreamException(MessageFormat.format(
+          "JSBML could not properly read {0}. Please check if it contains valid SBML.", result.source));
+      }
+      if (result.error == null) {
+        statistics.documentCount++;
+        if (listener != null) {
+          listener.documentRead(result.source, result.document);
+        }
+      } else {
+        statistics.failureCount++;
+        logger.debug(MessageFormat.format("Could not read {0}: {1}", result.source,
+          result.error.getLocalizedMessage()));
+        if (listener != null) {
+          listener.readFailed(result.source, result.error);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the files of the given directory matching the given
+   * {@link PathMatcher} to the given list.
+   *
+   * @param directory
+   * @param matcher
+   * @param recursive
+   * @param files
+   */
+  private static void collectFiles(File directory, PathMatcher matcher, boolean recursive, List<File> files) {
+    File[] children = directory.listFiles();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+
+    for (File child : children) {
+      if (child.isDirectory()) {
+        if (recursive) {
+          collectFiles(child, matcher, recursive, files);
+        }
+      } else if ((matcher == null) || matcher.matches(child.toPath().getFileName())) {
+        files.add(child);
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the given archive entry name looks like an SBML
+   * file.
+   *
+   * @param name
+   * @return {@code true} if the given archive entry name looks like an SBML
+   * file.
+   */
+  private static boolean isSBMLFileName(String name) {
+    String lowerCaseName = name.toLowerCase();
+    return lowerCaseName.endsWith(".xml") || lowerCaseName.endsWith(".sbml");
+  }
+
+  /**
+   * Reads everything left in the given stream.
+   *
+   * @param stream
+   * @return the bytes read.
+   * @throws IOException
+   */
+  private static byte[] readFully(InputStream stream) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int count;
+    while ((count = stream.read(buffer)) >= 0) {
+      output.write(buffer, 0, count);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Closes the given stream, ignoring any problem.
+   *
+   * @param stream
+   */
+  private static void closeQuietly(InputStream stream) {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (IOException exc) {
+        logger.debug(exc.getLocalizedMessage());
+      }
+    }
+  }
+
+}
@@ -24,18 +24,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.Characters;
@@ -48,11 +54,18 @@ import javax.xml.stream.events.XMLEvent;
 import org.apache.log4j.Logger;
 import org.sbml.jsbml.ASTNode;
 import org.sbml.jsbml.ASTNode.Type;
+import org.sbml.jsbml.AbstractMathContainer;
+import org.sbml.jsbml.AbstractSBase;
 import org.sbml.jsbml.AbstractTreeNode;
 import org.sbml.jsbml.Annotation;
+import org.sbml.jsbml.Compartment;
 import org.sbml.jsbml.Constraint;
 import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.ListOf;
 import org.sbml.jsbml.MathContainer;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
 import org.sbml.jsbml.SBMLDocument;
 import org.sbml.jsbml.SBMLException;
 import org.sbml.jsbml.SBase;
@@ -73,12 +86,21 @@ import org.sbml.jsbml.xml.parsers.SBMLCoreParser;
 import org.sbml.jsbml.xml.parsers.XMLNodeReader;
 
 import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.stax.WstxEventFactory;
 import com.ctc.wstx.stax.WstxInputFactory;
+import com.ctc.wstx.stax.WstxOutputFactory;
 
 
 /**
  * Provides all the methods to read a SBML file.
  *
+ * <p>An {@link SBMLReader} created with the default constructor keeps some
+ * state while reading and must only be used by one thread at a time. An
+ * {@link SBMLReader} created with {@link #SBMLReader(boolean)} and
+ * {@code true} can be shared by any number of threads: each call is then
+ * delegated to one of a pool of private readers, so that the state of each
+ * read, including the parser instances, is confined to that call.</p>
+ *
  * @author Marine Dumousseau
  * @author Andreas Dr&auml;ger
  * @author Nicolas Rodriguez
@@ -116,15 +138,178 @@ public class SBMLReader {
   private List<AnnotationReader> annotationParsers = new ArrayList<AnnotationReader>();
 
   /**
-   * Initialize a static instance of the core parser.
+   * The {@link SBMLStreamHandler} that receives the bulk elements when
+   * reading in streaming mode, {@code null} otherwise.
    */
-  private static SBMLCoreParser sbmlCoreParser = new SBMLCoreParser();
+  private SBMLStreamHandler streamHandler;
+
+  /**
+   * Whether the notes, annotation and math elements are stored as XML
+   * {@link String}s and only parsed on first access.
+   */
+  private volatile boolean lazyLoading = false;
+
+  /**
+   * Whether the elements handed to the {@link SBMLStreamHandler} are
+   * replaced by stubs registered in the {@link Model}.
+   */
+  private volatile boolean registeringStreamStubs = false;
+
+  /**
+   * Whether the change listener of the documents read is registered once as
+   * a shared listener of the {@link SBMLDocument} instead of being added to
+   * every element.
+   */
+  private volatile boolean sharedChangeListener = false;
+
+  /**
+   * Whether the formatting of a notes or annotation element read on its own
+   * should be kept as when reading a whole document.
+   */
+  private boolean keepFormatting = false;
+
+  /**
+   * The core parser used when reading a part of a document.
+   */
+  private SBMLCoreParser sbmlCoreParser = new SBMLCoreParser();
+
+  /**
+   * Whether this reader can be used by several threads at the same time.
+   */
+  private final boolean threadSafe;
+
+  /**
+   * The idle readers doing the actual work when this reader is thread-safe,
+   * {@code null} otherwise.
+   */
+  private final Queue<SBMLReader> workers;
 
   /**
    * A {@link Logger} for this class.
    */
   private static final transient Logger logger = Logger.getLogger(SBMLReader.class);
 
+  /**
+   * Writes the XML kept for lazy loading. StAX factories are thread-safe
+   * once configured, so they are created once.
+   */
+  private static final transient WstxOutputFactory lazyOutputFactory = new WstxOutputFactory();
+
+  /**
+   * Creates the wrapping element of the XML kept for lazy loading.
+   */
+  private static final transient WstxEventFactory lazyEventFactory = new WstxEventFactory();
+
+  /**
+   * Holds the reader used to parse the content kept by lazy loading, so
+   * that it is created, in a thread-safe way, when it is first needed.
+   */
+  private static class LazyContentReaderHolder {
+
+    /**
+     * 
+     */
+    private static final SBMLReader reader = new SBMLReader(true);
+  }
+
+  /**
+   * Namespace of the element wrapping the XML kept for lazy loading. This
+   * element only carries the namespaces declared on the ancestors of the
+   * stored element and is ignored when reading.
+   */
+  private static final transient String LAZY_CONTENT_NS = "http://www.sbml.org/jsbml/lazy";
+
+  /**
+   * Creates an {@link SBMLReader} that must only be used by one thread at a
+   * time.
+   */
+  public SBMLReader() {
+    this(false);
+  }
+
+  /**
+   * Creates an {@link SBMLReader}.
+   *
+   * <p>If {@code threadSafe} is {@code true}, this reader can be shared by
+   * several threads, for example by all the request handlers of a server.
+   * Each read is then done by a private reader taken from a pool, which
+   * holds its own parser instances and state, and given back to the pool
+   * afterwards. The pool grows up to the number of concurrent reads, so
+   * the package and annotation parsers are only initialized a few times.
+   * The options of this reader, like {@link #setLazyLoading(boolean)}, apply
+   * to all the reads started after they are set.</p>
+   *
+   * @param threadSafe {@code true} if this reader is going to be used by
+   * several threads at the same time.
+   */
+  public SBMLReader(boolean threadSafe) {
+    this.threadSafe = threadSafe;
+    workers = threadSafe ? new ConcurrentLinkedQueue<SBMLReader>() : null;
+  }
+
+  /**
+   * Returns the thread-safe {@link SBMLReader} that parses the notes,
+   * annotations and math kept as XML {@link String}s by a reader using lazy
+   * loading, when they are first accessed. Sharing this reader means that
+   * the package and annotation parsers are not initialized again for each
+   * element.
+   *
+   * @return the reader used to parse the content kept by lazy loading.
+   * @see #setLazyLoading(boolean)
+   */
+  public static SBMLReader getLazyContentReader() {
+    return LazyContentReaderHolder.reader;
+  }
+
+  /**
+   * Returns {@code true} if this reader can be used by several threads at
+   * the same time.
+   *
+   * @return {@code true} if this reader can be used by several threads at
+   * the same time.
+   * @see #SBMLReader(boolean)
+   */
+  public boolean isThreadSafe() {
+    return threadSafe;
+  }
+
+  /**
+   * Returns the reader that does the actual work of a read: this reader if it
+   * is not thread-safe, an idle reader from the pool otherwise.
+   *
+   * @return the reader to use for one read.
+   * @see #releaseReader(SBMLReader)
+   */
+  private SBMLReader acquireReader() {
+    if (!threadSafe) {
+      return this;
+    }
+    SBMLReader reader = workers.poll();
+
+    if (reader == null) {
+      reader = new SBMLReader(false);
+    }
+    reader.lazyLoading = lazyLoading;
+    reader.registeringStreamStubs = registeringStreamStubs;
+    reader.sharedChangeListener = sharedChangeListener;
+
+    return reader;
+  }
+
+  /**
+   * Gives a reader obtained with {@link #acquireReader()} back to the pool.
+   *
+   * @param reader
+   */
+  private void releaseReader(SBMLReader reader) {
+    if (reader != this) {
+      reader.streamHandler = null;
+      reader.astNodeParent = null;
+      reader.keepFormatting = false;
+      workers.offer(reader);
+    }
+  }
+
   /**
    * Creates the ReadingParser instances and stores them in a
    * HashMap.
@@ -194,6 +379,117 @@ public class SBMLReader {
   }
 
 
+  /**
+   * Returns {@code true} if this reader is using lazy loading.
+   * 
+   * @return {@code true} if this reader is using lazy loading.
+   * @see #setLazyLoading(boolean)
+   */
+  public boolean isLazyLoading() {
+    return lazyLoading;
+  }
+
+  /**
+   * Returns {@code true} if the elements streamed by this reader are replaced
+   * by stubs registered in the {@link Model}.
+   * 
+   * @return {@code true} if the elements streamed by this reader are replaced
+   *         by stubs registered in the {@link Model}.
+   * @see #setRegisteringStreamStubs(boolean)
+   */
+  public boolean isRegisteringStreamStubs() {
+    return registeringStreamStubs;
+  }
+
+  /**
+   * Sets whether the elements handed to the {@link SBMLStreamHandler} in
+   * streaming mode are replaced by stubs registered in the {@link Model}.
+   * 
+   * <p>By default, only the identifiers of the streamed elements are kept,
+   * in the map stored under {@link JSBML#STREAMED_IDS} in the user objects
+   * of the {@link Model}, so that the memory needed does not depend on the
+   * size of the streamed elements, but still grows with their number, by
+   * one entry per identifier. When enabled, each streamed element is
+   * replaced by a copy without notes, annotation and
+   * {@link org.sbml.jsbml.KineticLaw}, which is registered in the
+   * {@link Model} so that the references to it can be resolved, for example
+   * by {@link Species#getCompartmentInstance()}. The memory needed then
+   * grows with the number of streamed elements and the size of their
+   * copies.</p>
+   * 
+   * @param registeringStreamStubs {@code true} to register stubs for the
+   * streamed elements.
+   * @see SBMLStreamHandler
+   */
+  public void setRegisteringStreamStubs(boolean registeringStreamStubs) {
+    this.registeringStreamStubs = registeringStreamStubs;
+  }
+
+  /**
+   * Sets whether the {@code notes}, {@code annotation} and {@code math}
+   * elements of the documents read by this reader should be parsed lazily.
+   * 
+   * <p>When enabled, the XML of these elements is kept as a {@link String}
+   * (see {@link JSBML#LAZY_NOTES}, {@link JSBML#LAZY_ANNOTATION} and
+   * {@link JSBML#LAZY_MATH}) and is only parsed into {@link XMLNode},
+   * {@link Annotation} (including {@link org.sbml.jsbml.CVTerm}s and
+   * {@link org.sbml.jsbml.History}) or {@link ASTNode} the first time
+   * {@link SBase#getNotes()}, {@link SBase#getAnnotation()} or
+   * {@link MathContainer#getMath()} is called. {@link SBase#isSetNotes()},
+   * {@link SBase#isSetAnnotation()} and {@link MathContainer#isSetMath()}
+   * already return {@code true} for content that was not parsed yet, but
+   * the unparsed content is not part of the children returned by
+   * {@link javax.swing.tree.TreeNode#getChildAt(int)} until it has been
+   * accessed. The registered {@link AnnotationReader}s process a lazily
+   * loaded annotation when it is parsed.</p>
+   * 
+   * <p>{@link Object#equals(Object)} and {@link Object#hashCode()} do not
+   * parse this content: they compare the XML {@link String}s that are kept,
+   * so that an element is only equal to elements whose content is not parsed
+   * either, such as its copies.</p>
+   * 
+   * <p>The annotations of {@link SBMLDocument} and {@link Model} elements are
+   * always parsed directly as they can contain package information.</p>
+   * 
+   * @param lazyLoading {@code true} to enable lazy loading.
+   */
+  public void setLazyLoading(boolean lazyLoading) {
+    this.lazyLoading = lazyLoading;
+  }
+
+  /**
+   * Returns {@code true} if the change listener of the documents read is
+   * registered once as a shared listener.
+   * 
+   * @return {@code true} if the change listener of the documents read is
+   *         registered once as a shared listener.
+   * @see #setSharedChangeListener(boolean)
+   */
+  public boolean isSharedChangeListener() {
+    return sharedChangeListener;
+  }
+
+  /**
+   * Sets whether the change listener of the documents read by this reader,
+   * the one given to {@link #readSBMLFromStream(InputStream, TreeNodeChangeListener)}
+   * or a {@link SimpleTreeNodeChangeListener}, is registered once with
+   * {@link SBMLDocument#addSharedTreeNodeChangeListener(TreeNodeChangeListener)}
+   * rather than added to every element.
+   * 
+   * <p>This saves one list of listeners per element of large models, but
+   * the listener is then only returned by
+   * {@link SBMLDocument#getListOfSharedTreeNodeChangeListeners()} and not by
+   * {@link SBase#getListOfTreeNodeChangeListeners()}. Disabled by
+   * default.</p>
+   * 
+   * @param sharedChangeListener {@code true} to register the listener once
+   * as a shared listener.
+   */
+  public void setSharedChangeListener(boolean sharedChangeListener) {
+    this.sharedChangeListener = sharedChangeListener;
+  }
+
+
   /**
    * Reads the file that is passed as argument and write it to the console,
    * using the method {@link SBMLWriter#write(SBMLDocument, java.io.OutputStream)}.
@@ -328,6 +624,64 @@ public class SBMLReader {
       (file.getPath() == null) ? "null" : file.getAbsolutePath()));
   }
 
+  /**
+   * Reads the given file in streaming mode. Each {@link Compartment},
+   * {@link Species}, {@link Parameter} and {@link Reaction} is handed to the
+   * given {@link SBMLStreamHandler} as soon as it has been read and is
+   * then discarded. Only its identifiers are kept, under
+   * {@link JSBML#STREAMED_IDS} in the user objects of the {@link Model}, so
+   * that the memory needed grows with the number of streamed identifiers,
+   * but not with the size of the streamed elements, unless
+   * {@link #setRegisteringStreamStubs(boolean)} is enabled.
+   *
+   * @param file
+   *            A file containing SBML content.
+   * @param handler
+   *            the {@link SBMLStreamHandler} receiving the elements.
+   * @return the {@link SBMLDocument} containing everything that was not
+   *         streamed (units, function definitions, rules, events, ...).
+   * @throws IOException
+   * @throws XMLStreamException
+   * @see SBMLStreamHandler
+   */
+  public SBMLDocument streamSBML(File file, SBMLStreamHandler handler) throws IOException, XMLStreamException {
+    SBMLReader reader = acquireReader();
+    reader.streamHandler = handler;
+    try {
+      return reader.readSBML(file, new SimpleTreeNodeChangeListener());
+    } finally {
+      reader.streamHandler = null;
+      releaseReader(reader);
+    }
+  }
+
+  /**
+   * Reads a SBML document from the given {@code stream} in streaming mode.
+   *
+   * @param stream
+   * @param handler
+   *            the {@link SBMLStreamHandler} receiving the elements.
+   * @return the {@link SBMLDocument} containing everything that was not
+   *         streamed.
+   * @throws XMLStreamException
+   * @see #streamSBML(File, SBMLStreamHandler)
+   */
+  public SBMLDocument streamSBMLFromStream(InputStream stream, SBMLStreamHandler handler)
+      throws XMLStreamException {
+    SBMLReader reader = acquireReader();
+    reader.streamHandler = handler;
+    try {
+      Object readObject = reader.readXMLFromStream(stream, null);
+      if (readObject instanceof SBMLDocument) {
+        return (SBMLDocument) readObject;
+      }
+      throw new XMLStreamException("The given stream seems not to contain a valid SBML document.");
+    } finally {
+      reader.streamHandler = null;
+      releaseReader(reader);
+    }
+  }
+
   /**
    * Reads SBML from a given file.
    *
@@ -444,15 +798,21 @@ public class SBMLReader {
   public ASTNode readMathML(String mathML, TreeNodeChangeListener listener, MathContainer parent)
       throws XMLStreamException
   {
-    astNodeParent = parent;
-
     if (logger.isDebugEnabled()) {
       logger.debug("SBMLReader.readMathML with parent called");
     }
 
-    Object object = readXMLFromString(mathML, listener);
-    if (object != null && object instanceof Constraint) {
-      ASTNode math = ((Constraint) object).getMath();
+    SBMLReader reader = acquireReader();
+    reader.astNodeParent = parent;
+    Object object;
+    try {
+      object = reader.readXMLFromString(mathML, listener);
+    } finally {
+      reader.astNodeParent = null;
+      releaseReader(reader);
+    }
+    if (object != null && object instanceof MathContainer) {
+      ASTNode math = ((MathContainer) object).getMath();
       if (math != null) {
         cleanTreeNode(math);
         return math;
@@ -518,6 +878,52 @@ public class SBMLReader {
     return null;
   }
 
+  /**
+   * Reads a notes or annotation XML {@link String}, as stored by a reader using
+   * lazy loading, into an {@link XMLNode}. Contrary to
+   * {@link #readNotes(String)}, the white spaces are kept exactly as they are
+   * when the element is read as part of a whole document.
+   *
+   * @param xml the XML of a notes or annotation element.
+   * @return an {@link XMLNode} representing the given XML {@link String}.
+   * @throws XMLStreamException
+   * @see #setLazyLoading(boolean)
+   */
+  public XMLNode readLazyXMLNode(String xml) throws XMLStreamException {
+    SBMLReader reader = acquireReader();
+    reader.keepFormatting = true;
+    try {
+      return reader.readNotes(xml, null);
+    } finally {
+      reader.keepFormatting = false;
+      releaseReader(reader);
+    }
+  }
+
+  /**
+   * Runs the registered {@link AnnotationReader}s on the annotation of the
+   * given element, as it is done at the end of each {@code annotation}
+   * element when reading a whole document. This is used for the annotations
+   * kept by lazy loading once they are parsed, so that the annotation
+   * readers of the packages see them as well.
+   *
+   * @param sbase an element whose annotation has just been parsed.
+   * @see #setLazyLoading(boolean)
+   */
+  public void processAnnotation(SBase sbase) {
+    SBMLReader reader = acquireReader();
+    try {
+      if (reader.annotationParsers.isEmpty()) {
+        reader.initializeAnnotationParsers();
+      }
+      for (AnnotationReader annoReader : reader.annotationParsers) {
+        annoReader.processAnnotation(sbase);
+      }
+    } finally {
+      releaseReader(reader);
+    }
+  }
+
   /**
    *
    * @param notesXHTML
@@ -591,6 +997,15 @@ public class SBMLReader {
    */
   private Object readXMLFromXMLEventReader(XMLEventReader xmlEventReader, TreeNodeChangeListener listener)  throws XMLStreamException {
 
+    if (threadSafe) {
+      SBMLReader reader = acquireReader();
+      try {
+        return reader.readXMLFromXMLEventReader(xmlEventReader, listener);
+      } finally {
+        releaseReader(reader);
+      }
+    }
+
     initializePackageParsers();
 
     XMLEvent event;
@@ -606,6 +1021,7 @@ public class SBMLReader {
     int annotationDeepness = -1;
     int level = -1, version = -1;
     Object lastElement = null;
+    Stack<List<Namespace>> namespaceScopes = lazyLoading ? new Stack<List<Namespace>>() : null;
 
     // Read all the elements of the file
     while (xmlEventReader.hasNext()) {
@@ -631,11 +1047,33 @@ public class SBMLReader {
 
         startElement = event.asStartElement();
         currentNode = startElement.getName();
+
+        if (LAZY_CONTENT_NS.equals(currentNode.getNamespaceURI())) {
+          // wrapper of some XML kept for lazy loading
+          addAnnotationParsers(startElement);
+          continue;
+        }
         isNested = false;
         isText = false;
 
         addAnnotationParsers(startElement);
 
+        if ((namespaceScopes != null) && !sbmlElements.isEmpty()
+            && (sbmlElements.firstElement() instanceof SBMLDocument) && !isInsideAnnotation && !isHTML)
+        {
+          String lazyKey = getLazyKey(currentNode, sbmlElements);
+
+          if (lazyKey != null) {
+            ((AbstractTreeNode) sbmlElements.peek()).putUserObject(lazyKey,
+              readElementAsString(startElement, xmlEventReader, namespaceScopes));
+            currentNode = null;
+            continue;
+          }
+        }
+        if (namespaceScopes != null) {
+          namespaceScopes.push(getNamespaces(startElement));
+        }
+
         // If the XML element is the sbml element, creates the
         // necessary ReadingParser instances.
         // Creates an empty SBMLDocument instance and pushes it on
@@ -654,8 +1092,12 @@ public class SBMLReader {
           }
 
           // the output of the change listener is activated or not via log4j.properties
-          sbmlDocument.addTreeNodeChangeListener(listener == null
-              ? new SimpleTreeNodeChangeListener() : listener);
+          TreeNodeChangeListener documentListener = listener == null ? new SimpleTreeNodeChangeListener() : listener;
+          if (sharedChangeListener) {
+            sbmlDocument.addSharedTreeNodeChangeListener(documentListener);
+          } else {
+            sbmlDocument.addTreeNodeChangeListener(documentListener);
+          }
 
           for (@SuppressWarnings("unchecked")
           Iterator<Attribute> iterator = startElement.getAttributes(); iterator.hasNext();)
@@ -700,6 +1142,15 @@ public class SBMLReader {
             SBase sbase = (SBase) sbmlElements.firstElement();
             String sbmlNamespace = JSBML.getNamespaceFrom(sbase.getLevel(), sbase.getVersion());
             currentNode = new QName(sbmlNamespace, currentNode.getLocalPart());
+
+            if (keepFormatting) {
+              // read the element exactly as it is done when reading a whole document
+              if (currentNode.getLocalPart().equals("annotation")) {
+                isInsideAnnotation = true;
+              } else {
+                isHTML = true;
+              }
+            }
           }
           else if (currentNode.getLocalPart().equals("math"))
           {
@@ -806,11 +1257,18 @@ public class SBMLReader {
       // EndElement
       else if (event.isEndElement()) {
 
+        if (LAZY_CONTENT_NS.equals(event.asEndElement().getName().getNamespaceURI())) {
+          continue;
+        }
         // the method  processEndElement will return null until we arrive at the end of the 'sbml' element.
         lastElement = sbmlElements.peek();
 
         currentNode = event.asEndElement().getName();
 
+        if ((namespaceScopes != null) && !namespaceScopes.isEmpty()) {
+          namespaceScopes.pop();
+        }
+
         if (currentNode != null) {
 
           boolean isSBMLelement = true;
@@ -877,6 +1335,112 @@ public class SBMLReader {
     return null;
   }
 
+  /**
+   * Returns the user object key under which the XML of the given element
+   * should be stored when reading lazily, or {@code null} if the element has
+   * to be parsed directly.
+   *
+   * @param currentNode the name of the element that starts
+   * @param sbmlElements the stack of objects being read
+   * @return one of {@link JSBML#LAZY_NOTES}, {@link JSBML#LAZY_ANNOTATION},
+   * {@link JSBML#LAZY_MATH} or {@code null}.
+   */
+  private String getLazyKey(QName currentNode, Stack<Object> sbmlElements) {
+    Object contextObject = sbmlElements.peek();
+    String elementName = currentNode.getLocalPart();
+
+    if (elementName.equals("math")) {
+      if ((contextObject instanceof AbstractMathContainer)
+          && ASTNode.URI_MATHML_DEFINITION.equals(currentNode.getNamespaceURI())) {
+        return JSBML.LAZY_MATH;
+      }
+      return null;
+    }
+    if (!(contextObject instanceof AbstractSBase)) {
+      return null;
+    }
+    SBase sbmlDoc = (SBase) sbmlElements.firstElement();
+
+    if (!JSBML.getNamespaceFrom(sbmlDoc.getLevel(), sbmlDoc.getVersion()).equals(currentNode.getNamespaceURI())) {
+      return null;
+    }
+    if (elementName.equals("notes")) {
+      return JSBML.LAZY_NOTES;
+    } else if (elementName.equals("annotation") && !(contextObject instanceof Model)
+        && !(contextObject instanceof SBMLDocument)) {
+      return JSBML.LAZY_ANNOTATION;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the namespaces declared on the given element.
+   *
+   * @param startElement
+   * @return the namespaces declared on the given element, may be empty.
+   */
+  private List<Namespace> getNamespaces(StartElement startElement) {
+    @SuppressWarnings("unchecked")
+    Iterator<Namespace> iterator = startElement.getNamespaces();
+
+    if (!iterator.hasNext()) {
+      return Collections.emptyList();
+    }
+    List<Namespace> namespaces = new ArrayList<Namespace>();
+    while (iterator.hasNext()) {
+      namespaces.add(iterator.next());
+    }
+    return namespaces;
+  }
+
+  /**
+   * Consumes the events of the element started by the given
+   * {@link StartElement} until its end and returns them as an XML
+   * {@link String}. The namespaces declared on the ancestors of the element
+   * are declared on a wrapping element, so that it can be read on its own
+   * later on.
+   *
+   * @param startElement
+   * @param xmlEventReader
+   * @param namespaceScopes the namespaces declared on each open ancestor
+   * @return the XML of the element as a {@link String}.
+   * @throws XMLStreamException
+   */
+  private String readElementAsString(StartElement startElement, XMLEventReader xmlEventReader,
+    Stack<List<Namespace>> namespaceScopes) throws XMLStreamException
+  {
+    Map<String, Namespace> namespaces = new LinkedHashMap<String, Namespace>();
+    for (List<Namespace> scope : namespaceScopes) {
+      for (Namespace namespace : scope) {
+        namespaces.put(namespace.getPrefix(), namespace);
+      }
+    }
+
+    StringWriter stringWriter = new StringWriter();
+    XMLEventWriter xmlEventWriter = lazyOutputFactory.createXMLEventWriter(stringWriter);
+    WstxEventFactory eventFactory = lazyEventFactory;
+    namespaces.put("jsbml_lazy", eventFactory.createNamespace("jsbml_lazy", LAZY_CONTENT_NS));
+    xmlEventWriter.add(eventFactory.createStartElement("jsbml_lazy", LAZY_CONTENT_NS, "content",
+      null, namespaces.values().iterator()));
+    xmlEventWriter.add(startElement);
+
+    int depth = 1;
+    while ((depth > 0) && xmlEventReader.hasNext()) {
+      XMLEvent event = xmlEventReader.nextEvent();
+
+      if (event.isStartElement()) {
+        depth++;
+      } else if (event.isEndElement()) {
+        depth--;
+      }
+      xmlEventWriter.add(event);
+    }
+    xmlEventWriter.add(eventFactory.createEndElement("jsbml_lazy", LAZY_CONTENT_NS, "content"));
+    xmlEventWriter.close();
+
+    return stringWriter.toString();
+  }
+
   /**
    * Reads a SBML model from the given XML String.
    *
@@ -1198,6 +1762,125 @@ public class SBMLReader {
   }
 
 
+  /**
+   * Hands the given element to the {@link SBMLStreamHandler} and removes it
+   * from its parent {@link ListOf}, if it is one of the streamed types. The
+   * identifiers of the element are recorded by
+   * {@link #recordStreamedIds(Model, SBase)} or, if
+   * {@link #registeringStreamStubs} is set, stay registered in the
+   * {@link Model} through a stub created by {@link #createStreamStub(SBase)}.
+   *
+   * @param element the element that was just completely read.
+   */
+  private void streamElement(Object element) {
+    if (!((element instanceof Compartment) || (element instanceof Species)
+        || (element instanceof Parameter) || (element instanceof Reaction))) {
+      return;
+    }
+    SBase sbase = (SBase) element;
+
+    if (!(sbase.getParent() instanceof ListOf<?>)) {
+      return;
+    }
+    ListOf<?> listOf = (ListOf<?>) sbase.getParent();
+    Model model = sbase.getModel();
+    cleanTreeNode((AbstractTreeNode) sbase);
+
+    if (sbase instanceof Compartment) {
+      streamHandler.onCompartment((Compartment) sbase);
+    } else if (sbase instanceof Species) {
+      streamHandler.onSpecies((Species) sbase);
+    } else if (sbase instanceof Parameter) {
+      streamHandler.onParameter((Parameter) sbase);
+    } else {
+      streamHandler.onReaction((Reaction) sbase);
+    }
+
+    // the element is normally the last (and only) one of the list
+    int index = listOf.size() - 1;
+    if ((index >= 0) && (listOf.get(index) == sbase)) {
+      listOf.remove(index);
+    } else {
+      listOf.remove(sbase);
+    }
+
+    if (model == null) {
+      return;
+    }
+    if (!registeringStreamStubs) {
+      recordStreamedIds(model, sbase);
+    } else if (sbase.isSetId()) {
+      model.register(createStreamStub(sbase));
+    }
+  }
+
+  /**
+   * Records the identifiers of the given streamed element, and of the
+   * species references of a {@link Reaction}, in the map stored under
+   * {@link JSBML#STREAMED_IDS} in the user objects of the given
+   * {@link Model}.
+   *
+   * @param model the model being read.
+   * @param sbase a streamed element.
+   */
+  @SuppressWarnings("unchecked")
+  private static void recordStreamedIds(Model model, SBase sbase) {
+    Map<String, String> streamedIds = (Map<String, String>) model.getUserObject(JSBML.STREAMED_IDS);
+    if (streamedIds == null) {
+      streamedIds = new HashMap<String, String>();
+      model.putUserObject(JSBML.STREAMED_IDS, streamedIds);
+    }
+    if (sbase.isSetId()) {
+      streamedIds.put(sbase.getId(), sbase.getElementName());
+    }
+    if (sbase instanceof Reaction) {
+      Reaction reaction = (Reaction) sbase;
+      for (int i = 0; i < reaction.getReactantCount(); i++) {
+        recordStreamedId(streamedIds, reaction.getReactant(i));
+      }
+      for (int i = 0; i < reaction.getProductCount(); i++) {
+        recordStreamedId(streamedIds, reaction.getProduct(i));
+      }
+      for (int i = 0; i < reaction.getModifierCount(); i++) {
+        recordStreamedId(streamedIds, reaction.getModifier(i));
+      }
+    }
+  }
+
+  /**
+   * Puts the identifier of the given element in the given map, if it is set.
+   *
+   * @param streamedIds
+   * @param sbase
+   */
+  private static void recordStreamedId(Map<String, String> streamedIds, SBase sbase) {
+    if (sbase.isSetId()) {
+      streamedIds.put(sbase.getId(), sbase.getElementName());
+    }
+  }
+
+  /**
+   * Creates the stub that stands for a streamed element once it has been
+   * removed from the document: a copy of the element without its notes,
+   * annotation and, for a {@link Reaction}, without its
+   * {@link org.sbml.jsbml.KineticLaw}. The stub is not part of the tree, but
+   * its identifiers, including the ones of the species references of a
+   * {@link Reaction}, are registered in the {@link Model}.
+   *
+   * @param sbase a streamed element.
+   * @return the stub standing for the given element.
+   * @see SBMLStreamHandler
+   */
+  private static SBase createStreamStub(SBase sbase) {
+    SBase stub = sbase.clone();
+    stub.unsetNotes();
+    stub.unsetAnnotation();
+    if (stub instanceof Reaction) {
+      ((Reaction) stub).unsetKineticLaw();
+    }
+    return stub;
+  }
+
   /**
    * Process the end of an element.
    *
@@ -1250,7 +1933,11 @@ public class SBMLReader {
         // element.
         if (!currentNode.getLocalPart().equals("sbml")) {
           if (popElementFromTheStack) {
-            sbmlElements.pop();
+            Object element = sbmlElements.pop();
+
+            if ((streamHandler != null) && !isInsideAnnotation) {
+              streamElement(element);
+            }
           }
 
           // System.out.println("SBMLReader: event.isEndElement: new stack.size = "
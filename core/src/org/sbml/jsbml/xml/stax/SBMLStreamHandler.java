@@ -0,0 +1,101 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.stax;
+
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.Species;
+
+/**
+ * Receives the bulk elements of an SBML file while it is read in streaming
+ * mode by {@link SBMLReader#streamSBML(java.io.File, SBMLStreamHandler)}.
+ *
+ * <p>Each callback is invoked as soon as the closing tag of the element has
+ * been processed, so the element is complete, including its annotation,
+ * notes, math and package extensions. During the callback the element is
+ * still attached to its {@link org.sbml.jsbml.ListOf}, so
+ * {@link org.sbml.jsbml.SBase#getModel()} and
+ * {@link org.sbml.jsbml.SBase#getSBMLDocument()} return the document being
+ * read. This document only contains what precedes the element in the file:
+ * <ul>
+ * <li>the elements that are not streamed, like the
+ * {@link org.sbml.jsbml.UnitDefinition}s, are part of it as usual;</li>
+ * <li>the elements streamed before are not part of their
+ * {@link org.sbml.jsbml.ListOf}s anymore. Their identifiers, including the
+ * ones of the species references of a {@link Reaction}, are kept in the map
+ * stored under {@link org.sbml.jsbml.JSBML#STREAMED_IDS} in the user objects
+ * of the {@link org.sbml.jsbml.Model}, which maps them to their element
+ * names. Methods resolving an identifier, like
+ * {@link Species#getCompartmentInstance()}, return {@code null} for them,
+ * unless {@link SBMLReader#setRegisteringStreamStubs(boolean)} is enabled:
+ * they then return a stub, a copy of the element without notes, annotation
+ * and {@link org.sbml.jsbml.KineticLaw}, which is not attached to the
+ * document. Their meta identifiers are not registered anymore;</li>
+ * <li>the elements that follow the element in the file are not read yet.</li>
+ * </ul>
+ * Once the callback returns, the element is removed from the document so that
+ * the memory needed to read a model does not grow with the size of the
+ * streamed elements. It still grows with their number, as their identifiers
+ * are kept. Implementations that need to keep an element have to
+ * copy the required information (or clone the element) inside the callback.
+ * The map of the streamed identifiers, or the stubs, stay in the document
+ * returned at the end of the streaming.</p>
+ *
+ * <p>{@link org.sbml.jsbml.FunctionDefinition}s and
+ * {@link org.sbml.jsbml.UnitDefinition}s are never streamed, as they are
+ * needed to interpret the math and units of the remaining elements.</p>
+ *
+ * @since 1.5
+ * @see SimpleSBMLStreamHandler
+ */
+public interface SBMLStreamHandler {
+
+  /**
+   * Called when a {@link Compartment} has been completely read.
+   *
+   * @param compartment the {@link Compartment} read
+   */
+  public void onCompartment(Compartment compartment);
+
+  /**
+   * Called when a {@link Parameter} has been completely read. This method
+   * is only called for global parameters, {@link org.sbml.jsbml.LocalParameter}s
+   * are part of their {@link Reaction}.
+   *
+   * @param parameter the {@link Parameter} read
+   */
+  public void onParameter(Parameter parameter);
+
+  /**
+   * Called when a {@link Reaction} has been completely read.
+   *
+   * @param reaction the {@link Reaction} read
+   */
+  public void onReaction(Reaction reaction);
+
+  /**
+   * Called when a {@link Species} has been completely read.
+   *
+   * @param species the {@link Species} read
+   */
+  public void onSpecies(Species species);
+
+}
@@ -36,8 +36,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.swing.tree.TreeNode;
 import javax.xml.stream.XMLStreamException;
@@ -68,6 +70,7 @@ import org.sbml.jsbml.util.compilers.MathMLXMLStreamCompiler;
 import org.sbml.jsbml.xml.XMLNode;
 import org.sbml.jsbml.xml.parsers.PackageUtil;
 import org.sbml.jsbml.xml.parsers.ParserManager;
+import org.sbml.jsbml.xml.parsers.SBMLRDFAnnotationWriter;
 import org.sbml.jsbml.xml.parsers.WritingParser;
 import org.sbml.jsbml.xml.parsers.XMLNodeWriter;
 
@@ -76,6 +79,18 @@ import com.ctc.wstx.stax.WstxOutputFactory;
 /**
  * A SBMLWriter provides the methods to write a SBML file.
  * 
+ * <p>An {@link SBMLWriter} created with one of the default constructors
+ * keeps some state while writing and must only be used by one thread at a
+ * time. An {@link SBMLWriter} created with
+ * {@link #SBMLWriter(char, short, boolean)} and {@code true} can be shared
+ * by any number of threads, see {@link org.sbml.jsbml.xml.stax.SBMLReader}
+ * for the equivalent reading mode. This applies to all the write methods:
+ * the methods writing to a {@link File}, a file name or a {@link String}
+ * delegate to {@link #write(SBMLDocument, OutputStream, String, String)},
+ * which, like {@link #writeAnnotation(SBase)}, is done by a private writer
+ * taken from a pool. The indentation has to be set before the writer is
+ * shared.</p>
+ * 
  * @author Marine Dumousseau
  * @author Nicolas Rodriguez
  * @author Andreas Dr&auml;ger
@@ -258,6 +273,17 @@ public class SBMLWriter {
    */
   private transient List<String> issuedWarnings = new ArrayList<String>();
 
+  /**
+   * Whether this writer can be used by several threads at the same time.
+   */
+  private final boolean threadSafe;
+
+  /**
+   * The idle writers doing the actual work when this writer is thread-safe,
+   * {@code null} otherwise.
+   */
+  private final Queue<SBMLWriter> workers;
+
   /**
    * A {@link Logger} for this class.
    */
@@ -283,8 +309,60 @@ public class SBMLWriter {
    * @param indentCount the number of these symbols to be concatenated
    */
   public SBMLWriter(char indentChar, short indentCount) {
+    this(indentChar, indentCount, false);
+  }
+
+  /**
+   * Creates a new {@link SBMLWriter} with the given indentation.
+   * 
+   * <p>If {@code threadSafe} is {@code true}, this writer can be shared by
+   * several threads. Each document is then written by a private writer
+   * taken from a pool, which holds its own parser instances and state, and
+   * given back to the pool afterwards. The indentation should be set before
+   * the writer is shared.</p>
+   * 
+   * @param indentChar the symbol to be used to indent elements in the XML representation
+   * @param indentCount the number of these symbols to be concatenated
+   * @param threadSafe {@code true} if this writer is going to be used by
+   * several threads at the same time.
+   */
+  public SBMLWriter(char indentChar, short indentCount, boolean threadSafe) {
     setIndentationChar(indentChar);
     setIndentationCount(indentCount);
+    this.threadSafe = threadSafe;
+    workers = threadSafe ? new ConcurrentLinkedQueue<SBMLWriter>() : null;
+  }
+
+  /**
+   * Returns an idle writer from the pool of a thread-safe writer, with the
+   * indentation of this writer. The writer has to be given back to
+   * {@link #workers} once the call is done.
+   * 
+   * @return the writer to use for one call.
+   */
+  private SBMLWriter acquireWriter() {
+    SBMLWriter writer = workers.poll();
+
+    if (writer == null) {
+      writer = new SBMLWriter(indentChar, indentCount, false);
+    } else {
+      writer.indentChar = indentChar;
+      writer.indentCount = indentCount;
+    }
+
+    return writer;
+  }
+
+  /**
+   * Returns {@code true} if this writer can be used by several threads at
+   * the same time.
+   * 
+   * @return {@code true} if this writer can be used by several threads at
+   * the same time.
+   * @see #SBMLWriter(char, short, boolean)
+   */
+  public boolean isThreadSafe() {
+    return threadSafe;
   }
 
   /**
@@ -550,6 +628,16 @@ public class SBMLWriter {
 
     Logger logger = Logger.getLogger(SBMLWriter.class);
 
+    if (threadSafe) {
+      SBMLWriter writer = acquireWriter();
+      try {
+        writer.write(sbmlDocument, stream, programName, programVersion);
+      } finally {
+        workers.offer(writer);
+      }
+      return;
+    }
+
     // check package version and namespace in general and register packages if needed.
     PackageUtil.checkPackages(sbmlDocument, true, true);
 
@@ -694,6 +782,15 @@ public class SBMLWriter {
       return annotationStr;
     }
 
+    if (threadSafe) {
+      SBMLWriter writer = acquireWriter();
+      try {
+        return writer.writeAnnotation(sbase);
+      } finally {
+        workers.offer(writer);
+      }
+    }
+
     StringWriter stream = new StringWriter();
     WstxOutputFactory outputFactory = new WstxOutputFactory();
     SMOutputFactory smFactory = new SMOutputFactory(outputFactory);
@@ -733,6 +830,13 @@ public class SBMLWriter {
     XMLStreamWriter writer, int indent, boolean xmlFragment)
         throws XMLStreamException
   {
+    if (SBMLRDFAnnotationWriter.canWrite(sbase)) {
+      // streams the history and CVTerms without building an XMLNode tree first
+      writer.writeCharacters("\n");
+      new SBMLRDFAnnotationWriter(writer, indent, indentCount, indentChar).write(sbase);
+      return;
+    }
+
     XMLNode fullAnnotationXMLNode = sbase.getAnnotation().getFullAnnotation();
 
     writer.writeCharacters("\n");
@@ -0,0 +1,63 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.stax;
+
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.Species;
+
+/**
+ * An {@link SBMLStreamHandler} that does nothing. Extend this class to only
+ * override the callbacks you are interested in.
+ *
+ * @since 1.5
+ */
+public class SimpleSBMLStreamHandler implements SBMLStreamHandler {
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.xml.stax.SBMLStreamHandler#onCompartment(org.sbml.jsbml.Compartment)
+   */
+  @Override
+  public void onCompartment(Compartment compartment) {
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.xml.stax.SBMLStreamHandler#onParameter(org.sbml.jsbml.Parameter)
+   */
+  @Override
+  public void onParameter(Parameter parameter) {
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.xml.stax.SBMLStreamHandler#onReaction(org.sbml.jsbml.Reaction)
+   */
+  @Override
+  public void onReaction(Reaction reaction) {
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.xml.stax.SBMLStreamHandler#onSpecies(org.sbml.jsbml.Species)
+   */
+  @Override
+  public void onSpecies(Species species) {
+  }
+
+}
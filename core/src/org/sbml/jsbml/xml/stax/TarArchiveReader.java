@@ -0,0 +1,306 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.stax;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the regular files of a tar archive, as used by
+ * {@link SBMLBatchReader#readArchive(java.io.File, SBMLBatchReader.Listener)}.
+ *
+ * <p>The POSIX ustar and pax formats and the GNU format are supported. The
+ * name prefix of the ustar header is only used if the header has the POSIX
+ * magic, as the GNU format stores other fields at this place. The path and
+ * size of the pax extended headers, local ({@code x}) or global
+ * ({@code g}), and the GNU long names ({@code L}) are applied to the
+ * following entries. Directories, links and the other special entries are
+ * skipped.</p>
+ *
+ * @since 1.5
+ */
+class TarArchiveReader {
+
+  /**
+   * Size of a tar block.
+   */
+  private static final int BLOCK_SIZE = 512;
+
+  /**
+   * The magic of the POSIX ustar and pax headers, including its terminating
+   * zero. GNU headers have {@code "ustar "} at the same place instead.
+   */
+  private static final byte[] POSIX_MAGIC = "ustar\0".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * The archive.
+   */
+  private final InputStream stream;
+
+  /**
+   * The header block being read.
+   */
+  private final byte[] header = new byte[BLOCK_SIZE];
+
+  /**
+   * The attributes of the pax global headers read so far.
+   */
+  private final Map<String, String> globalAttributes = new HashMap<String, String>();
+
+  /**
+   * The number of bytes of the current entry that have not been read yet.
+   */
+  private long remaining = 0;
+
+  /**
+   * The number of bytes that pad the current entry to a full block.
+   */
+  private long padding = 0;
+
+  /**
+   * @param stream the uncompressed tar archive
+   */
+  TarArchiveReader(InputStream stream) {
+    this.stream = stream;
+  }
+
+  /**
+   * Moves to the next regular file of the archive, skipping what was not
+   * read of the current one.
+   *
+   * @return the name of the next regular file or {@code null} at the end of
+   *         the archive.
+   * @throws IOException
+   */
+  String nextFile() throws IOException {
+    Map<String, String> localAttributes = null;
+    String longName = null;
+
+    while (true) {
+      skipFully(remaining + padding);
+      remaining = padding = 0;
+
+      if (!readBlock(header) || (header[0] == 0)) {
+        // end of archive
+        return null;
+      }
+      char type = (char) header[156];
+      long size = readSize();
+      if ((localAttributes != null) && localAttributes.containsKey("size")) {
+        size = Long.parseLong(localAttributes.get("size"));
+      } else if (globalAttributes.containsKey("size")) {
+        size = Long.parseLong(globalAttributes.get("size"));
+      }
+      remaining = size;
+      padding = (BLOCK_SIZE - (size % BLOCK_SIZE)) % BLOCK_SIZE;
+
+      switch (type) {
+      case 'x':
+        localAttributes = readPaxAttributes(readContent());
+        continue;
+      case 'g':
+        for (Map.Entry<String, String> entry : readPaxAttributes(readContent()).entrySet()) {
+          if (entry.getValue().length() == 0) {
+            globalAttributes.remove(entry.getKey());
+          } else {
+            globalAttributes.put(entry.getKey(), entry.getValue());
+          }
+        }
+        continue;
+      case 'L':
+        // GNU long name of the next entry
+        longName = new String(readContent(), StandardCharsets.UTF_8).trim();
+        continue;
+      case '0':
+      case '7':
+      case 0:
+        break;
+      default:
+        // directories, links and the other special entries
+        localAttributes = null;
+        longName = null;
+        continue;
+      }
+
+      String path = (localAttributes != null) ? localAttributes.get("path") : null;
+      if (path == null) {
+        path = globalAttributes.get("path");
+      }
+      if ((path != null) && (path.length() > 0)) {
+        return path;
+      } else if (longName != null) {
+        return longName;
+      }
+      String name = readString(0, 100);
+      if (Arrays.equals(POSIX_MAGIC, Arrays.copyOfRange(header, 257, 263))) {
+        String prefix = readString(345, 155);
+        if (prefix.length() > 0) {
+          name = prefix + '/' + name;
+        }
+      }
+      return name;
+    }
+  }
+
+  /**
+   * Reads the content of the current entry.
+   *
+   * @return the content of the current entry.
+   * @throws IOException
+   */
+  byte[] readContent() throws IOException {
+    if (remaining > Integer.MAX_VALUE) {
+      throw new IOException("Entry too large.");
+    }
+    byte[] content = new byte[(int) remaining];
+    int offset = 0;
+    while (offset < content.length) {
+      int count = stream.read(content, offset, content.length - offset);
+      if (count < 0) {
+        throw new IOException("Unexpected end of archive.");
+      }
+      offset += count;
+    }
+    remaining = 0;
+    return content;
+  }
+
+  /**
+   * Parses the records of a pax extended header, which have the form
+   * {@code "<length> <key>=<value>\n"}, the length being the number of bytes
+   * of the whole record.
+   *
+   * @param content the content of a pax extended header
+   * @return the attributes of the header.
+   * @throws IOException if the header is malformed.
+   */
+  static Map<String, String> readPaxAttributes(byte[] content) throws IOException {
+    Map<String, String> attributes = new HashMap<String, String>();
+    int position = 0;
+
+    while (position < content.length) {
+      int space = position;
+      while ((space < content.length) && (content[space] != ' ')) {
+        space++;
+      }
+      int length;
+      try {
+        length = Integer.parseInt(new String(content, position, space - position, StandardCharsets.US_ASCII));
+      } catch (NumberFormatException exc) {
+        throw new IOException("Malformed pax header.", exc);
+      }
+      int end = position + length - 1;
+      if ((length <= 0) || (end >= content.length) || (content[end] != '\n')) {
+        throw new IOException("Malformed pax header.");
+      }
+      String record = new String(content, space + 1, end - space - 1, StandardCharsets.UTF_8);
+      int equals = record.indexOf('=');
+      if (equals < 0) {
+        throw new IOException("Malformed pax header.");
+      }
+      attributes.put(record.substring(0, equals), record.substring(equals + 1));
+      position += length;
+    }
+
+    return attributes;
+  }
+
+  /**
+   * Reads the size of the current header, which is either an octal number
+   * or, in the GNU format, a base-256 number whose first byte has its
+   * highest bit set.
+   *
+   * @return the size of the entry.
+   * @throws IOException if the size cannot be read.
+   */
+  private long readSize() throws IOException {
+    if ((header[124] & 0x80) != 0) {
+      long size = header[124] & 0x7f;
+      for (int i = 125; i < 136; i++) {
+        size = (size << 8) | (header[i] & 0xff);
+      }
+      return size;
+    }
+    String octalSize = readString(124, 12).trim();
+    try {
+      return octalSize.isEmpty() ? 0 : Long.parseLong(octalSize, 8);
+    } catch (NumberFormatException exc) {
+      throw new IOException("Invalid tar header.", exc);
+    }
+  }
+
+  /**
+   * Reads a zero terminated {@link String} from the current header.
+   *
+   * @param offset
+   * @param length
+   * @return the {@link String} read.
+   */
+  private String readString(int offset, int length) {
+    int end = offset;
+    while ((end < offset + length) && (header[end] != 0)) {
+      end++;
+    }
+    return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads one block.
+   *
+   * @param block
+   * @return {@code false} if the end of the stream was reached.
+   * @throws IOException
+   */
+  private boolean readBlock(byte[] block) throws IOException {
+    int offset = 0;
+    while (offset < block.length) {
+      int count = stream.read(block, offset, block.length - offset);
+      if (count < 0) {
+        return false;
+      }
+      offset += count;
+    }
+    return true;
+  }
+
+  /**
+   * Skips the given number of bytes.
+   *
+   * @param count
+   * @throws IOException
+   */
+  private void skipFully(long count) throws IOException {
+    while (count > 0) {
+      long skipped = stream.skip(count);
+      if (skipped <= 0) {
+        if (stream.read() < 0) {
+          return;
+        }
+        skipped = 1;
+      }
+      count -= skipped;
+    }
+  }
+
+}
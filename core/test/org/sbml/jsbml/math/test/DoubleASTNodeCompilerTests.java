@@ -0,0 +1,212 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.math.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.CallableSBase;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.text.parser.ParseException;
+import org.sbml.jsbml.util.compilers.AbstractDoubleASTNodeCompiler;
+import org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler;
+
+/**
+ * Tests the evaluation of {@link ASTNode}s with a
+ * {@link DoubleASTNodeCompiler}.
+ * 
+ * @since 1.5
+ */
+public class DoubleASTNodeCompilerTests {
+
+  /**
+   * A compiler reading the values of the identifiers from a {@link Map}.
+   */
+  private static class MapCompiler extends AbstractDoubleASTNodeCompiler {
+
+    /**
+     * 
+     */
+    private final Map<String, Double> values = new HashMap<String, Double>();
+
+    /**
+     * 
+     */
+    private final Model model;
+
+    /**
+     * 
+     */
+    private double time;
+
+    /**
+     * @param model
+     */
+    public MapCompiler(Model model) {
+      this.model = model;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#compile(org.sbml.jsbml.CallableSBase)
+     */
+    @Override
+    public double compile(CallableSBase variable) throws SBMLException {
+      return compile(variable.getId());
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.AbstractDoubleASTNodeCompiler#compile(java.lang.String)
+     */
+    @Override
+    public double compile(String name) throws SBMLException {
+      Double value = values.get(name);
+      return value != null ? value.doubleValue() : super.compile(name);
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.AbstractDoubleASTNodeCompiler#function(java.lang.String, org.sbml.jsbml.ASTNode)
+     */
+    @Override
+    public double function(String functionDefinitionName, ASTNode call)
+        throws SBMLException {
+      FunctionDefinition functionDefinition = model.getFunctionDefinition(functionDefinitionName);
+      if (functionDefinition == null) {
+        return super.function(functionDefinitionName, call);
+      }
+      return function(functionDefinition, call);
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#symbolTime(java.lang.String)
+     */
+    @Override
+    public double symbolTime(String timeSymbol) {
+      return time;
+    }
+
+  }
+
+  /**
+   * 
+   */
+  private static final double DELTA = 1e-12;
+
+  /**
+   * 
+   */
+  private MapCompiler compiler;
+
+  /**
+   * @throws ParseException
+   */
+  @Before public void setUp() throws ParseException {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("m");
+    model.createFunctionDefinition("f").setMath(ASTNode.parseFormula("lambda(a, b, a * b + 1)"));
+    model.createFunctionDefinition("g").setMath(ASTNode.parseFormula("lambda(a, f(a, a) - a)"));
+
+    compiler = new MapCompiler(model);
+    compiler.values.put("x", 2d);
+    compiler.values.put("y", 5d);
+    compiler.time = 10d;
+  }
+
+  /**
+   * @param formula
+   * @return the value of the formula.
+   * @throws Exception
+   */
+  private double evaluate(String formula) throws Exception {
+    return ASTNode.parseFormula(formula).compile(compiler);
+  }
+
+  /**
+   * Checks the arithmetic operators and functions.
+   * 
+   * @throws Exception
+   */
+  @Test public void arithmetic() throws Exception {
+    assertEquals(7d, evaluate("x + y"), DELTA);
+    assertEquals(-3d, evaluate("x - y"), DELTA);
+    assertEquals(-2d, evaluate("-x"), DELTA);
+    assertEquals(17d, evaluate("x + y * x + y"), DELTA);
+    assertEquals(0.4, evaluate("x / y"), DELTA);
+    assertEquals(32d, evaluate("x^y"), DELTA);
+    assertEquals(Math.sqrt(5d), evaluate("sqrt(y)"), DELTA);
+    assertEquals(Math.log(5d) / Math.log(2d), evaluate("log(x, y)"), DELTA);
+    assertEquals(Math.log(5d), evaluate("ln(y)"), DELTA);
+    assertEquals(Math.exp(2d) + Math.sin(5d), evaluate("exp(x) + sin(y)"), DELTA);
+    assertEquals(120d, evaluate("factorial(y)"), DELTA);
+    assertEquals(5d, evaluate("max(x, y, 1)"), DELTA);
+    assertEquals(1d, evaluate("min(x, y, 1)"), DELTA);
+    assertEquals(2.5e-3 * 2d, evaluate("2.5e-3 * x"), DELTA);
+    assertEquals(10d, evaluate("time"), DELTA);
+  }
+
+  /**
+   * Checks the relational and logical operators and piecewise.
+   * 
+   * @throws Exception
+   */
+  @Test public void logic() throws Exception {
+    assertEquals(1d, evaluate("x < y"), DELTA);
+    assertEquals(0d, evaluate("x >= y"), DELTA);
+    assertEquals(1d, evaluate("x < y && y > 3"), DELTA);
+    assertEquals(0d, evaluate("!(x < y)"), DELTA);
+    assertEquals(2d, evaluate("piecewise(x, x < y, y)"), DELTA);
+    assertEquals(5d, evaluate("piecewise(x, x > y, y)"), DELTA);
+    assertTrue(ASTNode.parseFormula("x < y || z > 0").compileBoolean(compiler));
+    assertFalse(ASTNode.parseFormula("x > y && z > 0").compileBoolean(compiler));
+  }
+
+  /**
+   * Checks the calls to function definitions, including nested calls in the
+   * arguments and in the body of a function.
+   * 
+   * @throws Exception
+   */
+  @Test public void functions() throws Exception {
+    assertEquals(11d, evaluate("f(x, y)"), DELTA);
+    assertEquals(23d, evaluate("f(f(x, y), x)"), DELTA);
+    assertEquals(3d, evaluate("g(x)"), DELTA);
+    assertEquals(13d, evaluate("f(g(x), f(1, y) - 2)"), DELTA);
+  }
+
+  /**
+   * Checks that an unknown identifier is reported.
+   * 
+   * @throws Exception
+   */
+  @Test(expected = SBMLException.class)
+  public void unknownIdentifier() throws Exception {
+    evaluate("x + z");
+  }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.math.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.LocalParameter;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.text.parser.ParseException;
+import org.sbml.jsbml.util.compilers.NumericExpression;
+import org.sbml.jsbml.util.compilers.NumericExpressionCompiler;
+
+/**
+ * Tests the {@link NumericExpressionCompiler}.
+ * 
+ * @since 1.5
+ */
+public class NumericExpressionCompilerTests {
+
+  /**
+   * 
+   */
+  private static final double DELTA = 1e-12;
+
+  /**
+   * 
+   */
+  private Model model;
+
+  /**
+   * 
+   */
+  private NumericExpressionCompiler compiler;
+
+  /**
+   * Values of x, y and the time.
+   */
+  private final double[] values = {2d, 5d, 10d};
+
+  /**
+   * @throws ParseException
+   */
+  @Before public void setUp() throws ParseException {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    model = doc.createModel("m");
+
+    FunctionDefinition f = model.createFunctionDefinition("f");
+    f.setMath(ASTNode.parseFormula("lambda(a, b, a * b + 1)"));
+
+    Parameter c = model.createParameter("c");
+    c.setValue(3d);
+    c.setConstant(true);
+
+    Map<String, Integer> indices = new HashMap<String, Integer>();
+    indices.put("x", 0);
+    indices.put("y", 1);
+    compiler = new NumericExpressionCompiler(indices, model);
+    compiler.setTimeIndex(2);
+  }
+
+  /**
+   * @param formula
+   * @return the value of the compiled formula.
+   * @throws Exception
+   */
+  private double evaluate(String formula) throws Exception {
+    return compiler.compile(ASTNode.parseFormula(formula)).evaluate(values);
+  }
+
+  /**
+   * Checks the arithmetic operators and functions.
+   * 
+   * @throws Exception
+   */
+  @Test public void arithmetic() throws Exception {
+    assertEquals(7d, evaluate("x + y"), DELTA);
+    assertEquals(-3d, evaluate("x - y"), DELTA);
+    assertEquals(-2d, evaluate("-x"), DELTA);
+    assertEquals(17d, evaluate("x + y * x + y"), DELTA);
+    assertEquals(0.4, evaluate("x / y"), DELTA);
+    assertEquals(32d, evaluate("x^y"), DELTA);
+    assertEquals(0.25, evaluate("x^(-2)"), DELTA);
+    assertEquals(Math.pow(2d, 0.5), evaluate("x^0.5"), DELTA);
+    assertEquals(Math.sqrt(5d), evaluate("sqrt(y)"), DELTA);
+    assertEquals(Math.log(5d) / Math.log(2d), evaluate("log(x, y)"), DELTA);
+    assertEquals(Math.log(5d), evaluate("ln(y)"), DELTA);
+    assertEquals(Math.exp(2d) + Math.sin(5d), evaluate("exp(x) + sin(y)"), DELTA);
+    assertEquals(120d, evaluate("factorial(y)"), DELTA);
+    assertEquals(5d, evaluate("max(x, y, 1)"), DELTA);
+    assertEquals(1d, evaluate("min(x, y, 1)"), DELTA);
+    assertEquals(10d, evaluate("time"), DELTA);
+  }
+
+  /**
+   * Checks the relational and logical operators and piecewise.
+   * 
+   * @throws Exception
+   */
+  @Test public void logic() throws Exception {
+    assertEquals(1d, evaluate("x < y"), DELTA);
+    assertEquals(0d, evaluate("x >= y"), DELTA);
+    assertEquals(1d, evaluate("x < y && y > 3"), DELTA);
+    assertEquals(0d, evaluate("!(x < y)"), DELTA);
+    assertEquals(2d, evaluate("piecewise(x, x < y, y)"), DELTA);
+    assertEquals(5d, evaluate("piecewise(x, x > y, y)"), DELTA);
+    assertTrue(Double.isNaN(evaluate("piecewise(x, x > y)")));
+  }
+
+  /**
+   * Checks that the constant sub-expressions, the constant parameters and the
+   * calls to function definitions are compiled.
+   * 
+   * @throws Exception
+   */
+  @Test public void constantsAndFunctions() throws Exception {
+    assertTrue(compiler.compile(ASTNode.parseFormula("2 * (3 + pi) / c")).isConstant());
+    assertEquals(2d * (3d + Math.PI) / 3d, evaluate("2 * (3 + pi) / c"), DELTA);
+    assertEquals(11d, evaluate("f(x, y)"), DELTA);
+    assertEquals(23d, evaluate("f(f(x, y), x)"), DELTA);
+    assertEquals(7d, evaluate("f(c, x)"), DELTA);
+  }
+
+  /**
+   * Checks that the local parameters of a kinetic law shadow the variables.
+   * 
+   * @throws Exception
+   */
+  @Test public void localParameters() throws Exception {
+    Reaction r = model.createReaction("r");
+    KineticLaw kl = r.createKineticLaw();
+    LocalParameter x = kl.createLocalParameter("x");
+    x.setValue(4d);
+    kl.setMath(ASTNode.parseFormula("x * y"));
+
+    NumericExpression expression = compiler.compile(kl.getMath());
+    assertEquals(20d, expression.evaluate(values), DELTA);
+  }
+
+  /**
+   * Checks that an unknown identifier is reported.
+   * 
+   * @throws Exception
+   */
+  @Test(expected = SBMLException.class)
+  public void unknownIdentifier() throws Exception {
+    evaluate("x + z");
+  }
+
+}
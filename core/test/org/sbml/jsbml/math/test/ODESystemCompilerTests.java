@@ -0,0 +1,273 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.math.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.AssignmentRule;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.InitialAssignment;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.RateRule;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.text.parser.ParseException;
+import org.sbml.jsbml.util.compilers.CompiledODESystem;
+import org.sbml.jsbml.util.compilers.ODESystemCompiler;
+
+/**
+ * Tests the {@link ODESystemCompiler}.
+ * 
+ * @since 1.5
+ */
+public class ODESystemCompilerTests {
+
+  /**
+   * 
+   */
+  private static final double DELTA = 1e-12;
+
+  /**
+   * 
+   */
+  private Model model;
+
+  /**
+   * Creates a model with two reactions between a species in concentration
+   * and a species in amount, assignment rules declared before the rules they
+   * depend on, a rate rule, an initial assignment and a local parameter.
+   * 
+   * @throws ParseException
+   */
+  @Before public void setUp() throws ParseException {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    model = doc.createModel("m");
+
+    Compartment c = model.createCompartment("c");
+    c.setSize(2d);
+    c.setConstant(true);
+
+    Species a = model.createSpecies("A", c);
+    a.setInitialConcentration(1d);
+    a.setHasOnlySubstanceUnits(false);
+    a.setBoundaryCondition(false);
+    a.setConstant(false);
+    Species b = model.createSpecies("B", c);
+    b.setInitialAmount(1d);
+    b.setHasOnlySubstanceUnits(true);
+    b.setBoundaryCondition(false);
+    b.setConstant(false);
+
+    createParameter("k", 0.5, true);
+    createParameter("kt", 0d, false);
+    createParameter("y", 0d, false);
+    createParameter("p", 0d, false);
+
+    AssignmentRule y = model.createAssignmentRule();
+    y.setVariable("y");
+    y.setMath(ASTNode.parseFormula("kt + 1"));
+    AssignmentRule kt = model.createAssignmentRule();
+    kt.setVariable("kt");
+    kt.setMath(ASTNode.parseFormula("k * 2"));
+    RateRule p = model.createRateRule();
+    p.setVariable("p");
+    p.setMath(ASTNode.parseFormula("time"));
+    InitialAssignment pInit = model.createInitialAssignment();
+    pInit.setVariable("p");
+    pInit.setMath(ASTNode.parseFormula("k * 4"));
+
+    Reaction r1 = model.createReaction("R1");
+    r1.setReversible(false);
+    r1.createReactant(a).setStoichiometry(1d);
+    r1.createProduct(b).setStoichiometry(2d);
+    KineticLaw kl1 = r1.createKineticLaw();
+    kl1.createLocalParameter("k").setValue(0.1);
+    kl1.setMath(ASTNode.parseFormula("k * A * c"));
+
+    Reaction r2 = model.createReaction("R2");
+    r2.setReversible(false);
+    r2.createReactant(b).setStoichiometry(1d);
+    r2.createProduct(a).setStoichiometry(1d);
+    r2.createKineticLaw().setMath(ASTNode.parseFormula("y * B"));
+  }
+
+  /**
+   * @param id
+   * @param value
+   * @param constant
+   */
+  private void createParameter(String id, double value, boolean constant) {
+    Parameter parameter = model.createParameter(id);
+    parameter.setValue(value);
+    parameter.setConstant(constant);
+  }
+
+  /**
+   * Checks the states, the initial values and the derivatives.
+   * 
+   * @throws SBMLException
+   */
+  @Test public void derivatives() throws SBMLException {
+    CompiledODESystem system = new ODESystemCompiler().compile(model);
+
+    assertArrayEquals(new String[] {"A", "B", "p"}, system.getStateIds());
+    assertEquals(2, system.getReactionCount());
+    double[] y = system.getInitialValues();
+    assertArrayEquals(new double[] {1d, 1d, 2d}, y, DELTA);
+
+    double[] dydt = new double[system.getDimension()];
+    system.computeDerivatives(3d, y, dydt);
+    // R1 = 0.1 * 1 * 2 = 0.2, R2 = (0.5 * 2 + 1) * 1 = 2
+    assertArrayEquals(new double[] {(-0.2 + 2d) / 2d, 2d * 0.2 - 2d, 3d}, dydt, DELTA);
+    assertEquals(2d, system.getValue("y"), DELTA);
+
+    double[] fluxes = new double[system.getReactionCount()];
+    system.computeFluxes(0d, new double[] {2d, 0.5, 0d}, fluxes);
+    assertArrayEquals(new double[] {0.4, 1d}, fluxes, DELTA);
+
+    system.setValue("k", 1d);
+    new CompiledODESystem(system).computeDerivatives(0d, y, dydt);
+    assertArrayEquals(new double[] {(-0.2 + 3d) / 2d, 2d * 0.2 - 3d, 0d}, dydt, DELTA);
+  }
+
+  /**
+   * Checks that the conversion factors and the compartment sizes used to
+   * convert the initial amounts are taken after the initial assignments.
+   * 
+   * @throws Exception
+   */
+  @Test public void assignedConversionFactorAndCompartment() throws Exception {
+    createParameter("cf", 1d, true);
+    model.getSpecies("B").setConversionFactor("cf");
+    InitialAssignment cfInit = model.createInitialAssignment();
+    cfInit.setVariable("cf");
+    cfInit.setMath(ASTNode.parseFormula("k * 4"));
+    InitialAssignment cInit = model.createInitialAssignment();
+    cInit.setVariable("c");
+    cInit.setMath(ASTNode.parseFormula("k * 8"));
+    Species a = model.getSpecies("A");
+    a.unsetInitialConcentration();
+    a.setInitialAmount(4d);
+
+    CompiledODESystem system = new ODESystemCompiler().compile(model);
+    assertEquals(2d, system.getValue("cf"), DELTA);
+    assertEquals(4d, system.getValue("c"), DELTA);
+    double[] y = system.getInitialValues();
+    assertArrayEquals(new double[] {1d, 1d, 2d}, y, DELTA);
+
+    double[] dydt = new double[system.getDimension()];
+    system.computeDerivatives(0d, y, dydt);
+    // R1 = 0.1 * 1 * 4 = 0.4, R2 = 2 * 1 = 2
+    assertArrayEquals(new double[] {(-0.4 + 2d) / 4d, 2d * (2d * 0.4 - 2d), 0d}, dydt, DELTA);
+
+    system.setValue("cf", 1d);
+    system.computeDerivatives(0d, y, dydt);
+    assertEquals(2d * 0.4 - 2d, dydt[1], DELTA);
+  }
+
+  /**
+   * Creates a model with a species in concentration in a compartment whose
+   * size is not constant, which is consumed by a reaction.
+   * 
+   * @param flux the kinetic law of the reaction
+   * @return the compartment.
+   * @throws ParseException
+   */
+  private static Compartment createVariableCompartment(String flux) throws ParseException {
+    Model m = new SBMLDocument(3, 1).createModel("variable");
+    Compartment v = m.createCompartment("V");
+    v.setSize(1d);
+    v.setConstant(false);
+    Species s = m.createSpecies("S", v);
+    s.setInitialConcentration(1d);
+    s.setHasOnlySubstanceUnits(false);
+    s.setBoundaryCondition(false);
+    s.setConstant(false);
+    Reaction r = m.createReaction("R");
+    r.setReversible(false);
+    r.createReactant(s).setStoichiometry(1d);
+    r.createKineticLaw().setMath(ASTNode.parseFormula(flux));
+    return v;
+  }
+
+  /**
+   * Checks that a species in concentration is diluted by the rate of change
+   * of its compartment.
+   * 
+   * @throws Exception
+   */
+  @Test public void variableCompartment() throws Exception {
+    Compartment v = createVariableCompartment("0");
+    RateRule rule = v.getModel().createRateRule();
+    rule.setVariable("V");
+    rule.setMath(ASTNode.parseFormula("1"));
+
+    CompiledODESystem system = new ODESystemCompiler().compile(v.getModel());
+    assertArrayEquals(new String[] {"S", "V"}, system.getStateIds());
+    double[] dydt = new double[system.getDimension()];
+    system.computeDerivatives(0d, system.getInitialValues(), dydt);
+    // d[S]/dt = -[S] * dV/dt / V
+    assertArrayEquals(new double[] {-1d, 1d}, dydt, DELTA);
+
+    v.getModel().getReaction("R").getKineticLaw().setMath(ASTNode.parseFormula("S * V"));
+    system = new ODESystemCompiler().compile(v.getModel());
+    system.computeDerivatives(0d, new double[] {2d, 4d}, dydt);
+    // d[S]/dt = (-R - [S] * dV/dt) / V with R = 8
+    assertArrayEquals(new double[] {(-8d - 2d) / 4d, 1d}, dydt, DELTA);
+  }
+
+  /**
+   * Checks that a species in concentration in a compartment whose size is
+   * computed by an assignment rule is rejected.
+   * 
+   * @throws Exception
+   */
+  @Test(expected = SBMLException.class)
+  public void assignedCompartment() throws Exception {
+    Compartment v = createVariableCompartment("0");
+    AssignmentRule rule = v.getModel().createAssignmentRule();
+    rule.setVariable("V");
+    rule.setMath(ASTNode.parseFormula("1 + time"));
+    new ODESystemCompiler().compile(v.getModel());
+  }
+
+  /**
+   * Checks that assignment rules depending on each other are rejected.
+   * 
+   * @throws Exception
+   */
+  @Test(expected = SBMLException.class)
+  public void cyclicRules() throws Exception {
+    AssignmentRule k = model.createAssignmentRule();
+    model.getParameter("k").setConstant(false);
+    k.setVariable("k");
+    k.setMath(ASTNode.parseFormula("y / 2"));
+    new ODESystemCompiler().compile(model);
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.Enumeration;
+import java.util.Iterator;
+
+import javax.swing.tree.TreeNode;
+
+import org.junit.Test;
+import org.sbml.jsbml.AbstractTreeNode;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Checks that the positions of the children memorized by
+ * {@link org.sbml.jsbml.AbstractSBase} and {@link Model} follow the changes
+ * of the tree.
+ * 
+ * @since 1.5
+ */
+public class ChildIndexTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * @throws Exception
+   */
+  @Test public void modelChildren() throws Exception {
+    Model model = new SBMLDocument(3, 1).createModel("m");
+    assertEquals(0, model.getChildCount());
+    model.createSpecies("s");
+    assertEquals(1, model.getChildCount());
+    assertSame(model.getListOfSpecies(), model.getChildAt(0));
+    model.createParameter("p");
+    model.createCompartment("c");
+    assertEquals(3, model.getChildCount());
+    assertSame(model.getListOfCompartments(), model.getChildAt(0));
+    assertSame(model.getListOfSpecies(), model.getChildAt(1));
+    assertSame(model.getListOfParameters(), model.getChildAt(2));
+    model.setNotes("<notes><body xmlns=\"http://www.w3.org/1999/xhtml\"><p>notes</p></body></notes>");
+    assertEquals(4, model.getChildCount());
+    assertSame(model.getListOfCompartments(), model.getChildAt(1));
+    model.unsetListOfSpecies();
+    assertEquals(3, model.getChildCount());
+    assertSame(model.getListOfParameters(), model.getChildAt(2));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void childIterator() throws Exception {
+    SBMLDocument doc = new SBMLReader().readSBMLFromStream(ChildIndexTests.class.getResourceAsStream(TEST_FILE));
+    assertEquals(countByEnumeration(doc), countByIterator(doc));
+    doc.getModel().unsetListOfReactions();
+    assertEquals(countByEnumeration(doc), countByIterator(doc));
+  }
+
+  /**
+   * @param node
+   * @return the number of nodes of the subtree, counted with
+   *         {@link TreeNode#children()}
+   */
+  private int countByEnumeration(TreeNode node) {
+    int count = 1;
+    for (Enumeration<?> children = node.children(); children.hasMoreElements();) {
+      count += countByEnumeration((TreeNode) children.nextElement());
+    }
+    return count;
+  }
+
+  /**
+   * @param node
+   * @return the number of nodes of the subtree, counted with
+   *         {@link AbstractTreeNode#childIterator()}
+   */
+  private int countByIterator(TreeNode node) {
+    int count = 1;
+    if (node instanceof AbstractTreeNode) {
+      Iterator<TreeNode> iterator = ((AbstractTreeNode) node).childIterator();
+      for (int i = 0; i < node.getChildCount(); i++) {
+        assertEquals(node.getChildAt(i), iterator.next());
+      }
+      assertFalse(iterator.hasNext());
+      for (Iterator<TreeNode> children = ((AbstractTreeNode) node).childIterator(); children.hasNext();) {
+        count += countByIterator(children.next());
+      }
+    }
+    return count;
+  }
+
+}
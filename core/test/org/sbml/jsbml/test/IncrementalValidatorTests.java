@@ -0,0 +1,170 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLError;
+import org.sbml.jsbml.SBMLErrorLog;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.validator.SBMLValidator.CHECK_CATEGORY;
+import org.sbml.jsbml.validator.offline.IncrementalValidator;
+import org.sbml.jsbml.validator.offline.LoggingValidationContext;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Tests the {@link IncrementalValidator} by comparing its results with a
+ * complete validation after each change.
+ * 
+ * @since 1.5
+ */
+public class IncrementalValidatorTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * 
+   */
+  private static final CHECK_CATEGORY[] CATEGORIES = {CHECK_CATEGORY.IDENTIFIER_CONSISTENCY,
+    CHECK_CATEGORY.GENERAL_CONSISTENCY, CHECK_CATEGORY.SBO_CONSISTENCY, CHECK_CATEGORY.MATHML_CONSISTENCY,
+    CHECK_CATEGORY.MODELING_PRACTICE};
+
+  /**
+   * 
+   */
+  private SBMLDocument doc;
+
+  /**
+   * 
+   */
+  private IncrementalValidator validator;
+
+  /**
+   * @throws Exception
+   */
+  @Before public void setUp() throws Exception {
+    doc = new SBMLReader().readSBMLFromStream(IncrementalValidatorTests.class.getResourceAsStream(TEST_FILE));
+    validator = new IncrementalValidator(doc, CATEGORIES);
+  }
+
+  /**
+   * @param log
+   * @return the sorted codes of the errors of the log.
+   */
+  private static List<Integer> codes(SBMLErrorLog log) {
+    List<Integer> codes = new ArrayList<Integer>();
+    for (SBMLError error : log.getValidationErrors()) {
+      codes.add(error.getCode());
+    }
+    Collections.sort(codes);
+    return codes;
+  }
+
+  /**
+   * @return the sorted codes of the errors found by a complete validation.
+   */
+  private List<Integer> validateAll() {
+    LoggingValidationContext ctx = new LoggingValidationContext(doc.getLevel(), doc.getVersion());
+    ctx.enableCheckCategories(CATEGORIES, true);
+    ctx.loadConstraints(SBMLDocument.class);
+    ctx.validate(doc);
+    return codes(ctx.getErrorLog());
+  }
+
+  /**
+   * Checks that the incremental validation finds the same errors as a
+   * complete validation after some changes.
+   */
+  @Test public void sameErrorsAsCompleteValidation() {
+    assertTrue(validator.isDirty());
+    assertEquals(validateAll(), codes(validator.validate()));
+    assertFalse(validator.isDirty());
+    int initialCount = validator.getErrorLog().getErrorCount();
+
+    Species species = doc.getModel().getSpecies(0);
+    String compartment = species.getCompartment();
+    species.setCompartment("unknownCompartment");
+    assertTrue(validator.isDirty());
+    List<Integer> errors = codes(validator.validate());
+    assertEquals(validateAll(), errors);
+    assertTrue(errors.size() > initialCount);
+
+    species.setCompartment(compartment);
+    assertEquals(initialCount, validator.validate().getErrorCount());
+
+    doc.getModel().getListOfReactions().remove(0);
+    assertEquals(validateAll(), codes(validator.validate()));
+
+    doc.getModel().getCompartment(0).setId("renamedCompartment");
+    assertEquals(validateAll(), codes(validator.validate()));
+  }
+
+  /**
+   * Checks that the math and the elements referring to a renamed element are
+   * validated again, as well as a new math.
+   * 
+   * @throws Exception
+   */
+  @Test public void renamedReferences() throws Exception {
+    validator.validate();
+    int initialCount = validator.getErrorLog().getErrorCount();
+
+    Reaction reaction = doc.getModel().getReaction(0);
+    for (int i = 1; reaction.getReactantCount() == 0; i++) {
+      reaction = doc.getModel().getReaction(i);
+    }
+    Species species = reaction.getReactant(0).getSpeciesInstance();
+    String id = species.getId();
+    species.setId("renamedSpecies");
+    List<Integer> errors = codes(validator.validate());
+    assertEquals(validateAll(), errors);
+    assertTrue(errors.size() > initialCount);
+
+    species.setId(id);
+    assertEquals(initialCount, validator.validate().getErrorCount());
+
+    KineticLaw kineticLaw = reaction.getKineticLaw();
+    ASTNode math = kineticLaw.getMath();
+    kineticLaw.setMath(ASTNode.parseFormula("unknownParameter * 2"));
+    assertEquals(validateAll(), codes(validator.validate()));
+
+    doc.getModel().createParameter("unknownParameter").setValue(1d);
+    assertEquals(validateAll(), codes(validator.validate()));
+
+    kineticLaw.setMath(math);
+    assertEquals(validateAll(), codes(validator.validate()));
+  }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.swing.tree.TreeNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.AssignmentRule;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLError;
+import org.sbml.jsbml.SBMLErrorLog;
+import org.sbml.jsbml.SBMLWriter;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.validator.SBMLValidator.CHECK_CATEGORY;
+import org.sbml.jsbml.validator.offline.LoggingValidationContext;
+import org.sbml.jsbml.validator.offline.ParallelValidator;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Tests the {@link ParallelValidator} by comparing its results with a
+ * sequential validation.
+ * 
+ * @since 1.5
+ */
+public class ParallelValidatorTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * 
+   */
+  private static final CHECK_CATEGORY[] CATEGORIES = {CHECK_CATEGORY.IDENTIFIER_CONSISTENCY,
+    CHECK_CATEGORY.GENERAL_CONSISTENCY, CHECK_CATEGORY.SBO_CONSISTENCY, CHECK_CATEGORY.MATHML_CONSISTENCY,
+    CHECK_CATEGORY.MODELING_PRACTICE};
+
+  /**
+   * 
+   */
+  private ForkJoinPool pool;
+
+  /**
+   * 
+   */
+  private ParallelValidator validator;
+
+  /**
+   * 
+   */
+  @Before public void setUp() {
+    pool = new ForkJoinPool(4);
+    validator = new ParallelValidator(pool, CATEGORIES);
+    // small ranges to make sure that the elements are split between tasks
+    validator.setThreshold(8);
+  }
+
+  /**
+   * 
+   */
+  @After public void tearDown() {
+    pool.shutdown();
+  }
+
+  /**
+   * @param log
+   * @return the sorted codes of the errors of the log.
+   */
+  private static List<Integer> codes(SBMLErrorLog log) {
+    List<Integer> codes = new ArrayList<Integer>();
+    for (SBMLError error : log.getValidationErrors()) {
+      codes.add(error.getCode());
+    }
+    Collections.sort(codes);
+    return codes;
+  }
+
+  /**
+   * @param doc
+   * @return the sorted codes of the errors found by a sequential validation.
+   */
+  private static List<Integer> validateSequentially(SBMLDocument doc) {
+    LoggingValidationContext ctx = new LoggingValidationContext(doc.getLevel(), doc.getVersion());
+    ctx.enableCheckCategories(CATEGORIES, true);
+    ctx.loadConstraints(SBMLDocument.class);
+    ctx.validate(doc);
+    return codes(ctx.getErrorLog());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void sameErrorsAsSequentialValidation() throws Exception {
+    SBMLDocument doc = new SBMLReader().readSBMLFromStream(ParallelValidatorTests.class.getResourceAsStream(TEST_FILE));
+    doc.getModel().getSpecies(0).setCompartment("unknownCompartment");
+    assertEquals(validateSequentially(doc), codes(validator.validate(doc)));
+  }
+
+  /**
+   * @param node
+   * @param userObjects receives the keys of the user objects of each element
+   *        of the given subtree, in depth-first order
+   * @return the given list.
+   */
+  private static List<Set<Object>> userObjectKeys(TreeNode node, List<Set<Object>> userObjects) {
+    if (node instanceof SBase) {
+      SBase sbase = (SBase) node;
+      userObjects.add(sbase.isSetUserObjects() ? new HashSet<Object>(sbase.userObjectKeySet()) : null);
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      userObjectKeys(node.getChildAt(i), userObjects);
+    }
+    return userObjects;
+  }
+
+  /**
+   * Checks that validating a model without rules and events on several
+   * threads, with the unit checks, does not change it.
+   * 
+   * @throws Exception
+   */
+  @Test public void documentUnchanged() throws Exception {
+    SBMLDocument doc = new SBMLReader().readSBMLFromStream(ParallelValidatorTests.class.getResourceAsStream(TEST_FILE));
+    Model model = doc.getModel();
+    assertFalse(model.isSetListOfRules());
+    assertFalse(model.isSetListOfEvents());
+
+    String xml = new SBMLWriter().writeSBMLToString(doc);
+    SBMLDocument copy = doc.clone();
+    int childCount = model.getChildCount();
+    List<Set<Object>> userObjects = userObjectKeys(doc, new ArrayList<Set<Object>>());
+
+    CHECK_CATEGORY[] categories = Arrays.copyOf(CATEGORIES, CATEGORIES.length + 1);
+    categories[CATEGORIES.length] = CHECK_CATEGORY.UNITS_CONSISTENCY;
+    ParallelValidator unitsValidator = new ParallelValidator(pool, categories);
+    unitsValidator.setThreshold(8);
+    unitsValidator.validate(doc);
+
+    assertEquals(childCount, model.getChildCount());
+    assertEquals(userObjects, userObjectKeys(doc, new ArrayList<Set<Object>>()));
+    assertEquals(copy, doc);
+    assertEquals(copy.hashCode(), doc.hashCode());
+    assertEquals(xml, new SBMLWriter().writeSBMLToString(doc));
+  }
+
+  /**
+   * Checks that an assignment cycle spread over several tasks is reported as
+   * many times as in a sequential validation.
+   * 
+   * @throws Exception
+   */
+  @Test public void assignmentCycle() throws Exception {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("m");
+    int n = 40;
+    for (int i = 0; i < n; i++) {
+      Parameter p = model.createParameter("p" + i);
+      p.setConstant(false);
+    }
+    for (int i = 0; i < n; i++) {
+      AssignmentRule rule = model.createAssignmentRule();
+      rule.setVariable("p" + i);
+      rule.setMath(ASTNode.parseFormula("p" + ((i + 1) % n) + " + 1"));
+    }
+    List<Integer> expected = validateSequentially(doc);
+    assertTrue(expected.contains(20906));
+    assertEquals(expected, codes(validator.validate(doc)));
+  }
+
+}
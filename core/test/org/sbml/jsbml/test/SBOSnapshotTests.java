@@ -0,0 +1,185 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.biojava.nbio.ontology.Ontology;
+import org.biojava.nbio.ontology.Triple;
+import org.biojava.nbio.ontology.io.OboParser;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sbml.jsbml.SBO;
+import org.sbml.jsbml.ontology.SBOSnapshot;
+
+/**
+ * Checks that the {@link SBOSnapshot} used by {@link SBO} gives the same
+ * answers as the full {@link Ontology}.
+ * 
+ * @since 1.5
+ */
+public class SBOSnapshotTests {
+
+  /**
+   * 
+   */
+  private static SBOSnapshot snapshot;
+
+  /**
+   * 
+   */
+  private static Ontology ontology;
+
+  /**
+   * 
+   */
+  @BeforeClass public static void setUp() {
+    snapshot = SBO.getSnapshot();
+    ontology = SBO.getOntology();
+  }
+
+  /**
+   * @param term
+   * @return the SBO identifiers of the direct parents of the given term,
+   * read from the full ontology.
+   */
+  private static Set<Integer> parents(org.biojava.nbio.ontology.Term term) {
+    Set<Integer> parents = new HashSet<Integer>();
+    for (Triple triple : ontology.getTriples(term, null, null)) {
+      if (triple.getObject().getName().matches("SBO:\\d{7}")) {
+        parents.add(SBO.stringToInt(triple.getObject().getName()));
+      }
+    }
+    return parents;
+  }
+
+  /**
+   * 
+   */
+  @Test public void terms() {
+    int count = 0;
+    for (org.biojava.nbio.ontology.Term term : ontology.getTerms()) {
+      if ((term instanceof Triple) || !term.getName().matches("SBO:\\d{7}")) {
+        continue;
+      }
+      count++;
+      int id = SBO.stringToInt(term.getName());
+      assertTrue(snapshot.contains(id));
+      assertEquals(SBO.getTerm(id).getName(), snapshot.getName(id));
+      assertEquals(SBO.getTerm(id).isObsolete(), snapshot.isObsolete(id));
+
+      Set<Integer> parents = new HashSet<Integer>();
+      for (int parent : snapshot.getParents(id)) {
+        parents.add(parent);
+      }
+      assertEquals(parents(term), parents);
+    }
+    assertEquals(count, snapshot.getTermCount());
+    assertFalse(snapshot.contains(9999999));
+    assertFalse(SBO.containsTerm("SBO:9999999"));
+    assertFalse(SBO.containsTerm("SBO:12"));
+    assertTrue(SBO.containsTerm("SBO:0000002"));
+  }
+
+  /**
+   * 
+   */
+  @Test public void isChildOf() {
+    assertTrue(SBO.isChildOf(SBO.getCatalyst(), SBO.getModifier()));
+    assertTrue(SBO.isChildOf(SBO.getCatalyst(), SBO.getParticipantRole()));
+    assertFalse(SBO.isChildOf(SBO.getModifier(), SBO.getCatalyst()));
+    assertFalse(SBO.isChildOf(SBO.getReactant(), SBO.getModifier()));
+    assertTrue(SBO.isChildOf(SBO.getReactant(), SBO.getReactant()));
+
+    // compare with a traversal of the full ontology
+    for (org.biojava.nbio.ontology.Term term : ontology.getTerms()) {
+      if ((term instanceof Triple) || !term.getName().matches("SBO:\\d{7}")) {
+        continue;
+      }
+      Set<Integer> ancestors = new HashSet<Integer>();
+      Set<Integer> todo = parents(term);
+      while (!todo.isEmpty()) {
+        Integer next = todo.iterator().next();
+        todo.remove(next);
+        if (ancestors.add(next)) {
+          todo.addAll(parents(ontology.getTerm(SBO.intToString(next))));
+        }
+      }
+      int id = SBO.stringToInt(term.getName());
+      for (int other = 0; other < 1000; other++) {
+        if (snapshot.contains(other) && (other != id)) {
+          assertEquals(term.getName() + " " + other, ancestors.contains(other), snapshot.isChildOf(id, other));
+        }
+      }
+    }
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void readWrite() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    snapshot.write(os);
+    SBOSnapshot copy = SBOSnapshot.read(new ByteArrayInputStream(os.toByteArray()));
+    assertEquals(snapshot.getDate(), copy.getDate());
+    assertEquals(snapshot.getTermCount(), copy.getTermCount());
+    int id = SBO.getEnzymaticCatalysis();
+    assertEquals(snapshot.getName(id), copy.getName(id));
+    assertArrayEquals(snapshot.getParents(id), copy.getParents(id));
+  }
+
+  /**
+   * Checks that a term with more parents than the format can represent is
+   * not written truncated.
+   * 
+   * @throws Exception
+   */
+  @Test public void tooManyParents() throws Exception {
+    StringBuilder obo = new StringBuilder("format-version: 1.2\n");
+    StringBuilder child = new StringBuilder("\n[Term]\nid: SBO:0000000\nname: child\n");
+    for (int i = 1; i <= 256; i++) {
+      obo.append("\n[Term]\nid: ").append(SBO.intToString(i)).append("\nname: parent ").append(i).append('\n');
+      child.append("is_a: ").append(SBO.intToString(i)).append('\n');
+    }
+    obo.append(child);
+    Ontology parents = new OboParser().parseOBO(new BufferedReader(new StringReader(obo.toString())), "SBO", "test");
+    SBOSnapshot tooMany = SBOSnapshot.create(parents, "");
+    assertEquals(256, tooMany.getParents(0).length);
+    try {
+      tooMany.write(new ByteArrayOutputStream());
+      fail("The number of parents cannot be written.");
+    } catch (IOException exc) {
+      // expected
+    }
+  }
+
+}
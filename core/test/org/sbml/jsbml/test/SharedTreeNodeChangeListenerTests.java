@@ -0,0 +1,173 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.tree.TreeNode;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.util.TreeNodeChangeListener;
+import org.sbml.jsbml.util.TreeNodeRemovedEvent;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Checks that the listeners added with
+ * {@link org.sbml.jsbml.AbstractTreeNode#addSharedTreeNodeChangeListener(TreeNodeChangeListener)}
+ * receive the events of the whole subtree.
+ * 
+ * @since 1.5
+ */
+public class SharedTreeNodeChangeListenerTests {
+
+  /**
+   * Records the events it receives.
+   */
+  private static class RecordingListener implements TreeNodeChangeListener {
+
+    /**
+     * 
+     */
+    private List<Object> sources = new ArrayList<Object>();
+
+    /* (non-Javadoc)
+     * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+      sources.add(evt.getSource());
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeAdded(javax.swing.tree.TreeNode)
+     */
+    @Override
+    public void nodeAdded(TreeNode node) {
+      sources.add(node);
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.TreeNodeChangeListener#nodeRemoved(org.sbml.jsbml.util.TreeNodeRemovedEvent)
+     */
+    @Override
+    public void nodeRemoved(TreeNodeRemovedEvent event) {
+      sources.add(event.getSource());
+    }
+  }
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * 
+   */
+  private SBMLDocument doc;
+
+  /**
+   * 
+   */
+  private RecordingListener listener;
+
+  /**
+   * @throws Exception
+   */
+  @Before public void setUp() throws Exception {
+    SBMLReader reader = new SBMLReader();
+    reader.setSharedChangeListener(true);
+    doc = reader.readSBMLFromStream(SharedTreeNodeChangeListenerTests.class.getResourceAsStream(TEST_FILE));
+    listener = new RecordingListener();
+    doc.addSharedTreeNodeChangeListener(listener);
+  }
+
+  /**
+   * The elements of a document read from a file have no listeners of their
+   * own.
+   */
+  @Test public void noListenersPerElement() {
+    assertEquals(0, doc.getModel().getSpecies(0).getTreeNodeChangeListenerCount());
+    assertEquals(0, doc.getModel().getReaction(0).getKineticLaw().getMath().getTreeNodeChangeListenerCount());
+    assertEquals(2, doc.getListOfSharedTreeNodeChangeListeners().size());
+  }
+
+  /**
+   * By default, the listener of the reader is still added to every element.
+   * 
+   * @throws Exception
+   */
+  @Test public void perElementListenerByDefault() throws Exception {
+    SBMLDocument document = new SBMLReader().readSBMLFromStream(SharedTreeNodeChangeListenerTests.class.getResourceAsStream(TEST_FILE));
+    assertEquals(0, document.getListOfSharedTreeNodeChangeListeners().size());
+    assertEquals(1, document.getListOfTreeNodeChangeListeners().size());
+    assertEquals(1, document.getModel().getSpecies(0).getListOfTreeNodeChangeListeners().size());
+  }
+
+  /**
+   * 
+   */
+  @Test public void propertyChange() {
+    Species species = doc.getModel().getSpecies(0);
+    species.setName("renamed");
+    assertEquals(1, listener.sources.size());
+    assertSame(species, listener.sources.get(0));
+  }
+
+  /**
+   * 
+   */
+  @Test public void nodeAddedAndRemoved() {
+    Model model = doc.getModel();
+    Reaction reaction = model.createReaction("shared_listener_reaction");
+    assertTrue(listener.sources.contains(reaction));
+    listener.sources.clear();
+    KineticLaw kineticLaw = reaction.createKineticLaw();
+    assertTrue(listener.sources.contains(kineticLaw));
+    listener.sources.clear();
+    model.removeReaction(reaction);
+    assertTrue(listener.sources.contains(reaction));
+    listener.sources.clear();
+    // the removed reaction is not part of the document anymore
+    reaction.setName("detached");
+    assertEquals(0, listener.sources.size());
+  }
+
+  /**
+   * 
+   */
+  @Test public void removed() {
+    doc.removeSharedTreeNodeChangeListener(listener);
+    doc.getModel().getSpecies(0).setName("renamed");
+    assertEquals(0, listener.sources.size());
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.CVTerm;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Checks that the hash codes of the subtrees of an
+ * {@link org.sbml.jsbml.AbstractTreeNode} follow the changes of the tree,
+ * by comparing them with the hash codes of fresh copies.
+ * 
+ * @since 1.5
+ */
+public class TreeNodeHashCodeTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * 
+   */
+  private SBMLDocument doc;
+
+  /**
+   * @throws Exception
+   */
+  @Before public void setUp() throws Exception {
+    doc = new SBMLReader().readSBMLFromStream(TreeNodeHashCodeTests.class.getResourceAsStream(TEST_FILE));
+  }
+
+  /**
+   * Checks that the hash code and the equality of the document are the ones
+   * of a fresh copy.
+   */
+  private void assertSameAsCopy() {
+    SBMLDocument copy = doc.clone();
+    assertEquals(copy.hashCode(), doc.hashCode());
+    assertTrue(doc.equals(copy));
+    assertTrue(copy.equals(doc));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void updatedByChanges() throws Exception {
+    int hashCode = doc.hashCode();
+    assertEquals(hashCode, doc.hashCode());
+    assertSameAsCopy();
+    SBMLDocument original = doc.clone();
+    original.hashCode();
+
+    Model model = doc.getModel();
+    Species species = model.getSpecies(0);
+    String name = species.getName();
+    species.setName(name + "_changed");
+    assertSameAsCopy();
+    assertFalse(hashCode == doc.hashCode());
+    assertFalse(original.equals(doc));
+
+    species.setName(name);
+    assertEquals(hashCode, doc.hashCode());
+    assertTrue(original.equals(doc));
+
+    model.getReaction(0).getKineticLaw().getMath().addChild(new ASTNode(2));
+    assertSameAsCopy();
+    assertFalse(original.equals(doc));
+
+    model.getListOfReactions().remove(0);
+    assertSameAsCopy();
+
+    model.getCompartment(0).setName("renamed");
+    assertSameAsCopy();
+  }
+
+  /**
+   * Checks that removing the resources of a {@link CVTerm} updates the
+   * hash code, also when the list of resources is changed without any event.
+   * 
+   * @throws Exception
+   */
+  @Test public void updatedByResourceRemoval() throws Exception {
+    CVTerm term = doc.getModel().getCVTerm(0);
+    assertTrue(term.getResourceCount() > 0);
+    doc.hashCode();
+    term.removeResource(0);
+    assertSameAsCopy();
+
+    term.addResource("urn:miriam:obo.go:GO%3A0000001");
+    term.addResource("urn:miriam:obo.go:GO%3A0000002");
+    doc.hashCode();
+    term.removeResourceURI(0);
+    assertSameAsCopy();
+
+    doc.hashCode();
+    SBMLDocument copy = doc.clone();
+    copy.hashCode();
+    term.getResources().remove(0);
+    assertFalse(doc.equals(copy));
+    copy.getModel().getCVTerm(0).getResources().remove(0);
+    assertTrue(doc.equals(copy));
+    assertTrue(copy.equals(doc));
+    assertEquals(doc.hashCode(), copy.hashCode());
+    assertTrue(doc.equals(doc.clone()));
+  }
+
+}
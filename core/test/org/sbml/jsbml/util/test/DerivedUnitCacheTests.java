@@ -0,0 +1,174 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Unit;
+import org.sbml.jsbml.UnitDefinition;
+import org.sbml.jsbml.util.DerivedUnitCache;
+
+/**
+ * Tests the {@link DerivedUnitCache} of a {@link Model}.
+ * 
+ * @since 1.5
+ */
+public class DerivedUnitCacheTests {
+
+  /**
+   * 
+   */
+  private Model model;
+
+  /**
+   * 
+   */
+  private KineticLaw kineticLaw;
+
+  /**
+   * 
+   */
+  private UnitDefinition perSecond;
+
+  /**
+   * @throws Exception
+   */
+  @Before public void setUp() throws Exception {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    model = doc.createModel("m");
+    perSecond = model.createUnitDefinition("per_second");
+    perSecond.addUnit(new Unit(1d, 0, Unit.Kind.SECOND, -1d, 3, 1));
+    UnitDefinition mole = model.createUnitDefinition("mmol");
+    mole.addUnit(new Unit(1d, -3, Unit.Kind.MOLE, 1d, 3, 1));
+
+    Parameter k = model.createParameter("k");
+    k.setUnits(perSecond);
+    Parameter a = model.createParameter("a");
+    a.setUnits(mole);
+
+    Reaction r = model.createReaction("r");
+    kineticLaw = r.createKineticLaw();
+    kineticLaw.setMath(ASTNode.parseFormula("k * a"));
+  }
+
+  /**
+   * @param ud
+   * @return whether the given unit is mmol per second.
+   */
+  private static boolean isMmolPerSecond(UnitDefinition ud) {
+    UnitDefinition expected = new UnitDefinition(3, 1);
+    expected.addUnit(new Unit(1d, -3, Unit.Kind.MOLE, 1d, 3, 1));
+    expected.addUnit(new Unit(1d, 0, Unit.Kind.SECOND, -1d, 3, 1));
+    return UnitDefinition.areEquivalent(expected, ud);
+  }
+
+  /**
+   * Checks that a derived unit is memorized and copied.
+   */
+  @Test public void memorizes() {
+    DerivedUnitCache cache = model.createDerivedUnitCache();
+    assertEquals(0, cache.size());
+    UnitDefinition ud = kineticLaw.getDerivedUnitDefinition();
+    assertTrue(isMmolPerSecond(ud));
+    assertEquals(1, cache.size());
+
+    ud.getUnit(0).setExponent(5d);
+    assertTrue(isMmolPerSecond(kineticLaw.getDerivedUnitDefinition()));
+    assertEquals(1, cache.size());
+  }
+
+  /**
+   * Checks that the entry is removed when the math changes.
+   * 
+   * @throws Exception
+   */
+  @Test public void invalidatedByMath() throws Exception {
+    DerivedUnitCache cache = model.createDerivedUnitCache();
+    kineticLaw.getDerivedUnitDefinition();
+    assertEquals(1, cache.size());
+
+    kineticLaw.getMath().replaceChild(0, new ASTNode("a"));
+    assertEquals(0, cache.size());
+    assertFalse(isMmolPerSecond(kineticLaw.getDerivedUnitDefinition()));
+
+    kineticLaw.setMath(ASTNode.parseFormula("a * k"));
+    assertEquals(0, cache.size());
+    assertTrue(isMmolPerSecond(kineticLaw.getDerivedUnitDefinition()));
+  }
+
+  /**
+   * Checks that the entry is removed when a referenced element or a unit
+   * definition changes.
+   */
+  @Test public void invalidatedByReferences() {
+    DerivedUnitCache cache = model.createDerivedUnitCache();
+    kineticLaw.getDerivedUnitDefinition();
+
+    model.createParameter("unused").setValue(1d);
+    assertEquals(1, cache.size());
+
+    model.getParameter("a").setUnits(Unit.Kind.DIMENSIONLESS);
+    assertEquals(0, cache.size());
+    assertFalse(isMmolPerSecond(kineticLaw.getDerivedUnitDefinition()));
+
+    model.getParameter("a").setUnits("mmol");
+    assertTrue(isMmolPerSecond(kineticLaw.getDerivedUnitDefinition()));
+    perSecond.getUnit(0).setExponent(-2d);
+    assertEquals(0, cache.size());
+    assertFalse(isMmolPerSecond(kineticLaw.getDerivedUnitDefinition()));
+
+    kineticLaw.createLocalParameter("k").setUnits(Unit.Kind.DIMENSIONLESS);
+    assertEquals(0, cache.size());
+  }
+
+  /**
+   * Checks that the cache is only used once it has been enabled and is no
+   * longer used once it has been unset.
+   */
+  @Test public void optIn() {
+    assertTrue(isMmolPerSecond(kineticLaw.getDerivedUnitDefinition()));
+    assertFalse(model.isSetDerivedUnitCache());
+    assertNull(model.getDerivedUnitCache());
+
+    DerivedUnitCache cache = model.createDerivedUnitCache();
+    assertSame(cache, model.createDerivedUnitCache());
+    kineticLaw.getDerivedUnitDefinition();
+    assertEquals(1, cache.size());
+
+    model.unsetDerivedUnitCache();
+    assertFalse(model.isSetDerivedUnitCache());
+    assertEquals(0, cache.size());
+    assertTrue(isMmolPerSecond(kineticLaw.getDerivedUnitDefinition()));
+    assertEquals(0, cache.size());
+  }
+
+}
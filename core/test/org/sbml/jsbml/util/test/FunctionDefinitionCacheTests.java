@@ -0,0 +1,179 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.text.parser.ParseException;
+import org.sbml.jsbml.util.FunctionDefinitionCache;
+import org.sbml.jsbml.util.converters.ExpandFunctionDefinitionConverter;
+import org.sbml.jsbml.validator.offline.ParallelValidator;
+
+/**
+ * Tests the expansion of the function definitions by the
+ * {@link FunctionDefinitionCache}.
+ * 
+ * @since 1.5
+ */
+public class FunctionDefinitionCacheTests {
+
+  /**
+   * 
+   */
+  private Model model;
+
+  /**
+   * 
+   */
+  private FunctionDefinitionCache cache;
+
+  /**
+   * @throws ParseException
+   */
+  @Before public void setUp() throws ParseException {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    model = doc.createModel("m");
+    model.createCompartment("c");
+    model.createSpecies("s", model.getCompartment("c"));
+    model.createParameter("k");
+    model.createFunctionDefinition("sq").setMath(ASTNode.parseFormula("lambda(x, x * x)"));
+    model.createFunctionDefinition("f").setMath(ASTNode.parseFormula("lambda(x, y, sq(x) + y)"));
+    model.createFunctionDefinition("id").setMath(ASTNode.parseFormula("lambda(x, x)"));
+    model.createFunctionDefinition("loop").setMath(ASTNode.parseFormula("lambda(x, loop(x))"));
+    cache = model.createFunctionDefinitionCache();
+  }
+
+  /**
+   * @param formula
+   * @return the formula of the expanded math.
+   * @throws ParseException
+   */
+  private String expand(String formula) throws ParseException {
+    return cache.expand(ASTNode.parseFormula(formula)).toFormula();
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void expand() throws Exception {
+    assertEquals("k*k", expand("sq(k)"));
+    assertEquals("(s+1)*(s+1)+k", expand("f(s + 1, k)"));
+    assertEquals("s*s*s*s", expand("sq(sq(s))"));
+    assertEquals("2*k", expand("2 * id(k)"));
+    // recursive definitions and wrong numbers of arguments are left as they are
+    assertEquals("loop(k)", expand("loop(k)"));
+    assertEquals("sq(k, s)", expand("sq(k, s)"));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void mathIsNotModified() throws Exception {
+    KineticLaw kl = model.createReaction("r").createKineticLaw();
+    kl.setMath(ASTNode.parseFormula("f(s, k) * 2"));
+    ASTNode math = kl.getMath();
+    ASTNode expanded = cache.expand(math);
+    assertEquals("(s*s+k)*2", expanded.toFormula());
+    assertSame(kl, expanded.getChild(0).getChild(1).getParentSBMLObject());
+    assertEquals("f(s, k)*2", math.toFormula());
+    kl.getDerivedUnitDefinition();
+    assertEquals("f(s, k)*2", kl.getMath().toFormula());
+
+    ASTNode noCall = ASTNode.parseFormula("s * k");
+    assertSame(noCall, cache.expand(noCall));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void changes() throws Exception {
+    assertEquals("k*k", expand("sq(k)"));
+    assertEquals(1, cache.size());
+    model.getFunctionDefinition("sq").setMath(ASTNode.parseFormula("lambda(x, x ^ 3)"));
+    assertEquals(0, cache.size());
+    assertEquals("k^3", expand("sq(k)"));
+    assertEquals("s^3+k", expand("f(s, k)"));
+    model.getFunctionDefinition("sq").getBody().getChild(1).setValue(4);
+    assertEquals("k^4", expand("sq(k)"));
+    model.removeFunctionDefinition("sq");
+    assertEquals("sq(k)", expand("sq(k)"));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void expandAll() throws Exception {
+    model.createReaction("r").createKineticLaw().setMath(ASTNode.parseFormula("sq(s)"));
+    model.createReaction("r2").createKineticLaw().setMath(ASTNode.parseFormula("k * s"));
+    model.createAssignmentRule().setMath(ASTNode.parseFormula("id(k)"));
+    assertEquals(2, cache.expandAll());
+    assertEquals("s*s", model.getReaction("r").getKineticLaw().getMath().toFormula());
+    assertEquals("k", model.getRule(0).getMath().toFormula());
+    assertEquals(0, cache.expandAll());
+  }
+
+  /**
+   * Checks that the cache is only registered in the model when it is
+   * enabled explicitly, and that the expansion and the validators work
+   * without leaving it behind.
+   * 
+   * @throws Exception
+   */
+  @Test public void optIn() throws Exception {
+    model.unsetFunctionDefinitionCache();
+    assertFalse(model.isSetFunctionDefinitionCache());
+    assertTrue(model.getListOfSharedTreeNodeChangeListeners().isEmpty());
+
+    ASTNode math = ASTNode.parseFormula("f(s, k)");
+    assertEquals("s*s+k", ExpandFunctionDefinitionConverter.expandFunctionDefinition(model, math).toFormula());
+    KineticLaw kl = model.createReaction("r").createKineticLaw();
+    kl.setMath(ASTNode.parseFormula("sq(k)"));
+    kl.getDerivedUnitDefinition();
+    model.getSBMLDocument().checkConsistencyOffline();
+    ParallelValidator validator = new ParallelValidator();
+    try {
+      validator.validate(model.getSBMLDocument());
+    } finally {
+      validator.shutdown();
+    }
+    assertFalse(model.isSetFunctionDefinitionCache());
+    assertNull(model.getFunctionDefinitionCache());
+    assertTrue(model.getListOfSharedTreeNodeChangeListeners().isEmpty());
+
+    cache = model.createFunctionDefinitionCache();
+    assertSame(cache, model.getFunctionDefinitionCache());
+    assertTrue(model.getListOfSharedTreeNodeChangeListeners().contains(cache));
+    assertEquals("k*k", ExpandFunctionDefinitionConverter.expandFunctionDefinition(model, kl.getMath()).toFormula());
+    assertEquals(1, cache.size());
+    model.unsetFunctionDefinitionCache();
+    assertFalse(model.getListOfSharedTreeNodeChangeListeners().contains(cache));
+  }
+
+}
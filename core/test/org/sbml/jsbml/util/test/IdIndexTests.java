@@ -0,0 +1,176 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import javax.swing.tree.TreeNode;
+
+import org.junit.Test;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.LocalParameter;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.UnitDefinition;
+import org.sbml.jsbml.util.IdIndex;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Checks that the {@link IdIndex} follows the changes of its document.
+ * 
+ * @since 1.5
+ */
+public class IdIndexTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * @return a small document with a local parameter and a unit definition
+   *         that have the same identifier as a species.
+   */
+  private static SBMLDocument createDocument() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("m");
+    model.createCompartment("c");
+    model.createSpecies("s1");
+    model.createSpecies("s2").setMetaId("meta_s2");
+    Reaction r = model.createReaction("r1");
+    KineticLaw kl = r.createKineticLaw();
+    kl.createLocalParameter("s1");
+    model.createUnitDefinition("s2");
+    return doc;
+  }
+
+  /**
+   * 
+   */
+  @Test public void namespaces() {
+    SBMLDocument doc = createDocument();
+    Model model = doc.getModel();
+    IdIndex index = doc.getIdIndex();
+    KineticLaw kl = model.getReaction("r1").getKineticLaw();
+
+    assertSame(model.getSpecies("s1"), index.get("s1"));
+    assertSame(model, index.get(doc, IdIndex.SID, "m"));
+    assertSame(kl.getLocalParameter("s1"), index.get(IdIndex.LOCAL_SID, "s1"));
+    assertSame(kl.getLocalParameter("s1"), index.get(kl, IdIndex.LOCAL_SID, "s1"));
+    assertSame(model.getUnitDefinition("s2"), index.get(IdIndex.UNIT_SID, "s2"));
+    assertSame(model.getSpecies("s2"), index.getByMetaId("meta_s2"));
+    assertEquals(2, index.getAll("s1").size());
+    assertNull(index.get("r2"));
+    assertTrue(index.containsAll(Arrays.asList("m", "c", "s1", "r1")));
+    assertFalse(index.containsAll(Arrays.asList("c", "r2")));
+  }
+
+  /**
+   * 
+   */
+  @Test public void prefixes() {
+    SBMLDocument doc = createDocument();
+    IdIndex index = doc.getIdIndex();
+    assertEquals(Arrays.asList("s1", "s2"), Arrays.asList(index.getIdsWithPrefix("s").toArray()));
+    assertEquals(2, index.getElementsWithPrefix("s", Species.class).size());
+    assertEquals(1, index.getElementsWithPrefix("s", LocalParameter.class).size());
+    assertEquals(1, index.getElementsWithPrefix("s2", UnitDefinition.class).size());
+    assertEquals(5, index.getIdsWithPrefix("").size());
+    assertEquals(5, index.size());
+    assertEquals(1, index.getMetaIdsWithPrefix("meta").size());
+    assertTrue(index.getIdsWithPrefix("t").isEmpty());
+  }
+
+  /**
+   * 
+   */
+  @Test public void changes() {
+    SBMLDocument doc = createDocument();
+    Model model = doc.getModel();
+    IdIndex index = doc.getIdIndex();
+    assertTrue(index.contains("s1"));
+
+    Species s1 = model.getSpecies("s1");
+    s1.setId("x1");
+    assertSame(s1, index.get("x1"));
+    assertNull(index.get("s1"));
+    s1.setMetaId("meta_x1");
+    assertSame(s1, index.getByMetaId("meta_x1"));
+
+    Reaction r = model.getReaction("r1");
+    model.removeReaction(r);
+    assertFalse(index.contains("r1"));
+    assertNull(index.get(IdIndex.LOCAL_SID, "s1"));
+
+    model.addReaction(r);
+    assertSame(r, index.get("r1"));
+    assertTrue(index.get(IdIndex.LOCAL_SID, "s1") != null);
+
+    model.createParameter("p");
+    assertTrue(index.contains("p"));
+    model.getListOfSpecies().remove("s2");
+    assertFalse(index.containsMetaId("meta_s2"));
+    assertSame(model.getUnitDefinition("s2"), index.getAll("s2").get(0));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void readDocument() throws Exception {
+    SBMLDocument doc = new SBMLReader().readSBMLFromStream(IdIndexTests.class.getResourceAsStream(TEST_FILE));
+    IdIndex index = doc.getIdIndex();
+    int count = countIds(doc);
+    int total = 0;
+    for (String id : index.getIdsWithPrefix("")) {
+      total += index.getAll(id).size();
+    }
+    assertEquals(count, total);
+    for (Species species : doc.getModel().getListOfSpecies()) {
+      assertSame(species, index.get(species.getId()));
+    }
+    for (String metaId : doc.metaIds()) {
+      assertSame(doc.findSBase(metaId), index.getByMetaId(metaId));
+    }
+  }
+
+  /**
+   * @param node
+   * @return the number of elements with an identifier in the given subtree.
+   */
+  private static int countIds(TreeNode node) {
+    int count = ((node instanceof SBase) && ((SBase) node).isSetId()) ? 1 : 0;
+    for (int i = 0; i < node.getChildCount(); i++) {
+      if (node.getChildAt(i) instanceof SBase) {
+        count += countIds(node.getChildAt(i));
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.util.SequentialMetaIdGenerator;
+import org.sbml.jsbml.util.UUIDMetaIdGenerator;
+
+/**
+ * Tests the {@link org.sbml.jsbml.util.MetaIdGenerator}s and
+ * {@link SBMLDocument#assignMissingMetaIds(org.sbml.jsbml.SBase)}.
+ * 
+ * @since 1.5
+ */
+public class MetaIdGeneratorTests {
+
+  /**
+   * 
+   */
+  @Test public void defaultGenerator() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    assertTrue(doc.getMetaIdGenerator() instanceof UUIDMetaIdGenerator);
+    String metaId = doc.nextMetaId();
+    assertTrue(metaId, !Character.isDigit(metaId.charAt(0)));
+  }
+
+  /**
+   * 
+   */
+  @Test public void sequentialGenerator() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    doc.setMetaIdGenerator(new SequentialMetaIdGenerator());
+    Model model = doc.createModel("m");
+    model.setMetaId("metaid_2");
+    assertEquals("metaid_1", doc.nextMetaId());
+    // metaid_2 is already used in the document
+    assertEquals("metaid_3", doc.nextMetaId());
+    doc.setMetaIdGenerator(new SequentialMetaIdGenerator("m"));
+    assertEquals("m1", doc.nextMetaId());
+  }
+
+  /**
+   * Checks that a copy of a document does not share the counter of its
+   * generator with the original.
+   */
+  @Test public void copiedGenerator() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    doc.setMetaIdGenerator(new SequentialMetaIdGenerator());
+    assertEquals("metaid_1", doc.nextMetaId());
+    SBMLDocument copy = doc.clone();
+    assertNotSame(doc.getMetaIdGenerator(), copy.getMetaIdGenerator());
+    assertEquals("metaid_2", copy.nextMetaId());
+    assertEquals("metaid_3", copy.nextMetaId());
+    assertEquals("metaid_2", doc.nextMetaId());
+  }
+
+  /**
+   * 
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidPrefix() {
+    new SequentialMetaIdGenerator("1 ");
+  }
+
+  /**
+   * 
+   */
+  @Test public void assignMissingMetaIds() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    doc.setMetaIdGenerator(new SequentialMetaIdGenerator());
+    Model model = doc.createModel("m");
+    model.createCompartment("c");
+    model.createSpecies("s").setMetaId("metaid_1");
+    Reaction r = model.createReaction("r");
+    r.createReactant(model.getSpecies("s"));
+    r.createKineticLaw().setMath(new ASTNode(model.getSpecies("s")));
+
+    // only the reaction and its descendants
+    assertEquals(4, doc.assignMissingMetaIds(r));
+    assertTrue(r.isSetMetaId());
+    assertTrue(!model.getCompartment("c").isSetMetaId());
+
+    int count = doc.assignMissingMetaIds(doc);
+    assertEquals(6, count);
+    assertEquals(0, doc.assignMissingMetaIds(doc));
+
+    Set<String> metaIds = new HashSet<String>();
+    metaIds.add(doc.getMetaId());
+    metaIds.add(model.getMetaId());
+    metaIds.add(model.getListOfCompartments().getMetaId());
+    metaIds.add(model.getCompartment("c").getMetaId());
+    metaIds.add(model.getListOfSpecies().getMetaId());
+    metaIds.add(model.getListOfReactions().getMetaId());
+    metaIds.add(model.getSpecies("s").getMetaId());
+    assertEquals(7, metaIds.size());
+    assertTrue(doc.containsMetaId(r.getKineticLaw().getMetaId()));
+  }
+
+}
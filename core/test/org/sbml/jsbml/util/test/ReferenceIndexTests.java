@@ -0,0 +1,337 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.tree.TreeNode;
+
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.AssignmentRule;
+import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.SpeciesReference;
+import org.sbml.jsbml.Unit;
+import org.sbml.jsbml.UnitDefinition;
+import org.sbml.jsbml.text.parser.ParseException;
+import org.sbml.jsbml.util.ReferenceIndex;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Checks that the {@link ReferenceIndex} follows the changes of its document.
+ * 
+ * @since 1.5
+ */
+public class ReferenceIndexTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * @return a small model in which a local parameter hides the global
+   *         parameter k.
+   * @throws ParseException
+   */
+  private static SBMLDocument createDocument() throws ParseException {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("m");
+    model.createCompartment("c");
+    Species s = model.createSpecies("s", model.getCompartment("c"));
+    model.createParameter("k");
+    model.createParameter("x");
+    Reaction r1 = model.createReaction("r1");
+    r1.createReactant(s);
+    r1.createKineticLaw().setMath(ASTNode.parseFormula("k * s"));
+    Reaction r2 = model.createReaction("r2");
+    r2.createProduct(s);
+    KineticLaw kl = r2.createKineticLaw();
+    kl.createLocalParameter("k");
+    kl.setMath(ASTNode.parseFormula("k * c"));
+    model.createAssignmentRule().setVariable("x");
+    model.getRule(0).setMath(ASTNode.parseFormula("2 * k"));
+    return doc;
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void references() throws Exception {
+    SBMLDocument doc = createDocument();
+    Model model = doc.getModel();
+    ReferenceIndex index = doc.getReferenceIndex();
+
+    // s is referred to by the math of r1 and by both species references
+    assertEquals(3, index.getReferences(model.getSpecies("s")).size());
+    // c by the species and the math of r2
+    assertEquals(2, index.getReferences(model.getCompartment("c")).size());
+    // the local parameter hides k in r2
+    assertEquals(3, index.getReferences("k").size());
+    assertEquals(2, index.getReferences(model.getParameter("k")).size());
+    KineticLaw kl = model.getReaction("r2").getKineticLaw();
+    List<TreeNode> local = index.getReferences(kl.getLocalParameter("k"));
+    assertEquals(1, local.size());
+    assertSame(kl.getMath().getChild(0), local.get(0));
+    assertTrue(index.isReferenced(model.getParameter("x")));
+    assertFalse(index.isReferenced(model.getReaction("r1")));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void changes() throws Exception {
+    SBMLDocument doc = createDocument();
+    Model model = doc.getModel();
+    ReferenceIndex index = doc.getReferenceIndex();
+    Parameter k = model.getParameter("k");
+
+    model.getRule(0).setMath(ASTNode.parseFormula("3"));
+    assertEquals(1, index.getReferences(k).size());
+    model.getReaction("r1").getKineticLaw().getMath().getChild(0).setName("x");
+    assertFalse(index.isReferenced(k));
+    assertEquals(2, index.getReferences(model.getParameter("x")).size());
+
+    model.removeReaction("r1");
+    assertEquals(1, index.getReferences(model.getSpecies("s")).size());
+    ((AssignmentRule) model.getRule(0)).setVariable("k");
+    assertTrue(index.isReferenced(k));
+    assertEquals(0, index.getReferences(model.getParameter("x")).size());
+
+    Reaction r3 = model.createReaction("r3");
+    SpeciesReference sr = r3.createReactant(model.getSpecies("s"));
+    assertTrue(index.getReferences(model.getSpecies("s")).contains(sr));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void rename() throws Exception {
+    SBMLDocument doc = createDocument();
+    Model model = doc.getModel();
+    ReferenceIndex index = doc.getReferenceIndex();
+    Species s = model.getSpecies("s");
+    assertEquals(3, index.replaceReferences(s, "s_new"));
+    s.setId("s_new");
+    assertEquals("k*s_new", model.getReaction("r1").getKineticLaw().getMath().toFormula());
+    assertEquals("s_new", model.getReaction("r2").getProduct(0).getSpecies());
+    assertEquals(0, index.getReferences("s").size());
+    assertEquals(3, index.getReferences(s).size());
+
+    Parameter k = model.getParameter("k");
+    index.replaceReferences(k, "k_global");
+    k.setId("k_global");
+    assertEquals("k*c", model.getReaction("r2").getKineticLaw().getMath().toFormula());
+    assertEquals("2*k_global", model.getRule(0).getMath().toFormula());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void replaceAll() throws Exception {
+    Model model = createDocument().getModel().clone();
+    Map<String, String> newIds = new HashMap<String, String>();
+    newIds.put("s", "P_s");
+    newIds.put("c", "P_c");
+    newIds.put("k", "P_k");
+    newIds.put("x", "P_x");
+    // math of r1 (s, k), both species references, the compartment of s, the
+    // math of r2 (c), the rule variable and its math (k)
+    assertEquals(8, ReferenceIndex.replaceReferences(model, newIds));
+    assertEquals("P_k*P_s", model.getReaction("r1").getKineticLaw().getMath().toFormula());
+    assertEquals("P_s", model.getReaction("r1").getReactant(0).getSpecies());
+    assertEquals("P_c", model.getSpecies("s").getCompartment());
+    assertEquals("k*P_c", model.getReaction("r2").getKineticLaw().getMath().toFormula());
+    assertEquals("P_x", ((AssignmentRule) model.getRule(0)).getVariable());
+    assertEquals("2*P_k", model.getRule(0).getMath().toFormula());
+  }
+
+  /**
+   * @return a document whose unit definition mmol is used by the model, a
+   *         species, a parameter and a number in the math.
+   * @throws ParseException
+   */
+  private static SBMLDocument createUnitDocument() throws ParseException {
+    SBMLDocument doc = createDocument();
+    Model model = doc.getModel();
+    UnitDefinition mmol = model.createUnitDefinition("mmol");
+    mmol.createUnit(Unit.Kind.MOLE).setScale(-3);
+    model.setExtentUnits("mmol");
+    model.getSpecies("s").setSubstanceUnits("mmol");
+    model.getParameter("x").setUnits("mmol");
+    ASTNode number = new ASTNode(2d);
+    number.setUnits("mmol");
+    model.getRule(0).setMath(ASTNode.times(number, new ASTNode("k")));
+    return doc;
+  }
+
+  /**
+   * The references to the unit definitions are indexed apart from the
+   * references to the other identifiers.
+   * 
+   * @throws Exception
+   */
+  @Test public void unitReferences() throws Exception {
+    SBMLDocument doc = createUnitDocument();
+    Model model = doc.getModel();
+    ReferenceIndex index = doc.getReferenceIndex();
+    UnitDefinition mmol = model.getUnitDefinition("mmol");
+
+    assertTrue(index.isReferenced(mmol));
+    assertEquals(4, index.getReferences(mmol).size());
+    assertEquals(4, index.getUnitReferences("mmol").size());
+    assertEquals(0, index.getReferences("mmol").size());
+
+    model.getParameter("x").setUnits("second");
+    assertEquals(3, index.getReferences(mmol).size());
+    model.getRule(0).setMath(ASTNode.parseFormula("2 * k"));
+    assertEquals(2, index.getReferences(mmol).size());
+    model.getParameter("k").setUnits("mmol");
+    assertTrue(index.getReferences(mmol).contains(model.getParameter("k")));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void renameUnit() throws Exception {
+    SBMLDocument doc = createUnitDocument();
+    Model model = doc.getModel();
+    ReferenceIndex index = doc.getReferenceIndex();
+    UnitDefinition mmol = model.getUnitDefinition("mmol");
+
+    assertEquals(4, index.replaceReferences(mmol, "millimole"));
+    mmol.setId("millimole");
+    assertEquals("millimole", model.getExtentUnits());
+    assertEquals("millimole", model.getSpecies("s").getSubstanceUnits());
+    assertEquals("millimole", model.getParameter("x").getUnits());
+    assertEquals("millimole", model.getRule(0).getMath().getChild(0).getUnits());
+    assertEquals(0, index.getUnitReferences("mmol").size());
+    assertEquals(4, index.getReferences(mmol).size());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void replaceAllUnits() throws Exception {
+    Model model = createUnitDocument().getModel().clone();
+    Map<String, String> newUnitIds = Collections.singletonMap("mmol", "P_mmol");
+    assertEquals(4, ReferenceIndex.replaceReferences(model, Collections.<String, String>emptyMap(), newUnitIds));
+    assertEquals("P_mmol", model.getExtentUnits());
+    assertEquals("P_mmol", model.getSpecies("s").getSubstanceUnits());
+    assertEquals("P_mmol", model.getParameter("x").getUnits());
+    assertEquals("P_mmol", model.getRule(0).getMath().getChild(0).getUnits());
+    // the identifiers are not renamed
+    assertEquals("k", model.getRule(0).getMath().getChild(1).getName());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void readDocument() throws Exception {
+    SBMLDocument doc = new SBMLReader().readSBMLFromStream(ReferenceIndexTests.class.getResourceAsStream(TEST_FILE));
+    ReferenceIndex index = doc.getReferenceIndex();
+    for (Species species : doc.getModel().getListOfSpecies()) {
+      int count = 0;
+      for (Reaction r : doc.getModel().getListOfReactions()) {
+        if (r.isSetKineticLaw() && r.getKineticLaw().getMath().refersTo(species.getId())) {
+          count += countReferences(r.getKineticLaw().getMath(), species.getId());
+        }
+        if (r.hasReactant(species) || r.hasProduct(species) || r.hasModifier(species)) {
+          count++;
+        }
+      }
+      for (int i = 0; i < doc.getModel().getRuleCount(); i++) {
+        count += countReferences(doc.getModel().getRule(i).getMath(), species.getId());
+      }
+      assertTrue(count <= index.getReferences(species).size());
+    }
+  }
+
+  /**
+   * @param math
+   * @param id
+   * @return the number of nodes of the given math that refer to the given
+   *         identifier.
+   */
+  private static int countReferences(ASTNode math, String id) {
+    int count = (math.isString() && id.equals(math.getName())) ? 1 : 0;
+    for (int i = 0; i < math.getChildCount(); i++) {
+      count += countReferences(math.getChild(i), id);
+    }
+    return count;
+  }
+
+  /**
+   * Checks that the math kept by lazy loading is indexed and renamed as the
+   * math of a document read directly.
+   * 
+   * @throws Exception
+   */
+  @Test public void lazyMath() throws Exception {
+    SBMLDocument eagerDoc = new SBMLReader().readSBMLFromStream(ReferenceIndexTests.class.getResourceAsStream(TEST_FILE));
+    SBMLReader reader = new SBMLReader();
+    reader.setLazyLoading(true);
+    SBMLDocument lazyDoc = reader.readSBMLFromStream(ReferenceIndexTests.class.getResourceAsStream(TEST_FILE));
+    Model eagerModel = eagerDoc.getModel();
+    Model lazyModel = lazyDoc.getModel();
+    assertTrue(lazyModel.getReaction(0).getKineticLaw().containsUserObjectKey(JSBML.LAZY_MATH));
+
+    ReferenceIndex eagerIndex = eagerDoc.getReferenceIndex();
+    ReferenceIndex lazyIndex = lazyDoc.getReferenceIndex();
+    int referenced = 0;
+    for (int i = 0; i < eagerModel.getParameterCount(); i++) {
+      Parameter parameter = eagerModel.getParameter(i);
+      Parameter lazyParameter = lazyModel.getParameter(i);
+      assertEquals(eagerIndex.getReferences(parameter).size(), lazyIndex.getReferences(lazyParameter).size());
+      assertEquals(eagerIndex.isReferenced(parameter), lazyIndex.isReferenced(lazyParameter));
+      if (lazyIndex.isReferenced(lazyParameter)) {
+        referenced++;
+      }
+    }
+    assertTrue(referenced > 0);
+    for (int i = 0; i < eagerModel.getSpeciesCount(); i++) {
+      assertEquals(eagerIndex.getReferences(eagerModel.getSpecies(i)).size(),
+        lazyIndex.getReferences(lazyModel.getSpecies(i)).size());
+    }
+
+    lazyDoc = reader.readSBMLFromStream(ReferenceIndexTests.class.getResourceAsStream(TEST_FILE));
+    lazyModel = lazyDoc.getModel();
+    String id = lazyModel.getSpecies(0).getId();
+    int count = ReferenceIndex.replaceReferences(eagerModel, Collections.singletonMap(id, "renamed"));
+    assertEquals(count, ReferenceIndex.replaceReferences(lazyModel, Collections.singletonMap(id, "renamed")));
+    assertEquals(eagerModel.getReaction(0).getKineticLaw().getMath().toFormula(),
+      lazyModel.getReaction(0).getKineticLaw().getMath().toFormula());
+  }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyChangeEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.tree.TreeNode;
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.MathContainer;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLWriter;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.util.TreeNodeChangeListener;
+import org.sbml.jsbml.util.TreeNodeRemovedEvent;
+import org.sbml.jsbml.xml.XMLNode;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Tests the lazy loading of notes, annotations and math in {@link SBMLReader}.
+ * 
+ * @since 1.5
+ */
+public class LazyLoadingTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * 
+   */
+  private SBMLDocument eagerDoc;
+
+  /**
+   * 
+   */
+  private SBMLDocument lazyDoc;
+
+  /**
+   * @throws XMLStreamException
+   */
+  @Before public void setUp() throws XMLStreamException {
+    eagerDoc = new SBMLReader().readSBMLFromStream(LazyLoadingTests.class.getResourceAsStream(TEST_FILE));
+
+    SBMLReader reader = new SBMLReader();
+    reader.setLazyLoading(true);
+    lazyDoc = reader.readSBMLFromStream(LazyLoadingTests.class.getResourceAsStream(TEST_FILE));
+  }
+
+  /**
+   * Checks that nothing is parsed before the first access.
+   */
+  @Test public void contentNotParsed() {
+    Species species = lazyDoc.getModel().getSpecies(0);
+
+    assertTrue(species.isSetAnnotation());
+    assertTrue(species.containsUserObjectKey(JSBML.LAZY_ANNOTATION));
+    assertFalse(species.containsUserObjectKey(JSBML.READING_IN_PROGRESS));
+
+    Reaction reaction = lazyDoc.getModel().getReaction(0);
+    assertTrue(reaction.getKineticLaw().isSetMath());
+    assertTrue(reaction.getKineticLaw().containsUserObjectKey(JSBML.LAZY_MATH));
+  }
+
+  /**
+   * Checks that the lazily parsed content is the same as the content read directly.
+   * 
+   * @throws XMLStreamException
+   */
+  @Test public void sameContent() throws XMLStreamException {
+    Model eagerModel = eagerDoc.getModel();
+    Model lazyModel = lazyDoc.getModel();
+
+    assertEquals(eagerModel.getNotesString(), lazyModel.getNotesString());
+
+    for (int i = 0; i < eagerModel.getSpeciesCount(); i++) {
+      Species eager = eagerModel.getSpecies(i);
+      Species lazy = lazyModel.getSpecies(i);
+
+      assertEquals(eager.isSetNotes(), lazy.isSetNotes());
+      assertEquals(eager.getNotesString(), lazy.getNotesString());
+      assertEquals(eager.getCVTermCount(), lazy.getCVTermCount());
+      assertEquals(eager.getAnnotationString(), lazy.getAnnotationString());
+      assertFalse(lazy.containsUserObjectKey(JSBML.LAZY_ANNOTATION));
+    }
+
+    for (int i = 0; i < eagerModel.getReactionCount(); i++) {
+      Reaction eager = eagerModel.getReaction(i);
+      Reaction lazy = lazyModel.getReaction(i);
+
+      assertEquals(eager.getKineticLaw().getMath().toFormula(), lazy.getKineticLaw().getMath().toFormula());
+      assertFalse(lazy.getKineticLaw().getMath().isSetUserObjects() 
+        && lazy.getKineticLaw().getMath().containsUserObjectKey(JSBML.READING_IN_PROGRESS));
+    }
+
+    assertEquals(new SBMLWriter().writeSBMLToString(eagerDoc), new SBMLWriter().writeSBMLToString(lazyDoc));
+  }
+
+  /**
+   * Checks that {@link SBMLDocument#equals(Object)} and
+   * {@link SBMLDocument#hashCode()} compare the content kept by lazy loading
+   * without parsing it or notifying the listeners, and that documents whose
+   * content has been parsed are equal to the same document read directly.
+   * 
+   * @throws XMLStreamException
+   */
+  @Test public void equalsAndHashCode() throws XMLStreamException {
+    SBMLReader reader = new SBMLReader();
+    reader.setLazyLoading(true);
+    SBMLDocument otherLazyDoc = reader.readSBMLFromStream(LazyLoadingTests.class.getResourceAsStream(TEST_FILE));
+    final List<Object> events = new ArrayList<Object>();
+    lazyDoc.addTreeNodeChangeListener(new TreeNodeChangeListener() {
+
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        events.add(evt);
+      }
+
+      @Override
+      public void nodeRemoved(TreeNodeRemovedEvent event) {
+        events.add(event);
+      }
+
+      @Override
+      public void nodeAdded(TreeNode node) {
+        events.add(node);
+      }
+    });
+
+    assertEquals(otherLazyDoc, lazyDoc);
+    assertEquals(lazyDoc, otherLazyDoc);
+    assertEquals(otherLazyDoc.hashCode(), lazyDoc.hashCode());
+    SBMLDocument copy = lazyDoc.clone();
+    assertTrue(copy.getModel().getSpecies(0).containsUserObjectKey(JSBML.LAZY_ANNOTATION));
+    assertEquals(lazyDoc, copy);
+    assertEquals(lazyDoc.hashCode(), copy.hashCode());
+
+    Set<SBase> elements = new HashSet<SBase>();
+    Species lazySpecies = lazyDoc.getModel().getSpecies(0);
+    Reaction lazyReaction = lazyDoc.getModel().getReaction(0);
+    elements.add(lazySpecies);
+    elements.add(lazyReaction.getKineticLaw());
+    assertTrue(events.isEmpty());
+    assertTrue(elements.contains(otherLazyDoc.getModel().getReaction(0).getKineticLaw()));
+
+    assertTrue(lazySpecies.containsUserObjectKey(JSBML.LAZY_ANNOTATION));
+    assertTrue(lazyReaction.getKineticLaw().containsUserObjectKey(JSBML.LAZY_MATH));
+    assertTrue(events.isEmpty());
+
+    readLazyContent(lazyDoc);
+    readLazyContent(otherLazyDoc);
+    assertEquals(eagerDoc, lazyDoc);
+    assertEquals(lazyDoc, eagerDoc);
+    assertEquals(eagerDoc.hashCode(), lazyDoc.hashCode());
+    assertEquals(eagerDoc.hashCode(), otherLazyDoc.hashCode());
+
+    otherLazyDoc.getModel().getSpecies(0).setNotes("<notes><p xmlns=\"http://www.w3.org/1999/xhtml\">changed</p></notes>");
+    assertFalse(lazyDoc.equals(otherLazyDoc));
+    assertFalse(otherLazyDoc.equals(lazyDoc));
+  }
+
+  /**
+   * Checks that the hash code is updated when content kept by lazy loading
+   * is removed without being parsed.
+   * 
+   * @throws XMLStreamException
+   */
+  @Test public void hashCodeOfRemovedLazyContent() throws XMLStreamException {
+    SBMLReader reader = new SBMLReader();
+    reader.setLazyLoading(true);
+    SBMLDocument otherLazyDoc = reader.readSBMLFromStream(LazyLoadingTests.class.getResourceAsStream(TEST_FILE));
+    int hashCode = lazyDoc.hashCode();
+
+    lazyDoc.getModel().getSpecies(0).unsetAnnotation();
+    lazyDoc.getModel().getReaction(0).getKineticLaw().unsetMath();
+    assertFalse(hashCode == lazyDoc.hashCode());
+
+    otherLazyDoc.getModel().getSpecies(0).unsetAnnotation();
+    otherLazyDoc.getModel().getReaction(0).getKineticLaw().unsetMath();
+    assertEquals(otherLazyDoc, lazyDoc);
+    assertEquals(otherLazyDoc.hashCode(), lazyDoc.hashCode());
+  }
+
+  /**
+   * Parses all the content kept by lazy loading in the given tree.
+   * 
+   * @param node
+   */
+  private static void readLazyContent(TreeNode node) {
+    if (node instanceof SBase) {
+      ((SBase) node).getNotes();
+      ((SBase) node).getAnnotation();
+    }
+    if (node instanceof MathContainer) {
+      ((MathContainer) node).getMath();
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      readLazyContent(node.getChildAt(i));
+    }
+  }
+
+  /**
+   * Checks that the listeners are notified when notes kept by lazy loading
+   * are added to the tree.
+   */
+  @Test public void lazyNotesEvents() {
+    final List<TreeNode> addedNodes = new ArrayList<TreeNode>();
+    Model model = lazyDoc.getModel();
+    assertTrue(model.containsUserObjectKey(JSBML.LAZY_NOTES));
+    model.addTreeNodeChangeListener(new TreeNodeChangeListener() {
+
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+      }
+
+      @Override
+      public void nodeRemoved(TreeNodeRemovedEvent event) {
+      }
+
+      @Override
+      public void nodeAdded(TreeNode node) {
+        addedNodes.add(node);
+      }
+    });
+
+    XMLNode notes = model.getNotes();
+    assertTrue(addedNodes.contains(notes));
+  }
+
+  /**
+   * Checks that unsetting content that has not been parsed yet works.
+   */
+  @Test public void unsetLazyContent() {
+    Species species = lazyDoc.getModel().getSpecies(0);
+    species.unsetAnnotation();
+    assertFalse(species.isSetAnnotation());
+
+    Reaction reaction = lazyDoc.getModel().getReaction(0);
+    reaction.getKineticLaw().unsetMath();
+    assertFalse(reaction.getKineticLaw().isSetMath());
+    assertNull(reaction.getKineticLaw().getMath());
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.sbml.jsbml.CVTerm;
+import org.sbml.jsbml.Creator;
+import org.sbml.jsbml.History;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.xml.parsers.SBMLRDFAnnotationWriter;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+import org.sbml.jsbml.xml.stax.SBMLWriter;
+
+/**
+ * Checks that the annotations written by {@link SBMLRDFAnnotationWriter} are
+ * read back unchanged.
+ * 
+ * @since 1.5
+ */
+public class RDFAnnotationWriterTests {
+
+  /**
+   * @throws Exception
+   */
+  @Test public void roundTrip() throws Exception {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("m");
+    model.setMetaId("meta_m");
+    History history = new History();
+    for (int i = 1; i <= 4; i++) {
+      history.addCreator(new Creator("Given" + i, "Family" + i, "Organisation" + i, "creator" + i + "@example.org"));
+    }
+    history.setCreatedDate(new Date(0));
+    history.setModifiedDate(new Date(1000000));
+    history.addModifiedDate(new Date(2000000));
+    model.setHistory(history);
+    CVTerm term = new CVTerm(CVTerm.Qualifier.BQB_IS, "urn:miriam:a:1", "urn:miriam:a:2");
+    term.addNestedCVTerm(new CVTerm(CVTerm.Qualifier.BQM_IS_DESCRIBED_BY, "urn:miriam:b:1"));
+    model.addCVTerm(term);
+    model.addCVTerm(new CVTerm(CVTerm.Qualifier.BQM_IS, "urn:miriam:c:1"));
+
+    Species species = model.createSpecies("s");
+    species.setMetaId("meta_s");
+    species.getAnnotation().appendNonRDFAnnotation("<foo xmlns=\"http://www.example.org/foo\"><bar/></foo>");
+    species.addCVTerm(new CVTerm(CVTerm.Qualifier.BQB_HAS_PART, "urn:miriam:d:1"));
+    species.addCVTerm(new CVTerm(CVTerm.Qualifier.BQB_IS_VERSION_OF, "urn:miriam:e:1"));
+    assertTrue(SBMLRDFAnnotationWriter.canWrite(species));
+
+    SBMLDocument read = new SBMLReader().readSBMLFromString(new SBMLWriter().writeSBMLToString(doc));
+    Model readModel = read.getModel();
+
+    assertEquals(4, readModel.getHistory().getCreatorCount());
+    for (int i = 0; i < 4; i++) {
+      assertEquals("Family" + (i + 1), readModel.getHistory().getCreator(i).getFamilyName());
+    }
+    assertEquals(history.getCreatedDate(), readModel.getHistory().getCreatedDate());
+    assertEquals(history.getListOfModifiedDates(), readModel.getHistory().getListOfModifiedDates());
+    // the reader groups the terms by qualifier type
+    assertEquals(new HashSet<CVTerm>(model.getCVTerms()), new HashSet<CVTerm>(readModel.getCVTerms()));
+    assertEquals(1, readModel.filterCVTerms(CVTerm.Qualifier.BQB_IS).get(0).getNestedCVTermCount());
+
+    Species readSpecies = readModel.getSpecies("s");
+    assertEquals(species.getCVTerms(), readSpecies.getCVTerms());
+    assertTrue(readSpecies.getAnnotation().getNonRDFannotation().getChildElement("foo", "http://www.example.org/foo") != null);
+
+    // the empty rdf:RDF element left over by the reader is filled again
+    assertTrue(SBMLRDFAnnotationWriter.canWrite(readSpecies));
+    SBMLDocument readAgain = new SBMLReader().readSBMLFromString(new SBMLWriter().writeSBMLToString(read));
+    assertEquals(species.getCVTerms(), readAgain.getModel().getSpecies("s").getCVTerms());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test public void customRDF() throws Exception {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Species species = doc.createModel("m").createSpecies("s");
+    species.setMetaId("meta_s");
+    species.getAnnotation().appendNonRDFAnnotation("<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"><rdf:Description rdf:about=\"#other\"/></rdf:RDF>");
+    species.addCVTerm(new CVTerm(CVTerm.Qualifier.BQB_IS, "urn:miriam:a:1"));
+    assertFalse(SBMLRDFAnnotationWriter.canWrite(species));
+  }
+
+}
@@ -0,0 +1,393 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.xml.stax.SBMLBatchReader;
+
+/**
+ * Tests the {@link SBMLBatchReader}.
+ * 
+ * @since 1.5
+ */
+public class SBMLBatchReaderTests {
+
+  /**
+   * 
+   */
+  private static final String[] TEST_FILES = {
+    "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml",
+    "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000229.xml"
+  };
+
+  /**
+   * 
+   */
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Collects the results of a batch.
+   */
+  private static class Collector implements SBMLBatchReader.Listener {
+
+    /**
+     * 
+     */
+    private List<String> read = new ArrayList<String>();
+
+    /**
+     * 
+     */
+    private List<String> failed = new ArrayList<String>();
+
+    @Override
+    public void documentRead(String source, SBMLDocument document) {
+      assertNotNull(document.getModel());
+      read.add(source);
+    }
+
+    @Override
+    public void readFailed(String source, Throwable error) {
+      failed.add(source);
+    }
+  }
+
+  /**
+   * Reads a directory containing valid, invalid and ignored files.
+   * 
+   * @throws Exception
+   */
+  @Test public void readDirectory() throws Exception {
+    File directory = folder.newFolder("models");
+    for (int i = 0; i < 6; i++) {
+      copy(TEST_FILES[i % TEST_FILES.length], new File(directory, "model" + i + ".xml"));
+    }
+    write("<sbml>not closed", new File(directory, "broken.xml"));
+    write("some text", new File(directory, "readme.txt"));
+
+    Collector collector = new Collector();
+    SBMLBatchReader reader = new SBMLBatchReader(3);
+    SBMLBatchReader.Statistics statistics;
+    try {
+      statistics = reader.readDirectory(directory, "*.xml", false, collector);
+    } finally {
+      reader.close();
+    }
+
+    assertEquals(6, collector.read.size());
+    assertEquals(1, collector.failed.size());
+    assertTrue(collector.failed.get(0).endsWith("broken.xml"));
+    assertEquals(6, statistics.getDocumentCount());
+    assertEquals(1, statistics.getFailureCount());
+    assertTrue(statistics.getByteCount() > 0);
+  }
+
+  /**
+   * Reads a zip archive.
+   * 
+   * @throws Exception
+   */
+  @Test public void readZipArchive() throws Exception {
+    File archive = folder.newFile("models.zip");
+    ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(archive));
+    try {
+      zipStream.putNextEntry(new ZipEntry("models/"));
+      for (int i = 0; i < 4; i++) {
+        zipStream.putNextEntry(new ZipEntry("models/model" + i + ".xml"));
+        copy(TEST_FILES[i % TEST_FILES.length], zipStream);
+      }
+      zipStream.putNextEntry(new ZipEntry("models/readme.txt"));
+      zipStream.write("some text".getBytes(StandardCharsets.UTF_8));
+    } finally {
+      zipStream.close();
+    }
+
+    Collector collector = new Collector();
+    SBMLBatchReader reader = new SBMLBatchReader(2);
+    reader.setLazyLoading(true);
+    SBMLBatchReader.Statistics statistics;
+    try {
+      statistics = reader.readArchive(archive, collector);
+    } finally {
+      reader.close();
+    }
+
+    assertEquals(4, collector.read.size());
+    assertEquals(0, collector.failed.size());
+    assertEquals(4, statistics.getDocumentCount());
+  }
+
+  /**
+   * Checks that the documents already submitted are cancelled when an
+   * archive cannot be read to the end.
+   * 
+   * @throws Exception
+   */
+  @Test public void readTruncatedArchive() throws Exception {
+    File archive = folder.newFile("truncated.zip");
+    ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(archive));
+    try {
+      for (int i = 0; i < 4; i++) {
+        zipStream.putNextEntry(new ZipEntry("model" + i + ".xml"));
+        copy(TEST_FILES[i % TEST_FILES.length], zipStream);
+      }
+    } finally {
+      zipStream.close();
+    }
+    RandomAccessFile file = new RandomAccessFile(archive, "rw");
+    try {
+      file.setLength(file.length() * 3 / 4);
+    } finally {
+      file.close();
+    }
+
+    // the only thread is busy, so that the entries read stay in the queue
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    final CountDownLatch blocked = new CountDownLatch(1);
+    executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          blocked.await();
+        } catch (InterruptedException exc) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+
+    Collector collector = new Collector();
+    SBMLBatchReader reader = new SBMLBatchReader(executor, 4);
+    try {
+      reader.readArchive(archive, collector);
+      fail("The archive is truncated.");
+    } catch (IOException exc) {
+      // expected
+    } finally {
+      blocked.countDown();
+      executor.shutdown();
+    }
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(0, collector.read.size());
+    assertEquals(0, collector.failed.size());
+  }
+
+  /**
+   * Reads a tar archive mixing POSIX ustar, GNU and pax headers.
+   * 
+   * @throws Exception
+   */
+  @Test public void readTarArchive() throws Exception {
+    String longPath = "models/";
+    while (longPath.length() < 120) {
+      longPath += "subdirectory/";
+    }
+    longPath += "model2.xml";
+
+    ByteArrayOutputStream tar = new ByteArrayOutputStream();
+    writeTarEntry(tar, "models/", '5', POSIX_MAGIC, null, new byte[0]);
+    // POSIX ustar header with a name prefix
+    writeTarEntry(tar, "model0.xml", '0', POSIX_MAGIC, "models/ustar", readResource(TEST_FILES[0]));
+    // GNU header, which has the access and change times where ustar has the prefix
+    writeTarEntry(tar, "models/gnu/model1.xml", '0', GNU_MAGIC, "12345670123\u000012345670123", readResource(TEST_FILES[1]));
+    // pax global header, which must not be read as a file
+    writeTarEntry(tar, "pax_global_header", 'g', POSIX_MAGIC, null, paxRecord("comment", "models"));
+    // pax extended header with a path longer than the name field
+    writeTarEntry(tar, "PaxHeaders/model2.xml", 'x', POSIX_MAGIC, null, paxRecord("path", longPath));
+    writeTarEntry(tar, "models/subdirectory/subdirectory/model2.xml", '0', POSIX_MAGIC, null, readResource(TEST_FILES[0]));
+    writeTarEntry(tar, "models/readme.txt", '0', POSIX_MAGIC, null, "some text".getBytes(StandardCharsets.UTF_8));
+    tar.write(new byte[1024]);
+
+    File archive = folder.newFile("models.tar");
+    OutputStream output = new FileOutputStream(archive);
+    try {
+      tar.writeTo(output);
+    } finally {
+      output.close();
+    }
+
+    Collector collector = new Collector();
+    SBMLBatchReader reader = new SBMLBatchReader(2);
+    try {
+      reader.readArchive(archive, collector);
+    } finally {
+      reader.close();
+    }
+
+    List<String> expected = new ArrayList<String>(Arrays.asList("models/ustar/model0.xml", "models/gnu/model1.xml", longPath));
+    List<String> read = new ArrayList<String>(collector.read);
+    Collections.sort(expected);
+    Collections.sort(read);
+    assertEquals(expected, read);
+    assertEquals(0, collector.failed.size());
+  }
+
+  /**
+   * The magic of the POSIX ustar and pax headers.
+   */
+  private static final String POSIX_MAGIC = "ustar\u000000";
+
+  /**
+   * The magic of the GNU headers.
+   */
+  private static final String GNU_MAGIC = "ustar  \u0000";
+
+  /**
+   * Writes a tar entry.
+   * 
+   * @param tar
+   * @param name
+   * @param type
+   * @param magic
+   * @param prefix the content of the ustar prefix field, or {@code null}
+   * @param content
+   * @throws IOException
+   */
+  private static void writeTarEntry(ByteArrayOutputStream tar, String name, char type, String magic, String prefix, byte[] content) throws IOException {
+    byte[] header = new byte[512];
+    putTarField(header, 0, name);
+    putTarField(header, 100, "0000644");
+    putTarField(header, 124, String.format("%011o", content.length));
+    putTarField(header, 136, String.format("%011o", 0));
+    Arrays.fill(header, 148, 156, (byte) ' ');
+    header[156] = (byte) type;
+    putTarField(header, 257, magic);
+    if (prefix != null) {
+      putTarField(header, 345, prefix);
+    }
+    int checksum = 0;
+    for (byte b : header) {
+      checksum += b & 0xff;
+    }
+    putTarField(header, 148, String.format("%06o\u0000 ", checksum));
+    tar.write(header);
+    tar.write(content);
+    tar.write(new byte[(512 - (content.length % 512)) % 512]);
+  }
+
+  /**
+   * @param header
+   * @param offset
+   * @param value
+   */
+  private static void putTarField(byte[] header, int offset, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    System.arraycopy(bytes, 0, header, offset, bytes.length);
+  }
+
+  /**
+   * @param key
+   * @param value
+   * @return a pax extended header record.
+   */
+  private static byte[] paxRecord(String key, String value) {
+    String record = " " + key + "=" + value + "\n";
+    int length = record.getBytes(StandardCharsets.UTF_8).length;
+    int total = length + Integer.toString(length).length();
+    if (Integer.toString(total).length() != Integer.toString(length).length()) {
+      total++;
+    }
+    return (total + record).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param resource
+   * @return the content of the given resource.
+   * @throws IOException
+   */
+  private static byte[] readResource(String resource) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    copy(resource, output);
+    return output.toByteArray();
+  }
+
+  /**
+   * @param resource
+   * @param file
+   * @throws IOException
+   */
+  private static void copy(String resource, File file) throws IOException {
+    OutputStream output = new FileOutputStream(file);
+    try {
+      copy(resource, output);
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * @param resource
+   * @param output
+   * @throws IOException
+   */
+  private static void copy(String resource, OutputStream output) throws IOException {
+    InputStream input = SBMLBatchReaderTests.class.getResourceAsStream(resource);
+    try {
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = input.read(buffer)) >= 0) {
+        output.write(buffer, 0, count);
+      }
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * @param content
+   * @param file
+   * @throws IOException
+   */
+  private static void write(String content, File file) throws IOException {
+    OutputStream output = new FileOutputStream(file);
+    try {
+      output.write(content.getBytes(StandardCharsets.UTF_8));
+    } finally {
+      output.close();
+    }
+  }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Test;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.ExplicitRule;
+import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.Rule;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.SpeciesReference;
+import org.sbml.jsbml.util.filters.Filter;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+import org.sbml.jsbml.xml.stax.SBMLStreamHandler;
+import org.sbml.jsbml.xml.stax.SBMLWriter;
+import org.sbml.jsbml.xml.stax.SimpleSBMLStreamHandler;
+
+/**
+ * Tests the streaming mode of {@link SBMLReader}.
+ * 
+ * @since 1.5
+ */
+public class SBMLStreamReaderTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * 
+   */
+  private static final String RULES_TEST_FILE = "/org/sbml/jsbml/xml/test/data/libsbml-test-data/l2v1-assignment.xml";
+
+  /**
+   * Checks that the streamed elements are the same as the ones obtained
+   * when reading the whole document and that they are not kept in the model.
+   * 
+   * @throws XMLStreamException
+   * @throws IOException
+   */
+  @Test public void streamElements() throws XMLStreamException, IOException {
+    SBMLDocument fullDoc = new SBMLReader().readSBMLFromStream(SBMLStreamReaderTests.class.getResourceAsStream(TEST_FILE));
+    Model fullModel = fullDoc.getModel();
+
+    final List<String> ids = new ArrayList<String>();
+    final int[] counts = new int[4];
+
+    SBMLDocument doc = new SBMLReader().streamSBMLFromStream(SBMLStreamReaderTests.class.getResourceAsStream(TEST_FILE),
+      new SBMLStreamHandler() {
+
+      @Override
+      public void onSpecies(Species species) {
+        assertNotNull(species.getModel());
+        ids.add(species.getId());
+        counts[0]++;
+      }
+
+      @Override
+      public void onReaction(Reaction reaction) {
+        ids.add(reaction.getId());
+        counts[1]++;
+      }
+
+      @Override
+      public void onParameter(Parameter parameter) {
+        ids.add(parameter.getId());
+        counts[2]++;
+      }
+
+      @Override
+      public void onCompartment(Compartment compartment) {
+        ids.add(compartment.getId());
+        counts[3]++;
+      }
+    });
+
+    assertEquals(fullModel.getSpeciesCount(), counts[0]);
+    assertEquals(fullModel.getReactionCount(), counts[1]);
+    assertEquals(fullModel.getParameterCount(), counts[2]);
+    assertEquals(fullModel.getCompartmentCount(), counts[3]);
+
+    for (String id : ids) {
+      assertNotNull(fullModel.findNamedSBase(id));
+    }
+
+    Model model = doc.getModel();
+    assertNotNull(model);
+    assertEquals(0, model.getSpeciesCount());
+    assertEquals(0, model.getReactionCount());
+    assertEquals(0, model.getParameterCount());
+    assertEquals(0, model.getCompartmentCount());
+    assertNull(model.getSpecies(fullModel.getSpecies(0).getId()));
+    Map<?, ?> streamedIds = (Map<?, ?>) model.getUserObject(JSBML.STREAMED_IDS);
+    assertNotNull(streamedIds);
+    for (String id : ids) {
+      assertEquals(fullModel.findNamedSBase(id).getElementName(), streamedIds.get(id));
+    }
+    assertEquals(fullModel.getUnitDefinitionCount(), model.getUnitDefinitionCount());
+    assertTrue(fullModel.getRuleCount() == model.getRuleCount());
+  }
+
+  /**
+   * Checks that the references to the elements streamed before can be
+   * resolved inside a callback and in the returned document.
+   * 
+   * @throws XMLStreamException
+   */
+  @Test public void resolveStreamedElements() throws XMLStreamException {
+    final int[] resolved = new int[2];
+    SBMLReader reader = new SBMLReader();
+    reader.setRegisteringStreamStubs(true);
+
+    reader.streamSBMLFromStream(SBMLStreamReaderTests.class.getResourceAsStream(TEST_FILE),
+      new SimpleSBMLStreamHandler() {
+
+      @Override
+      public void onSpecies(Species species) {
+        Compartment compartment = species.getCompartmentInstance();
+        assertNotNull(compartment);
+        assertEquals(species.getCompartment(), compartment.getId());
+        resolved[0]++;
+      }
+
+      @Override
+      public void onReaction(Reaction reaction) {
+        for (SpeciesReference reactant : reaction.getListOfReactants()) {
+          assertNotNull(reactant.getSpeciesInstance());
+          assertEquals(reactant.getSpecies(), reactant.getSpeciesInstance().getId());
+        }
+        resolved[1]++;
+      }
+    });
+
+    assertTrue(resolved[0] > 0);
+    assertTrue(resolved[1] > 0);
+
+    SBMLDocument doc = reader.streamSBMLFromStream(SBMLStreamReaderTests.class.getResourceAsStream(RULES_TEST_FILE),
+      new SimpleSBMLStreamHandler());
+    Model model = doc.getModel();
+    assertTrue(model.getRuleCount() > 0);
+    for (Rule rule : model.getListOfRules()) {
+      if (rule instanceof ExplicitRule) {
+        Species stub = (Species) ((ExplicitRule) rule).getVariableInstance();
+        assertNotNull(stub);
+        assertNull(stub.getParent());
+        assertFalse(stub.isSetAnnotation());
+      }
+    }
+
+    doc = new SBMLReader().streamSBMLFromStream(SBMLStreamReaderTests.class.getResourceAsStream(RULES_TEST_FILE),
+      new SimpleSBMLStreamHandler());
+    model = doc.getModel();
+    Map<?, ?> streamedIds = (Map<?, ?>) model.getUserObject(JSBML.STREAMED_IDS);
+    for (Rule rule : model.getListOfRules()) {
+      if (rule instanceof ExplicitRule) {
+        assertNull(((ExplicitRule) rule).getVariableInstance());
+        assertEquals(Species.class.getSimpleName().toLowerCase(), streamedIds.get(((ExplicitRule) rule).getVariable()));
+      }
+    }
+  }
+
+  /**
+   * Checks that the tree of the document returned by the streaming mode does
+   * not grow with the number and the size of the streamed elements, of which
+   * only the identifiers are kept, and that these elements can be garbage
+   * collected once they have been handed over.
+   * 
+   * @throws XMLStreamException
+   */
+  @Test public void boundedMemory() throws XMLStreamException {
+    final List<WeakReference<Species>> streamed = new ArrayList<WeakReference<Species>>();
+    SBMLStreamHandler handler = new SimpleSBMLStreamHandler() {
+
+      @Override
+      public void onSpecies(Species species) {
+        streamed.add(new WeakReference<Species>(species));
+      }
+    };
+
+    SBMLDocument small = new SBMLReader().streamSBMLFromStream(createModel(10), handler);
+    SBMLDocument large = new SBMLReader().streamSBMLFromStream(createModel(1000), handler);
+    assertEquals(1010, streamed.size());
+
+    assertEquals(countNodes(small), countNodes(large));
+    Model model = large.getModel();
+    Map<?, ?> streamedIds = (Map<?, ?>) model.getUserObject(JSBML.STREAMED_IDS);
+    assertEquals(1 + 1000 + 3 * 999, streamedIds.size());
+    for (Object id : streamedIds.keySet()) {
+      assertNull(model.getSBaseById(id.toString()));
+      assertNull(model.findNamedSBase(id.toString()));
+    }
+
+    for (int i = 0; (i < 10) && (countCollected(streamed) < streamed.size()); i++) {
+      System.gc();
+    }
+    assertEquals(streamed.size(), countCollected(streamed));
+  }
+
+  /**
+   * Creates a model with a compartment, the given number of species, each
+   * with notes, and a reaction between each two consecutive species.
+   * 
+   * @param speciesCount
+   * @return a stream containing the SBML of the model.
+   * @throws XMLStreamException
+   */
+  private static InputStream createModel(int speciesCount) throws XMLStreamException {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel("m");
+    Compartment compartment = model.createCompartment("c");
+    compartment.setConstant(true);
+    for (int i = 0; i < speciesCount; i++) {
+      Species species = model.createSpecies("s" + i, compartment);
+      species.setHasOnlySubstanceUnits(false);
+      species.setBoundaryCondition(false);
+      species.setConstant(false);
+      species.setNotes("<body xmlns=\"http://www.w3.org/1999/xhtml\"><p>Species number " + i + "</p></body>");
+      if (i > 0) {
+        Reaction reaction = model.createReaction("r" + i);
+        reaction.setReversible(false);
+        reaction.createReactant("r" + i + "_reactant", model.getSpecies(i - 1));
+        reaction.createProduct("r" + i + "_product", species);
+      }
+    }
+    return new ByteArrayInputStream(new SBMLWriter().writeSBMLToString(doc).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @param doc
+   * @return the number of nodes of the given document.
+   */
+  private static int countNodes(SBMLDocument doc) {
+    return doc.filter(new Filter() {
+
+      @Override
+      public boolean accepts(Object o) {
+        return true;
+      }
+    }).size();
+  }
+
+  /**
+   * @param references
+   * @return the number of cleared references.
+   */
+  private static int countCollected(List<WeakReference<Species>> references) {
+    int count = 0;
+    for (WeakReference<Species> reference : references) {
+      if (reference.get() == null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+}
@@ -24,9 +24,23 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.sbml.jsbml.math.test.ASTNodeInfixParsingTest;
 import org.sbml.jsbml.math.test.ASTNodeTest;
+import org.sbml.jsbml.math.test.DoubleASTNodeCompilerTests;
+import org.sbml.jsbml.math.test.NumericExpressionCompilerTests;
+import org.sbml.jsbml.math.test.ODESystemCompilerTests;
 import org.sbml.jsbml.math.test.TestInfixOperatorPrecedence;
+import org.sbml.jsbml.test.ChildIndexTests;
 import org.sbml.jsbml.test.IdRegistrationTest;
+import org.sbml.jsbml.test.IncrementalValidatorTests;
+import org.sbml.jsbml.test.ParallelValidatorTests;
 import org.sbml.jsbml.test.RemoveFromParentTest;
+import org.sbml.jsbml.test.SBOSnapshotTests;
+import org.sbml.jsbml.test.SharedTreeNodeChangeListenerTests;
+import org.sbml.jsbml.test.TreeNodeHashCodeTests;
+import org.sbml.jsbml.util.test.DerivedUnitCacheTests;
+import org.sbml.jsbml.util.test.FunctionDefinitionCacheTests;
+import org.sbml.jsbml.util.test.IdIndexTests;
+import org.sbml.jsbml.util.test.MetaIdGeneratorTests;
+import org.sbml.jsbml.util.test.ReferenceIndexTests;
 
 /**
  * JUnit suite of tests, including all test classes for SBML core.
@@ -38,7 +52,13 @@ import org.sbml.jsbml.test.RemoveFromParentTest;
 @SuiteClasses(value={SBML_L1VxTests.class, SBML_L2V1Test.class, CheckConsistencyTests.class, GetNotesStringTests.class,
   UnregisterTests.class, RemoveFromParentTest.class, CVTermTests.class, RemoveFromParentTest.class, ASTNodeTest.class,
   ASTNodeInfixParsingTest.class, TestInfixOperatorPrecedence.class, IdRegistrationTest.class, XMLTokenTest.class,
-  CreatorTests.class, NestedCVTermTests.class})
+  CreatorTests.class, NestedCVTermTests.class, SBMLStreamReaderTests.class, LazyLoadingTests.class,
+  SBMLBatchReaderTests.class, ThreadSafeReaderTests.class, NumericExpressionCompilerTests.class,
+  DoubleASTNodeCompilerTests.class, ODESystemCompilerTests.class, IncrementalValidatorTests.class, ParallelValidatorTests.class,
+  DerivedUnitCacheTests.class, TreeNodeHashCodeTests.class,
+  SharedTreeNodeChangeListenerTests.class, ChildIndexTests.class,
+  RDFAnnotationWriterTests.class, MetaIdGeneratorTests.class, IdIndexTests.class,
+  ReferenceIndexTests.class, FunctionDefinitionCacheTests.class, SBOSnapshotTests.class})
 public class Tests {
 
 }
@@ -0,0 +1,129 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.xml.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.xml.parsers.ParserManager;
+import org.sbml.jsbml.xml.parsers.ReadingParser;
+import org.sbml.jsbml.xml.parsers.SBMLCoreParser;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+import org.sbml.jsbml.xml.stax.SBMLWriter;
+
+/**
+ * Tests sharing an {@link SBMLReader} and an {@link SBMLWriter} between
+ * several threads.
+ * 
+ * @since 1.5
+ */
+public class ThreadSafeReaderTests {
+
+  /**
+   * 
+   */
+  private static final String TEST_FILE = "/org/sbml/jsbml/xml/test/data/l2v4/BIOMD0000000228.xml";
+
+  /**
+   * Reads and writes the same document concurrently and checks that all the
+   * threads get the same result as a sequential read.
+   * 
+   * @throws Exception
+   */
+  @Test public void concurrentReadAndWrite() throws Exception {
+    final SBMLReader reader = new SBMLReader(true);
+    final SBMLWriter writer = new SBMLWriter(' ', (short) 2, true);
+    assertTrue(reader.isThreadSafe());
+    assertTrue(writer.isThreadSafe());
+
+    SBMLDocument doc = new SBMLReader().readSBMLFromStream(ThreadSafeReaderTests.class.getResourceAsStream(TEST_FILE));
+    final String expected = new SBMLWriter(' ', (short) 2).writeSBMLToString(doc);
+    final String expectedAnnotation = new SBMLWriter(' ', (short) 2).writeAnnotation(doc.getModel());
+    assertTrue(expectedAnnotation.length() > 0);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<String>> results = new ArrayList<Future<String>>();
+    try {
+      for (int i = 0; i < 16; i++) {
+        results.add(executor.submit(new Callable<String>() {
+
+          @Override
+          public String call() throws Exception {
+            SBMLDocument doc = reader.readSBMLFromStream(ThreadSafeReaderTests.class.getResourceAsStream(TEST_FILE));
+            assertNotNull(doc.getModel());
+            assertEquals(expectedAnnotation, writer.writeAnnotation(doc.getModel()));
+            return writer.writeSBMLToString(doc);
+          }
+        }));
+      }
+      for (Future<String> result : results) {
+        assertEquals(expected, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Checks that the parsers without state are shared and that new instances
+   * of the other parsers are returned at each call.
+   */
+  @Test public void sharedParsers() {
+    ParserManager manager = ParserManager.getManager();
+    String coreNamespace = JSBML.getNamespaceFrom(3, 1);
+    ReadingParser coreParser = manager.getReadingParsers().get(coreNamespace);
+    assertTrue(coreParser instanceof SBMLCoreParser);
+    assertSame(coreParser, manager.getReadingParsers().get(coreNamespace));
+    assertSame(coreParser, manager.getWritingParsers().get(coreNamespace));
+
+    ReadingParser mathParser = manager.getReadingParsers().get(ASTNode.URI_MATHML_DEFINITION);
+    assertNotNull(mathParser);
+    assertNotSame(mathParser, manager.getReadingParsers().get(ASTNode.URI_MATHML_DEFINITION));
+  }
+
+  /**
+   * Checks that the registries of the {@link ParserManager} cannot be
+   * modified and that each call returns new parser instances.
+   */
+  @Test(expected = UnsupportedOperationException.class)
+  public void immutableRegistry() {
+    ParserManager manager = ParserManager.getManager();
+    ReadingParser coreParser = manager.getReadingParsers().get("anyXML");
+    assertNotNull(coreParser);
+    assertTrue(coreParser != manager.getReadingParsers().get("anyXML"));
+
+    manager.getRegisteredReadingParsers().put("anyXML", coreParser);
+  }
+
+}
@@ -20,10 +20,12 @@
 
 package org.sbml.jsbml.ext.comp.util;
 
-import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import javax.xml.stream.XMLStreamException;
@@ -39,7 +41,6 @@ import org.sbml.jsbml.Parameter;
 import org.sbml.jsbml.Reaction;
 import org.sbml.jsbml.Rule;
 import org.sbml.jsbml.SBMLDocument;
-import org.sbml.jsbml.SBMLReader;
 import org.sbml.jsbml.SBase;
 import org.sbml.jsbml.Species;
 import org.sbml.jsbml.UnitDefinition;
@@ -53,6 +54,7 @@ import org.sbml.jsbml.ext.comp.ModelDefinition;
 import org.sbml.jsbml.ext.comp.Port;
 import org.sbml.jsbml.ext.comp.ReplacedElement;
 import org.sbml.jsbml.ext.comp.Submodel;
+import org.sbml.jsbml.util.ReferenceIndex;
 
 /**
  * The {@link CompFlatteningConverter} object translates a hierarchical model defined with the SBML Level 3
@@ -75,6 +77,19 @@ public class CompFlatteningConverter {
 
     private Model flattenedModel;
 
+    private ExternalModelResolver externalModelResolver;
+
+    /**
+     * The location of the document given to {@link #flatten(SBMLDocument)}.
+     */
+    private URI baseURI;
+
+    /**
+     * The location of the document being flattened, against which the sources of its
+     * {@link ExternalModelDefinition}s are resolved.
+     */
+    private URI documentURI;
+
     public CompFlatteningConverter() {
         this.listOfSubmodelsToFlatten = new ArrayList<>();
 
@@ -86,6 +101,52 @@ public class CompFlatteningConverter {
 
         this.flattenedModel = new Model();
 
+        this.externalModelResolver = new ExternalModelResolver();
+    }
+
+
+    /**
+     * Returns the resolver used to read the documents referenced by the {@link ExternalModelDefinition}s. Unless
+     * another one has been set, each converter has its own resolver, whose documents are released with it.
+     *
+     * @return the resolver of the external model definitions
+     */
+    public ExternalModelResolver getExternalModelResolver() {
+        return this.externalModelResolver;
+    }
+
+
+    /**
+     * Sets the resolver used to read the documents referenced by the {@link ExternalModelDefinition}s, for
+     * instance to read them from another location or to share its cache between several converters.
+     *
+     * @param externalModelResolver
+     */
+    public void setExternalModelResolver(ExternalModelResolver externalModelResolver) {
+        this.externalModelResolver = externalModelResolver;
+    }
+
+
+    /**
+     * Returns the location of the documents given to {@link #flatten(SBMLDocument)}.
+     *
+     * @return the location against which the relative sources of the {@link ExternalModelDefinition}s are
+     * resolved, or {@code null} if they are resolved against the working directory.
+     */
+    public URI getBaseURI() {
+        return this.baseURI;
+    }
+
+
+    /**
+     * Sets the location of the documents given to {@link #flatten(SBMLDocument)}, typically the file they
+     * have been read from. The relative sources of their {@link ExternalModelDefinition}s are resolved against
+     * this location, and those of the referenced documents against the location of each referenced document.
+     *
+     * @param baseURI the location, or {@code null} to use the working directory
+     */
+    public void setBaseURI(URI baseURI) {
+        this.baseURI = baseURI;
     }
 
 
@@ -98,6 +159,34 @@ public class CompFlatteningConverter {
      * @return SBML Document with flattened model
      */
     public SBMLDocument flatten(SBMLDocument document) {
+        return flatten(document, this.baseURI);
+    }
+
+
+    /**
+     * Flattens the given document, whose {@link ExternalModelDefinition}s are resolved against the given
+     * location.
+     *
+     * @param document SBML Document to flatten
+     * @param documentURI the location of the document
+     * @return SBML Document with flattened model
+     */
+    private SBMLDocument flatten(SBMLDocument document, URI documentURI) {
+        URI previousURI = this.documentURI;
+        this.documentURI = documentURI;
+        try {
+            return flattenDocument(document);
+        } finally {
+            this.documentURI = previousURI;
+        }
+    }
+
+
+    /**
+     * @param document SBML Document to flatten
+     * @return SBML Document with flattened model
+     */
+    private SBMLDocument flattenDocument(SBMLDocument document) {
 
         if (document.isPackageEnabled(CompConstants.shortLabel)) {
 
@@ -259,8 +348,11 @@ public class CompFlatteningConverter {
             if (modelDefinition == null) {
                 ExternalModelDefinition externalModelDefinition = this.externalModelDefinitionListOf.get(submodel.getModelRef());
                 try {
-                    SBMLDocument externalDocument = SBMLReader.read(new File(externalModelDefinition.getSource()));
-                    Model flattendExternalModel = flatten(externalDocument).getModel(); //external model can also contain submodels etc.
+                    // the cached document is shared, flattening modifies it
+                    URI externalURI = this.externalModelResolver.resolve(this.documentURI, externalModelDefinition);
+                    SBMLDocument externalDocument = this.externalModelResolver.getDocument(externalURI).clone();
+                    //external model can also contain submodels etc., resolved relative to the external document
+                    Model flattendExternalModel = flatten(externalDocument, externalURI).getModel();
                     this.flattenedModel = mergeModels(this.flattenedModel, flattendExternalModel);
                 } catch (XMLStreamException | IOException e) {
                     e.printStackTrace();
@@ -312,13 +404,17 @@ public class CompFlatteningConverter {
      */
     private Model mergeModels(Model previousModel, Model currentModel) {
 
-        Model mergedModel = new Model();
+        // The model built by the previous merges is extended in place, so that its elements
+        // are not moved again for each submodel.
+        boolean extend = (previousModel != null) && (previousModel == this.flattenedModel)
+                && (previousModel.getParent() == null) && (previousModel != currentModel);
+        Model mergedModel = extend ? previousModel : new Model();
 
         // Merging of SBML models should be done in the order
         // Compartments -> Species -> Function Definitions -> Rules -> Events -> Units -> Reactions -> Parameters
         // If done in this order, potential conflicts are resolved incrementally along the way.
 
-        if (previousModel != null) {
+        if (previousModel != null && !extend) {
 
             // match versions and level
             mergedModel.setLevel(previousModel.getLevel());
@@ -356,124 +452,36 @@ public class CompFlatteningConverter {
     }
 
 
-    private void mergeListsOfModels(ListOf listOfObjects, Model sourceModel, Model targetModel) {
-
-        // TODO: generify with listOf SBase ?
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfReactions) {
-
-            ListOf<Reaction> reactionListOf = sourceModel.getListOfReactions().clone();
-            sourceModel.getListOfReactions().removeFromParent();
-
-            for (Reaction reaction : reactionListOf) {
-                targetModel.addReaction(reaction.clone());
-            }
-        }
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfCompartments) {
-
-            ListOf<Compartment> compartmentListOf = sourceModel.getListOfCompartments().clone();
-            sourceModel.getListOfCompartments().removeFromParent();
-
-            for (Compartment compartment : compartmentListOf) {
-                targetModel.addCompartment(compartment.clone());
-            }
-        }
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfConstraints) {
-
-            ListOf<Constraint> constraintListOf = sourceModel.getListOfConstraints().clone();
-            sourceModel.getListOfConstraints().removeFromParent();
-
-            for (Constraint constraint : constraintListOf) {
-                targetModel.addConstraint(constraint.clone());
-            }
-        }
-
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfSpecies) {
-
-            ListOf<Species> speciesListOf = sourceModel.getListOfSpecies().clone();
-            sourceModel.getListOfSpecies().removeFromParent();
-
-            for (Species species : speciesListOf) {
-                targetModel.addSpecies(species.clone());
-            }
-        }
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfEvents) {
-
-            ListOf<Event> eventListOf = sourceModel.getListOfEvents().clone();
-            sourceModel.getListOfEvents().removeFromParent();
-
-            for (Event event : eventListOf) {
-                targetModel.addEvent(event.clone());
-            }
-        }
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfFunctionDefinitions) {
-
-            ListOf<FunctionDefinition> functionalDefinitionsListOf = sourceModel.getListOfFunctionDefinitions().clone();
-            sourceModel.getListOfFunctionDefinitions().removeFromParent();
-
-            for (FunctionDefinition functionalDefinition : functionalDefinitionsListOf) {
-                targetModel.addFunctionDefinition(functionalDefinition.clone());
-            }
-        }
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfInitialAssignments) {
-
-            ListOf<InitialAssignment> initialAssignmentListOf = sourceModel.getListOfInitialAssignments().clone();
-            sourceModel.getListOfInitialAssignments().removeFromParent();
-
-            for (InitialAssignment initialAssignment : initialAssignmentListOf) {
-                targetModel.addInitialAssignment(initialAssignment.clone());
-            }
-        }
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfParameters) {
-
-            ListOf<Parameter> parameterListOf = sourceModel.getListOfParameters().clone();
-            sourceModel.getListOfParameters().removeFromParent();
-
-            for (Parameter parameter : parameterListOf) {
-
-                if(parameter.isSetPlugin(CompConstants.shortLabel)){
-                    replaceElementsInModelDefinition(null, (CompSBasePlugin) parameter.getExtension(CompConstants.shortLabel));
-                    parameter.unsetPlugin(CompConstants.shortLabel);
-                }
-                targetModel.addParameter(parameter.clone());
-            }
-        }
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfRules) {
-
-            ListOf<Rule> ruleListOf = sourceModel.getListOfRules().clone();
-            sourceModel.getListOfRules().removeFromParent();
+    /**
+     * Moves the elements of the given list of the source model to the target model. The elements are
+     * detached from the source model instead of being cloned, as the source model is discarded once merged.
+     *
+     * @param listOfObjects a list of the source model
+     * @param sourceModel
+     * @param targetModel
+     */
+    private void mergeListsOfModels(ListOf<? extends SBase> listOfObjects, Model sourceModel, Model targetModel) {
 
-            for (Rule rule : ruleListOf) {
-                targetModel.addRule(rule.clone());
-            }
+        if (listOfObjects.isEmpty()) {
+            listOfObjects.removeFromParent();
+            return;
         }
 
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfUnitDefinitions) {
+        List<SBase> elements = new ArrayList<SBase>(listOfObjects);
+        listOfObjects.removeFromParent();
+        // detaches the elements from the list, so that they can be added to the target model
+        listOfObjects.clear();
 
-            ListOf<UnitDefinition> unitDefinitionListOf = sourceModel.getListOfUnitDefinitions().clone();
-            sourceModel.getListOfUnitDefinitions().removeFromParent();
+        for (SBase sBase : elements) {
 
-            for (UnitDefinition unit : unitDefinitionListOf) {
-                targetModel.addUnitDefinition(unit.clone());
+            if (sBase instanceof Parameter && sBase.isSetPlugin(CompConstants.shortLabel)) {
+                replaceElementsInModelDefinition(null, (CompSBasePlugin) sBase.getExtension(CompConstants.shortLabel));
+                sBase.unsetPlugin(CompConstants.shortLabel);
             }
-        }
-
-        if (listOfObjects.getSBaseListType() == ListOf.Type.listOfLocalParameters) {
-
-            sourceModel.getLocalParameterCount();
 
+            addSBaseToList(targetModel, listOfObjects.getSBaseListType(), sBase);
         }
 
-
-
         //TODO:
         // no longer supported? there are no get methods for this
 //        ListOf.Type.listOfCompartmentTypes
@@ -487,7 +495,52 @@ public class CompFlatteningConverter {
 //        ListOf.Type.listOfProducts
 //        ListOf.Type.listOfReactants
 
+    }
 
+    /**
+     * Adds an element to the list of the given type of the model.
+     *
+     * @param model
+     * @param type the type of the list the element comes from
+     * @param sBase an element without parent
+     */
+    private void addSBaseToList(Model model, ListOf.Type type, SBase sBase) {
+
+        switch (type) {
+        case listOfCompartments:
+            model.addCompartment((Compartment) sBase);
+            break;
+        case listOfConstraints:
+            model.addConstraint((Constraint) sBase);
+            break;
+        case listOfEvents:
+            model.addEvent((Event) sBase);
+            break;
+        case listOfFunctionDefinitions:
+            model.addFunctionDefinition((FunctionDefinition) sBase);
+            break;
+        case listOfInitialAssignments:
+            model.addInitialAssignment((InitialAssignment) sBase);
+            break;
+        case listOfParameters:
+            model.addParameter((Parameter) sBase);
+            break;
+        case listOfReactions:
+            model.addReaction((Reaction) sBase);
+            break;
+        case listOfRules:
+            model.addRule((Rule) sBase);
+            break;
+        case listOfSpecies:
+            model.addSpecies((Species) sBase);
+            break;
+        case listOfUnitDefinitions:
+            model.addUnitDefinition((UnitDefinition) sBase);
+            break;
+        default:
+            LOGGER.warning("Cannot merge the elements of " + type + ".");
+            break;
+        }
     }
 
     /**
@@ -531,7 +584,8 @@ public class CompFlatteningConverter {
         //subModel.setId(subModelID);
         //subModel.setMetaId(subModelMetaID);
 
-        if (subModel.getModelRef() != null) {
+        // the external model definitions have already been merged by initSubModels
+        if (subModel.getModelRef() != null && this.modelDefinitionListOf.get(subModel.getModelRef()) != null) {
 
             // initiate a clone of the referenced model
             Model modelOfSubmodel = this.modelDefinitionListOf.get(subModel.getModelRef()).clone();
@@ -593,18 +647,28 @@ public class CompFlatteningConverter {
         return model;
     }
 
-    private void flattenSBaseList(Model modelOfSubmodel, ListOf listOfSBase){
+    /**
+     * Prefixes the identifiers and meta identifiers of the elements of the given list with the identifier of the
+     * model, and records the new identifiers.
+     *
+     * @param modelOfSubmodel
+     * @param listOfSBase
+     * @param newIds the new identifier of each renamed element
+     */
+    private void flattenSBaseList(Model modelOfSubmodel, ListOf<? extends SBase> listOfSBase, Map<String, String> newIds){
 
-        ListOf<SBase> list = (ListOf<SBase>) listOfSBase;
+        String prefix = modelOfSubmodel.getId();
 
-        for(SBase sBase : list){
+        for(SBase sBase : listOfSBase){
 
-            if (!sBase.getId().equals("")) {
-                sBase.setId(modelOfSubmodel.getId() + sBase.getId());
+            if (!sBase.getId().equals("") && !prefix.isEmpty()) {
+                String newId = prefix + sBase.getId();
+                newIds.put(sBase.getId(), newId);
+                sBase.setId(newId);
             }
 
             if (!sBase.getMetaId().equals("")) {
-                sBase.setMetaId(modelOfSubmodel.getId() + sBase.getMetaId());
+                sBase.setMetaId(prefix + sBase.getMetaId());
             }
 
             if(sBase.isPackageEnabled(CompConstants.shortLabel)){
@@ -619,18 +683,32 @@ public class CompFlatteningConverter {
 
     }
 
+    /**
+     * Renames the elements of the given model, see {@link #flattenSBaseList(Model, ListOf, Map)}, and makes the
+     * references within the model, including the references to its unit definitions, follow the new identifiers.
+     *
+     * @param modelOfSubmodel
+     * @return the given model
+     */
     private Model flattenModel(Model modelOfSubmodel) {
 
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfReactions());
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfCompartments());
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfConstraints());
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfEvents());
+        Map<String, String> newIds = new HashMap<String, String>();
+
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfReactions(), newIds);
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfCompartments(), newIds);
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfConstraints(), newIds);
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfEvents(), newIds);
+
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfFunctionDefinitions(), newIds);
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfParameters(), newIds);
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfRules(), newIds);
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfSpecies(), newIds);
+
+        // unit identifiers have their own namespace
+        Map<String, String> newUnitIds = new HashMap<String, String>();
+        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfUnitDefinitions(), newUnitIds);
 
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfFunctionDefinitions());
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfParameters());
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfRules());
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfSpecies());
-        flattenSBaseList(modelOfSubmodel, modelOfSubmodel.getListOfUnitDefinitions());
+        ReferenceIndex.replaceReferences(modelOfSubmodel, newIds, newUnitIds);
 
         return modelOfSubmodel;
     }
@@ -0,0 +1,440 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.comp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLReader;
+import org.sbml.jsbml.ext.comp.CompConstants;
+import org.sbml.jsbml.ext.comp.CompSBMLDocumentPlugin;
+import org.sbml.jsbml.ext.comp.ExternalModelDefinition;
+
+/**
+ * Reads the documents referenced by {@link ExternalModelDefinition}s and
+ * keeps the most recently used ones in memory, so that a library referenced
+ * many times by a hierarchy of models is only parsed once.
+ * 
+ * <p>The documents are located and opened by a {@link SourceProvider}. A
+ * cached document is read again when the time of its last modification, as
+ * given by the {@link SourceProvider}, changes. At most
+ * {@link #getCapacity()} documents are kept, the least recently used one
+ * being evicted first.</p>
+ * 
+ * <p>A relative source is resolved against the location of the document
+ * containing the {@link ExternalModelDefinition}, which is given to each
+ * call, so that the resolver does not depend on the document being
+ * resolved.</p>
+ * 
+ * <p>The documents and models returned are shared by all the callers and
+ * must not be modified: clone them first if needed. One resolver can be
+ * shared by several threads: a document is read only once even if several
+ * threads request it at the same time, and the documents are read outside
+ * of the lock of the cache, so that other documents can be returned in the
+ * meantime. By default, each {@link CompFlatteningConverter} has its own
+ * resolver, so a resolver has to be shared explicitly, see
+ * {@link CompFlatteningConverter#setExternalModelResolver(ExternalModelResolver)}.</p>
+ * 
+ * @since 1.5
+ * @see CompFlatteningConverter#setExternalModelResolver(ExternalModelResolver)
+ */
+public class ExternalModelResolver {
+
+  /**
+   * The number of documents kept by the resolvers created with
+   * {@link #ExternalModelResolver()}.
+   */
+  public static final int DEFAULT_CAPACITY = 32;
+
+  /**
+   * A document, being read or already read, and the time of its last
+   * modification.
+   */
+  private static class CachedDocument {
+
+    /**
+     * 
+     */
+    private final long lastModified;
+
+    /**
+     * Reads the document, in the thread that first requested it.
+     */
+    private final FutureTask<SBMLDocument> task;
+
+    /**
+     * @param lastModified
+     * @param task
+     */
+    private CachedDocument(long lastModified, FutureTask<SBMLDocument> task) {
+      this.lastModified = lastModified;
+      this.task = task;
+    }
+
+  }
+
+  /**
+   * 
+   */
+  private final SourceProvider provider;
+
+  /**
+   * 
+   */
+  private final int capacity;
+
+  /**
+   * The documents read, from the least to the most recently used.
+   */
+  private final Map<URI, CachedDocument> documents;
+
+  /**
+   * Creates a resolver reading local files and URLs, see
+   * {@link FileSourceProvider}, that keeps {@link #DEFAULT_CAPACITY}
+   * documents.
+   */
+  public ExternalModelResolver() {
+    this(new FileSourceProvider(), DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a resolver.
+   * 
+   * @param provider
+   *        locates and opens the referenced documents.
+   * @param capacity
+   *        the maximal number of documents kept in memory.
+   * @throws IllegalArgumentException
+   *         if the capacity is negative.
+   */
+  public ExternalModelResolver(SourceProvider provider, final int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The capacity cannot be negative: " + capacity);
+    }
+    this.provider = provider;
+    this.capacity = capacity;
+    documents = new LinkedHashMap<URI, CachedDocument>(16, 0.75f, true) {
+
+      /**
+       * Generated serial version identifier.
+       */
+      private static final long serialVersionUID = -1547291362541207428L;
+
+      /* (non-Javadoc)
+       * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+       */
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<URI, CachedDocument> eldest) {
+        return size() > capacity;
+      }
+
+    };
+  }
+
+  /**
+   * @return the {@link SourceProvider} of this resolver.
+   */
+  public SourceProvider getSourceProvider() {
+    return provider;
+  }
+
+  /**
+   * @return the maximal number of documents kept in memory.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the location of the document referenced by the given
+   * {@link ExternalModelDefinition}, resolving a relative source against
+   * the working directory, see {@link #resolve(URI, ExternalModelDefinition)}.
+   * 
+   * @param externalModelDefinition
+   * @return the location of the referenced document.
+   * @throws IllegalArgumentException
+   *         if the source of the {@link ExternalModelDefinition} is not set.
+   */
+  public URI resolve(ExternalModelDefinition externalModelDefinition) {
+    return resolve(null, externalModelDefinition);
+  }
+
+  /**
+   * Returns the location of the document referenced by the given
+   * {@link ExternalModelDefinition}.
+   * 
+   * @param baseURI
+   *        the location of the document containing the
+   *        {@link ExternalModelDefinition}, against which a relative source
+   *        is resolved, or {@code null} to use the working directory.
+   * @param externalModelDefinition
+   * @return the location of the referenced document.
+   * @throws IllegalArgumentException
+   *         if the source of the {@link ExternalModelDefinition} is not set.
+   */
+  public URI resolve(URI baseURI, ExternalModelDefinition externalModelDefinition) {
+    if (!externalModelDefinition.isSetSource()) {
+      throw new IllegalArgumentException("The source of the external model definition '"
+          + externalModelDefinition.getId() + "' is not set.");
+    }
+    return provider.resolve(baseURI, externalModelDefinition.getSource());
+  }
+
+  /**
+   * Returns the document at the given location, reading it only if it is
+   * not in the cache or if it has been modified since it was read. If
+   * another thread is already reading the document, waits for it instead of
+   * reading it a second time. A document that cannot be read is not kept in
+   * the cache.
+   * 
+   * @param uri
+   *        an absolute location, see {@link SourceProvider#resolve(URI, String)}.
+   * @return the document, which must not be modified.
+   * @throws IOException
+   *         if the document cannot be opened.
+   * @throws XMLStreamException
+   *         if the document cannot be parsed.
+   */
+  public SBMLDocument getDocument(final URI uri) throws IOException, XMLStreamException {
+    long lastModified = provider.lastModified(uri);
+    CachedDocument cached;
+    boolean reading = false;
+    synchronized (this) {
+      cached = documents.get(uri);
+      if ((cached == null) || (cached.lastModified != lastModified)) {
+        cached = new CachedDocument(lastModified, new FutureTask<SBMLDocument>(new Callable<SBMLDocument>() {
+
+          /* (non-Javadoc)
+           * @see java.util.concurrent.Callable#call()
+           */
+          @Override
+          public SBMLDocument call() throws IOException, XMLStreamException {
+            return read(uri);
+          }
+
+        }));
+        documents.put(uri, cached);
+        reading = true;
+      }
+    }
+    if (reading) {
+      cached.task.run();
+    }
+    try {
+      return cached.task.get();
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for " + uri);
+    } catch (ExecutionException exc) {
+      synchronized (this) {
+        if (documents.get(uri) == cached) {
+          documents.remove(uri);
+        }
+      }
+      Throwable cause = exc.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof XMLStreamException) {
+        throw (XMLStreamException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * @param uri
+   * @return the document at the given location.
+   * @throws IOException
+   * @throws XMLStreamException
+   */
+  private SBMLDocument read(URI uri) throws IOException, XMLStreamException {
+    InputStream stream = provider.openStream(uri);
+    try {
+      return new SBMLReader().readSBMLFromStream(stream);
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Returns the document referenced by the given
+   * {@link ExternalModelDefinition}, resolving a relative source against the
+   * working directory, see {@link #getDocument(URI, ExternalModelDefinition)}.
+   * 
+   * @param externalModelDefinition
+   * @return the referenced document, which must not be modified.
+   * @throws IOException
+   *         if the document cannot be opened.
+   * @throws XMLStreamException
+   *         if the document cannot be parsed.
+   */
+  public SBMLDocument getDocument(ExternalModelDefinition externalModelDefinition)
+      throws IOException, XMLStreamException {
+    return getDocument(null, externalModelDefinition);
+  }
+
+  /**
+   * Returns the document referenced by the given
+   * {@link ExternalModelDefinition}, see {@link #getDocument(URI)}.
+   * 
+   * @param baseURI
+   *        the location of the document containing the
+   *        {@link ExternalModelDefinition}, or {@code null} to use the working
+   *        directory, see {@link #resolve(URI, ExternalModelDefinition)}.
+   * @param externalModelDefinition
+   * @return the referenced document, which must not be modified.
+   * @throws IOException
+   *         if the document cannot be opened.
+   * @throws XMLStreamException
+   *         if the document cannot be parsed.
+   */
+  public SBMLDocument getDocument(URI baseURI, ExternalModelDefinition externalModelDefinition)
+      throws IOException, XMLStreamException {
+    return getDocument(resolve(baseURI, externalModelDefinition));
+  }
+
+  /**
+   * Returns the {@link Model} referenced by the given
+   * {@link ExternalModelDefinition}: the model of the referenced document
+   * whose identifier is the modelRef attribute or, if it is not set, the
+   * main model of the document. The model can be a
+   * {@link org.sbml.jsbml.ext.comp.ModelDefinition} or be itself defined by
+   * an {@link ExternalModelDefinition} of the referenced document, which is
+   * then resolved relative to that document. A relative source of the given
+   * {@link ExternalModelDefinition} is resolved against the working
+   * directory, see {@link #getModel(URI, ExternalModelDefinition)}.
+   * 
+   * @param externalModelDefinition
+   * @return the referenced model, which must not be modified, or
+   *         {@code null} if the referenced document does not contain it.
+   * @throws IOException
+   *         if a document cannot be opened.
+   * @throws XMLStreamException
+   *         if a document cannot be parsed.
+   * @throws IllegalArgumentException
+   *         if the {@link ExternalModelDefinition}s refer to each other.
+   */
+  public Model getModel(ExternalModelDefinition externalModelDefinition)
+      throws IOException, XMLStreamException {
+    return getModel(null, externalModelDefinition);
+  }
+
+  /**
+   * Returns the {@link Model} referenced by the given
+   * {@link ExternalModelDefinition}, see
+   * {@link #getModel(ExternalModelDefinition)}.
+   * 
+   * @param baseURI
+   *        the location of the document containing the
+   *        {@link ExternalModelDefinition}, or {@code null} to use the working
+   *        directory, see {@link #resolve(URI, ExternalModelDefinition)}.
+   * @param externalModelDefinition
+   * @return the referenced model, which must not be modified, or
+   *         {@code null} if the referenced document does not contain it.
+   * @throws IOException
+   *         if a document cannot be opened.
+   * @throws XMLStreamException
+   *         if a document cannot be parsed.
+   * @throws IllegalArgumentException
+   *         if the {@link ExternalModelDefinition}s refer to each other.
+   */
+  public Model getModel(URI baseURI, ExternalModelDefinition externalModelDefinition)
+      throws IOException, XMLStreamException {
+    return getModel(resolve(baseURI, externalModelDefinition), getModelRef(externalModelDefinition),
+      new HashSet<String>());
+  }
+
+  /**
+   * @param uri
+   * @param modelRef
+   * @param visited
+   *        the references already followed
+   * @return the referenced model or {@code null}.
+   * @throws IOException
+   * @throws XMLStreamException
+   */
+  private Model getModel(URI uri, String modelRef, Set<String> visited)
+      throws IOException, XMLStreamException {
+    if (!visited.add(uri + "#" + modelRef)) {
+      throw new IllegalArgumentException("Circular reference to the model '"
+          + modelRef + "' of " + uri + ".");
+    }
+    SBMLDocument doc = getDocument(uri);
+    Model model = doc.isSetModel() ? doc.getModel() : null;
+    if ((modelRef == null) || (model != null) && modelRef.equals(model.getId())) {
+      return model;
+    }
+    CompSBMLDocumentPlugin compPlugin = (CompSBMLDocumentPlugin) doc.getExtension(CompConstants.shortLabel);
+    if (compPlugin == null) {
+      return null;
+    }
+    if (compPlugin.isSetListOfModelDefinitions() && (compPlugin.getModelDefinition(modelRef) != null)) {
+      return compPlugin.getModelDefinition(modelRef);
+    }
+    if (compPlugin.isSetListOfExternalModelDefinitions()) {
+      ExternalModelDefinition external = compPlugin.getExternalModelDefinition(modelRef);
+      if ((external != null) && external.isSetSource()) {
+        return getModel(provider.resolve(uri, external.getSource()), getModelRef(external), visited);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param externalModelDefinition
+   * @return the modelRef of the given {@link ExternalModelDefinition} or
+   *         {@code null} if it is not set.
+   */
+  private static String getModelRef(ExternalModelDefinition externalModelDefinition) {
+    return externalModelDefinition.isSetModelRef() ? externalModelDefinition.getModelRef() : null;
+  }
+
+  /**
+   * @return the number of documents in the cache.
+   */
+  public synchronized int size() {
+    return documents.size();
+  }
+
+  /**
+   * Removes all the documents from the cache.
+   */
+  public synchronized void clear() {
+    documents.clear();
+  }
+
+}
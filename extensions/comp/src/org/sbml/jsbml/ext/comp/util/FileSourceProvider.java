@@ -0,0 +1,78 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.comp.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * The default {@link SourceProvider}, which reads local files and opens
+ * all the other sources as {@link java.net.URL}s. Sources that are not
+ * valid URIs, such as Windows paths, are taken as file names.
+ * 
+ * @since 1.5
+ */
+public class FileSourceProvider implements SourceProvider {
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.ext.comp.util.SourceProvider#resolve(java.net.URI, java.lang.String)
+   */
+  @Override
+  public URI resolve(URI base, String source) {
+    URI uri;
+    try {
+      uri = new URI(source);
+    } catch (URISyntaxException exc) {
+      uri = null;
+    }
+    // a scheme of one letter is the drive of a Windows path
+    if ((uri != null) && uri.isAbsolute() && (uri.getScheme().length() > 1)) {
+      return uri.normalize();
+    }
+    if ((uri != null) && (base != null) && !new File(source).isAbsolute()) {
+      return base.resolve(uri).normalize();
+    }
+    return new File(source).getAbsoluteFile().toURI().normalize();
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.ext.comp.util.SourceProvider#lastModified(java.net.URI)
+   */
+  @Override
+  public long lastModified(URI uri) {
+    return "file".equals(uri.getScheme()) ? new File(uri).lastModified() : 0L;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.jsbml.ext.comp.util.SourceProvider#openStream(java.net.URI)
+   */
+  @Override
+  public InputStream openStream(URI uri) throws IOException {
+    if ("file".equals(uri.getScheme())) {
+      return new FileInputStream(new File(uri));
+    }
+    return uri.toURL().openStream();
+  }
+
+}
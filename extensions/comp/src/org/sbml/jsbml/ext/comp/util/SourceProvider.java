@@ -0,0 +1,75 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.comp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import org.sbml.jsbml.ext.comp.ExternalModelDefinition;
+
+/**
+ * Locates and opens the documents referenced by the source attribute of the
+ * {@link ExternalModelDefinition}s for an {@link ExternalModelResolver}.
+ * Implementations can, for instance, map the sources to a local copy of a
+ * model repository or to documents kept in memory.
+ * 
+ * @since 1.5
+ * @see FileSourceProvider
+ */
+public interface SourceProvider {
+
+  /**
+   * Resolves the given source against the location of the referencing
+   * document.
+   * 
+   * @param base
+   *        the location of the document containing the
+   *        {@link ExternalModelDefinition}, or {@code null} if unknown.
+   * @param source
+   *        the value of {@link ExternalModelDefinition#getSource()}.
+   * @return the absolute location of the referenced document, which is used
+   *         as key by the cache of the {@link ExternalModelResolver}.
+   */
+  public URI resolve(URI base, String source);
+
+  /**
+   * Returns the time of the last modification of the given document, so
+   * that the {@link ExternalModelResolver} reads it again when it changes.
+   * 
+   * @param uri
+   *        a location returned by {@link #resolve(URI, String)}.
+   * @return the time of the last modification, or {@code 0} if it is not
+   *         known, in which case the document is read only once.
+   */
+  public long lastModified(URI uri);
+
+  /**
+   * Opens the given document.
+   * 
+   * @param uri
+   *        a location returned by {@link #resolve(URI, String)}.
+   * @return the content of the document.
+   * @throws IOException
+   *         if the document cannot be opened.
+   */
+  public InputStream openStream(URI uri) throws IOException;
+
+}
@@ -0,0 +1,138 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+
+package org.sbml.jsbml.ext.comp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.AssignmentRule;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.Unit;
+import org.sbml.jsbml.ext.comp.CompConstants;
+import org.sbml.jsbml.ext.comp.CompModelPlugin;
+import org.sbml.jsbml.ext.comp.CompSBMLDocumentPlugin;
+import org.sbml.jsbml.ext.comp.util.CompFlatteningConverter;
+
+/**
+ * Tests the {@link CompFlatteningConverter} on documents built in memory.
+ *
+ * @since 1.5
+ */
+public class CompFlatteningConverterTest {
+
+  /**
+   * Checks that the references to the unit definitions of a submodel follow
+   * their new identifiers.
+   */
+  @Test
+  public void testSubmodelUnitDefinition() {
+
+    SBMLDocument document = new SBMLDocument(3, 1);
+    CompSBMLDocumentPlugin documentPlugin = (CompSBMLDocumentPlugin) document.getPlugin(CompConstants.shortLabel);
+    Model inner = documentPlugin.createModelDefinition("inner");
+    inner.createUnitDefinition("mmol").createUnit(Unit.Kind.MOLE).setScale(-3);
+    inner.createCompartment("c").setConstant(true);
+    inner.createSpecies("s", inner.getCompartment("c")).setSubstanceUnits("mmol");
+    inner.createParameter("k").setUnits("mmol");
+    ASTNode number = new ASTNode(2d);
+    number.setUnits("mmol");
+    AssignmentRule rule = inner.createAssignmentRule();
+    rule.setVariable("k");
+    rule.setMath(ASTNode.times(number, new ASTNode("s")));
+
+    Model outer = document.createModel("outer");
+    CompModelPlugin modelPlugin = (CompModelPlugin) outer.getPlugin(CompConstants.shortLabel);
+    modelPlugin.createSubmodel("sub").setModelRef("inner");
+
+    Model flatModel = new CompFlatteningConverter().flatten(document).getModel();
+
+    assertEquals(1, flatModel.getUnitDefinitionCount());
+    String unitId = flatModel.getUnitDefinition(0).getId();
+    assertFalse("mmol".equals(unitId));
+    Species species = flatModel.getSpecies(0);
+    assertEquals(unitId, species.getSubstanceUnits());
+    assertEquals(unitId, flatModel.getParameter(0).getUnits());
+    ASTNode math = flatModel.getRule(0).getMath();
+    assertEquals(unitId, math.getChild(0).getUnits());
+    assertEquals(species.getId(), math.getChild(1).getName());
+  }
+
+  /**
+   * Checks that the elements of the main model and of several submodels are
+   * all moved to the flattened model, where they can be found by their
+   * identifiers.
+   */
+  @Test
+  public void testSeveralSubmodels() {
+
+    String[] definitionIds = {"A", "B", "C"};
+    SBMLDocument document = new SBMLDocument(3, 1);
+    CompSBMLDocumentPlugin documentPlugin = (CompSBMLDocumentPlugin) document.getPlugin(CompConstants.shortLabel);
+    for (String definitionId : definitionIds) {
+      Model definition = documentPlugin.createModelDefinition(definitionId);
+      Compartment compartment = definition.createCompartment("c");
+      compartment.setConstant(true);
+      definition.createSpecies("s", compartment);
+      definition.createParameter("k").setValue(definitionId.charAt(0));
+    }
+
+    Model outer = document.createModel();
+    outer.createParameter("p").setValue(1d);
+    CompModelPlugin modelPlugin = (CompModelPlugin) outer.getPlugin(CompConstants.shortLabel);
+    for (String definitionId : definitionIds) {
+      modelPlugin.createSubmodel("sub" + definitionId).setModelRef(definitionId);
+    }
+
+    Model flatModel = new CompFlatteningConverter().flatten(document).getModel();
+
+    assertSame(flatModel, document.getModel());
+    assertEquals(definitionIds.length, flatModel.getCompartmentCount());
+    assertEquals(definitionIds.length, flatModel.getSpeciesCount());
+    assertEquals(definitionIds.length + 1, flatModel.getParameterCount());
+    assertNotNull(flatModel.getParameter("p"));
+
+    for (String definitionId : definitionIds) {
+      Compartment compartment = flatModel.getCompartment(definitionId + "c");
+      Species species = flatModel.getSpecies(definitionId + "s");
+      Parameter parameter = flatModel.getParameter(definitionId + "k");
+      assertNotNull(compartment);
+      assertNotNull(species);
+      assertNotNull(parameter);
+
+      assertSame(flatModel, compartment.getModel());
+      assertSame(flatModel, species.getModel());
+      assertSame(flatModel, parameter.getModel());
+      assertSame(flatModel.getListOfSpecies(), species.getParent());
+      assertSame(species, flatModel.getSBaseById(species.getId()));
+      assertEquals(compartment.getId(), species.getCompartment());
+      assertEquals(definitionId.charAt(0), parameter.getValue(), 0d);
+    }
+  }
+
+}
@@ -31,6 +31,7 @@ import org.junit.runners.Suite.SuiteClasses;
  * @since 1.1
  */
 @RunWith(value=Suite.class)
-@SuiteClasses(value={TestModelDefinitionCloning.class})
+@SuiteClasses(value={TestModelDefinitionCloning.class, ExternalModelResolverTest.class,
+  CompFlatteningConverterTest.class})
 public class CompJUnitTests {
 }
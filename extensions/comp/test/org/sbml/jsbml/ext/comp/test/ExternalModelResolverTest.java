@@ -0,0 +1,390 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.comp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLWriter;
+import org.sbml.jsbml.ext.comp.CompConstants;
+import org.sbml.jsbml.ext.comp.CompModelPlugin;
+import org.sbml.jsbml.ext.comp.CompSBMLDocumentPlugin;
+import org.sbml.jsbml.ext.comp.ExternalModelDefinition;
+import org.sbml.jsbml.ext.comp.util.CompFlatteningConverter;
+import org.sbml.jsbml.ext.comp.util.ExternalModelResolver;
+import org.sbml.jsbml.ext.comp.util.FileSourceProvider;
+import org.sbml.jsbml.ext.comp.util.SourceProvider;
+
+/**
+ * Tests the cache and the resolution of the {@link ExternalModelResolver}.
+ * 
+ * @since 1.5
+ */
+public class ExternalModelResolverTest {
+
+  /**
+   * A {@link SourceProvider} serving documents kept in memory, which counts
+   * how often each one is opened.
+   */
+  private static class MemorySourceProvider implements SourceProvider {
+
+    /**
+     * 
+     */
+    private final Map<URI, String> documents = new HashMap<URI, String>();
+
+    /**
+     * 
+     */
+    private final Map<URI, Long> versions = new HashMap<URI, Long>();
+
+    /**
+     * 
+     */
+    private int opened;
+
+    /**
+     * @param name
+     * @param doc
+     * @throws Exception
+     */
+    private void put(String name, SBMLDocument doc) throws Exception {
+      URI uri = URI.create("mem:/" + name);
+      documents.put(uri, new SBMLWriter().writeSBMLToString(doc));
+      Long version = versions.get(uri);
+      versions.put(uri, version == null ? 1L : version + 1);
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.ext.comp.util.SourceProvider#resolve(java.net.URI, java.lang.String)
+     */
+    @Override
+    public URI resolve(URI base, String source) {
+      return (base == null ? URI.create("mem:/") : base).resolve(source);
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.ext.comp.util.SourceProvider#lastModified(java.net.URI)
+     */
+    @Override
+    public long lastModified(URI uri) {
+      Long version = versions.get(uri);
+      return version == null ? 0L : version;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.ext.comp.util.SourceProvider#openStream(java.net.URI)
+     */
+    @Override
+    public InputStream openStream(URI uri) throws IOException {
+      String doc = documents.get(uri);
+      if (doc == null) {
+        throw new IOException("No document " + uri);
+      }
+      opened++;
+      return new ByteArrayInputStream(doc.getBytes("UTF-8"));
+    }
+
+  }
+
+  /**
+   * 
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * 
+   */
+  private MemorySourceProvider provider;
+
+  /**
+   * @param id
+   * @param parameters
+   * @return a document whose main model has the given id and parameters.
+   */
+  private static SBMLDocument createLibrary(String id, String... parameters) {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    Model model = doc.createModel(id);
+    for (String parameter : parameters) {
+      model.createParameter(parameter).setConstant(true);
+    }
+    return doc;
+  }
+
+  /**
+   * @param doc
+   * @param id
+   * @param source
+   * @param modelRef
+   * @return a new {@link ExternalModelDefinition} of the given document.
+   */
+  private static ExternalModelDefinition createExternal(SBMLDocument doc, String id, String source, String modelRef) {
+    CompSBMLDocumentPlugin compPlugin = (CompSBMLDocumentPlugin) doc.getPlugin(CompConstants.shortLabel);
+    ExternalModelDefinition external = compPlugin.createExternalModelDefinition(id);
+    external.setSource(source);
+    if (modelRef != null) {
+      external.setModelRef(modelRef);
+    }
+    return external;
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    provider = new MemorySourceProvider();
+    SBMLDocument lib = createLibrary("main", "p1");
+    CompSBMLDocumentPlugin compPlugin = (CompSBMLDocumentPlugin) lib.getPlugin(CompConstants.shortLabel);
+    compPlugin.createModelDefinition("def").createParameter("p2");
+    createExternal(lib, "ext", "sub/other.xml", "other");
+    provider.put("lib.xml", lib);
+    provider.put("sub/other.xml", createLibrary("other", "p3"));
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testCache() throws Exception {
+    ExternalModelResolver resolver = new ExternalModelResolver(provider, 1);
+    URI lib = URI.create("mem:/lib.xml");
+    SBMLDocument doc = resolver.getDocument(lib);
+    assertSame(doc, resolver.getDocument(lib));
+    assertEquals(1, provider.opened);
+
+    // a modified document is read again
+    provider.put("lib.xml", createLibrary("main", "p1", "p4"));
+    SBMLDocument modified = resolver.getDocument(lib);
+    assertNotSame(doc, modified);
+    assertEquals(2, modified.getModel().getParameterCount());
+    assertEquals(2, provider.opened);
+
+    // the least recently used document is evicted
+    resolver.getDocument(URI.create("mem:/sub/other.xml"));
+    assertEquals(1, resolver.size());
+    resolver.getDocument(lib);
+    assertEquals(4, provider.opened);
+
+    resolver.clear();
+    assertEquals(0, resolver.size());
+  }
+
+  /**
+   * Checks that a document that cannot be read is not kept in the cache.
+   * 
+   * @throws Exception
+   */
+  @Test
+  public void testFailureNotCached() throws Exception {
+    ExternalModelResolver resolver = new ExternalModelResolver(provider, 4);
+    URI missing = URI.create("mem:/missing.xml");
+    try {
+      resolver.getDocument(missing);
+      fail("The document should not exist.");
+    } catch (IOException exc) {
+      // expected
+    }
+    assertEquals(0, resolver.size());
+    provider.put("missing.xml", createLibrary("found"));
+    assertEquals("found", resolver.getDocument(missing).getModel().getId());
+  }
+
+  /**
+   * Checks that a document requested by several threads is read once, and
+   * that other documents can be returned while it is being read.
+   * 
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentReading() throws Exception {
+    final URI lib = URI.create("mem:/lib.xml");
+    final CountDownLatch opening = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    MemorySourceProvider blocking = new MemorySourceProvider() {
+
+      /* (non-Javadoc)
+       * @see org.sbml.jsbml.ext.comp.test.ExternalModelResolverTest.MemorySourceProvider#openStream(java.net.URI)
+       */
+      @Override
+      public InputStream openStream(URI uri) throws IOException {
+        if (uri.equals(lib)) {
+          opening.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException exc) {
+            throw new InterruptedIOException();
+          }
+        }
+        return super.openStream(uri);
+      }
+
+    };
+    blocking.put("lib.xml", createLibrary("main", "p1"));
+    blocking.put("sub/other.xml", createLibrary("other", "p3"));
+
+    final ExternalModelResolver resolver = new ExternalModelResolver(blocking, 4);
+    Callable<SBMLDocument> reading = new Callable<SBMLDocument>() {
+
+      /* (non-Javadoc)
+       * @see java.util.concurrent.Callable#call()
+       */
+      @Override
+      public SBMLDocument call() throws Exception {
+        return resolver.getDocument(lib);
+      }
+
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<SBMLDocument> first = executor.submit(reading);
+      opening.await();
+      Future<SBMLDocument> second = executor.submit(reading);
+      assertEquals("other", resolver.getDocument(URI.create("mem:/sub/other.xml")).getModel().getId());
+      release.countDown();
+      assertSame(first.get(), second.get());
+      assertEquals(2, blocking.opened);
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testGetModel() throws Exception {
+    ExternalModelResolver resolver = new ExternalModelResolver(provider, 4);
+    SBMLDocument doc = new SBMLDocument(3, 1);
+
+    assertEquals("main", resolver.getModel(createExternal(doc, "e1", "lib.xml", null)).getId());
+    assertEquals("main", resolver.getModel(createExternal(doc, "e2", "lib.xml", "main")).getId());
+    assertEquals("p2", resolver.getModel(createExternal(doc, "e3", "lib.xml", "def")).getParameter(0).getId());
+    // resolved relative to lib.xml
+    assertEquals("other", resolver.getModel(createExternal(doc, "e4", "lib.xml", "ext")).getId());
+    assertNull(resolver.getModel(createExternal(doc, "e5", "lib.xml", "missing")));
+    assertEquals(2, provider.opened);
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testFiles() throws Exception {
+    File dir = folder.newFolder("models");
+    File lib = new File(dir, "lib.xml");
+    new SBMLWriter().write(createLibrary("main", "p1"), lib);
+
+    FileSourceProvider files = new FileSourceProvider();
+    assertEquals(lib.toURI(), files.resolve(dir.toURI(), "lib.xml"));
+    assertEquals(lib.toURI(), files.resolve(null, lib.getAbsolutePath()));
+    assertEquals(lib.toURI(), files.resolve(null, lib.toURI().toString()));
+
+    ExternalModelResolver resolver = new ExternalModelResolver();
+    URI main = new File(dir, "main.xml").toURI();
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    ExternalModelDefinition external = createExternal(doc, "e", "lib.xml", null);
+    SBMLDocument first = resolver.getDocument(main, external);
+    assertSame(first, resolver.getDocument(main, external));
+
+    new SBMLWriter().write(createLibrary("main", "p1", "p2"), lib);
+    lib.setLastModified(lib.lastModified() + 2000);
+    SBMLDocument second = resolver.getDocument(main, external);
+    assertNotSame(first, second);
+    assertEquals(2, second.getModel().getParameterCount());
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testFlattening() throws Exception {
+    ExternalModelResolver resolver = new ExternalModelResolver(provider, 4);
+    for (int i = 0; i < 3; i++) {
+      SBMLDocument doc = createLibrary("top", "p");
+      createExternal(doc, "ext", "sub/other.xml", null);
+      CompModelPlugin compModel = (CompModelPlugin) doc.getModel().getPlugin(CompConstants.shortLabel);
+      compModel.createSubmodel("s").setModelRef("ext");
+
+      CompFlatteningConverter converter = new CompFlatteningConverter();
+      converter.setExternalModelResolver(resolver);
+      converter.flatten(doc);
+    }
+    assertEquals(1, provider.opened);
+    // the cached document is not modified by the flattening
+    assertEquals(1, resolver.getDocument(URI.create("mem:/sub/other.xml")).getModel().getParameterCount());
+  }
+
+  /**
+   * Checks that the sources are resolved against the location of the
+   * converted document, and the sources of a referenced document against its
+   * own location.
+   * 
+   * @throws Exception
+   */
+  @Test
+  public void testFlatteningRelativeSources() throws Exception {
+    SBMLDocument nested = createLibrary("nested", "pa");
+    createExternal(nested, "ext", "leaf.xml", null);
+    CompModelPlugin nestedModel = (CompModelPlugin) nested.getModel().getPlugin(CompConstants.shortLabel);
+    nestedModel.createSubmodel("s").setModelRef("ext");
+    provider.put("dir/sub/nested.xml", nested);
+    provider.put("dir/sub/leaf.xml", createLibrary("leaf", "pb"));
+
+    SBMLDocument doc = createLibrary("top", "p");
+    createExternal(doc, "ext", "sub/nested.xml", null);
+    CompModelPlugin compModel = (CompModelPlugin) doc.getModel().getPlugin(CompConstants.shortLabel);
+    compModel.createSubmodel("s").setModelRef("ext");
+
+    ExternalModelResolver resolver = new ExternalModelResolver(provider, 4);
+    CompFlatteningConverter converter = new CompFlatteningConverter();
+    converter.setExternalModelResolver(resolver);
+    converter.setBaseURI(URI.create("mem:/dir/top.xml"));
+    converter.flatten(doc);
+    assertEquals(2, provider.opened);
+    assertEquals(2, resolver.size());
+  }
+
+}
@@ -60,7 +60,15 @@ public class FluxBound extends AbstractNamedSBase implements UniqueNamedSBase {
     /**
      * lessEqual
      */
-    LESS_EQUAL("lessEqual");
+    LESS_EQUAL("lessEqual"),
+    /**
+     * less
+     */
+    LESS("less"),
+    /**
+     * greater
+     */
+    GREATER("greater");
 
     /**
      * @param value
@@ -0,0 +1,354 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.fbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+
+/**
+ * Evaluates the gene-reaction rules of a model, i.e., the
+ * {@link GeneProductAssociation}s of the {@link FBCReactionPlugin}s, for
+ * sets of knocked-out genes, as needed by gene knockout screens.
+ * 
+ * <p>The {@link Association} trees are compiled once into postfix programs
+ * over gene indices, the genes being numbered in the order of the
+ * {@link GeneProduct}s of the model. A knockout is given as a
+ * {@link BitSet} of gene indices, and only the reactions whose rule refers
+ * to a knocked-out gene are evaluated. A rule is true if the reaction can
+ * still be catalyzed, where a {@link GeneProductRef} is true if its gene is
+ * not knocked out. Reactions without rule are never disabled.</p>
+ * 
+ * <p>Instances do not follow later changes of the model, but can be used by
+ * several threads at the same time.</p>
+ * 
+ * @since 1.5
+ * @see StoichiometricMatrix
+ */
+public class GPREvaluator {
+
+  /**
+   * The identifiers of the gene products, in the order of their indices.
+   */
+  private final String[] geneProductIds;
+
+  /**
+   * 
+   */
+  private final Map<String, Integer> geneIndex;
+
+  /**
+   * The identifiers of the reactions, in the order of the model.
+   */
+  private final String[] reactionIds;
+
+  /**
+   * The compiled rules of all the reactions: a value {@code g >= 0} pushes
+   * {@code true} if gene {@code g} is not knocked out, a value
+   * {@code -(2 * n)} replaces the last {@code n} values by their conjunction
+   * and a value {@code -(2 * n + 1)} by their disjunction.
+   */
+  private final int[] code;
+
+  /**
+   * The position of the rule of each reaction in {@link #code}, followed by
+   * the length of {@link #code}. A reaction without rule has an empty range.
+   */
+  private final int[] ruleStart;
+
+  /**
+   * The reactions whose rule refers to each gene, in increasing order.
+   */
+  private final int[][] geneReactions;
+
+  /**
+   * The maximal number of values on the stack while evaluating a rule.
+   */
+  private final int maxDepth;
+
+  /**
+   * Compiles the gene-reaction rules of the given model.
+   * 
+   * @param model
+   */
+  public GPREvaluator(Model model) {
+    List<String> genes = new ArrayList<String>();
+    geneIndex = new HashMap<String, Integer>();
+    FBCModelPlugin modelPlugin = (FBCModelPlugin) model.getExtension(FBCConstants.shortLabel);
+    if ((modelPlugin != null) && modelPlugin.isSetListOfGeneProducts()) {
+      for (GeneProduct geneProduct : modelPlugin.getListOfGeneProducts()) {
+        if (!geneIndex.containsKey(geneProduct.getId())) {
+          geneIndex.put(geneProduct.getId(), genes.size());
+          genes.add(geneProduct.getId());
+        }
+      }
+    }
+
+    int n = model.getReactionCount();
+    reactionIds = new String[n];
+    ruleStart = new int[n + 1];
+    int[] program = new int[Math.max(16, 4 * n)];
+    int length = 0;
+    List<Integer> geneList = new ArrayList<Integer>();
+    List<int[]> geneReactionList = new ArrayList<int[]>();
+    int[] geneReactionCount = new int[0];
+    int depth = 0;
+    int j = 0;
+    for (Reaction reaction : model.getListOfReactions()) {
+      reactionIds[j] = reaction.getId();
+      ruleStart[j] = length;
+      FBCReactionPlugin plugin = (FBCReactionPlugin) reaction.getExtension(FBCConstants.shortLabel);
+      if ((plugin != null) && plugin.isSetGeneProductAssociation()
+          && plugin.getGeneProductAssociation().isSetAssociation()) {
+        List<Integer> rule = new ArrayList<Integer>();
+        compile(plugin.getGeneProductAssociation().getAssociation(), rule, genes);
+        if (program.length < length + rule.size()) {
+          program = Arrays.copyOf(program, Math.max(length + rule.size(), 2 * program.length));
+        }
+        int stack = 0;
+        geneList.clear();
+        for (Integer instruction : rule) {
+          int value = instruction.intValue();
+          program[length++] = value;
+          if (value >= 0) {
+            stack++;
+            depth = Math.max(depth, stack);
+            geneList.add(instruction);
+          } else {
+            stack -= (-value >> 1) - 1;
+          }
+        }
+        // records the reaction once for each of its genes
+        if (geneReactionCount.length < genes.size()) {
+          geneReactionCount = Arrays.copyOf(geneReactionCount, Math.max(genes.size(), 2 * geneReactionCount.length));
+        }
+        while (geneReactionList.size() < genes.size()) {
+          geneReactionList.add(new int[4]);
+        }
+        for (Integer gene : geneList) {
+          int g = gene.intValue();
+          int count = geneReactionCount[g];
+          int[] reactions = geneReactionList.get(g);
+          if ((count == 0) || (reactions[count - 1] != j)) {
+            if (count == reactions.length) {
+              reactions = Arrays.copyOf(reactions, 2 * count);
+              geneReactionList.set(g, reactions);
+            }
+            reactions[count] = j;
+            geneReactionCount[g] = count + 1;
+          }
+        }
+      }
+      j++;
+    }
+    ruleStart[n] = length;
+    code = Arrays.copyOf(program, length);
+    maxDepth = depth;
+    geneProductIds = genes.toArray(new String[genes.size()]);
+    geneReactions = new int[geneProductIds.length][];
+    for (int g = 0; g < geneReactions.length; g++) {
+      geneReactions[g] = g < geneReactionList.size()
+          ? Arrays.copyOf(geneReactionList.get(g), geneReactionCount[g]) : new int[0];
+    }
+  }
+
+  /**
+   * Appends the postfix program of the given association to the given list.
+   * Operators without operands are left out and operators with a single
+   * operand are replaced by their operand.
+   * 
+   * @param association
+   * @param rule
+   * @param genes
+   *        the known genes, to which the unknown genes are added
+   * @return the number of values the program pushes, {@code 0} or {@code 1}.
+   */
+  private int compile(Association association, List<Integer> rule, List<String> genes) {
+    if (association instanceof GeneProductRef) {
+      GeneProductRef ref = (GeneProductRef) association;
+      if (!ref.isSetGeneProduct()) {
+        return 0;
+      }
+      Integer gene = geneIndex.get(ref.getGeneProduct());
+      if (gene == null) {
+        gene = genes.size();
+        geneIndex.put(ref.getGeneProduct(), gene);
+        genes.add(ref.getGeneProduct());
+      }
+      rule.add(gene);
+      return 1;
+    }
+    if (association instanceof LogicalOperator) {
+      int operands = 0;
+      for (Association child : ((LogicalOperator) association).getListOfAssociations()) {
+        operands += compile(child, rule, genes);
+      }
+      if (operands > 1) {
+        rule.add(-(2 * operands + (association instanceof Or ? 1 : 0)));
+      }
+      return Math.min(operands, 1);
+    }
+    return 0;
+  }
+
+  /**
+   * Evaluates the rule of a reaction.
+   * 
+   * @param reaction
+   * @param knockouts
+   * @param stack
+   *        an array of at least {@link #maxDepth} elements
+   * @return {@code false} if the reaction is disabled by the knockouts.
+   */
+  private boolean evaluate(int reaction, BitSet knockouts, boolean[] stack) {
+    int end = ruleStart[reaction + 1];
+    int top = 0;
+    for (int k = ruleStart[reaction]; k < end; k++) {
+      int value = code[k];
+      if (value >= 0) {
+        stack[top++] = !knockouts.get(value);
+      } else {
+        int operands = -value >> 1;
+        boolean or = (-value & 1) == 1;
+        boolean result = !or;
+        for (int i = top - operands; i < top; i++) {
+          result = or ? result || stack[i] : result && stack[i];
+        }
+        top -= operands;
+        stack[top++] = result;
+      }
+    }
+    return (top == 0) || stack[0];
+  }
+
+  /**
+   * @return the number of genes.
+   */
+  public int getGeneCount() {
+    return geneProductIds.length;
+  }
+
+  /**
+   * Returns the identifiers of the gene products, in the order of their
+   * indices: the {@link GeneProduct}s of the model, followed by the
+   * identifiers that are referenced by some rule but not defined.
+   * 
+   * @return a copy of the identifiers of the gene products.
+   */
+  public String[] getGeneProductIds() {
+    return geneProductIds.clone();
+  }
+
+  /**
+   * @param geneProductId
+   * @return the index of the given gene product, or {@code -1} if it is
+   *         unknown.
+   */
+  public int getGeneIndex(String geneProductId) {
+    Integer index = geneIndex.get(geneProductId);
+    return index != null ? index.intValue() : -1;
+  }
+
+  /**
+   * @return a copy of the identifiers of the reactions, in the order of
+   *         their indices.
+   */
+  public String[] getReactionIds() {
+    return reactionIds.clone();
+  }
+
+  /**
+   * @param reaction
+   * @return {@code true} if the given reaction has a gene-reaction rule.
+   */
+  public boolean hasRule(int reaction) {
+    return ruleStart[reaction] < ruleStart[reaction + 1];
+  }
+
+  /**
+   * @param gene
+   * @return a copy of the indices of the reactions whose rule refers to the
+   *         given gene, in increasing order.
+   */
+  public int[] getReactions(int gene) {
+    return geneReactions[gene].clone();
+  }
+
+  /**
+   * @param reaction
+   * @param knockouts
+   *        the indices of the knocked-out genes
+   * @return {@code true} if the given reaction can still be catalyzed.
+   */
+  public boolean isActive(int reaction, BitSet knockouts) {
+    return evaluate(reaction, knockouts, new boolean[maxDepth]);
+  }
+
+  /**
+   * Returns the reactions disabled by the given knockouts. Only the rules
+   * that refer to a knocked-out gene are evaluated.
+   * 
+   * @param knockouts
+   *        the indices of the knocked-out genes
+   * @return the indices of the disabled reactions.
+   */
+  public BitSet getDisabledReactions(BitSet knockouts) {
+    BitSet disabled = new BitSet(reactionIds.length);
+    BitSet evaluated = new BitSet(reactionIds.length);
+    boolean[] stack = new boolean[maxDepth];
+    for (int g = knockouts.nextSetBit(0); (g >= 0) && (g < geneReactions.length); g = knockouts.nextSetBit(g + 1)) {
+      for (int reaction : geneReactions[g]) {
+        if (!evaluated.get(reaction)) {
+          evaluated.set(reaction);
+          if (!evaluate(reaction, knockouts, stack)) {
+            disabled.set(reaction);
+          }
+        }
+      }
+    }
+    return disabled;
+  }
+
+  /**
+   * Returns the reactions disabled by knocking out the given gene products,
+   * see {@link #getDisabledReactions(BitSet)}.
+   * 
+   * @param geneProductIds
+   * @return the indices of the disabled reactions.
+   */
+  public BitSet getDisabledReactions(Collection<String> geneProductIds) {
+    BitSet knockouts = new BitSet(this.geneProductIds.length);
+    for (String id : geneProductIds) {
+      int gene = getGeneIndex(id);
+      if (gene >= 0) {
+        knockouts.set(gene);
+      }
+    }
+    return getDisabledReactions(knockouts);
+  }
+
+}
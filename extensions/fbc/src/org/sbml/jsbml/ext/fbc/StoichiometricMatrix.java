@@ -0,0 +1,960 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.fbc;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sbml.jsbml.ListOf;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.SpeciesReference;
+
+/**
+ * The stoichiometric matrix, flux bounds and objective of a constraint-based
+ * model, in the compressed sparse form expected by linear programming
+ * solvers.
+ * 
+ * <p>The rows of the matrix are the species and its columns the reactions,
+ * in the order of the model. The non-zero entries are available both by row
+ * (CSR: {@link #getRowPointers()}, {@link #getColumnIndices()},
+ * {@link #getRowValues()}) and by column (CSC: {@link #getColumnPointers()},
+ * {@link #getRowIndices()}, {@link #getColumnValues()}). The entries of a
+ * reactant are negative, those of a product positive, and several
+ * references to the same species in a reaction are summed up.</p>
+ * 
+ * <p>The bounds are read from the {@link FBCReactionPlugin}s (FBC version 2)
+ * and from the {@link FluxBound}s (FBC version 1). A reaction without lower
+ * or upper bound gets {@link Double#NEGATIVE_INFINITY} or
+ * {@link Double#POSITIVE_INFINITY}. The objective coefficients are those of
+ * the active {@link Objective}, or of the first one if none is active.</p>
+ * 
+ * <p>All the data is extracted in one pass over the model, and the arrays
+ * returned by the getters are not copied, so they must not be modified.
+ * Large matrices can be exported to and read from a binary file through
+ * memory-mapped windows, see {@link #write(File)}.</p>
+ * 
+ * @since 1.5
+ */
+public class StoichiometricMatrix {
+
+  /**
+   * The first bytes of the files written by {@link #write(File)}.
+   */
+  private static final int MAGIC = 0x46424331;
+
+  /**
+   * The number of bytes mapped at once to write and read the files, as a
+   * mapping cannot exceed 2 GB.
+   */
+  private static final int WINDOW_SIZE = 1 << 30;
+
+  /**
+   * 
+   */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * The identifiers of the species, i.e., of the rows.
+   */
+  private final String[] speciesIds;
+
+  /**
+   * The identifiers of the reactions, i.e., of the columns.
+   */
+  private final String[] reactionIds;
+
+  /**
+   * 
+   */
+  private Map<String, Integer> speciesIndex;
+
+  /**
+   * 
+   */
+  private Map<String, Integer> reactionIndex;
+
+  /**
+   * CSC: the position of the first entry of each column, followed by the
+   * number of entries.
+   */
+  private final int[] columnPointers;
+
+  /**
+   * CSC: the row of each entry.
+   */
+  private final int[] rowIndices;
+
+  /**
+   * CSC: the value of each entry.
+   */
+  private final double[] columnValues;
+
+  /**
+   * CSR: the position of the first entry of each row, followed by the number
+   * of entries.
+   */
+  private int[] rowPointers;
+
+  /**
+   * CSR: the column of each entry.
+   */
+  private int[] columnIndices;
+
+  /**
+   * CSR: the value of each entry.
+   */
+  private double[] rowValues;
+
+  /**
+   * 
+   */
+  private final double[] lowerBounds;
+
+  /**
+   * 
+   */
+  private final double[] upperBounds;
+
+  /**
+   * 
+   */
+  private final double[] objectiveCoefficients;
+
+  /**
+   * The direction of the objective, or {@code null} if the model has no
+   * objective.
+   */
+  private final Objective.Type objectiveType;
+
+  /**
+   * Extracts the stoichiometric matrix of all the species of the given
+   * model, see {@link #StoichiometricMatrix(Model, boolean)}.
+   * 
+   * @param model
+   */
+  public StoichiometricMatrix(Model model) {
+    this(model, true);
+  }
+
+  /**
+   * Extracts the stoichiometric matrix, the bounds and the objective of the
+   * given model.
+   * 
+   * @param model
+   * @param includeBoundarySpecies
+   *        if {@code false}, the species with a boundary condition, which are
+   *        not mass-balanced, do not get a row.
+   */
+  @SuppressWarnings("deprecation")
+  public StoichiometricMatrix(Model model, boolean includeBoundarySpecies) {
+    speciesIndex = new HashMap<String, Integer>();
+    String[] ids = new String[model.getSpeciesCount()];
+    int m = 0;
+    for (Species species : model.getListOfSpecies()) {
+      if (includeBoundarySpecies || !species.getBoundaryCondition()) {
+        if (species.isSetId()) {
+          speciesIndex.put(species.getId(), m);
+          ids[m] = species.getId();
+        }
+        m++;
+      }
+    }
+    speciesIds = Arrays.copyOf(ids, m);
+
+    int n = model.getReactionCount();
+    reactionIds = new String[n];
+    reactionIndex = new HashMap<String, Integer>();
+    lowerBounds = new double[n];
+    upperBounds = new double[n];
+    Arrays.fill(lowerBounds, Double.NEGATIVE_INFINITY);
+    Arrays.fill(upperBounds, Double.POSITIVE_INFINITY);
+
+    Map<String, Double> parameterValues = new HashMap<String, Double>();
+    for (Parameter parameter : model.getListOfParameters()) {
+      // a bound without value leaves the reaction unbounded
+      if (parameter.isSetValue()) {
+        parameterValues.put(parameter.getId(), parameter.getValue());
+      }
+    }
+
+    int[] pointers = new int[n + 1];
+    int[] rows = new int[Math.max(16, 4 * n)];
+    double[] values = new double[rows.length];
+    int nnz = 0;
+    int j = 0;
+    for (Reaction reaction : model.getListOfReactions()) {
+      if (reaction.isSetId()) {
+        reactionIds[j] = reaction.getId();
+        reactionIndex.put(reaction.getId(), j);
+      }
+      pointers[j] = nnz;
+      int needed = nnz + reaction.getReactantCount() + reaction.getProductCount();
+      if (needed > rows.length) {
+        int capacity = Math.max(needed, 2 * rows.length);
+        rows = Arrays.copyOf(rows, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+      nnz = addEntries(reaction.getListOfReactants(), -1d, rows, values, nnz);
+      nnz = addEntries(reaction.getListOfProducts(), 1d, rows, values, nnz);
+      nnz = mergeColumn(rows, values, pointers[j], nnz);
+
+      FBCReactionPlugin plugin = (FBCReactionPlugin) reaction.getExtension(FBCConstants.shortLabel);
+      if (plugin != null) {
+        Double value = parameterValues.get(plugin.getLowerFluxBound());
+        if (value != null) {
+          lowerBounds[j] = value;
+        }
+        value = parameterValues.get(plugin.getUpperFluxBound());
+        if (value != null) {
+          upperBounds[j] = value;
+        }
+      }
+      j++;
+    }
+    pointers[n] = nnz;
+    columnPointers = pointers;
+    rowIndices = Arrays.copyOf(rows, nnz);
+    columnValues = Arrays.copyOf(values, nnz);
+
+    objectiveCoefficients = new double[n];
+    FBCModelPlugin modelPlugin = (FBCModelPlugin) model.getExtension(FBCConstants.shortLabel);
+    Objective objective = null;
+    if (modelPlugin != null) {
+      if (modelPlugin.isSetListOfFluxBounds()) {
+        for (FluxBound fluxBound : modelPlugin.getListOfFluxBounds()) {
+          applyFluxBound(fluxBound);
+        }
+      }
+      if (modelPlugin.isSetListOfObjectives()) {
+        objective = modelPlugin.getActiveObjectiveInstance();
+        if ((objective == null) && (modelPlugin.getObjectiveCount() > 0)) {
+          objective = modelPlugin.getObjective(0);
+        }
+      }
+    }
+    if (objective != null) {
+      for (FluxObjective fluxObjective : objective.getListOfFluxObjectives()) {
+        Integer index = reactionIndex.get(fluxObjective.getReaction());
+        if (index != null) {
+          objectiveCoefficients[index] += fluxObjective.getCoefficient();
+        }
+      }
+    }
+    objectiveType = objective != null ? objective.getType() : null;
+  }
+
+  /**
+   * Creates a matrix from its content, as read by {@link #read(File)}.
+   * 
+   * @param speciesIds
+   * @param reactionIds
+   * @param columnPointers
+   * @param rowIndices
+   * @param columnValues
+   * @param lowerBounds
+   * @param upperBounds
+   * @param objectiveCoefficients
+   * @param objectiveType
+   */
+  private StoichiometricMatrix(String[] speciesIds, String[] reactionIds,
+    int[] columnPointers, int[] rowIndices, double[] columnValues,
+    double[] lowerBounds, double[] upperBounds, double[] objectiveCoefficients,
+    Objective.Type objectiveType) {
+    this.speciesIds = speciesIds;
+    this.reactionIds = reactionIds;
+    this.columnPointers = columnPointers;
+    this.rowIndices = rowIndices;
+    this.columnValues = columnValues;
+    this.lowerBounds = lowerBounds;
+    this.upperBounds = upperBounds;
+    this.objectiveCoefficients = objectiveCoefficients;
+    this.objectiveType = objectiveType;
+  }
+
+  /**
+   * Appends the entries of the given species references to the current
+   * column.
+   * 
+   * @param references
+   * @param sign
+   * @param rows
+   * @param values
+   * @param nnz
+   *        the number of entries before the new ones
+   * @return the number of entries after the new ones.
+   */
+  private int addEntries(ListOf<SpeciesReference> references, double sign,
+    int[] rows, double[] values, int nnz) {
+    for (SpeciesReference reference : references) {
+      Integer row = speciesIndex.get(reference.getSpecies());
+      if (row != null) {
+        rows[nnz] = row;
+        values[nnz] = sign * (reference.isSetStoichiometry() ? reference.getStoichiometry() : 1d);
+        nnz++;
+      }
+    }
+    return nnz;
+  }
+
+  /**
+   * Sorts the entries of a column by row, sums up the entries of the same
+   * row and removes the entries that are zero.
+   * 
+   * @param rows
+   * @param values
+   * @param start
+   *        the position of the first entry of the column
+   * @param end
+   *        the position after the last entry of the column
+   * @return the new position after the last entry of the column.
+   */
+  private static int mergeColumn(int[] rows, double[] values, int start, int end) {
+    // insertion sort, as reactions have few participants
+    for (int i = start + 1; i < end; i++) {
+      int row = rows[i];
+      double value = values[i];
+      int k = i - 1;
+      while ((k >= start) && (rows[k] > row)) {
+        rows[k + 1] = rows[k];
+        values[k + 1] = values[k];
+        k--;
+      }
+      rows[k + 1] = row;
+      values[k + 1] = value;
+    }
+    int last = start;
+    for (int i = start; i < end; i++) {
+      if ((last > start) && (rows[last - 1] == rows[i])) {
+        values[last - 1] += values[i];
+      } else {
+        rows[last] = rows[i];
+        values[last] = values[i];
+        last++;
+      }
+    }
+    int nnz = start;
+    for (int i = start; i < last; i++) {
+      if (values[i] != 0d) {
+        rows[nnz] = rows[i];
+        values[nnz] = values[i];
+        nnz++;
+      }
+    }
+    return nnz;
+  }
+
+  /**
+   * Applies a bound defined in FBC version 1. The strict bounds are applied
+   * as the non-strict ones, which is what a linear programming solver
+   * does anyway.
+   * 
+   * @param fluxBound
+   */
+  @SuppressWarnings("deprecation")
+  private void applyFluxBound(FluxBound fluxBound) {
+    Integer index = reactionIndex.get(fluxBound.getReaction());
+    if ((index == null) || !fluxBound.isSetOperation() || !fluxBound.isSetValue()) {
+      return;
+    }
+    switch (fluxBound.getOperation()) {
+    case EQUAL:
+      lowerBounds[index] = fluxBound.getValue();
+      upperBounds[index] = fluxBound.getValue();
+      break;
+    case GREATER_EQUAL:
+    case GREATER:
+      lowerBounds[index] = fluxBound.getValue();
+      break;
+    case LESS_EQUAL:
+    case LESS:
+      upperBounds[index] = fluxBound.getValue();
+      break;
+    default:
+      break;
+    }
+  }
+
+  /**
+   * Builds the CSR arrays by transposing the CSC arrays, the first time they
+   * are needed.
+   */
+  private synchronized void buildRows() {
+    if (rowPointers != null) {
+      return;
+    }
+    int m = speciesIds.length;
+    int nnz = rowIndices.length;
+    int[] pointers = new int[m + 1];
+    for (int k = 0; k < nnz; k++) {
+      pointers[rowIndices[k] + 1]++;
+    }
+    for (int i = 0; i < m; i++) {
+      pointers[i + 1] += pointers[i];
+    }
+    int[] next = Arrays.copyOf(pointers, m);
+    int[] columns = new int[nnz];
+    double[] values = new double[nnz];
+    for (int j = 0; j < reactionIds.length; j++) {
+      for (int k = columnPointers[j]; k < columnPointers[j + 1]; k++) {
+        int position = next[rowIndices[k]]++;
+        columns[position] = j;
+        values[position] = columnValues[k];
+      }
+    }
+    columnIndices = columns;
+    rowValues = values;
+    rowPointers = pointers;
+  }
+
+  /**
+   * Builds the maps from the identifiers to the indices, if this matrix has
+   * been read from a file.
+   */
+  private synchronized void buildIndices() {
+    if (speciesIndex != null) {
+      return;
+    }
+    Map<String, Integer> species = new HashMap<String, Integer>();
+    for (int i = 0; i < speciesIds.length; i++) {
+      if (speciesIds[i] != null) {
+        species.put(speciesIds[i], i);
+      }
+    }
+    Map<String, Integer> reactions = new HashMap<String, Integer>();
+    for (int j = 0; j < reactionIds.length; j++) {
+      if (reactionIds[j] != null) {
+        reactions.put(reactionIds[j], j);
+      }
+    }
+    reactionIndex = reactions;
+    speciesIndex = species;
+  }
+
+  /**
+   * @return the number of rows, i.e., of species.
+   */
+  public int getRowCount() {
+    return speciesIds.length;
+  }
+
+  /**
+   * @return the number of columns, i.e., of reactions.
+   */
+  public int getColumnCount() {
+    return reactionIds.length;
+  }
+
+  /**
+   * @return the number of non-zero entries.
+   */
+  public int getNonZeroCount() {
+    return rowIndices.length;
+  }
+
+  /**
+   * Returns the entry of the given species and reaction.
+   * 
+   * @param row
+   * @param column
+   * @return the stoichiometry of the species in the reaction, or {@code 0}.
+   */
+  public double get(int row, int column) {
+    int k = Arrays.binarySearch(rowIndices, columnPointers[column], columnPointers[column + 1], row);
+    return k >= 0 ? columnValues[k] : 0d;
+  }
+
+  /**
+   * @return the identifiers of the species, in the order of the rows, or
+   *         {@code null} for a species without identifier.
+   */
+  public String[] getSpeciesIds() {
+    return speciesIds;
+  }
+
+  /**
+   * @return the identifiers of the reactions, in the order of the columns,
+   *         or {@code null} for a reaction without identifier.
+   */
+  public String[] getReactionIds() {
+    return reactionIds;
+  }
+
+  /**
+   * @param speciesId
+   * @return the row of the given species, or {@code -1} if it has none.
+   */
+  public int getSpeciesIndex(String speciesId) {
+    buildIndices();
+    Integer index = speciesIndex.get(speciesId);
+    return index != null ? index.intValue() : -1;
+  }
+
+  /**
+   * @param reactionId
+   * @return the column of the given reaction, or {@code -1} if the model
+   *         has no such reaction.
+   */
+  public int getReactionIndex(String reactionId) {
+    buildIndices();
+    Integer index = reactionIndex.get(reactionId);
+    return index != null ? index.intValue() : -1;
+  }
+
+  /**
+   * @return for each column, the position of its first entry in
+   *         {@link #getRowIndices()} and {@link #getColumnValues()},
+   *         followed by the number of entries.
+   */
+  public int[] getColumnPointers() {
+    return columnPointers;
+  }
+
+  /**
+   * @return the row of each entry, column by column.
+   */
+  public int[] getRowIndices() {
+    return rowIndices;
+  }
+
+  /**
+   * @return the value of each entry, column by column.
+   */
+  public double[] getColumnValues() {
+    return columnValues;
+  }
+
+  /**
+   * @return for each row, the position of its first entry in
+   *         {@link #getColumnIndices()} and {@link #getRowValues()},
+   *         followed by the number of entries.
+   */
+  public int[] getRowPointers() {
+    buildRows();
+    return rowPointers;
+  }
+
+  /**
+   * @return the column of each entry, row by row.
+   */
+  public int[] getColumnIndices() {
+    buildRows();
+    return columnIndices;
+  }
+
+  /**
+   * @return the value of each entry, row by row.
+   */
+  public double[] getRowValues() {
+    buildRows();
+    return rowValues;
+  }
+
+  /**
+   * @return the lower bound of each reaction.
+   */
+  public double[] getLowerBounds() {
+    return lowerBounds;
+  }
+
+  /**
+   * @return the upper bound of each reaction.
+   */
+  public double[] getUpperBounds() {
+    return upperBounds;
+  }
+
+  /**
+   * @return the coefficient of each reaction in the objective.
+   */
+  public double[] getObjectiveCoefficients() {
+    return objectiveCoefficients;
+  }
+
+  /**
+   * @return the direction of the objective, or {@code null} if the model has
+   *         no objective.
+   */
+  public Objective.Type getObjectiveType() {
+    return objectiveType;
+  }
+
+  /**
+   * Writes this matrix to the given file through memory-mapped windows of
+   * at most 1 GB, see {@link #write(File, int)}.
+   * 
+   * @param file
+   * @throws IOException
+   */
+  public void write(File file) throws IOException {
+    write(file, WINDOW_SIZE);
+  }
+
+  /**
+   * Writes this matrix to the given file through memory-mapped windows, so
+   * that the size of the file is not limited by the 2 GB of a single
+   * mapping. The file contains the identifiers, the CSC arrays, the bounds
+   * and the objective, see {@link #read(File)}. A species or reaction
+   * without identifier, which SBML Level 3 Version 2 allows, is written as
+   * such and read as {@code null}.
+   * 
+   * @param file
+   * @param windowSize
+   *        the maximal number of bytes mapped at once, at least {@code 8}.
+   * @throws IOException
+   */
+  public void write(File file, int windowSize) throws IOException {
+    byte[][] species = encode(speciesIds);
+    byte[][] reactions = encode(reactionIds);
+    int n = reactionIds.length;
+    int nnz = rowIndices.length;
+    long size = 5 * 4 + length(species) + length(reactions)
+        + 4L * (n + 1) + 4L * nnz + 8L * nnz + 3 * 8L * n;
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(size);
+      MappedWindow window = new MappedWindow(raf.getChannel(), FileChannel.MapMode.READ_WRITE, size, windowSize);
+      put(window, new int[] {MAGIC, speciesIds.length, n, nnz,
+        objectiveType != null ? objectiveType.ordinal() : -1});
+      put(window, species);
+      put(window, reactions);
+      put(window, columnPointers);
+      put(window, rowIndices);
+      put(window, columnValues);
+      put(window, lowerBounds);
+      put(window, upperBounds);
+      put(window, objectiveCoefficients);
+      window.force();
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Reads a matrix written by {@link #write(File)} through memory-mapped
+   * windows of at most 1 GB.
+   * 
+   * @param file
+   * @return the matrix read.
+   * @throws IOException
+   *         if the file cannot be read or has not been written by
+   *         {@link #write(File)}.
+   */
+  public static StoichiometricMatrix read(File file) throws IOException {
+    return read(file, WINDOW_SIZE);
+  }
+
+  /**
+   * Reads a matrix written by {@link #write(File)} through memory-mapped
+   * windows.
+   * 
+   * @param file
+   * @param windowSize
+   *        the maximal number of bytes mapped at once, at least {@code 8}.
+   * @return the matrix read.
+   * @throws IOException
+   *         if the file cannot be read or has not been written by
+   *         {@link #write(File)}.
+   */
+  public static StoichiometricMatrix read(File file, int windowSize) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      MappedWindow window = new MappedWindow(channel, FileChannel.MapMode.READ_ONLY, channel.size(), windowSize);
+      if ((channel.size() < 5 * 4) || (window.require(4).getInt() != MAGIC)) {
+        throw new IOException("Not a stoichiometric matrix: " + file);
+      }
+      int[] header = getInts(window, 4);
+      int m = header[0];
+      int n = header[1];
+      int nnz = header[2];
+      int type = header[3];
+      String[] speciesIds = getIds(window, m);
+      String[] reactionIds = getIds(window, n);
+      int[] columnPointers = getInts(window, n + 1);
+      int[] rowIndices = getInts(window, nnz);
+      double[] columnValues = getDoubles(window, nnz);
+      double[] lowerBounds = getDoubles(window, n);
+      double[] upperBounds = getDoubles(window, n);
+      double[] objectiveCoefficients = getDoubles(window, n);
+      return new StoichiometricMatrix(speciesIds, reactionIds, columnPointers,
+        rowIndices, columnValues, lowerBounds, upperBounds,
+        objectiveCoefficients, type >= 0 ? Objective.Type.values()[type] : null);
+    } catch (RuntimeException exc) {
+      throw new IOException("Not a stoichiometric matrix: " + file, exc);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * @param ids
+   * @return the UTF-8 encoding of the given identifiers, {@code null} for a
+   *         {@code null} identifier.
+   */
+  private static byte[][] encode(String[] ids) {
+    byte[][] bytes = new byte[ids.length][];
+    for (int i = 0; i < ids.length; i++) {
+      bytes[i] = ids[i] != null ? ids[i].getBytes(UTF8) : null;
+    }
+    return bytes;
+  }
+
+  /**
+   * @param bytes
+   * @return the number of bytes needed to write the given identifiers.
+   */
+  private static long length(byte[][] bytes) {
+    long length = 0;
+    for (byte[] id : bytes) {
+      length += 4 + (id != null ? id.length : 0);
+    }
+    return length;
+  }
+
+  /**
+   * Writes the given identifiers, each as its number of UTF-8 bytes, or
+   * {@code -1} if it is {@code null}, followed by the bytes.
+   * 
+   * @param window
+   * @param bytes
+   * @throws IOException
+   */
+  private static void put(MappedWindow window, byte[][] bytes) throws IOException {
+    for (byte[] id : bytes) {
+      window.require(4).putInt(id != null ? id.length : -1);
+      int offset = 0;
+      while ((id != null) && (offset < id.length)) {
+        ByteBuffer buffer = window.require(1);
+        int chunk = Math.min(id.length - offset, buffer.remaining());
+        buffer.put(id, offset, chunk);
+        offset += chunk;
+      }
+    }
+  }
+
+  /**
+   * @param window
+   * @param values
+   * @throws IOException
+   */
+  private static void put(MappedWindow window, int[] values) throws IOException {
+    int offset = 0;
+    while (offset < values.length) {
+      ByteBuffer buffer = window.require(4);
+      int chunk = Math.min(values.length - offset, buffer.remaining() / 4);
+      buffer.asIntBuffer().put(values, offset, chunk);
+      buffer.position(buffer.position() + 4 * chunk);
+      offset += chunk;
+    }
+  }
+
+  /**
+   * @param window
+   * @param values
+   * @throws IOException
+   */
+  private static void put(MappedWindow window, double[] values) throws IOException {
+    int offset = 0;
+    while (offset < values.length) {
+      ByteBuffer buffer = window.require(8);
+      int chunk = Math.min(values.length - offset, buffer.remaining() / 8);
+      buffer.asDoubleBuffer().put(values, offset, chunk);
+      buffer.position(buffer.position() + 8 * chunk);
+      offset += chunk;
+    }
+  }
+
+  /**
+   * @param window
+   * @param count
+   * @return the identifiers read.
+   * @throws IOException
+   */
+  private static String[] getIds(MappedWindow window, int count) throws IOException {
+    String[] ids = new String[count];
+    byte[] bytes = new byte[64];
+    for (int i = 0; i < count; i++) {
+      int length = window.require(4).getInt();
+      if (length < 0) {
+        continue;
+      }
+      if (length > bytes.length) {
+        bytes = new byte[Math.max(length, 2 * bytes.length)];
+      }
+      int offset = 0;
+      while (offset < length) {
+        ByteBuffer buffer = window.require(1);
+        int chunk = Math.min(length - offset, buffer.remaining());
+        buffer.get(bytes, offset, chunk);
+        offset += chunk;
+      }
+      ids[i] = new String(bytes, 0, length, UTF8);
+    }
+    return ids;
+  }
+
+  /**
+   * @param window
+   * @param count
+   * @return the values read.
+   * @throws IOException
+   */
+  private static int[] getInts(MappedWindow window, int count) throws IOException {
+    int[] values = new int[count];
+    int offset = 0;
+    while (offset < count) {
+      ByteBuffer buffer = window.require(4);
+      int chunk = Math.min(count - offset, buffer.remaining() / 4);
+      buffer.asIntBuffer().get(values, offset, chunk);
+      buffer.position(buffer.position() + 4 * chunk);
+      offset += chunk;
+    }
+    return values;
+  }
+
+  /**
+   * @param window
+   * @param count
+   * @return the values read.
+   * @throws IOException
+   */
+  private static double[] getDoubles(MappedWindow window, int count) throws IOException {
+    double[] values = new double[count];
+    int offset = 0;
+    while (offset < count) {
+      ByteBuffer buffer = window.require(8);
+      int chunk = Math.min(count - offset, buffer.remaining() / 8);
+      buffer.asDoubleBuffer().get(values, offset, chunk);
+      buffer.position(buffer.position() + 8 * chunk);
+      offset += chunk;
+    }
+    return values;
+  }
+
+  /**
+   * A region of a file that is mapped in memory one window at a time, as a
+   * single mapping cannot exceed 2 GB.
+   */
+  private static final class MappedWindow {
+
+    /**
+     * 
+     */
+    private final FileChannel channel;
+
+    /**
+     * 
+     */
+    private final FileChannel.MapMode mode;
+
+    /**
+     * The number of bytes of the file.
+     */
+    private final long size;
+
+    /**
+     * The maximal number of bytes mapped at once.
+     */
+    private final int windowSize;
+
+    /**
+     * The position in the file of the current window.
+     */
+    private long start;
+
+    /**
+     * 
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * @param channel
+     * @param mode
+     * @param size
+     * @param windowSize
+     * @throws IOException
+     */
+    private MappedWindow(FileChannel channel, FileChannel.MapMode mode,
+      long size, int windowSize) throws IOException {
+      if (windowSize < 8) {
+        throw new IllegalArgumentException("The window size must be at least 8 bytes: " + windowSize);
+      }
+      this.channel = channel;
+      this.mode = mode;
+      this.size = size;
+      this.windowSize = windowSize;
+      map(0);
+    }
+
+    /**
+     * Maps the next window if the current one has less than the given
+     * number of bytes left.
+     * 
+     * @param bytes
+     * @return the buffer of the current window, with at least the given
+     *         number of bytes remaining.
+     * @throws IOException
+     *         if the end of the file is reached before.
+     */
+    private ByteBuffer require(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        long position = start + buffer.position();
+        if (size - position < bytes) {
+          throw new EOFException("Unexpected end of the stoichiometric matrix");
+        }
+        force();
+        map(position);
+      }
+      return buffer;
+    }
+
+    /**
+     * Writes the changes of the current window to the file.
+     */
+    private void force() {
+      if (mode == FileChannel.MapMode.READ_WRITE) {
+        buffer.force();
+      }
+    }
+
+    /**
+     * @param position
+     * @throws IOException
+     */
+    private void map(long position) throws IOException {
+      start = position;
+      buffer = channel.map(mode, position, Math.min(windowSize, size - position));
+    }
+
+  }
+
+}
@@ -25,12 +25,21 @@ import org.sbml.jsbml.util.converters.SBMLConverter;
 /**
  * Converts old COBRA SBML files to SBML level 3 FBC version 2.
  * 
+ * <p>The option {@link FcbV1ToFbcV2Converter#OPTION_NUMBER_OF_THREADS} lets
+ * the gene associations of the reactions be parsed on several threads, which
+ * speeds up the conversion of genome-scale models.
+ * 
  * @author Thomas Hamm
  * @author Nicolas Rodriguez
  * @since 1.3
  */
 public class CobraToFbcV2Converter implements SBMLConverter {
 
+  /**
+   * The number of threads used to parse the gene associations.
+   */
+  private int numberOfThreads = 1;
+
   /* (non-Javadoc)
    * @see org.sbml.jsbml.util.converters.SBMLConverter#convert(org.sbml.jsbml.SBMLDocument)
    */
@@ -41,6 +50,7 @@ public class CobraToFbcV2Converter implements SBMLConverter {
     sbmlDocument = cobraToFbcV1Converter.convert(sbmlDocument);
    // convert SBML FBCV1 file to SBML FBCV2
     FcbV1ToFbcV2Converter fbcV1ToFbcV2Converter = new FcbV1ToFbcV2Converter();
+    fbcV1ToFbcV2Converter.setNumberOfThreads(numberOfThreads);
     sbmlDocument = fbcV1ToFbcV2Converter.convert(sbmlDocument);
 
     return sbmlDocument;
@@ -52,6 +62,30 @@ public class CobraToFbcV2Converter implements SBMLConverter {
   
   @Override
   public void setOption(String name, String value) {
-    // TODO Auto-generated method stub
+    if (FcbV1ToFbcV2Converter.OPTION_NUMBER_OF_THREADS.equals(name)) {
+      setNumberOfThreads(Integer.parseInt(value));
+    }
+  }
+
+  /**
+   * Returns the number of threads used to parse the gene associations.
+   * 
+   * @return the number of threads used to parse the gene associations.
+   */
+  public int getNumberOfThreads() {
+    return numberOfThreads;
+  }
+
+  /**
+   * Sets the number of threads used to parse the gene associations.
+   * 
+   * @param numberOfThreads the number of threads, at least one
+   * @see FcbV1ToFbcV2Converter#setNumberOfThreads(int)
+   */
+  public void setNumberOfThreads(int numberOfThreads) {
+    if (numberOfThreads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads " + numberOfThreads + ".");
+    }
+    this.numberOfThreads = numberOfThreads;
   }
 }
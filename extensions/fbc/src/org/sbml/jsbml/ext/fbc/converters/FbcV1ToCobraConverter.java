@@ -110,14 +110,16 @@ public class FbcV1ToCobraConverter implements SBMLConverter {
           for (FluxBound fluxBound : fbcModelPlugin.getListOfFluxBounds()) {
             if (fluxBound.getReaction().equals(reaction.getId())) {
               
-              if (fluxBound.getOperation().equals(FluxBound.Operation.LESS_EQUAL)) {
+              if (fluxBound.getOperation().equals(FluxBound.Operation.LESS_EQUAL)
+                  || fluxBound.getOperation().equals(FluxBound.Operation.LESS)) {
                 reaction.getKineticLaw().createLocalParameter("UPPER_BOUND");
                 reaction.getKineticLaw().getLocalParameter("UPPER_BOUND").setValue(fluxBound.getValue());
                 reaction.getKineticLaw().getLocalParameter("UPPER_BOUND").setExplicitlyConstant(true);
                 reaction.getKineticLaw().getLocalParameter("UPPER_BOUND").setUnits("mmol_per_gDW_per_hr");
               }
               
-              if (fluxBound.getOperation().equals(FluxBound.Operation.GREATER_EQUAL)) {
+              if (fluxBound.getOperation().equals(FluxBound.Operation.GREATER_EQUAL)
+                  || fluxBound.getOperation().equals(FluxBound.Operation.GREATER)) {
                 reaction.getKineticLaw().createLocalParameter("LOWER_BOUND");
                 reaction.getKineticLaw().getLocalParameter("LOWER_BOUND").setValue(fluxBound.getValue());
                 reaction.getKineticLaw().getLocalParameter("LOWER_BOUND").setExplicitlyConstant(true);
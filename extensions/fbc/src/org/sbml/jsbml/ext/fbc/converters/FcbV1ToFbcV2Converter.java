@@ -19,13 +19,27 @@
 package org.sbml.jsbml.ext.fbc.converters;
 
 
+import static java.text.MessageFormat.format;
+import static org.sbml.jsbml.util.StringTools.getMessage;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.log4j.Logger;
+import org.sbml.jsbml.ASTNode;
 import org.sbml.jsbml.AbstractSBase;
 import org.sbml.jsbml.Model;
 import org.sbml.jsbml.Parameter;
@@ -39,6 +53,8 @@ import org.sbml.jsbml.ext.fbc.FBCConstants;
 import org.sbml.jsbml.ext.fbc.FBCModelPlugin;
 import org.sbml.jsbml.ext.fbc.FBCReactionPlugin;
 import org.sbml.jsbml.ext.fbc.FluxBound;
+import org.sbml.jsbml.ext.fbc.GeneProduct;
+import org.sbml.jsbml.ext.fbc.GeneProductAssociation;
 import org.sbml.jsbml.util.CobraUtil;
 import org.sbml.jsbml.util.converters.SBMLConverter;
 import org.sbml.jsbml.util.filters.Filter;
@@ -46,6 +62,12 @@ import org.sbml.jsbml.util.filters.Filter;
 /**
  * Converts SBML FBC Version 1 files to SBML FBC Version 2.
  * 
+ * <p>The gene associations found in the notes of the reactions are parsed
+ * on several threads if the option {@link #OPTION_NUMBER_OF_THREADS} is set
+ * to a value greater than one. The {@link GeneProduct}s and
+ * {@link GeneProductAssociation}s are then created in the order of the
+ * reactions, so that the result does not depend on the number of threads.
+ * 
  * @author Thomas Hamm
  * @author Nicolas Rodriguez
  * @since 1.3
@@ -54,8 +76,24 @@ import org.sbml.jsbml.util.filters.Filter;
 @SuppressWarnings("deprecation")
 public class FcbV1ToFbcV2Converter implements SBMLConverter {
   
+  /**
+   * The name of the option giving the number of threads used to parse the
+   * gene associations.
+   */
+  public static final String OPTION_NUMBER_OF_THREADS = "numberOfThreads";
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(FcbV1ToFbcV2Converter.class);
+
   String userKey = null;
   
+  /**
+   * The number of threads used to parse the gene associations.
+   */
+  private int numberOfThreads = 1;
+  
   /* (non-Javadoc)
    * @see org.sbml.jsbml.util.converters.SBMLConverter#convert(org.sbml.jsbml.SBMLDocument)
    */
@@ -132,7 +170,8 @@ public class FcbV1ToFbcV2Converter implements SBMLConverter {
         List<FluxBound> fluxBList = new ArrayList<FluxBound>();
         for (FluxBound fluxBound : fbcModelPlugin.getListOfFluxBounds()) {
           if (fluxBound.getReaction().equals(reaction.getId())) {
-            if (fluxBound.getOperation() == FluxBound.Operation.GREATER_EQUAL) {
+            if ((fluxBound.getOperation() == FluxBound.Operation.GREATER_EQUAL)
+                || (fluxBound.getOperation() == FluxBound.Operation.GREATER)) {
               fbcReactionPlugin.setLowerFluxBound("fb_" + fluxBound.getReaction() + "_" + fluxBound.getOperation());
               Parameter parameter = new Parameter(3,1);
               parameter.setValue(fluxBound.getValue());
@@ -159,8 +198,6 @@ public class FcbV1ToFbcV2Converter implements SBMLConverter {
       }
 
       // transfer the gene associations from the notes to fbc:geneProductAssociation in reactions and fbc:listOfGeneProducts in model
-      Properties pElementsNote = new Properties();
-      
       Pattern p;
       if (userKey != null) {
       // userKey is a way of writing “gene association” specified by the user    
@@ -170,24 +207,16 @@ public class FcbV1ToFbcV2Converter implements SBMLConverter {
        p = Pattern.compile("(?i)gene[\\-_ ]*association");
       }
       
-      for (Reaction reaction : model.getListOfReactions()) {
-        pElementsNote = CobraUtil.parseCobraNotes(reaction);
-        String geneAssociation = null;
-        Enumeration<?> keys = pElementsNote.propertyNames();
-        String key;
-        for (;keys.hasMoreElements();) {
-          key = (String)keys.nextElement();
-          Matcher m = p.matcher(key);
-          if (m.matches()) {
-            if (pElementsNote.getProperty(key) != null) {
-              geneAssociation = pElementsNote.getProperty(key);
-            }
+      if (numberOfThreads > 1) {
+        parseGeneAssociations(model, p);
+      } else {
+        for (Reaction reaction : model.getListOfReactions()) {
+          String geneAssociation = getGeneAssociation(reaction, p);
+          
+          if (geneAssociation != null && geneAssociation.trim().length() > 0) {
+            GPRParser.parseGPR(reaction, geneAssociation, false, false);
           }
         }
-        
-        if (geneAssociation != null && geneAssociation.trim().length() > 0) {
-          GPRParser.parseGPR(reaction, geneAssociation, false, false);
-        }
       }
     }
     
@@ -199,7 +228,199 @@ public class FcbV1ToFbcV2Converter implements SBMLConverter {
    */
   @Override
   public void setOption(String name, String value) {
-    this.userKey = value;
+    if (OPTION_NUMBER_OF_THREADS.equals(name)) {
+      setNumberOfThreads(Integer.parseInt(value));
+    } else {
+      this.userKey = value;
+    }
+  }
+
+  /**
+   * Returns the number of threads used to parse the gene associations.
+   * 
+   * @return the number of threads used to parse the gene associations.
+   */
+  public int getNumberOfThreads() {
+    return numberOfThreads;
+  }
+
+  /**
+   * Sets the number of threads used to parse the gene associations. With
+   * one thread, the default, the gene associations are parsed one after the
+   * other by {@link GPRParser#parseGPR(Reaction, String, boolean, boolean)}.
+   * 
+   * @param numberOfThreads the number of threads, at least one
+   */
+  public void setNumberOfThreads(int numberOfThreads) {
+    if (numberOfThreads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads " + numberOfThreads + ".");
+    }
+    this.numberOfThreads = numberOfThreads;
+  }
+
+  /**
+   * Returns the gene association found in the notes of the given
+   * {@link Reaction}.
+   * 
+   * @param reaction
+   * @param p the pattern matching the key of the gene association
+   * @return the gene association or {@code null} if there is none.
+   */
+  private String getGeneAssociation(Reaction reaction, Pattern p) {
+    Properties pElementsNote = CobraUtil.parseCobraNotes(reaction);
+    String geneAssociation = null;
+    Enumeration<?> keys = pElementsNote.propertyNames();
+    String key;
+    for (;keys.hasMoreElements();) {
+      key = (String)keys.nextElement();
+      Matcher m = p.matcher(key);
+      if (m.matches()) {
+        if (pElementsNote.getProperty(key) != null) {
+          geneAssociation = pElementsNote.getProperty(key);
+        }
+      }
+    }
+    return geneAssociation;
+  }
+
+  /**
+   * Parses the gene associations of all the reactions on
+   * {@link #numberOfThreads} threads.
+   * 
+   * <p>The gene associations are extracted from the notes on the calling
+   * thread, as reading notes kept by lazy loading changes the model. The
+   * worker threads only parse them with their own
+   * {@link org.sbml.jsbml.text.parser.CobraFormulaParser}. The gene
+   * identifiers are collected in a concurrent registry, together with their
+   * first occurrence. Then the missing {@link GeneProduct}s are created in the
+   * order of their first occurrence and the
+   * {@link GeneProductAssociation}s are set in the order of the reactions,
+   * which gives the same model as the sequential conversion.
+   * 
+   * @param model
+   * @param p the pattern matching the key of the gene associations
+   * @throws SBMLException if a worker thread failed or the current thread
+   *         was interrupted.
+   */
+  private void parseGeneAssociations(Model model, final Pattern p) throws SBMLException {
+    final Reaction[] reactions = model.getListOfReactions().toArray(new Reaction[model.getReactionCount()]);
+    final ASTNode[] rules = new ASTNode[reactions.length];
+    final String[] failures = new String[reactions.length];
+    final ConcurrentMap<String, Long> genes = new ConcurrentHashMap<String, Long>();
+    final String[] geneAssociations = new String[reactions.length];
+    for (int i = 0; i < reactions.length; i++) {
+      geneAssociations[i] = getGeneAssociation(reactions[i], p);
+    }
+    
+    // several chunks per thread, as the gene associations have very different lengths
+    int chunkSize = Math.max(1, (reactions.length + 4 * numberOfThreads - 1) / (4 * numberOfThreads));
+    ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int start = 0; start < reactions.length; start += chunkSize) {
+        final int from = start, to = Math.min(start + chunkSize, reactions.length);
+        futures.add(executor.submit(new Runnable() {
+          
+          /* (non-Javadoc)
+           * @see java.lang.Runnable#run()
+           */
+          @Override
+          public void run() {
+            List<String> identifiers = new ArrayList<String>();
+            for (int i = from; i < to; i++) {
+              String geneAssociation = geneAssociations[i];
+              if (geneAssociation == null || geneAssociation.trim().length() == 0) {
+                continue;
+              }
+              try {
+                rules[i] = GPRParser.parseRule(geneAssociation);
+              } catch (Throwable exc) {
+                failures[i] = format("Could not parse ''{0}'' because of {1}", geneAssociation, getMessage(exc));
+                continue;
+              }
+              identifiers.clear();
+              GPRParser.collectGeneIdentifiers(rules[i], identifiers);
+              for (int j = 0; j < identifiers.size(); j++) {
+                registerGene(genes, identifiers.get(j), ((long) i << 32) | j);
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new SBMLException(exc);
+    } catch (ExecutionException exc) {
+      throw new SBMLException(exc.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    
+    // deterministic merge into the model
+    List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(genes.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+      
+      /* (non-Javadoc)
+       * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+       */
+      @Override
+      public int compare(Map.Entry<String, Long> entry1, Map.Entry<String, Long> entry2) {
+        return entry1.getValue().compareTo(entry2.getValue());
+      }
+    });
+    for (Map.Entry<String, Long> entry : entries) {
+      Reaction reaction = reactions[(int) (entry.getValue().longValue() >>> 32)];
+      GPRParser.createGeneProduct(entry.getKey(), reaction.getId(), model, false);
+    }
+    
+    int failureCount = 0;
+    String firstFailure = null;
+    for (int i = 0; i < reactions.length; i++) {
+      if (failures[i] != null) {
+        // like the sequential conversion, which creates the plugin before parsing
+        reactions[i].getPlugin(FBCConstants.shortLabel);
+      } else if (rules[i] != null) {
+        try {
+          GPRParser.setGPR(reactions[i], rules[i], false, false);
+        } catch (Throwable exc) {
+          failures[i] = format("Could not convert ''{0}'' because of {1}", rules[i], getMessage(exc));
+        }
+      }
+      if (failures[i] != null) {
+        if (failureCount++ == 0) {
+          firstFailure = failures[i];
+        }
+        if (logger.isDebugEnabled()) {
+          logger.debug(failures[i]);
+        }
+      }
+    }
+    if (failureCount > 0) {
+      logger.error(format("{0,number,integer} gene associations could not be parsed. {1}", failureCount, firstFailure));
+    }
+  }
+
+  /**
+   * Records the first occurrence of a gene identifier, which is encoded as
+   * the index of the reaction in the upper 32 bits and the position of the
+   * gene in the gene association in the lower 32 bits.
+   * 
+   * @param genes the registry of the gene identifiers
+   * @param identifier the gene identifier
+   * @param occurrence an occurrence of the gene identifier
+   */
+  private static void registerGene(ConcurrentMap<String, Long> genes, String identifier, long occurrence) {
+    Long value = Long.valueOf(occurrence);
+    Long previous = genes.putIfAbsent(identifier, value);
+    while ((previous != null) && (previous.longValue() > occurrence)) {
+      if (genes.replace(identifier, previous, value)) {
+        return;
+      }
+      previous = genes.get(identifier);
+    }
   }
 
 }
@@ -22,6 +22,7 @@ import static java.text.MessageFormat.format;
 import static org.sbml.jsbml.util.StringTools.getMessage;
 
 import java.io.StringReader;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.sbml.jsbml.ASTNode;
@@ -38,6 +39,7 @@ import org.sbml.jsbml.ext.fbc.GeneProductRef;
 import org.sbml.jsbml.ext.fbc.LogicalOperator;
 import org.sbml.jsbml.ext.fbc.Or;
 import org.sbml.jsbml.text.parser.CobraFormulaParser;
+import org.sbml.jsbml.text.parser.ParseException;
 
 /**
  * Provides a method to converts gene association string as used in COBRA in SBML level 2 into {@link GeneProductAssociation}
@@ -56,6 +58,21 @@ public class GPRParser {
    */
   private static final transient Logger logger = Logger.getLogger(GPRParser.class);
 
+  /**
+   * The parser of gene association strings of each thread, which is
+   * re-initialized for every string instead of being created again.
+   */
+  private static final ThreadLocal<CobraFormulaParser> parser = new ThreadLocal<CobraFormulaParser>() {
+
+    /* (non-Javadoc)
+     * @see java.lang.ThreadLocal#initialValue()
+     */
+    @Override
+    protected CobraFormulaParser initialValue() {
+      return new CobraFormulaParser(new StringReader(""));
+    }
+  };
+
 
   /**
    * Converts a given {@link ASTNode} into an {@link Association}.
@@ -121,6 +138,28 @@ public class GPRParser {
   private static GeneProductRef createGPR(String identifier, String reactionId, Model model, boolean displayWarning) {
     int level = model.getLevel(), version = model.getVersion();
     GeneProductRef gpr = new GeneProductRef(level, version);
+    String id = createGeneProduct(identifier, reactionId, model, displayWarning);
+    
+    gpr.setGeneProduct(id);
+    return gpr;
+  }
+
+
+  /**
+   * Makes sure that the model contains a {@link GeneProduct} for the given
+   * gene identifier.
+   * 
+   * <p>If there is no {@link GeneProduct} corresponding to this identifier in the model, 
+   * creates one.
+   * 
+   * @param identifier the gene identifier, as found in the gene association
+   * @param reactionId the id of the first {@link Reaction} using the gene
+   * @param model the Model
+   * @param displayWarning boolean to indicates if we should display a warning to the user 
+   *    when a {@link GeneProduct} is not found for the given identifier
+   * @return the id of the {@link GeneProduct}.
+   */
+  static String createGeneProduct(String identifier, String reactionId, Model model, boolean displayWarning) {
     String id = GPRParser.updateGeneId(identifier);
     
     // check if this id exists in the model
@@ -144,8 +183,69 @@ public class GPRParser {
       }
     }
     
-    gpr.setGeneProduct(id);
-    return gpr;
+    return id;
+  }
+
+
+  /**
+   * Collects the gene identifiers of a parsed gene association, in the order
+   * in which {@link #parseGPR(Reaction, String, boolean, boolean)} looks them
+   * up in the model.
+   * 
+   * @param ast a gene association, as returned by {@link #parseRule(String)}
+   * @param identifiers the list to which the identifiers are added
+   */
+  static void collectGeneIdentifiers(ASTNode ast, List<String> identifiers) {
+    if (ast.isLogical()) {
+      for (ASTNode child : ast.getListOfNodes()) {
+        collectGeneIdentifiers(child, identifiers);
+      }
+    } else {
+      identifiers.add(ast.toString());
+    }
+  }
+
+
+  /**
+   * Parses a gene association string with the parser of the current thread.
+   * 
+   * <p>This method does not access any model and can be called concurrently.
+   * 
+   * @param geneReactionRule the gene association
+   * @return the gene association as {@link ASTNode}.
+   * @throws ParseException if the gene association cannot be parsed.
+   */
+  static ASTNode parseRule(String geneReactionRule) throws ParseException {
+    return ASTNode.parseFormula(geneReactionRule, parser.get());
+  }
+
+
+  /**
+   * Sets the gene association of a {@link Reaction} from its parsed form,
+   * unless the {@link Reaction} already has the same association.
+   * 
+   * @param r the {@link Reaction}
+   * @param ast the gene association, as returned by {@link #parseRule(String)}
+   * @param omitGenericTerms boolean to indicate if we should set SBO term for the operators and and or.
+   * @param displayWarning boolean to indicates if we should display a warning to the user 
+   *    when a {@link GeneProduct} is not found for the given identifier
+   * @return the new {@link GeneProductAssociation} or {@code null} if the
+   *         association was already set.
+   */
+  static GeneProductAssociation setGPR(Reaction r, ASTNode ast, boolean omitGenericTerms, boolean displayWarning) {
+    FBCReactionPlugin plugin = (FBCReactionPlugin) r.getPlugin(FBCConstants.shortLabel);
+    Association association = GPRParser.convertToAssociation(ast, r.getId(), r.getModel(), omitGenericTerms, displayWarning);
+    
+    if (!plugin.isSetGeneProductAssociation() || !association.equals(
+      plugin.getGeneProductAssociation().getAssociation())) 
+    {
+      GeneProductAssociation gpa = plugin.createGeneProductAssociation();
+      gpa.setAssociation(association);
+      
+      return gpa;
+    }
+    
+    return null;
   }
 
 
@@ -174,21 +274,12 @@ public class GPRParser {
    * @return a {@link GeneProductAssociation} instance representing the given gene association string.
    */
   public static GeneProductAssociation parseGPR(Reaction r, String geneReactionRule, boolean omitGenericTerms, boolean displayWarning) {
-    FBCReactionPlugin plugin = (FBCReactionPlugin) r.getPlugin(FBCConstants.shortLabel);
+    // creates the plugin, even if there is no gene association
+    r.getPlugin(FBCConstants.shortLabel);
     
     if ((geneReactionRule != null) && (geneReactionRule.length() > 0)) {
       try {
-        ASTNode ast = ASTNode.parseFormula(geneReactionRule, new CobraFormulaParser(new StringReader("")));
-        Association association = GPRParser.convertToAssociation(ast, r.getId(), r.getModel(), omitGenericTerms, displayWarning);
-        
-        if (!plugin.isSetGeneProductAssociation() || !association.equals(
-          plugin.getGeneProductAssociation().getAssociation())) 
-        {
-          GeneProductAssociation gpa = plugin.createGeneProductAssociation();
-          gpa.setAssociation(association);
-          
-          return gpa;
-        }
+        return setGPR(r, parseRule(geneReactionRule), omitGenericTerms, displayWarning);
       } catch (Throwable exc) {
         logger.error(format("Could not parse ''{0}'' because of {1}", geneReactionRule, getMessage(exc)));
       }
@@ -0,0 +1,186 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.fbc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyChangeEvent;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.swing.tree.TreeNode;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.JSBML;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLWriter;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.ext.fbc.FBCConstants;
+import org.sbml.jsbml.ext.fbc.FBCModelPlugin;
+import org.sbml.jsbml.ext.fbc.FBCReactionPlugin;
+import org.sbml.jsbml.ext.fbc.converters.CobraToFbcV1Converter;
+import org.sbml.jsbml.ext.fbc.converters.CobraToFbcV2Converter;
+import org.sbml.jsbml.ext.fbc.converters.FcbV1ToFbcV2Converter;
+import org.sbml.jsbml.util.TreeNodeChangeListener;
+import org.sbml.jsbml.util.TreeNodeRemovedEvent;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Checks that the parallel parsing of the gene associations by the
+ * {@link CobraToFbcV2Converter} gives the same model as the sequential one.
+ * 
+ * @since 1.5
+ */
+public class CobraToFbcV2ConverterTest {
+
+  /**
+   * A COBRA model with many reactions.
+   */
+  private SBMLDocument doc;
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp() throws Exception {
+    Random random = new Random(42);
+    doc = new SBMLDocument(2, 4);
+    Model model = doc.createModel("cobra");
+    model.createCompartment("c");
+    for (int i = 0; i < 50; i++) {
+      Species species = model.createSpecies("M_" + i, model.getCompartment("c"));
+      species.setInitialAmount(0d);
+    }
+    for (int i = 0; i < 500; i++) {
+      Reaction r = model.createReaction("R_" + i);
+      r.createReactant(model.getSpecies(random.nextInt(50)));
+      r.createProduct(model.getSpecies(random.nextInt(50)));
+      KineticLaw kl = r.createKineticLaw();
+      kl.createLocalParameter("LOWER_BOUND").setValue(-1000d);
+      kl.createLocalParameter("UPPER_BOUND").setValue(1000d);
+      String rule;
+      if (i % 50 == 7) {
+        rule = "g1 and (";
+      } else if (i % 10 == 3) {
+        rule = "";
+      } else {
+        rule = randomRule(random, 3);
+      }
+      r.setNotes("<body xmlns=\"http://www.w3.org/1999/xhtml\">\n"
+          + "<p>GENE_ASSOCIATION: " + rule + "</p>\n"
+          + "<p>SUBSYSTEM: test</p>\n</body>");
+    }
+  }
+
+  /**
+   * @param random
+   * @param depth
+   * @return a random gene association, with gene identifiers which have to be
+   *         corrected.
+   */
+  private static String randomRule(Random random, int depth) {
+    if ((depth == 0) || random.nextInt(3) == 0) {
+      int gene = random.nextInt(200);
+      return (gene % 3 == 0) ? "b" + gene + ".1" : (gene % 3 == 1) ? "b-" + gene : "b" + gene;
+    }
+    String operator = random.nextBoolean() ? " and " : " or ";
+    return "(" + randomRule(random, depth - 1) + operator + randomRule(random, depth - 1) + ")";
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void parallelConversion() throws Exception {
+    CobraToFbcV2Converter sequential = new CobraToFbcV2Converter();
+    SBMLDocument expected = sequential.convert(doc.clone());
+
+    CobraToFbcV2Converter parallel = new CobraToFbcV2Converter();
+    parallel.setOption(FcbV1ToFbcV2Converter.OPTION_NUMBER_OF_THREADS, "4");
+    assertEquals(4, parallel.getNumberOfThreads());
+    SBMLDocument actual = parallel.convert(doc.clone());
+
+    Model model = actual.getModel();
+    FBCModelPlugin plugin = (FBCModelPlugin) model.getPlugin(FBCConstants.shortLabel);
+    assertTrue(plugin.getGeneProductCount() > 100);
+    assertTrue(((FBCReactionPlugin) model.getReaction("R_0").getPlugin(FBCConstants.shortLabel)).isSetGeneProductAssociation());
+    assertEquals(new SBMLWriter().writeSBMLToString(expected), new SBMLWriter().writeSBMLToString(actual));
+  }
+
+  /**
+   * Checks that the parallel conversion of a document read with lazy
+   * loading gives the same model as the sequential one, and that the notes
+   * are parsed, and the model changed, on the calling thread only.
+   * 
+   * @throws Exception
+   */
+  @Test
+  public void parallelConversionOfLazyDocument() throws Exception {
+    String fbcV1 = new SBMLWriter().writeSBMLToString(new CobraToFbcV1Converter().convert(doc.clone()));
+    SBMLReader reader = new SBMLReader();
+    reader.setLazyLoading(true);
+    SBMLDocument expected = new FcbV1ToFbcV2Converter().convert(reader.readSBMLFromString(fbcV1));
+
+    SBMLDocument lazyDoc = reader.readSBMLFromString(fbcV1);
+    assertTrue(lazyDoc.getModel().getReaction(0).containsUserObjectKey(JSBML.LAZY_NOTES));
+    final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    lazyDoc.addSharedTreeNodeChangeListener(new TreeNodeChangeListener() {
+
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        threads.add(Thread.currentThread());
+      }
+
+      @Override
+      public void nodeRemoved(TreeNodeRemovedEvent event) {
+        threads.add(Thread.currentThread());
+      }
+
+      @Override
+      public void nodeAdded(TreeNode node) {
+        threads.add(Thread.currentThread());
+      }
+    });
+
+    FcbV1ToFbcV2Converter parallel = new FcbV1ToFbcV2Converter();
+    parallel.setNumberOfThreads(4);
+    SBMLDocument actual = parallel.convert(lazyDoc);
+    assertFalse(actual.getModel().getReaction(0).containsUserObjectKey(JSBML.LAZY_NOTES));
+    assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    assertEquals(new SBMLWriter().writeSBMLToString(expected), new SBMLWriter().writeSBMLToString(actual));
+  }
+
+  /**
+   * 
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidNumberOfThreads() {
+    new FcbV1ToFbcV2Converter().setNumberOfThreads(0);
+  }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.fbc.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.ext.fbc.And;
+import org.sbml.jsbml.ext.fbc.Association;
+import org.sbml.jsbml.ext.fbc.FBCConstants;
+import org.sbml.jsbml.ext.fbc.FBCModelPlugin;
+import org.sbml.jsbml.ext.fbc.FBCReactionPlugin;
+import org.sbml.jsbml.ext.fbc.GPREvaluator;
+import org.sbml.jsbml.ext.fbc.GeneProductRef;
+import org.sbml.jsbml.ext.fbc.LogicalOperator;
+import org.sbml.jsbml.ext.fbc.converters.GPRParser;
+
+/**
+ * Compares the {@link GPREvaluator} with a direct evaluation of the
+ * {@link Association} trees.
+ * 
+ * @since 1.5
+ */
+public class GPREvaluatorTest {
+
+  /**
+   * The rules of the reactions R0, R1, ..., {@code null} for no rule.
+   */
+  private static final String[] RULES = {
+    "g1 and g2",
+    "g1 or g2",
+    "(g1 and g2) or g3",
+    null,
+    "g4",
+    "(g2 or g3) and (g4 or g5) and g1",
+    "g5 or (g6 and (g2 or g7))",
+    "g3 and g3"
+  };
+
+  /**
+   * 
+   */
+  private Model model;
+
+  /**
+   * 
+   */
+  private GPREvaluator evaluator;
+
+  /**
+   * 
+   */
+  @Before
+  public void setUp() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    doc.enablePackage(FBCConstants.namespaceURI_L3V1V2);
+    model = doc.createModel("m");
+    FBCModelPlugin modelPlugin = (FBCModelPlugin) model.getPlugin(FBCConstants.shortLabel);
+    for (int g = 1; g <= 7; g++) {
+      modelPlugin.createGeneProduct("G_g" + g).setLabel("g" + g);
+    }
+    for (int j = 0; j < RULES.length; j++) {
+      Reaction reaction = model.createReaction("R" + j);
+      if (RULES[j] != null) {
+        GPRParser.parseGPR(reaction, RULES[j], true, false);
+      }
+    }
+    evaluator = new GPREvaluator(model);
+  }
+
+  /**
+   * @param association
+   * @param knockouts
+   * @return the value of the given association for the given knockouts.
+   */
+  private boolean evaluate(Association association, BitSet knockouts) {
+    if (association instanceof GeneProductRef) {
+      return !knockouts.get(evaluator.getGeneIndex(((GeneProductRef) association).getGeneProduct()));
+    }
+    boolean and = association instanceof And;
+    boolean result = and;
+    for (Association child : ((LogicalOperator) association).getListOfAssociations()) {
+      result = and ? result && evaluate(child, knockouts) : result || evaluate(child, knockouts);
+    }
+    return result;
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testKnockouts() {
+    assertEquals(7, evaluator.getGeneCount());
+    assertEquals(0, evaluator.getGeneIndex("G_g1"));
+    assertEquals(-1, evaluator.getGeneIndex("g1"));
+    assertFalse(evaluator.hasRule(3));
+    assertArrayEquals(new int[] {0, 1, 2, 5}, evaluator.getReactions(0));
+    assertArrayEquals(new int[] {2, 5, 7}, evaluator.getReactions(2));
+
+    assertEquals(bits(0, 5), evaluator.getDisabledReactions(Collections.singleton("G_g1")));
+    assertEquals(bits(0, 1, 5), evaluator.getDisabledReactions(Arrays.asList("G_g1", "G_g2")));
+    assertEquals(bits(7), evaluator.getDisabledReactions(Collections.singleton("G_g3")));
+    assertEquals(bits(4, 5, 6), evaluator.getDisabledReactions(Arrays.asList("G_g4", "G_g5", "G_g6")));
+    assertTrue(evaluator.getDisabledReactions(Collections.singleton("unknown")).isEmpty());
+  }
+
+  /**
+   * Checks that the arrays returned cannot change the evaluator.
+   */
+  @Test
+  public void testCopies() {
+    evaluator.getReactions(0)[0] = 3;
+    evaluator.getGeneProductIds()[0] = "G_g2";
+    evaluator.getReactionIds()[0] = null;
+    assertArrayEquals(new int[] {0, 1, 2, 5}, evaluator.getReactions(0));
+    assertEquals("G_g1", evaluator.getGeneProductIds()[0]);
+    assertNotNull(evaluator.getReactionIds()[0]);
+    assertEquals(bits(0, 5), evaluator.getDisabledReactions(Collections.singleton("G_g1")));
+  }
+
+  /**
+   * Compares all the single and double knockouts with the direct evaluation
+   * of the rules.
+   */
+  @Test
+  public void testAllPairs() {
+    int genes = evaluator.getGeneCount();
+    for (int g1 = 0; g1 < genes; g1++) {
+      for (int g2 = g1; g2 < genes; g2++) {
+        check(bits(g1, g2));
+      }
+    }
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      BitSet knockouts = new BitSet();
+      for (int g = 0; g < genes; g++) {
+        if (random.nextBoolean()) {
+          knockouts.set(g);
+        }
+      }
+      check(knockouts);
+    }
+  }
+
+  /**
+   * @param knockouts
+   */
+  private void check(BitSet knockouts) {
+    BitSet disabled = evaluator.getDisabledReactions(knockouts);
+    for (int j = 0; j < model.getReactionCount(); j++) {
+      FBCReactionPlugin plugin = (FBCReactionPlugin) model.getReaction(j).getExtension(FBCConstants.shortLabel);
+      boolean active = (plugin == null) || !plugin.isSetGeneProductAssociation()
+          || evaluate(plugin.getGeneProductAssociation().getAssociation(), knockouts);
+      assertEquals(knockouts + " R" + j, !active, disabled.get(j));
+      assertEquals(active, evaluator.isActive(j, knockouts));
+    }
+  }
+
+  /**
+   * @param indices
+   * @return a {@link BitSet} with the given bits set.
+   */
+  private static BitSet bits(int... indices) {
+    BitSet bits = new BitSet();
+    for (int index : indices) {
+      bits.set(index);
+    }
+    return bits;
+  }
+
+}
@@ -0,0 +1,326 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.ext.fbc.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLReader;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.SpeciesReference;
+import org.sbml.jsbml.ext.fbc.FBCConstants;
+import org.sbml.jsbml.ext.fbc.FBCModelPlugin;
+import org.sbml.jsbml.ext.fbc.FBCReactionPlugin;
+import org.sbml.jsbml.ext.fbc.FluxBound;
+import org.sbml.jsbml.ext.fbc.Objective;
+import org.sbml.jsbml.ext.fbc.StoichiometricMatrix;
+
+/**
+ * Tests the extraction of the {@link StoichiometricMatrix} of FBC models.
+ * 
+ * @since 1.5
+ */
+public class StoichiometricMatrixTest {
+
+  /**
+   * 
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * 
+   */
+  private Model model;
+
+  /**
+   * Creates an FBC version 2 model with the reactions R1: A -> 2 B,
+   * R2: B + B -> , R3: A -> A and R4: C -> A, where C is a boundary species.
+   */
+  @Before
+  public void setUp() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    doc.enablePackage(FBCConstants.namespaceURI_L3V1V2);
+    model = doc.createModel("m");
+    model.createCompartment("c");
+    for (String id : new String[] {"A", "B", "C"}) {
+      Species species = model.createSpecies(id, model.getCompartment("c"));
+      species.setBoundaryCondition(id.equals("C"));
+    }
+    model.createParameter("zero").setValue(0d);
+    model.createParameter("ten").setValue(10d);
+
+    Reaction r1 = model.createReaction("R1");
+    r1.createReactant(model.getSpecies("A")).setStoichiometry(1d);
+    r1.createProduct(model.getSpecies("B")).setStoichiometry(2d);
+    FBCReactionPlugin plugin = (FBCReactionPlugin) r1.getPlugin(FBCConstants.shortLabel);
+    plugin.setLowerFluxBound("zero");
+    plugin.setUpperFluxBound("ten");
+
+    Reaction r2 = model.createReaction("R2");
+    r2.createReactant(model.getSpecies("B")).setStoichiometry(1d);
+    r2.createReactant(model.getSpecies("B"));
+    ((FBCReactionPlugin) r2.getPlugin(FBCConstants.shortLabel)).setLowerFluxBound("ten");
+
+    Reaction r3 = model.createReaction("R3");
+    r3.createReactant(model.getSpecies("A")).setStoichiometry(1d);
+    r3.createProduct(model.getSpecies("A")).setStoichiometry(1d);
+
+    Reaction r4 = model.createReaction("R4");
+    r4.createReactant(model.getSpecies("C")).setStoichiometry(1d);
+    r4.createProduct(model.getSpecies("A")).setStoichiometry(1d);
+
+    FBCModelPlugin modelPlugin = (FBCModelPlugin) model.getPlugin(FBCConstants.shortLabel);
+    Objective other = modelPlugin.createObjective("other", Objective.Type.MINIMIZE);
+    other.createFluxObjective("fo0", null, 1d, r2);
+    Objective objective = modelPlugin.createObjective("obj", Objective.Type.MAXIMIZE);
+    objective.createFluxObjective("fo1", null, 1d, r1);
+    objective.createFluxObjective("fo2", null, -0.5, r4);
+    modelPlugin.setActiveObjective(objective);
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testMatrix() {
+    StoichiometricMatrix matrix = new StoichiometricMatrix(model);
+    assertEquals(3, matrix.getRowCount());
+    assertEquals(4, matrix.getColumnCount());
+    assertEquals(5, matrix.getNonZeroCount());
+
+    // CSC
+    assertArrayEquals(new int[] {0, 2, 3, 3, 5}, matrix.getColumnPointers());
+    assertArrayEquals(new int[] {0, 1, 1, 0, 2}, matrix.getRowIndices());
+    assertArrayEquals(new double[] {-1, 2, -2, 1, -1}, matrix.getColumnValues(), 0d);
+    // CSR
+    assertArrayEquals(new int[] {0, 2, 4, 5}, matrix.getRowPointers());
+    assertArrayEquals(new int[] {0, 3, 0, 1, 3}, matrix.getColumnIndices());
+    assertArrayEquals(new double[] {-1, 1, 2, -2, -1}, matrix.getRowValues(), 0d);
+
+    assertEquals(-2d, matrix.get(1, 1), 0d);
+    assertEquals(0d, matrix.get(0, 2), 0d);
+    assertEquals(2, matrix.getSpeciesIndex("C"));
+    assertEquals(3, matrix.getReactionIndex("R4"));
+    assertEquals(-1, matrix.getReactionIndex("R5"));
+
+    double inf = Double.POSITIVE_INFINITY;
+    assertArrayEquals(new double[] {0, 10, -inf, -inf}, matrix.getLowerBounds(), 0d);
+    assertArrayEquals(new double[] {10, inf, inf, inf}, matrix.getUpperBounds(), 0d);
+    assertArrayEquals(new double[] {1, 0, 0, -0.5}, matrix.getObjectiveCoefficients(), 0d);
+    assertEquals(Objective.Type.MAXIMIZE, matrix.getObjectiveType());
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void testBoundarySpecies() {
+    StoichiometricMatrix matrix = new StoichiometricMatrix(model, false);
+    assertArrayEquals(new String[] {"A", "B"}, matrix.getSpeciesIds());
+    assertEquals(4, matrix.getNonZeroCount());
+    assertEquals(-1, matrix.getSpeciesIndex("C"));
+    assertEquals(1d, matrix.get(0, 3), 0d);
+  }
+
+  /**
+   * Checks that a bound parameter without value leaves the reaction
+   * unbounded.
+   */
+  @Test
+  public void testBoundWithoutValue() {
+    model.createParameter("unknown");
+    FBCReactionPlugin plugin = (FBCReactionPlugin) model.getReaction("R3").getPlugin(FBCConstants.shortLabel);
+    plugin.setLowerFluxBound("unknown");
+    plugin.setUpperFluxBound("unknown");
+    StoichiometricMatrix matrix = new StoichiometricMatrix(model);
+    assertEquals(Double.NEGATIVE_INFINITY, matrix.getLowerBounds()[2], 0d);
+    assertEquals(Double.POSITIVE_INFINITY, matrix.getUpperBounds()[2], 0d);
+  }
+
+  /**
+   * Checks that the strict flux bounds of FBC version 1 are applied as the
+   * non-strict ones.
+   */
+  @SuppressWarnings("deprecation")
+  @Test
+  public void testStrictFluxBounds() {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    doc.enablePackage(FBCConstants.namespaceURI_L3V1V1);
+    Model m = doc.createModel("m");
+    m.createReaction("R1");
+    m.createReaction("R2");
+    FBCModelPlugin plugin = (FBCModelPlugin) m.getPlugin(FBCConstants.shortLabel);
+    FluxBound greater = plugin.createFluxBound("fb1");
+    greater.setReaction("R1");
+    greater.setOperation(FluxBound.Operation.GREATER);
+    greater.setValue(-5d);
+    FluxBound less = plugin.createFluxBound("fb2");
+    less.setReaction("R2");
+    less.setOperation(FluxBound.Operation.LESS);
+    less.setValue(7d);
+    StoichiometricMatrix matrix = new StoichiometricMatrix(m);
+    double inf = Double.POSITIVE_INFINITY;
+    assertArrayEquals(new double[] {-5, -inf}, matrix.getLowerBounds(), 0d);
+    assertArrayEquals(new double[] {inf, 7}, matrix.getUpperBounds(), 0d);
+  }
+
+  /**
+   * Compares the matrix of an FBC version 1 model with its species
+   * references and flux bounds.
+   * 
+   * @throws Exception
+   */
+  @SuppressWarnings("deprecation")
+  @Test
+  public void testVersion1() throws Exception {
+    SBMLDocument doc = new SBMLReader().readSBMLFromStream(StoichiometricMatrixTest.class.getResourceAsStream(
+      "/org/sbml/jsbml/xml/test/data/fbc/MODEL_01186.xml"));
+    Model model = doc.getModel();
+    StoichiometricMatrix matrix = new StoichiometricMatrix(model);
+    assertEquals(model.getReactionCount(), matrix.getColumnCount());
+
+    double[][] dense = new double[model.getSpeciesCount()][model.getReactionCount()];
+    for (int j = 0; j < model.getReactionCount(); j++) {
+      Reaction reaction = model.getReaction(j);
+      for (SpeciesReference reactant : reaction.getListOfReactants()) {
+        dense[model.getListOfSpecies().indexOf(reactant.getSpeciesInstance())][j] -= reactant.getStoichiometry();
+      }
+      for (SpeciesReference product : reaction.getListOfProducts()) {
+        dense[model.getListOfSpecies().indexOf(product.getSpeciesInstance())][j] += product.getStoichiometry();
+      }
+    }
+    int nnz = 0;
+    for (int i = 0; i < dense.length; i++) {
+      for (int j = 0; j < dense[i].length; j++) {
+        assertEquals(dense[i][j], matrix.get(i, j), 0d);
+        if (dense[i][j] != 0d) {
+          nnz++;
+        }
+      }
+    }
+    assertEquals(nnz, matrix.getNonZeroCount());
+
+    FBCModelPlugin plugin = (FBCModelPlugin) model.getPlugin(FBCConstants.shortLabel);
+    for (FluxBound bound : plugin.getListOfFluxBounds()) {
+      int j = matrix.getReactionIndex(bound.getReaction());
+      if (bound.getOperation() != FluxBound.Operation.LESS_EQUAL) {
+        assertEquals(bound.getValue(), matrix.getLowerBounds()[j], 0d);
+      }
+      if (bound.getOperation() != FluxBound.Operation.GREATER_EQUAL) {
+        assertEquals(bound.getValue(), matrix.getUpperBounds()[j], 0d);
+      }
+    }
+  }
+
+  /**
+   * @throws Exception
+   */
+  @Test
+  public void testWriteRead() throws Exception {
+    StoichiometricMatrix matrix = new StoichiometricMatrix(model);
+    File file = folder.newFile("matrix.bin");
+    matrix.write(file);
+    StoichiometricMatrix copy = StoichiometricMatrix.read(file);
+    assertArrayEquals(matrix.getSpeciesIds(), copy.getSpeciesIds());
+    assertArrayEquals(matrix.getReactionIds(), copy.getReactionIds());
+    assertArrayEquals(matrix.getColumnPointers(), copy.getColumnPointers());
+    assertArrayEquals(matrix.getRowIndices(), copy.getRowIndices());
+    assertArrayEquals(matrix.getColumnValues(), copy.getColumnValues(), 0d);
+    assertArrayEquals(matrix.getRowValues(), copy.getRowValues(), 0d);
+    assertArrayEquals(matrix.getLowerBounds(), copy.getLowerBounds(), 0d);
+    assertArrayEquals(matrix.getUpperBounds(), copy.getUpperBounds(), 0d);
+    assertArrayEquals(matrix.getObjectiveCoefficients(), copy.getObjectiveCoefficients(), 0d);
+    assertEquals(matrix.getObjectiveType(), copy.getObjectiveType());
+    assertEquals(3, copy.getReactionIndex("R4"));
+
+    ((FBCModelPlugin) model.getPlugin(FBCConstants.shortLabel)).getListOfObjectives().clear();
+    StoichiometricMatrix noObjective = new StoichiometricMatrix(model);
+    noObjective.write(file);
+    assertNull(StoichiometricMatrix.read(file).getObjectiveType());
+  }
+
+  /**
+   * Checks that a matrix can be written and read through windows smaller
+   * than its values and identifiers.
+   * 
+   * @throws Exception
+   */
+  @Test
+  public void testWriteReadSmallWindows() throws Exception {
+    StoichiometricMatrix matrix = new StoichiometricMatrix(model);
+    File file = folder.newFile("windows.bin");
+    matrix.write(file, 13);
+    StoichiometricMatrix copy = StoichiometricMatrix.read(file, 11);
+    assertArrayEquals(matrix.getSpeciesIds(), copy.getSpeciesIds());
+    assertArrayEquals(matrix.getReactionIds(), copy.getReactionIds());
+    assertArrayEquals(matrix.getColumnPointers(), copy.getColumnPointers());
+    assertArrayEquals(matrix.getRowIndices(), copy.getRowIndices());
+    assertArrayEquals(matrix.getColumnValues(), copy.getColumnValues(), 0d);
+    assertArrayEquals(matrix.getLowerBounds(), copy.getLowerBounds(), 0d);
+    assertArrayEquals(matrix.getUpperBounds(), copy.getUpperBounds(), 0d);
+    assertArrayEquals(matrix.getObjectiveCoefficients(), copy.getObjectiveCoefficients(), 0d);
+    assertEquals(matrix.getObjectiveType(), copy.getObjectiveType());
+    assertArrayEquals(matrix.getColumnValues(), StoichiometricMatrix.read(file).getColumnValues(), 0d);
+  }
+
+  /**
+   * Checks that species and reactions without identifier, as allowed by SBML
+   * Level 3 Version 2, and identifiers larger than a window can be written
+   * and read.
+   * 
+   * @throws Exception
+   */
+  @Test
+  public void testWriteReadWithoutIds() throws Exception {
+    SBMLDocument doc = new SBMLDocument(3, 2);
+    Model m = doc.createModel();
+    m.createCompartment("c");
+    StringBuilder longId = new StringBuilder("S");
+    for (int i = 0; i < 100000; i++) {
+      longId.append('x');
+    }
+    m.createSpecies(longId.toString(), m.getCompartment("c"));
+    m.createSpecies().setCompartment("c");
+    Reaction reaction = m.createReaction();
+    reaction.createReactant(m.getSpecies(longId.toString())).setStoichiometry(1d);
+    m.createReaction("R");
+
+    StoichiometricMatrix matrix = new StoichiometricMatrix(m);
+    File file = folder.newFile("anonymous.bin");
+    matrix.write(file, 4096);
+    StoichiometricMatrix copy = StoichiometricMatrix.read(file);
+    assertArrayEquals(new String[] {longId.toString(), null}, copy.getSpeciesIds());
+    assertArrayEquals(new String[] {null, "R"}, copy.getReactionIds());
+    assertEquals(-1d, copy.get(0, 0), 0d);
+    assertEquals(1, copy.getReactionIndex("R"));
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.ext.comp.util.CompFlatteningConverter;
+
+/**
+ * Measures {@link CompFlatteningConverter#flatten(SBMLDocument)} on a model
+ * made of submodels.
+ * 
+ * @since 1.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompFlatteningBenchmark {
+
+  /**
+   * The size of the flattened model.
+   */
+  @Param({"SMALL", "MEDIUM", "GENOME_SCALE"})
+  public ModelFixtures.Size size;
+
+  /**
+   * The hierarchical model.
+   */
+  private SBMLDocument template;
+
+  /**
+   * The copy of the hierarchical model flattened by the next invocation, as
+   * flattening modifies the document.
+   */
+  private SBMLDocument document;
+
+  /**
+   * 
+   */
+  @Setup(Level.Trial)
+  public void createModel() {
+    template = ModelFixtures.createCompDocument(size);
+  }
+
+  /**
+   * 
+   */
+  @Setup(Level.Invocation)
+  public void copyModel() {
+    document = template.clone();
+  }
+
+  /**
+   * @return the flattened document.
+   */
+  @Benchmark
+  public SBMLDocument flatten() {
+    return new CompFlatteningConverter().flatten(document);
+  }
+
+}
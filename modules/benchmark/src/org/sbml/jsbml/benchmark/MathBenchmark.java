@@ -0,0 +1,350 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.CallableSBase;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.util.compilers.AbstractDoubleASTNodeCompiler;
+import org.sbml.jsbml.util.compilers.CompiledODESystem;
+import org.sbml.jsbml.util.compilers.FormulaCompiler;
+import org.sbml.jsbml.util.compilers.LaTeXCompiler;
+import org.sbml.jsbml.util.compilers.NumericExpression;
+import org.sbml.jsbml.util.compilers.NumericExpressionCompiler;
+import org.sbml.jsbml.util.compilers.ODESystemCompiler;
+
+/**
+ * Measures parsing formulas into {@link ASTNode}s, compiling them and
+ * evaluating them, either by walking the {@link ASTNode}s with a
+ * {@link org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler} or with the
+ * {@link NumericExpression}s created by a {@link NumericExpressionCompiler},
+ * as well as the right-hand side of a whole model compiled into a
+ * {@link CompiledODESystem}.
+ * 
+ * @since 1.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+
+  /**
+   * Evaluates the identifiers from an array of values, as a simulator would.
+   */
+  private static class ArrayCompiler extends AbstractDoubleASTNodeCompiler {
+
+    /**
+     * The index of each identifier in {@link #values}.
+     */
+    private final Map<String, Integer> indices;
+
+    /**
+     * The values of the identifiers.
+     */
+    private final double[] values;
+
+    /**
+     * @param indices
+     * @param values
+     */
+    public ArrayCompiler(Map<String, Integer> indices, double[] values) {
+      this.indices = indices;
+      this.values = values;
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#compile(org.sbml.jsbml.CallableSBase)
+     */
+    @Override
+    public double compile(CallableSBase variable) throws SBMLException {
+      return compile(variable.getId());
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.AbstractDoubleASTNodeCompiler#compile(java.lang.String)
+     */
+    @Override
+    public double compile(String name) throws SBMLException {
+      Integer index = indices.get(name);
+      return index != null ? values[index.intValue()] : super.compile(name);
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler#symbolTime(java.lang.String)
+     */
+    @Override
+    public double symbolTime(String timeSymbol) {
+      return 0d;
+    }
+
+  }
+
+  /**
+   * A model compiled into a {@link CompiledODESystem}, with its own size
+   * parameter so that the other benchmarks are not run for each size.
+   */
+  @State(Scope.Benchmark)
+  public static class ODESystemState {
+
+    /**
+     * The size of the model.
+     */
+    @Param({"SMALL", "MEDIUM", "GENOME_SCALE"})
+    public ModelFixtures.Size size;
+
+    /**
+     * The model to compile.
+     */
+    private Model model;
+
+    /**
+     * The compiled model.
+     */
+    private CompiledODESystem system;
+
+    /**
+     * The state at which the derivatives are computed.
+     */
+    private double[] y;
+
+    /**
+     * Receives the derivatives.
+     */
+    private double[] dydt;
+
+    /**
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+      model = ModelFixtures.createDocument(size).getModel();
+      system = new ODESystemCompiler().compile(model);
+      y = system.getInitialValues();
+      dydt = new double[system.getDimension()];
+    }
+
+  }
+
+  /**
+   * The number of formulas.
+   */
+  @Param({"100"})
+  public int formulaCount;
+
+  /**
+   * 
+   */
+  private String[] formulas;
+
+  /**
+   * 
+   */
+  private ASTNode[] nodes;
+
+  /**
+   * The index of each identifier used by the formulas.
+   */
+  private Map<String, Integer> indices;
+
+  /**
+   * The values of the identifiers used by the formulas.
+   */
+  private double[] values;
+
+  /**
+   * The formulas compiled by a {@link NumericExpressionCompiler}.
+   */
+  private NumericExpression[] expressions;
+
+  /**
+   * Evaluates the formulas by walking their {@link ASTNode}s.
+   */
+  private ArrayCompiler arrayCompiler;
+
+  /**
+   * @throws Exception
+   */
+  @Setup
+  public void setup() throws Exception {
+    formulas = ModelFixtures.createFormulas(formulaCount);
+    nodes = new ASTNode[formulaCount];
+    indices = new HashMap<String, Integer>();
+
+    for (int i = 0; i < formulaCount; i++) {
+      nodes[i] = ASTNode.parseFormula(formulas[i]);
+      addIdentifiers(nodes[i]);
+    }
+
+    values = new double[indices.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = 0.5d + (i % 10);
+    }
+
+    NumericExpressionCompiler compiler = new NumericExpressionCompiler(indices);
+    expressions = new NumericExpression[formulaCount];
+    for (int i = 0; i < formulaCount; i++) {
+      expressions[i] = compiler.compile(nodes[i]);
+    }
+    arrayCompiler = new ArrayCompiler(indices, values);
+  }
+
+  /**
+   * Gives an index to the identifiers used in the given math.
+   * 
+   * @param node
+   */
+  private void addIdentifiers(ASTNode node) {
+    if ((node.getType() == ASTNode.Type.NAME) && !indices.containsKey(node.getName())) {
+      indices.put(node.getName(), indices.size());
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      addIdentifiers(node.getChild(i));
+    }
+  }
+
+  /**
+   * @param blackhole
+   * @throws Exception
+   */
+  @Benchmark
+  public void parseFormula(Blackhole blackhole) throws Exception {
+    for (String formula : formulas) {
+      blackhole.consume(ASTNode.parseFormula(formula));
+    }
+  }
+
+  /**
+   * @param blackhole
+   * @throws Exception
+   */
+  @Benchmark
+  public void compileToFormula(Blackhole blackhole) throws Exception {
+    FormulaCompiler compiler = new FormulaCompiler();
+
+    for (ASTNode node : nodes) {
+      blackhole.consume(node.compile(compiler));
+    }
+  }
+
+  /**
+   * @param blackhole
+   * @throws Exception
+   */
+  @Benchmark
+  public void compileToLaTeX(Blackhole blackhole) throws Exception {
+    LaTeXCompiler compiler = new LaTeXCompiler();
+
+    for (ASTNode node : nodes) {
+      blackhole.consume(node.compile(compiler));
+    }
+  }
+
+  /**
+   * @param blackhole
+   * @throws Exception
+   */
+  @Benchmark
+  public void compileToNumericExpression(Blackhole blackhole) throws Exception {
+    NumericExpressionCompiler compiler = new NumericExpressionCompiler(indices);
+
+    for (ASTNode node : nodes) {
+      blackhole.consume(compiler.compile(node));
+    }
+  }
+
+  /**
+   * Evaluates the formulas compiled by a {@link NumericExpressionCompiler}.
+   * 
+   * @param blackhole
+   */
+  @Benchmark
+  public void evaluateNumericExpression(Blackhole blackhole) {
+    for (NumericExpression expression : expressions) {
+      blackhole.consume(expression.evaluate(values));
+    }
+  }
+
+  /**
+   * Evaluates the formulas with {@link ASTNode#compile(org.sbml.jsbml.util.compilers.DoubleASTNodeCompiler)}.
+   * 
+   * @param blackhole
+   * @throws Exception
+   */
+  @Benchmark
+  public void evaluateDoubleASTNodeCompiler(Blackhole blackhole) throws Exception {
+    for (ASTNode node : nodes) {
+      blackhole.consume(node.compile(arrayCompiler));
+    }
+  }
+
+  /**
+   * @param state
+   * @return the compiled model.
+   * @throws Exception
+   */
+  @Benchmark
+  public CompiledODESystem compileODESystem(ODESystemState state) throws Exception {
+    return new ODESystemCompiler().compile(state.model);
+  }
+
+  /**
+   * Computes the rates of change of all the species of a model, as done by
+   * an integrator at each step.
+   * 
+   * @param state
+   * @return the derivatives.
+   */
+  @Benchmark
+  public double[] computeDerivatives(ODESystemState state) {
+    state.system.computeDerivatives(0d, state.y, state.dydt);
+    return state.dydt;
+  }
+
+  /**
+   * @param blackhole
+   */
+  @Benchmark
+  public void toMathML(Blackhole blackhole) {
+    for (ASTNode node : nodes) {
+      blackhole.consume(node.toMathML());
+    }
+  }
+
+}
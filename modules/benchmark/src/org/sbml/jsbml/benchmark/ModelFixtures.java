@@ -0,0 +1,263 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.AssignmentRule;
+import org.sbml.jsbml.CVTerm;
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.ext.comp.CompConstants;
+import org.sbml.jsbml.ext.comp.CompModelPlugin;
+import org.sbml.jsbml.ext.comp.CompSBMLDocumentPlugin;
+import org.sbml.jsbml.ext.comp.ModelDefinition;
+import org.sbml.jsbml.ext.comp.Submodel;
+import org.sbml.jsbml.text.parser.ParseException;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+import org.sbml.jsbml.xml.stax.SBMLWriter;
+
+/**
+ * Creates the models used by the benchmarks.
+ * 
+ * <p>The models are generated, so that the benchmarks do not depend on large
+ * files, with a structure similar to curated kinetic models: every reaction
+ * has a kinetic law calling a function definition, every species has a
+ * MIRIAM annotation and some species are computed by assignment rules. If the
+ * system property {@value #FILE_PROPERTY} is set, the given file is used
+ * instead, for example to benchmark a real genome-scale model.</p>
+ * 
+ * @since 1.5
+ */
+public class ModelFixtures {
+
+  /**
+   * Name of the system property giving an SBML file to use instead of the
+   * generated models.
+   */
+  public static final String FILE_PROPERTY = "jsbml.benchmark.file";
+
+  /**
+   * The sizes of the generated models, as number of reactions.
+   */
+  public enum Size {
+    /**
+     * Size of a typical BioModels entry.
+     */
+    SMALL(20),
+    /**
+     * Size of a large signalling model.
+     */
+    MEDIUM(500),
+    /**
+     * Size of a genome-scale metabolic network.
+     */
+    GENOME_SCALE(5000);
+
+    /**
+     * 
+     */
+    private final int reactionCount;
+
+    /**
+     * @param reactionCount
+     */
+    private Size(int reactionCount) {
+      this.reactionCount = reactionCount;
+    }
+
+    /**
+     * Returns the number of reactions of the models of this size.
+     * 
+     * @return the number of reactions of the models of this size.
+     */
+    public int getReactionCount() {
+      return reactionCount;
+    }
+  }
+
+  /**
+   * Returns the model of the given size, or the model read from the file
+   * given by the system property {@value #FILE_PROPERTY}.
+   * 
+   * @param size
+   * @return a new {@link SBMLDocument}.
+   * @throws XMLStreamException
+   * @throws IOException
+   */
+  public static SBMLDocument createDocument(Size size) throws XMLStreamException, IOException {
+    String fileName = System.getProperty(FILE_PROPERTY);
+
+    if (fileName != null) {
+      return new SBMLReader().readSBML(new File(fileName));
+    }
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    fillModel(doc.createModel("model_" + size.name().toLowerCase()), size.getReactionCount());
+
+    return doc;
+  }
+
+  /**
+   * Returns the XML of {@link #createDocument(Size)}.
+   * 
+   * @param size
+   * @return the XML of the model of the given size.
+   * @throws XMLStreamException
+   * @throws IOException
+   * @throws SBMLException
+   */
+  public static String createXML(Size size) throws XMLStreamException, IOException, SBMLException {
+    return new SBMLWriter().writeSBMLToString(createDocument(size));
+  }
+
+  /**
+   * Returns a hierarchical model made of submodels, each instantiating a
+   * model definition with {@link Size#SMALL} reactions, so that the total
+   * number of reactions is close to the given size.
+   * 
+   * @param size
+   * @return a new {@link SBMLDocument} using the comp package.
+   */
+  public static SBMLDocument createCompDocument(Size size) {
+    SBMLDocument doc = new SBMLDocument(3, 1);
+    CompSBMLDocumentPlugin docPlugin = (CompSBMLDocumentPlugin) doc.getPlugin(CompConstants.shortLabel);
+
+    Model model = doc.createModel("composite");
+    CompModelPlugin modelPlugin = (CompModelPlugin) model.getPlugin(CompConstants.shortLabel);
+    int submodelCount = Math.max(1, size.getReactionCount() / Size.SMALL.getReactionCount());
+
+    for (int i = 0; i < submodelCount; i++) {
+      // the flattening uses the id of the model definition as prefix,
+      // so each submodel has its own definition
+      ModelDefinition module = new ModelDefinition("module" + i, 3, 1);
+      fillModel(module, Size.SMALL.getReactionCount());
+      docPlugin.addModelDefinition(module);
+
+      Submodel submodel = modelPlugin.createSubmodel("sub_" + i);
+      submodel.setModelRef(module.getId());
+    }
+
+    return doc;
+  }
+
+  /**
+   * Returns formulas typical of kinetic laws.
+   * 
+   * @param count the number of formulas
+   * @return formulas typical of kinetic laws.
+   */
+  public static String[] createFormulas(int count) {
+    String[] formulas = new String[count];
+
+    for (int i = 0; i < count; i++) {
+      switch (i % 4) {
+      case 0:
+        formulas[i] = "cell * k" + i + " * S" + i + " * S" + (i + 1);
+        break;
+      case 1:
+        formulas[i] = "cell * Vmax" + i + " * S" + i + " / (Km" + i + " + S" + i + ")";
+        break;
+      case 2:
+        formulas[i] = "cell * Vmax" + i + " * pow(S" + i + ", 4) / (pow(Km" + i + ", 4) + pow(S" + i + ", 4))";
+        break;
+      default:
+        formulas[i] = "cell * (kf" + i + " * S" + i + " - kr" + i + " * exp(-S" + (i + 1) + " / 2))";
+        break;
+      }
+    }
+
+    return formulas;
+  }
+
+  /**
+   * Adds the given number of reactions to the given model, as well as the
+   * species, parameters, rules and function definitions they need.
+   * 
+   * @param model
+   * @param reactionCount
+   */
+  private static void fillModel(Model model, int reactionCount) {
+    try {
+      Compartment cell = model.createCompartment("cell");
+      cell.setSize(1d);
+      cell.setSpatialDimensions(3d);
+      cell.setConstant(true);
+
+      FunctionDefinition mm = model.createFunctionDefinition("mm");
+      mm.setMath(ASTNode.parseFormula("lambda(S, V, K, V * S / (K + S))"));
+
+      int speciesCount = reactionCount + 1;
+
+      for (int i = 0; i < speciesCount; i++) {
+        Species species = model.createSpecies("S" + i, cell);
+        species.setInitialConcentration(1d + (i % 10));
+        species.setHasOnlySubstanceUnits(false);
+        species.setBoundaryCondition(false);
+        species.setConstant(false);
+        species.setMetaId(model.getId() + "_meta_S" + i);
+        species.addCVTerm(new CVTerm(CVTerm.Qualifier.BQB_IS,
+          "http://identifiers.org/chebi/CHEBI:" + (15000 + i)));
+      }
+
+      for (int i = 0; i < reactionCount; i++) {
+        Parameter vmax = model.createParameter("Vmax" + i);
+        vmax.setValue(1d + (i % 7));
+        vmax.setConstant(true);
+        Parameter km = model.createParameter("Km" + i);
+        km.setValue(0.1d * (1 + (i % 5)));
+        km.setConstant(true);
+
+        Reaction reaction = model.createReaction("R" + i);
+        reaction.setReversible(false);
+        reaction.setFast(false);
+        reaction.createReactant(model.getSpecies(i)).setStoichiometry(1d);
+        reaction.getReactant(0).setConstant(true);
+        reaction.createProduct(model.getSpecies(i + 1)).setStoichiometry(1d);
+        reaction.getProduct(0).setConstant(true);
+
+        KineticLaw kineticLaw = reaction.createKineticLaw();
+        kineticLaw.setMath(ASTNode.parseFormula("cell * mm(S" + i + ", Vmax" + i + ", Km" + i + ")"));
+      }
+
+      // one assignment rule every ten species
+      for (int i = 0; i < speciesCount / 10; i++) {
+        Parameter total = model.createParameter("total" + i);
+        total.setConstant(false);
+        AssignmentRule rule = model.createAssignmentRule();
+        rule.setVariable(total);
+        rule.setMath(ASTNode.parseFormula("S" + (10 * i) + " + S" + (10 * i + 1)));
+      }
+    } catch (ParseException exc) {
+      throw new IllegalStateException(exc);
+    }
+  }
+
+}
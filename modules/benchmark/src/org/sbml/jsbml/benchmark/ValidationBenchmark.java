@@ -0,0 +1,88 @@
+/*
+ * ----------------------------------------------------------------------------
+ * This file is part of JSBML. Please visit <http://sbml.org/Software/JSBML>
+ * for the latest version of JSBML and more information about SBML.
+ *
+ * Copyright (C) 2009-2018 jointly by the following organizations:
+ * 1. The University of Tuebingen, Germany
+ * 2. EMBL European Bioinformatics Institute (EBML-EBI), Hinxton, UK
+ * 3. The California Institute of Technology, Pasadena, CA, USA
+ * 4. The University of California, San Diego, La Jolla, CA, USA
+ * 5. The Babraham Institute, Cambridge, UK
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation. A copy of the license agreement is provided
+ * in the file named "LICENSE.txt" included with this software distribution
+ * and also available online as <http://sbml.org/Software/JSBML/License>.
+ * ----------------------------------------------------------------------------
+ */
+package org.sbml.jsbml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.validator.SBMLValidator.CHECK_CATEGORY;
+import org.sbml.jsbml.validator.offline.LoggingValidationContext;
+
+/**
+ * Measures the offline validation with a {@link LoggingValidationContext}.
+ * 
+ * @since 1.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+  /**
+   * The size of the model.
+   */
+  @Param({"SMALL", "MEDIUM", "GENOME_SCALE"})
+  public ModelFixtures.Size size;
+
+  /**
+   * The model to validate.
+   */
+  private SBMLDocument document;
+
+  /**
+   * @throws Exception
+   */
+  @Setup
+  public void setup() throws Exception {
+    document = ModelFixtures.createDocument(size);
+  }
+
+  /**
+   * Validates the model with all the categories of checks but the unit
+   * consistency, like {@link SBMLDocument#checkConsistencyOffline()}.
+   * 
+   * @return the number of errors found.
+   */
+  @Benchmark
+  public int validate() {
+    LoggingValidationContext ctx = new LoggingValidationContext(document.getLevel(), document.getVersion());
+    ctx.enableCheckCategories(CHECK_CATEGORY.values(), true);
+    ctx.enableCheckCategory(CHECK_CATEGORY.UNITS_CONSISTENCY, false);
+    ctx.loadConstraints(SBMLDocument.class);
+    ctx.validate(document);
+
+    return ctx.getErrorLog().getErrorCount();
+  }
+
+}